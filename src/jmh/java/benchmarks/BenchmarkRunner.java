@@ -0,0 +1,34 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of target/benchmarks.jar. It runs the JMH benchmarks
+ * selected by the usual JMH command-line options, e.g.
+ *      java -jar target/benchmarks.jar IntersectionBenchmark -rf json
+ * but always with the gc profiler, so that every result reports the
+ * allocation rate (gc.alloc.rate.norm is the number of bytes allocated
+ * per operation) next to the throughput. The forked benchmark JVMs
+ * get the Vector API module, so that meshes use the SIMD intersection
+ * kernel (unless -Draytracer.intersection-kernel=scalar is passed with
+ * -jvmArgsAppend).
+ */
+
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        /// let JMH handle help and listing requests itself
+        if(commandLineOptions.shouldHelp() || commandLineOptions.shouldList() || commandLineOptions.shouldListProfilers()
+                || commandLineOptions.shouldListResultFormats() || commandLineOptions.shouldListWithParams()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        new Runner(new OptionsBuilder().parent(commandLineOptions).addProfiler(GCProfiler.class)
+                .jvmArgsPrepend("--add-modules", "jdk.incubator.vector").build()).run();
+    }
+}
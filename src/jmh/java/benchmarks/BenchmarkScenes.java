@@ -0,0 +1,75 @@
+package benchmarks;
+
+import rendering.tracing.Intersection;
+import rendering.tracing.Ray;
+import rendering.tracing.Scene;
+import rendering.utility.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Class with the scenes and rays shared by the benchmarks.
+ *
+ * All paths are relative to the project root, which is
+ * where the benchmarks have to be run from (the scene
+ * descriptions refer to their meshes the same way).
+ */
+
+public class BenchmarkScenes {
+    /// directory with the bundled scene descriptions
+    public static final String sceneDescriptionsDirectory = "src/main/resources/scene descriptions/";
+    /// directory with the bundled meshes
+    public static final String meshesDirectory = "src/main/resources/meshes/";
+    /// number of precomputed rays (or intersections) each benchmark cycles through, a power of 2
+    public static final int numberOfSamples = 1024;
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that loads the bundled scene description with
+       the given name (without the .xml extension).
+     */
+    public static Scene loadScene(String name) throws Exception {
+        return new Scene(BenchmarkScenes.sceneDescriptionsDirectory + name + ".xml");
+    }
+    /*
+       Method that creates rays from random points on a sphere of the
+       given radius around the origin, towards random points in the
+       box [min, max], with a fixed seed so that runs are comparable.
+     */
+    public static Ray[] createRays(int n, double radius, Vector3D min, Vector3D max, long seed) {
+        Random rnd = new Random(seed);
+        Ray[] rays = new Ray[n];
+        for(int i = 0; i < n; i++) {
+            Vector3D origin = new Vector3D(rnd.nextGaussian(), rnd.nextGaussian(), rnd.nextGaussian()).normalised().scaled(radius);
+            Vector3D target = new Vector3D(min.getX() + rnd.nextDouble() * (max.getX() - min.getX()),
+                    min.getY() + rnd.nextDouble() * (max.getY() - min.getY()),
+                    min.getZ() + rnd.nextDouble() * (max.getZ() - min.getZ()));
+            rays[i] = new Ray(origin, target.added(origin.negated()).normalised());
+        }
+        return rays;
+    }
+    /*
+       Method that finds the first intersections of primary rays from the
+       default camera (at the origin, screen plane of height 4 at depth 2)
+       through random points of its screen plane, until n of them hit the
+       scene, so shading benchmarks work on realistic hit points.
+     */
+    public static Intersection[] createPrimaryIntersections(Scene scene, int n, long seed) {
+        Random rnd = new Random(seed);
+        ArrayList<Intersection> intersections = new ArrayList<>();
+        for(int attempts = 0; intersections.size() < n && attempts < 100 * n; attempts++) {
+            Ray ray = new Ray(new Vector3D(0, 0, 0), new Vector3D(4 * rnd.nextDouble() - 2, 4 * rnd.nextDouble() - 2, 2));
+            Intersection intersection = ray.findFirstIntersection(scene);
+            if(intersection != null) {
+                intersections.add(intersection);
+            }
+        }
+        if(intersections.size() < n) {
+            throw new IllegalStateException("The scene is not visible from the default camera.");
+        }
+        return intersections.toArray(new Intersection[0]);
+    }
+}
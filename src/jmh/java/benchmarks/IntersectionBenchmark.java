@@ -0,0 +1,97 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rendering.acceleration.AxisAlignedBoundingBox;
+import rendering.shading.Material;
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.Plane;
+import rendering.shapes.Sphere;
+import rendering.shapes.Triangle;
+import rendering.shapes.TriangleMesh;
+import rendering.tracing.HitRecord;
+import rendering.tracing.Ray;
+import rendering.utility.Matrix4D;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the ray-shape intersection tests, i.e. of
+ * the closest-hit query intersect(Ray, HitRecord) of every
+ * kind of shape, for a fixed set of random rays aimed at
+ * the shape (most of them hit it).
+ *
+ * The intersection tests must not allocate, which the gc
+ * profiler (enabled by BenchmarkRunner) reports as
+ * gc.alloc.rate.norm of (almost) 0 bytes per operation.
+ *
+ * The mesh is intersected with both the scalar and the SIMD
+ * intersection kernel (the 'kernel' parameter).
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class IntersectionBenchmark {
+    private Sphere sphere;
+    private Plane plane;
+    private Triangle triangle;
+    private TriangleMesh mesh;
+    private Ray[] unitBoxRays;
+    private Ray[] meshRays;
+    private final HitRecord hitRecord = new HitRecord();
+    private int index;
+
+    @Param({"scalar", "simd"})
+    public String kernel;
+
+    @Setup
+    public void setup() throws Exception {
+        IntersectionKernel.setDefault(IntersectionKernel.parse(this.kernel));
+        this.sphere = new Sphere(new Vector3D(0, 0, 0), 1, RTColor.red, Material.defaultNonReflectiveMaterial);
+        this.plane = new Plane(new Vector3D(0, 1, 0), new Vector3D(0, 0, 0), RTColor.red, Material.defaultNonReflectiveMaterial);
+        this.triangle = new Triangle(new Vector3D(-1, -1, 0), new Vector3D(1, -1, 0), new Vector3D(0, 1, 0), RTColor.red, Material.defaultNonReflectiveMaterial);
+        this.mesh = new TriangleMesh(BenchmarkScenes.meshesDirectory + "pawnAutoSmoothShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial);
+
+        this.unitBoxRays = BenchmarkScenes.createRays(BenchmarkScenes.numberOfSamples, 5, new Vector3D(-1, -1, -1), new Vector3D(1, 1, 1), 1);
+        AxisAlignedBoundingBox box = this.mesh.getAxisAlignedBoundingBox();
+        this.meshRays = BenchmarkScenes.createRays(BenchmarkScenes.numberOfSamples, 10, new Vector3D(box.getMinX(), box.getMinY(), box.getMinZ()),
+                new Vector3D(box.getMaxX(), box.getMaxY(), box.getMaxZ()), 2);
+    }
+
+    /*
+       Method that returns the index of the next ray to use.
+     */
+    private int nextIndex() {
+        this.index = (this.index + 1) & (BenchmarkScenes.numberOfSamples - 1);
+        return this.index;
+    }
+
+    @Benchmark
+    public boolean sphereIntersect() {
+        this.hitRecord.reset(Double.POSITIVE_INFINITY);
+        return this.sphere.intersect(this.unitBoxRays[this.nextIndex()], this.hitRecord);
+    }
+
+    @Benchmark
+    public boolean planeIntersect() {
+        this.hitRecord.reset(Double.POSITIVE_INFINITY);
+        return this.plane.intersect(this.unitBoxRays[this.nextIndex()], this.hitRecord);
+    }
+
+    @Benchmark
+    public boolean triangleIntersect() {
+        this.hitRecord.reset(Double.POSITIVE_INFINITY);
+        return this.triangle.intersect(this.unitBoxRays[this.nextIndex()], this.hitRecord);
+    }
+
+    @Benchmark
+    public boolean meshIntersect() {
+        this.hitRecord.reset(Double.POSITIVE_INFINITY);
+        return this.mesh.intersect(this.meshRays[this.nextIndex()], this.hitRecord);
+    }
+}
@@ -0,0 +1,98 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rendering.Camera;
+import rendering.tracing.HitRecord;
+import rendering.tracing.Ray;
+import rendering.tracing.RayPacket;
+import rendering.tracing.Scene;
+import rendering.utility.Vector3D;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of rendering a whole frame of each of the
+ * bundled scenes, on all CPU cores, at a small resolution
+ * and with the default reflection and sampling settings.
+ *
+ * Loading the scene is not measured. Every scene is rendered
+ * with the primary rays traced as packets and one at a time
+ * (the 'packetTracing' parameter). Since the primary rays are
+ * only a part of the work of a frame, the closest hits of the
+ * rays through the centers of all pixels (in blocks of 8x8
+ * pixels) are also measured on their own, on a single thread.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+    @Param({"spheres_scene", "spheres_and_triangles_scene", "house_and_tower_scene", "pawnFlatShaded_scene", "pawnAutoSmoothShaded_scene"})
+    public String sceneName;
+
+    @Param({"200"})
+    public int heightInPixels;
+
+    @Param({"true", "false"})
+    public boolean packetTracing;
+
+    private Scene scene;
+    private Camera camera;
+    /// rays through the pixel centers, one array per block of pixels
+    private Ray[][] primaryRayBlocks;
+    private final RayPacket packet = new RayPacket();
+    private final HitRecord hitRecord = new HitRecord();
+
+    @Setup
+    public void setup() throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        this.scene = BenchmarkScenes.loadScene(this.sceneName);
+        this.camera = new Camera(4, 2, 1, this.heightInPixels, 5, 3).withPacketTracing(this.packetTracing);
+
+        int blocksPerSide = (this.heightInPixels + RayPacket.side - 1) / RayPacket.side;
+        double pixelSize = 4.0 / this.heightInPixels;
+        this.primaryRayBlocks = new Ray[blocksPerSide * blocksPerSide][];
+        for(int block = 0; block < this.primaryRayBlocks.length; block++) {
+            int blockX = (block % blocksPerSide) * RayPacket.side, blockY = (block / blocksPerSide) * RayPacket.side;
+            int width = Math.min(RayPacket.side, this.heightInPixels - blockX), height = Math.min(RayPacket.side, this.heightInPixels - blockY);
+            this.primaryRayBlocks[block] = new Ray[width * height];
+            for(int i = 0; i < width * height; i++) {
+                double x = 2 - (blockX + i % width + 0.5) * pixelSize, y = 2 - (blockY + i / width + 0.5) * pixelSize;
+                this.primaryRayBlocks[block][i] = new Ray(new Vector3D(0, 0, 0), new Vector3D(x, y, 2));
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage renderFrame() {
+        return this.camera.renderWithCPUCoreParallelization(this.scene, null);
+    }
+
+    @Benchmark
+    public int primaryHits() {
+        int hits = 0;
+        for(Ray[] rays : this.primaryRayBlocks) {
+            if(this.packetTracing) {
+                this.packet.clear();
+                for(Ray ray : rays) {
+                    this.packet.add(ray, Double.POSITIVE_INFINITY);
+                }
+                this.scene.findClosestHits(this.packet);
+                for(int i = 0; i < rays.length; i++) {
+                    hits += this.packet.getHitRecord(i).hasHit() ? 1 : 0;
+                }
+            }
+            else {
+                for(Ray ray : rays) {
+                    this.hitRecord.reset(Double.POSITIVE_INFINITY);
+                    hits += this.scene.findClosestHit(ray, this.hitRecord) ? 1 : 0;
+                }
+            }
+        }
+        return hits;
+    }
+}
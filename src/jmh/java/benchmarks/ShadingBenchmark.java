@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import rendering.shading.PhongShader;
+import rendering.tracing.Intersection;
+import rendering.tracing.Scene;
+import rendering.utility.RTColor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of PhongShader.evaluateShadingModel, at
+ * the first intersections of primary rays with each
+ * of the bundled scenes. This includes casting the
+ * shadow rays to all lights of the scene.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShadingBenchmark {
+    @Param({"spheres_scene", "spheres_and_triangles_scene", "house_and_tower_scene", "pawnFlatShaded_scene", "pawnAutoSmoothShaded_scene"})
+    public String sceneName;
+
+    private PhongShader shader;
+    private Intersection[] intersections;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        Scene scene = BenchmarkScenes.loadScene(this.sceneName);
+        this.shader = new PhongShader(scene);
+        this.intersections = BenchmarkScenes.createPrimaryIntersections(scene, BenchmarkScenes.numberOfSamples, 3);
+    }
+
+    @Benchmark
+    public RTColor evaluateShadingModel() {
+        this.index = (this.index + 1) & (BenchmarkScenes.numberOfSamples - 1);
+        return this.shader.evaluateShadingModel(this.intersections[this.index]);
+    }
+}
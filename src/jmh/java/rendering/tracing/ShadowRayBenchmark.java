@@ -0,0 +1,49 @@
+package rendering.tracing;
+
+import benchmarks.BenchmarkScenes;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of ShadowRay.targetPointOccluded, for shadow
+ * rays from the first intersections of primary rays with
+ * each of the bundled scenes to the first light of the
+ * scene.
+ *
+ * It is in the same package as ShadowRay, as the method
+ * is package-private.
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ShadowRayBenchmark {
+    @Param({"spheres_scene", "spheres_and_triangles_scene", "house_and_tower_scene", "pawnFlatShaded_scene", "pawnAutoSmoothShaded_scene"})
+    public String sceneName;
+
+    private Scene scene;
+    private ShadowRay[] shadowRays;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        this.scene = BenchmarkScenes.loadScene(this.sceneName);
+        Intersection[] intersections = BenchmarkScenes.createPrimaryIntersections(this.scene, BenchmarkScenes.numberOfSamples, 4);
+        Light light = this.scene.getLights().get(0);
+
+        this.shadowRays = new ShadowRay[intersections.length];
+        for(int i = 0; i < intersections.length; i++) {
+            this.shadowRays[i] = new ShadowRay(intersections[i], light);
+        }
+    }
+
+    @Benchmark
+    public boolean targetPointOccluded() {
+        this.index = (this.index + 1) & (BenchmarkScenes.numberOfSamples - 1);
+        return this.shadowRays[this.index].targetPointOccluded(this.scene);
+    }
+}
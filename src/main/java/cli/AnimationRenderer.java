@@ -0,0 +1,172 @@
+package cli;
+
+import rendering.Camera;
+import rendering.animation.Animation;
+import rendering.animation.FrameSink;
+import rendering.animation.ImageFileSink;
+import rendering.animation.PPMStreamSink;
+import rendering.animation.SequenceRenderer;
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.MeshCache;
+import rendering.tracing.Scene;
+import rendering.utility.SceneDescriptionParser;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Class for the headless command-line renderer of animated scenes
+ * (see Animation), which renders a range of frames of the animation
+ * of a scene description into a sequence of image files, or streams
+ * them to the standard output as PPM images (e.g. into a video encoder).
+ *
+ * Use
+ *      java -cp <classpath> cli.AnimationRenderer --scene <scene.xml> --output <frames/frame%04d.png> [--frames <first>-<last>] [options]
+ * where the output is a pattern containing the frame number (see
+ * ImageFileSink), or '-' for the standard output (see PPMStreamSink),
+ * in which case all messages go to the standard error. By default, all
+ * frames of the animation are rendered. All other options are those of
+ * the CommandLineRenderer (see CommandLineOptions).
+ *
+ * The scene is built once, and only its animated shapes and lights are
+ * replaced from one frame to the next (see SequenceRenderer).
+ *
+ * The exit code is 0 if all frames were rendered, 1 if rendering
+ * failed, and 2 if the arguments are invalid.
+ */
+
+public class AnimationRenderer {
+    public static final String usage = String.join(System.lineSeparator(),
+            "Usage: AnimationRenderer --scene <scene.xml> --output <frames/frame%04d.png|-> [--frames <first>-<last>] [options]",
+            "  --output <pattern>    image file of every frame, with the frame number as a format",
+            "                        specifier (e.g. %04d), or '-' to stream PPM images to the standard output",
+            "  --frames <a>-<b>      frames to render, inclusive (default: all frames of the animation)",
+            "  other options as for the CommandLineRenderer");
+
+    public static void main(String[] args) {
+        System.exit(AnimationRenderer.run(args));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that renders the frames given by the command-line
+       arguments, and returns the exit code.
+     */
+    public static int run(String[] args) {
+        /// never try to connect to a display
+        System.setProperty("java.awt.headless", "true");
+
+        /// take out the range of frames, and leave the other options to CommandLineOptions
+        ArrayList<String> otherArgs = new ArrayList<>(Arrays.asList(args));
+        int[] frames = null;
+        CommandLineOptions options;
+        try {
+            int framesIndex = otherArgs.indexOf("--frames");
+            if(framesIndex >= 0) {
+                if(framesIndex + 1 >= otherArgs.size()) {
+                    throw new IllegalArgumentException("Missing value for option '--frames'.");
+                }
+                frames = AnimationRenderer.parseFrames(otherArgs.get(framesIndex + 1));
+                otherArgs.subList(framesIndex, framesIndex + 2).clear();
+            }
+            options = CommandLineOptions.parse(otherArgs.toArray(new String[0]));
+            if(!options.isHelp() && options.getJobs().size() != 1) {
+                throw new IllegalArgumentException("Exactly one --scene and --output must be given.");
+            }
+            if(options.getIntersectionKernel() != null) {
+                IntersectionKernel.setDefault(options.getIntersectionKernel());
+            }
+            if(options.hasMeshCacheBudget()) {
+                MeshCache.setBudget(options.getMeshCacheBudget() << 20);
+            }
+        }
+        catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(AnimationRenderer.usage);
+            return 2;
+        }
+        if(options.isHelp()) {
+            System.out.println(AnimationRenderer.usage);
+            return 0;
+        }
+
+        CommandLineOptions.RenderJob job = options.getJobs().get(0);
+        boolean streaming = job.getOutputPath().equals("-");
+        FrameSink sink;
+        try {
+            sink = streaming ? new PPMStreamSink(System.out) : new ImageFileSink(job.getOutputPath());
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(AnimationRenderer.usage);
+            return 2;
+        }
+
+        /// the standard output only carries the frames when streaming, so everything else printed (e.g. the progress of the camera) goes to the standard error
+        PrintStream standardOutput = System.out;
+        if(streaming) {
+            System.setOut(System.err);
+        }
+        PrintStream messages = System.out;
+        try {
+            long startTime = System.currentTimeMillis();
+            SceneDescriptionParser parser = new SceneDescriptionParser(job.getScenePath());
+            Scene scene = new Scene(parser.parseShapes(), parser.parseLights());
+            Animation animation = parser.parseAnimation();
+            long loadedTime = System.currentTimeMillis();
+
+            int firstFrame = frames == null ? 0 : frames[0];
+            int lastFrame = frames == null ? animation.getNumberOfFrames() - 1 : frames[1];
+            Camera camera = CommandLineRenderer.createCamera(options);
+            long[] frameStartTime = {System.currentTimeMillis()};
+            new SequenceRenderer(camera, animation).render(scene, firstFrame, lastFrame, new FrameSink() {
+                @Override
+                public void accept(int frame, BufferedImage image) throws IOException {
+                    sink.accept(frame, image);
+                    long frameEndTime = System.currentTimeMillis();
+                    messages.println("Rendered frame " + frame + (streaming ? "" : " to '" + ((ImageFileSink) sink).getPath(frame) + "'") +
+                            " (" + (frameEndTime - frameStartTime[0]) / 1000.0 + " s)");
+                    frameStartTime[0] = frameEndTime;
+                }
+                @Override
+                public void close() throws IOException {
+                    sink.close();
+                }
+            });
+
+            messages.println("Rendered frames " + firstFrame + "-" + lastFrame + " of '" + job.getScenePath() + "' (loading " +
+                    (loadedTime - startTime) / 1000.0 + " s, rendering " + (System.currentTimeMillis() - loadedTime) / 1000.0 + " s)");
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println("Failed to render '" + job.getScenePath() + "': " + e);
+            return 1;
+        }
+        finally {
+            System.setOut(standardOutput);
+        }
+    }
+    /*
+       Method that parses a range of frames "<first>-<last>", or
+       a single frame "<frame>", into the first and last frame.
+     */
+    static int[] parseFrames(String value) {
+        String[] bounds = value.split("-", -1);
+        try {
+            int first = Integer.parseInt(bounds[0].strip());
+            int last = bounds.length == 1 ? first : Integer.parseInt(bounds[1].strip());
+            if(bounds.length > 2 || first < 0 || last < first) {
+                throw new NumberFormatException();
+            }
+            return new int[]{first, last};
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of option '--frames' must be a range '<first>-<last>' of non-negative frames, got '" + value + "'.");
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package cli;
+
+import rendering.sampling.SamplerType;
+import rendering.scheduling.TileScheduler;
+import rendering.shapes.IntersectionKernel;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class for the options of the headless command-line
+ * renderer, parsed from the command-line arguments.
+ *
+ * Options (all except the scenes are optional):
+ *
+ *      --scene <path>          scene description XML to render, or a scene snapshot
+ *                              (*.rtsnap, see SceneSnapshotConverter)
+ *      --output <path>         image to write the render of the preceding --scene to
+ *                              (format from extension, png if none given)
+ *      --batch <path>          file listing scenes to render, one per line, as
+ *                              "<scene path> | <output path>" (empty lines and
+ *                              lines starting with '#' are ignored)
+ *      --width <pixels>        image width, default equal to the height
+ *      --height <pixels>       image height, default 800
+ *      --samples <n>           samples per pixel side (n x n jittered samples), default 3
+ *      --reflections <n>       reflection tracing limit, default 5
+ *      --threads <n>           number of rendering threads, default all cores
+ *      --tile-size <pixels>    width and height of the tiles rendered in parallel, default 32
+ *      --adaptive <threshold>  adaptive antialiasing, pixels stop sampling once the standard
+ *                              error of their mean color is at most the threshold (e.g. 0.01)
+ *      --min-samples <n>       minimum samples per pixel with --adaptive, default samples per pixel side
+ *      --sampler <name>        sampler for pixels and lights: independent, stratified (default),
+ *                              halton or sobol
+ *      --kernel <name>         ray-triangle intersection kernel: scalar or simd (needs the JVM
+ *                              option --add-modules jdk.incubator.vector), default simd if available
+ *      --packets <on|off>      trace the primary rays of blocks of 8x8 pixels together, default on
+ *      --mesh-cache <MB>       memory budget of the cache of loaded meshes shared by the scenes,
+ *                              0 to disable it, default a quarter of the maximum heap (see MeshCache)
+ *      --farm <port>           render on the workers of a render farm (see FarmWorker) connecting
+ *                              on the given port, instead of locally (0 for any free port)
+ *      --help                  print usage
+ *
+ * --scene/--output pairs can be repeated, and combined with --batch,
+ * to render many scenes in one JVM.
+ *
+ * Invalid arguments are reported with an IllegalArgumentException.
+ */
+
+public class CommandLineOptions {
+    public static final String usage = String.join(System.lineSeparator(),
+            "Usage: CommandLineRenderer (--scene <scene.xml> --output <image.png>)... [--batch <file>] [options]",
+            "  --batch <file>        lines of '<scene.xml> | <image.png>' to render in one run",
+            "                        (a scene can also be a snapshot written by SceneSnapshotConverter)",
+            "  --width <pixels>      image width (default: same as height)",
+            "  --height <pixels>     image height (default: 800)",
+            "  --samples <n>         n x n jittered samples per pixel (default: 3)",
+            "  --reflections <n>     reflection tracing limit (default: 5)",
+            "  --threads <n>         rendering threads (default: number of cores)",
+            "  --tile-size <pixels>  tile width and height (default: 32)",
+            "  --adaptive <t>        adaptive antialiasing, stop sampling a pixel once the",
+            "                        standard error of its color is at most t (e.g. 0.01)",
+            "  --min-samples <n>     minimum samples per pixel with --adaptive (default: samples per pixel side)",
+            "  --sampler <name>      independent, stratified, halton or sobol (default: stratified)",
+            "  --kernel <name>       triangle intersection kernel, scalar or simd (default: simd if available)",
+            "  --packets <on|off>    trace primary rays of 8x8 pixel blocks as packets (default: on)",
+            "  --mesh-cache <MB>     memory budget of the mesh cache shared by the scenes, 0 to disable",
+            "                        (default: a quarter of the maximum heap)",
+            "  --farm <port>         render on farm workers (cli.FarmWorker) connecting on this port",
+            "                        instead of locally (0: any free port)",
+            "  --help                print this message");
+
+    /// scenes to render, in order
+    private final ArrayList<RenderJob> jobs = new ArrayList<>();
+    private int width = -1;
+    private int height = 800;
+    private int samplesPerPixelSide = 3;
+    private int reflectionTracingLimit = 5;
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+    private int tileSize = TileScheduler.defaultTileSize;
+    /// standard error threshold of adaptive antialiasing, negative if it is disabled
+    private double adaptiveSamplingThreshold = -1;
+    private int minimumSamplesPerPixel = -1;
+    private SamplerType samplerType = SamplerType.STRATIFIED;
+    /// intersection kernel of the meshes, null to keep the default one
+    private IntersectionKernel intersectionKernel = null;
+    private boolean packetTracing = true;
+    /// budget of the mesh cache in megabytes, negative to keep the default one
+    private long meshCacheBudget = -1;
+    /// port of the render farm coordinator, negative to render locally
+    private int farmPort = -1;
+    private boolean help = false;
+
+    /**
+     * Constructors
+     */
+    private CommandLineOptions() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that parses the options from the given command-line arguments.
+     */
+    public static CommandLineOptions parse(String[] args) throws IOException {
+        CommandLineOptions options = new CommandLineOptions();
+        String pendingScene = null;
+
+        for(int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if(option.equals("--help") || option.equals("-h")) {
+                options.help = true;
+                continue;
+            }
+            if(i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option '" + option + "'.");
+            }
+            String value = args[++i];
+
+            switch (option) {
+                case "--scene" -> {
+                    if(pendingScene != null) {
+                        throw new IllegalArgumentException("Missing --output for scene '" + pendingScene + "'.");
+                    }
+                    pendingScene = value;
+                }
+                case "--output" -> {
+                    if(pendingScene == null) {
+                        throw new IllegalArgumentException("--output '" + value + "' is not preceded by a --scene.");
+                    }
+                    options.jobs.add(new RenderJob(pendingScene, value));
+                    pendingScene = null;
+                }
+                case "--batch" -> options.jobs.addAll(CommandLineOptions.parseBatchFile(Path.of(value)));
+                case "--width" -> options.width = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--height" -> options.height = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--samples" -> options.samplesPerPixelSide = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--reflections" -> options.reflectionTracingLimit = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--threads" -> options.numberOfThreads = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--tile-size" -> options.tileSize = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--adaptive" -> options.adaptiveSamplingThreshold = CommandLineOptions.parseNonNegativeReal(option, value);
+                case "--min-samples" -> options.minimumSamplesPerPixel = CommandLineOptions.parsePositiveInteger(option, value);
+                case "--sampler" -> options.samplerType = CommandLineOptions.parseSamplerType(value);
+                case "--kernel" -> options.intersectionKernel = IntersectionKernel.parse(value);
+                case "--packets" -> options.packetTracing = CommandLineOptions.parseSwitch(option, value);
+                case "--mesh-cache" -> options.meshCacheBudget = CommandLineOptions.parseNonNegativeInteger(option, value);
+                case "--farm" -> options.farmPort = CommandLineOptions.parsePort(option, value);
+                default -> throw new IllegalArgumentException("Unknown option '" + option + "'.");
+            }
+        }
+
+        if(pendingScene != null) {
+            throw new IllegalArgumentException("Missing --output for scene '" + pendingScene + "'.");
+        }
+        if(options.jobs.isEmpty() && !options.help) {
+            throw new IllegalArgumentException("No scenes to render.");
+        }
+        if(options.width == -1) {
+            options.width = options.height;
+        }
+        if(options.minimumSamplesPerPixel == -1) {
+            options.minimumSamplesPerPixel = options.samplesPerPixelSide;
+        }
+        else if(options.adaptiveSamplingThreshold < 0) {
+            throw new IllegalArgumentException("--min-samples can only be used with --adaptive.");
+        }
+
+        return options;
+    }
+    /*
+       Method that parses a batch file, whose every non-empty line
+       that does not start with '#' is of the form
+       "<scene path> | <output path>".
+     */
+    public static List<RenderJob> parseBatchFile(Path batchFile) throws IOException {
+        ArrayList<RenderJob> jobs = new ArrayList<>();
+        List<String> lines = Files.readAllLines(batchFile);
+        for(int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+            String line = lines.get(lineNumber - 1).strip();
+            if(line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] paths = line.split("\\|");
+            if(paths.length != 2 || paths[0].isBlank() || paths[1].isBlank()) {
+                throw new IllegalArgumentException("Line " + lineNumber + " of batch file '" + batchFile + "' is not of the form '<scene path> | <output path>'.");
+            }
+            jobs.add(new RenderJob(paths[0].strip(), paths[1].strip()));
+        }
+        return jobs;
+    }
+    static int parsePositiveInteger(String option, String value) {
+        int number;
+        try {
+            number = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be an integer, got '" + value + "'.");
+        }
+        if(number <= 0) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be positive, got '" + value + "'.");
+        }
+        return number;
+    }
+
+    private static int parseNonNegativeInteger(String option, String value) {
+        int number;
+        try {
+            number = Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be an integer, got '" + value + "'.");
+        }
+        if(number < 0) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be non-negative, got '" + value + "'.");
+        }
+        return number;
+    }
+
+    static int parsePort(String option, String value) {
+        int port = CommandLineOptions.parseNonNegativeInteger(option, value);
+        if(port > 65535) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be a port up to 65535, got '" + value + "'.");
+        }
+        return port;
+    }
+
+    private static double parseNonNegativeReal(String option, String value) {
+        double number;
+        try {
+            number = Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be a number, got '" + value + "'.");
+        }
+        if(!(number >= 0) || Double.isInfinite(number)) {
+            throw new IllegalArgumentException("Value of option '" + option + "' must be non-negative, got '" + value + "'.");
+        }
+        return number;
+    }
+
+    private static boolean parseSwitch(String option, String value) {
+        return switch (value) {
+            case "on" -> true;
+            case "off" -> false;
+            default -> throw new IllegalArgumentException("Value of option '" + option + "' must be 'on' or 'off', got '" + value + "'.");
+        };
+    }
+
+    private static SamplerType parseSamplerType(String value) {
+        for(SamplerType samplerType : SamplerType.values()) {
+            if(samplerType.name().equalsIgnoreCase(value)) {
+                return samplerType;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sampler '" + value + "', expected independent, stratified, halton or sobol.");
+    }
+
+    /**
+     * Getters
+     */
+    public List<RenderJob> getJobs() {
+        return this.jobs;
+    }
+    public int getWidth() {
+        return this.width;
+    }
+    public int getHeight() {
+        return this.height;
+    }
+    public int getSamplesPerPixelSide() {
+        return this.samplesPerPixelSide;
+    }
+    public int getReflectionTracingLimit() {
+        return this.reflectionTracingLimit;
+    }
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+    public int getTileSize() {
+        return this.tileSize;
+    }
+    public boolean isAdaptiveSampling() {
+        return this.adaptiveSamplingThreshold >= 0;
+    }
+    public double getAdaptiveSamplingThreshold() {
+        return this.adaptiveSamplingThreshold;
+    }
+    public int getMinimumSamplesPerPixel() {
+        return this.minimumSamplesPerPixel;
+    }
+    public SamplerType getSamplerType() {
+        return this.samplerType;
+    }
+    public IntersectionKernel getIntersectionKernel() {
+        return this.intersectionKernel;
+    }
+    public boolean isPacketTracing() {
+        return this.packetTracing;
+    }
+    public boolean hasMeshCacheBudget() {
+        return this.meshCacheBudget >= 0;
+    }
+    public long getMeshCacheBudget() {
+        return this.meshCacheBudget;
+    }
+    public boolean hasFarmPort() {
+        return this.farmPort >= 0;
+    }
+    public int getFarmPort() {
+        return this.farmPort;
+    }
+    public boolean isHelp() {
+        return this.help;
+    }
+
+    /**
+     * Class for a single scene to render: the path to its
+     * description XML, and the path of the image to write.
+     */
+    public static class RenderJob {
+        private final String scenePath;
+        private final String outputPath;
+
+        public RenderJob(String scenePath, String outputPath) {
+            this.scenePath = scenePath;
+            this.outputPath = outputPath;
+        }
+
+        public String getScenePath() {
+            return this.scenePath;
+        }
+        public String getOutputPath() {
+            return this.outputPath;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package cli;
+
+import rendering.Camera;
+import rendering.farm.RenderFarmCoordinator;
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.MeshCache;
+import rendering.tracing.Scene;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Class for the headless command-line renderer, which renders
+ * scene descriptions into image files without starting the
+ * JavaFX UI, e.g. on servers without a display.
+ *
+ * Use
+ *      java -cp <classpath> cli.CommandLineRenderer --scene <scene.xml> --output <image.png> [options]
+ * to render a single scene, or give several --scene/--output pairs,
+ * or a --batch file, to render many scenes in a single JVM, so that
+ * every scene after the first one is rendered with already compiled
+ * (warm) code, and meshes already loaded for earlier scenes are taken
+ * from the MeshCache. See CommandLineOptions for all options.
+ *
+ * With --farm, the scenes are rendered on the workers of a render farm
+ * (see RenderFarmCoordinator), i.e. FarmWorker processes started on this
+ * or other hosts, which connect to the port printed at the start, and
+ * must be able to read the scene files at their absolute paths.
+ *
+ * The exit code is 0 if all scenes were rendered, 1 if some
+ * of them failed (the others are still rendered), and 2 if
+ * the arguments are invalid.
+ */
+
+public class CommandLineRenderer {
+
+    public static void main(String[] args) {
+        System.exit(CommandLineRenderer.run(args));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that renders all scenes given by the command-line
+       arguments, and returns the exit code.
+     */
+    public static int run(String[] args) {
+        /// never try to connect to a display
+        System.setProperty("java.awt.headless", "true");
+
+        CommandLineOptions options;
+        try {
+            options = CommandLineOptions.parse(args);
+            if(options.getIntersectionKernel() != null) {
+                IntersectionKernel.setDefault(options.getIntersectionKernel());
+            }
+            if(options.hasMeshCacheBudget()) {
+                MeshCache.setBudget(options.getMeshCacheBudget() << 20);
+            }
+        }
+        catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CommandLineOptions.usage);
+            return 2;
+        }
+        if(options.isHelp()) {
+            System.out.println(CommandLineOptions.usage);
+            return 0;
+        }
+
+        Camera camera = CommandLineRenderer.createCamera(options);
+
+        RenderFarmCoordinator coordinator = null;
+        if(options.hasFarmPort()) {
+            try {
+                coordinator = new RenderFarmCoordinator(options.getFarmPort());
+                System.out.println("Render farm coordinator listening on port " + coordinator.getPort());
+            }
+            catch (IOException e) {
+                System.err.println("Failed to start the render farm coordinator: " + e);
+                return 1;
+            }
+        }
+
+        int failures = 0;
+        for(CommandLineOptions.RenderJob job : options.getJobs()) {
+            try {
+                long startTime = System.currentTimeMillis();
+                BufferedImage image;
+                long loadedTime;
+                if(coordinator != null) {
+                    /// the workers load the scene themselves
+                    loadedTime = startTime;
+                    image = coordinator.render(new File(job.getScenePath()).getAbsolutePath(), camera, null);
+                }
+                else {
+                    Scene scene = Scene.load(job.getScenePath());
+                    loadedTime = System.currentTimeMillis();
+                    image = camera.renderWithCPUCoreParallelization(scene, null);
+                }
+                long renderedTime = System.currentTimeMillis();
+
+                CommandLineRenderer.writeImage(image, job.getOutputPath());
+                System.out.println("Rendered '" + job.getScenePath() + "' to '" + job.getOutputPath() + "' (" + (coordinator != null ? "on the render farm " :
+                        "loading " + (loadedTime - startTime) / 1000.0 + " s, rendering ") + (renderedTime - loadedTime) / 1000.0 + " s)");
+            }
+            catch (Exception e) {
+                failures++;
+                System.err.println("Failed to render '" + job.getScenePath() + "': " + e);
+            }
+        }
+
+        if(coordinator != null) {
+            try {
+                coordinator.close();
+            }
+            catch (IOException e) {
+                System.err.println("Failed to close the render farm coordinator: " + e);
+            }
+        }
+        if(options.getJobs().size() > 1 && coordinator == null) {
+            System.out.println("Mesh cache: " + MeshCache.getStatistics());
+        }
+
+        return failures == 0 ? 0 : 1;
+    }
+    /*
+       Method that creates the camera with the default screen plane
+       (height 4 at depth 2), and the resolution, sampling (sampler, and
+       adaptive or not), reflection, threading and packet tracing options
+       given on the command line.
+     */
+    static Camera createCamera(CommandLineOptions options) {
+        int width = options.getWidth(), height = options.getHeight();
+        /// the camera rounds width = ratio * height up, so make sure rounding errors do not add a column
+        double widthToHeightRatio = (double) width / height;
+        while(Math.ceil(widthToHeightRatio * height) > width) {
+            widthToHeightRatio = Math.nextDown(widthToHeightRatio);
+        }
+
+        Camera camera = new Camera(4, 2, widthToHeightRatio, height, options.getReflectionTracingLimit(), options.getSamplesPerPixelSide(),
+                options.getTileSize(), options.getNumberOfThreads()).withSampler(options.getSamplerType()).withPacketTracing(options.isPacketTracing());
+        if(options.isAdaptiveSampling()) {
+            camera = camera.withAdaptiveSampling(options.getAdaptiveSamplingThreshold(), options.getMinimumSamplesPerPixel());
+        }
+        return camera;
+    }
+    /*
+       Method that writes the image to the given path, in the format
+       given by the extension of the path (png if it has none).
+     */
+    private static void writeImage(BufferedImage image, String outputPath) throws IOException {
+        File outputFile = new File(outputPath);
+        String name = outputFile.getName();
+        String format = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1).toLowerCase() : "png";
+
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory '" + parent + "'.");
+        }
+        if(!ImageIO.write(image, format, outputFile)) {
+            throw new IOException("No image writer for format '" + format + "'.");
+        }
+    }
+}
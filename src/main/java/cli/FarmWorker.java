@@ -0,0 +1,103 @@
+package cli;
+
+import rendering.farm.RenderFarmWorker;
+import rendering.shapes.IntersectionKernel;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Class for the command-line worker of a render farm (see
+ * RenderFarmWorker), which renders tiles for a CommandLineRenderer
+ * started with --farm, on this or another host, until it stops.
+ *
+ * Use
+ *      java -cp <classpath> cli.FarmWorker --coordinator <host>:<port> [--threads <n>] [--kernel <name>]
+ * where the threads (default all cores) render tiles in parallel,
+ * and the kernel is as for the CommandLineRenderer.
+ *
+ * The exit code is 0 once the coordinator closes the connection,
+ * 1 if the connection fails or the coordinator drops the worker
+ * after it failed (e.g. to load the scene), and 2 if the arguments
+ * are invalid.
+ */
+
+public class FarmWorker {
+    public static final String usage = String.join(System.lineSeparator(),
+            "Usage: FarmWorker --coordinator <host>:<port> [--threads <n>] [--kernel <name>]",
+            "  --coordinator <host>:<port>  render farm coordinator (CommandLineRenderer --farm <port>)",
+            "  --threads <n>                rendering threads (default: number of cores)",
+            "  --kernel <name>              triangle intersection kernel, scalar or simd (default: simd if available)");
+
+    public static void main(String[] args) {
+        System.exit(FarmWorker.run(args));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that renders tiles for the coordinator given by the
+       command-line arguments until it stops, and returns the exit code.
+     */
+    public static int run(String[] args) {
+        /// never try to connect to a display
+        System.setProperty("java.awt.headless", "true");
+
+        InetSocketAddress coordinatorAddress = null;
+        int numberOfThreads = Runtime.getRuntime().availableProcessors();
+        try {
+            for(int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if(option.equals("--help") || option.equals("-h")) {
+                    System.out.println(FarmWorker.usage);
+                    return 0;
+                }
+                if(i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for option '" + option + "'.");
+                }
+                String value = args[++i];
+
+                switch (option) {
+                    case "--coordinator" -> coordinatorAddress = FarmWorker.parseAddress(value);
+                    case "--threads" -> numberOfThreads = CommandLineOptions.parsePositiveInteger(option, value);
+                    case "--kernel" -> IntersectionKernel.setDefault(IntersectionKernel.parse(value));
+                    default -> throw new IllegalArgumentException("Unknown option '" + option + "'.");
+                }
+            }
+            if(coordinatorAddress == null) {
+                throw new IllegalArgumentException("No --coordinator given.");
+            }
+        }
+        catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(FarmWorker.usage);
+            return 2;
+        }
+
+        try {
+            System.out.println("Rendering for the coordinator at " + coordinatorAddress + " with " + numberOfThreads + " threads");
+            new RenderFarmWorker(numberOfThreads).run(coordinatorAddress);
+            System.out.println("Coordinator closed the connection");
+            return 0;
+        }
+        catch (IOException e) {
+            System.err.println("Rendering for the coordinator at " + coordinatorAddress + " failed: " + e.getMessage());
+            return 1;
+        }
+    }
+    /*
+       Method that parses an address "<host>:<port>" of the coordinator.
+     */
+    static InetSocketAddress parseAddress(String value) {
+        int separator = value.lastIndexOf(':');
+        if(separator <= 0) {
+            throw new IllegalArgumentException("Value of option '--coordinator' must be of the form '<host>:<port>', got '" + value + "'.");
+        }
+        int port = CommandLineOptions.parsePort("--coordinator", value.substring(separator + 1));
+        if(port == 0) {
+            throw new IllegalArgumentException("Value of option '--coordinator' must have a positive port, got '" + value + "'.");
+        }
+        return new InetSocketAddress(value.substring(0, separator), port);
+    }
+}
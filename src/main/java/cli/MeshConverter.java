@@ -0,0 +1,76 @@
+package cli;
+
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.MeshFile;
+
+/**
+ * Class for the command-line tool that converts a Wavefront OBJ
+ * file into a binary mesh file (see MeshFile), which triangle
+ * meshes load much faster, given as the mesh file in their XML
+ * description instead of the OBJ file.
+ *
+ * Use
+ *      java -cp <classpath> cli.MeshConverter <mesh.obj> <mesh.rtmesh> [--kernel <name>]
+ * where the optional --kernel (scalar or simd) chooses the intersection
+ * kernel whose leaves the stored bounding volume hierarchy is built for,
+ * as for the CommandLineRenderer. Meshes loaded with a different kernel
+ * are still rendered the same, but their hierarchy is built when they are
+ * loaded.
+ *
+ * The exit code is 0 if the binary mesh file was written, 1 if reading
+ * the OBJ file or writing the binary mesh file failed, and 2 if the
+ * arguments are invalid.
+ */
+
+public class MeshConverter {
+    private static final String usage = "Usage: MeshConverter <mesh.obj> <mesh" + MeshFile.fileExtension + "> [--kernel <scalar|simd>]";
+
+    public static void main(String[] args) {
+        System.exit(MeshConverter.run(args));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that converts the mesh given by the command-line
+       arguments, and returns the exit code.
+     */
+    public static int run(String[] args) {
+        if(args.length != 2 && !(args.length == 4 && args[2].equals("--kernel"))) {
+            System.err.println(MeshConverter.usage);
+            return 2;
+        }
+        if(!MeshFile.isBinaryMeshPath(args[1])) {
+            System.err.println("Binary mesh file path '" + args[1] + "' must end in '" + MeshFile.fileExtension + "'.");
+            System.err.println(MeshConverter.usage);
+            return 2;
+        }
+        IntersectionKernel kernel = IntersectionKernel.getDefault();
+        if(args.length == 4) {
+            try {
+                kernel = IntersectionKernel.parse(args[3]);
+            }
+            catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(MeshConverter.usage);
+                return 2;
+            }
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            MeshFile meshFile = MeshFile.readObj(args[0], null);
+            long readTime = System.currentTimeMillis();
+            meshFile.writeBinary(args[1], kernel);
+            long writtenTime = System.currentTimeMillis();
+            System.out.println("Converted '" + args[0] + "' to '" + args[1] + "' (" + meshFile.getFaceVertexIndices().length / 3 + " triangles, reading " +
+                    (readTime - startTime) / 1000.0 + " s, writing " + (writtenTime - readTime) / 1000.0 + " s)");
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println("Failed to convert '" + args[0] + "': " + e);
+            return 1;
+        }
+    }
+}
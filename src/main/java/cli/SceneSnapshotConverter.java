@@ -0,0 +1,75 @@
+package cli;
+
+import rendering.shapes.IntersectionKernel;
+import rendering.tracing.Scene;
+import rendering.tracing.SceneSnapshot;
+
+/**
+ * Class for the command-line tool that loads a scene from its
+ * XML description and writes a binary snapshot of the fully built
+ * scene (see SceneSnapshot), which the renderer can then load in a
+ * fraction of the time, by giving the snapshot as the scene path.
+ *
+ * Use
+ *      java -cp <classpath> cli.SceneSnapshotConverter <scene.xml> <scene.rtsnap> [--kernel <name>]
+ * where the optional --kernel (scalar or simd) chooses the intersection
+ * kernel whose data layout is stored, as for the CommandLineRenderer.
+ * A snapshot loaded with a different kernel still renders the same
+ * image, but its meshes have to be rebuilt when it is loaded.
+ *
+ * The exit code is 0 if the snapshot was written, 1 if loading the
+ * scene or writing the snapshot failed, and 2 if the arguments are
+ * invalid.
+ */
+
+public class SceneSnapshotConverter {
+    private static final String usage = "Usage: SceneSnapshotConverter <scene.xml> <scene" + SceneSnapshot.fileExtension + "> [--kernel <scalar|simd>]";
+
+    public static void main(String[] args) {
+        System.exit(SceneSnapshotConverter.run(args));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that converts the scene given by the command-line
+       arguments, and returns the exit code.
+     */
+    public static int run(String[] args) {
+        if(args.length != 2 && !(args.length == 4 && args[2].equals("--kernel"))) {
+            System.err.println(SceneSnapshotConverter.usage);
+            return 2;
+        }
+        if(!SceneSnapshot.isSnapshotPath(args[1])) {
+            System.err.println("Snapshot path '" + args[1] + "' must end in '" + SceneSnapshot.fileExtension + "'.");
+            System.err.println(SceneSnapshotConverter.usage);
+            return 2;
+        }
+        if(args.length == 4) {
+            try {
+                IntersectionKernel.setDefault(IntersectionKernel.parse(args[3]));
+            }
+            catch (IllegalArgumentException e) {
+                System.err.println(e.getMessage());
+                System.err.println(SceneSnapshotConverter.usage);
+                return 2;
+            }
+        }
+
+        try {
+            long startTime = System.currentTimeMillis();
+            Scene scene = Scene.load(args[0]);
+            long loadedTime = System.currentTimeMillis();
+            SceneSnapshot.write(scene, args[1]);
+            long writtenTime = System.currentTimeMillis();
+            System.out.println("Wrote snapshot of '" + args[0] + "' to '" + args[1] + "' (loading " +
+                    (loadedTime - startTime) / 1000.0 + " s, writing " + (writtenTime - loadedTime) / 1000.0 + " s)");
+            return 0;
+        }
+        catch (Exception e) {
+            System.err.println("Failed to write snapshot of '" + args[0] + "': " + e);
+            return 1;
+        }
+    }
+}
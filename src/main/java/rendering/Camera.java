@@ -2,9 +2,17 @@ package rendering;
 
 import org.xml.sax.SAXException;
 
+import rendering.sampling.PixelVarianceEstimator;
+import rendering.sampling.Sampler;
+import rendering.sampling.SamplerType;
+import rendering.scheduling.AccumulationBuffer;
+import rendering.scheduling.Framebuffer;
+import rendering.scheduling.Tile;
+import rendering.scheduling.TileScheduler;
 import rendering.shading.PhongShader;
 import rendering.shading.Shader;
 import rendering.tracing.Ray;
+import rendering.tracing.RayPacket;
 import rendering.tracing.Scene;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.RTColor;
@@ -13,9 +21,9 @@ import rendering.utility.Vector3D;
 import java.io.File;
 import java.io.IOException;
 import java.awt.image.BufferedImage;
-import java.util.ArrayList;
-import java.util.Random;
+import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 
 import javax.imageio.ImageIO;
@@ -44,10 +52,12 @@ import com.aparapi.Range;
  *
  * TODO - finite aperture camera in a separate class
  *
- * The camera position and orientation can not be customised,
- * but screen plane depth (z coordinate of the plane),
+ * The screen plane depth (z coordinate of the plane),
  * its height, width-to-height ratio, and height in pixels
- * can be varied.
+ * can be varied. A copy of a camera can be placed elsewhere
+ * and pointed at any point with 'withPose' (e.g. for the frames
+ * of an animation), in which case the axes above are the axes
+ * of the camera rather than of the world.
  */
 public class Camera {
     private final double screenPlaneHeight;
@@ -59,17 +69,70 @@ public class Camera {
     /// limit for tracing reflected rays
     private final int reflectionTracingLimit;
     /* 
-       Antialiasing by jittered super-sampling,
-       i.e. we split each pixel into a regular grid
-       of 'samplesPerPixelSide' X 'samplesPerPixelSide'
-       sub-pixels, then sample one random point from
-       each sub-pixel.
+       Antialiasing by super-sampling, i.e. we cast
+       'samplesPerPixelSide' X 'samplesPerPixelSide' rays
+       through points of each pixel. The points are given
+       by the sampler (by default, one random point from
+       each sub-pixel of a regular grid of that size, i.e.
+       jittered super-sampling).
 
        If samplesPerPixelSide = 1, then only a single
        ray is cast exactly through the center of every
        pixel.
      */
     private final int samplesPerPixelSide;
+    /// kind of sampler for the points in pixels and all other random decisions (e.g. on sphere lights)
+    private final SamplerType samplerType;
+
+    /// width and height of the tiles that the image is split into when rendering on many CPU cores
+    private final int tileSize;
+    /// number of threads used when rendering on many CPU cores
+    private final int numberOfThreads;
+
+    /*
+       Adaptive antialiasing, i.e. every pixel first gets
+       'minimumSamplesPerPixel' samples, and then more samples
+       only until the standard error of the mean of its samples
+       drops to 'adaptiveSamplingThreshold' (see the
+       PixelVarianceEstimator), up to the 'samplesPerPixelSide'
+       X 'samplesPerPixelSide' samples of the regular grid.
+       Uniform areas such as the background then take only the
+       minimum number of samples.
+
+       It is disabled by default, and enabled on a copy of a
+       camera by the 'withAdaptiveSampling' method.
+     */
+    private final boolean adaptiveSampling;
+    private final double adaptiveSamplingThreshold;
+    private final int minimumSamplesPerPixel;
+    /// default standard error threshold, about 2.5 levels out of 255
+    public static final double defaultAdaptiveSamplingThreshold = 0.01;
+    /// number of bytes of the settings written by 'writeSettings'
+    public static final int settingsSizeInBytes = 4 * 8 + 5 * 4 + 3 + 12 * 8;
+
+    /*
+       Packet tracing, i.e. when rendering on many CPU cores, the
+       primary rays of the same sample of all pixels of a block of
+       RayPacket.side X RayPacket.side pixels are intersected with
+       the scene together, as a RayPacket (see Scene.findClosestHits),
+       which traverses the bounding volume hierarchy of the scene once
+       for the whole block. Only the primary rays are traced as packets,
+       and the rendered images are exactly the same as without packets.
+
+       It is enabled by default, and can be disabled on a copy of a
+       camera by the 'withPacketTracing' method.
+     */
+    private final boolean packetTracing;
+
+    /*
+       Pose of the camera, i.e. its position, and the unit vectors of
+       its x ("to the left"), y (up) and z (viewing direction) axes in
+       world coordinates. The position is null for the default pose, at
+       the origin and looking in the positive direction of the z-axis, in
+       which case primary rays are created exactly as they always were.
+     */
+    private final Vector3D position;
+    private final Vector3D axisX, axisY, axisZ;
 
     /**
      * Constructors
@@ -93,11 +156,34 @@ public class Camera {
         this.samplesPerPixelSide = 3;
 
         /// can crank up to resolution 1000, 10 reflections, 5x5 samples
+
+        this.tileSize = TileScheduler.defaultTileSize;
+        this.numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+        this.adaptiveSampling = false;
+        this.adaptiveSamplingThreshold = Camera.defaultAdaptiveSamplingThreshold;
+        this.minimumSamplesPerPixel = this.samplesPerPixelSide;
+
+        this.samplerType = SamplerType.STRATIFIED;
+        this.packetTracing = true;
+
+        this.position = null;
+        this.axisX = null;
+        this.axisY = null;
+        this.axisZ = null;
     }
     /*
        Constructor to customise screen plane parameters.
      */
     public Camera(double height, double depth, double widthToHeightRatio, int heightInPixels, int reflectionTracingLimit, int samplesPerPixelSide) {
+        this(height, depth, widthToHeightRatio, heightInPixels, reflectionTracingLimit, samplesPerPixelSide,
+                TileScheduler.defaultTileSize, Runtime.getRuntime().availableProcessors());
+    }
+    /*
+       Constructor to customise screen plane parameters, and the tile
+       size and number of threads used when rendering on many CPU cores.
+     */
+    public Camera(double height, double depth, double widthToHeightRatio, int heightInPixels, int reflectionTracingLimit, int samplesPerPixelSide, int tileSize, int numberOfThreads) {
         this.screenPlaneHeight = height;
         this.screenPlaneDepth = depth;
         this.screenPlaneWidthToHeightRatio = widthToHeightRatio;
@@ -105,11 +191,165 @@ public class Camera {
 
         this.reflectionTracingLimit = reflectionTracingLimit;
         this.samplesPerPixelSide = samplesPerPixelSide;
+
+        this.tileSize = tileSize;
+        this.numberOfThreads = numberOfThreads;
+
+        this.adaptiveSampling = false;
+        this.adaptiveSamplingThreshold = Camera.defaultAdaptiveSamplingThreshold;
+        this.minimumSamplesPerPixel = samplesPerPixelSide;
+
+        this.samplerType = SamplerType.STRATIFIED;
+        this.packetTracing = true;
+
+        this.position = null;
+        this.axisX = null;
+        this.axisY = null;
+        this.axisZ = null;
+    }
+    /*
+       Constructor that copies the given camera, but with the given adaptive
+       sampling settings, kind of sampler, and packet tracing setting.
+     */
+    private Camera(Camera camera, boolean adaptiveSampling, double adaptiveSamplingThreshold, int minimumSamplesPerPixel, SamplerType samplerType, boolean packetTracing) {
+        this.screenPlaneHeight = camera.screenPlaneHeight;
+        this.screenPlaneDepth = camera.screenPlaneDepth;
+        this.screenPlaneWidthToHeightRatio = camera.screenPlaneWidthToHeightRatio;
+        this.screenPlaneHeightInPixels = camera.screenPlaneHeightInPixels;
+
+        this.reflectionTracingLimit = camera.reflectionTracingLimit;
+        this.samplesPerPixelSide = camera.samplesPerPixelSide;
+
+        this.tileSize = camera.tileSize;
+        this.numberOfThreads = camera.numberOfThreads;
+
+        this.adaptiveSampling = adaptiveSampling;
+        this.adaptiveSamplingThreshold = adaptiveSamplingThreshold;
+        this.minimumSamplesPerPixel = minimumSamplesPerPixel;
+
+        this.samplerType = samplerType;
+        this.packetTracing = packetTracing;
+
+        this.position = camera.position;
+        this.axisX = camera.axisX;
+        this.axisY = camera.axisY;
+        this.axisZ = camera.axisZ;
+    }
+    /*
+       Constructor that copies the given camera, but with the given pose.
+     */
+    private Camera(Camera camera, Vector3D position, Vector3D axisX, Vector3D axisY, Vector3D axisZ) {
+        this.screenPlaneHeight = camera.screenPlaneHeight;
+        this.screenPlaneDepth = camera.screenPlaneDepth;
+        this.screenPlaneWidthToHeightRatio = camera.screenPlaneWidthToHeightRatio;
+        this.screenPlaneHeightInPixels = camera.screenPlaneHeightInPixels;
+
+        this.reflectionTracingLimit = camera.reflectionTracingLimit;
+        this.samplesPerPixelSide = camera.samplesPerPixelSide;
+
+        this.tileSize = camera.tileSize;
+        this.numberOfThreads = camera.numberOfThreads;
+
+        this.adaptiveSampling = camera.adaptiveSampling;
+        this.adaptiveSamplingThreshold = camera.adaptiveSamplingThreshold;
+        this.minimumSamplesPerPixel = camera.minimumSamplesPerPixel;
+
+        this.samplerType = camera.samplerType;
+        this.packetTracing = camera.packetTracing;
+
+        this.position = position;
+        this.axisX = axisX;
+        this.axisY = axisY;
+        this.axisZ = axisZ;
     }
 
     /**
      * Methods
      */
+    /*
+       Method that returns a copy of this camera that uses adaptive
+       antialiasing: every pixel takes at least 'minimumSamplesPerPixel'
+       samples (at least 2), and then stops taking samples as soon as the
+       standard error of their mean is at most 'standardErrorThreshold'
+       (e.g. defaultAdaptiveSamplingThreshold), or once all samples of
+       the 'samplesPerPixelSide' X 'samplesPerPixelSide' grid are taken.
+
+       Throws an IllegalArgumentException if the threshold is negative
+       or the minimum is not positive.
+     */
+    public Camera withAdaptiveSampling(double standardErrorThreshold, int minimumSamplesPerPixel) {
+        if(!(standardErrorThreshold >= 0)) {
+            throw new IllegalArgumentException("Adaptive sampling threshold must be non-negative.");
+        }
+        if(minimumSamplesPerPixel <= 0) {
+            throw new IllegalArgumentException("Minimum number of samples per pixel must be positive.");
+        }
+        return new Camera(this, true, standardErrorThreshold, minimumSamplesPerPixel, this.samplerType, this.packetTracing);
+    }
+    /*
+       Method that returns a copy of this camera that uses the given kind
+       of sampler for the points in pixels that rays are cast through, and
+       for all other random decisions of rendering (e.g. the points on
+       sphere lights that shadow rays are cast to). See the Sampler class.
+     */
+    public Camera withSampler(SamplerType samplerType) {
+        return new Camera(this, this.adaptiveSampling, this.adaptiveSamplingThreshold, this.minimumSamplesPerPixel, samplerType, this.packetTracing);
+    }
+    /*
+       Method that returns a copy of this camera that traces the primary
+       rays of blocks of pixels as ray packets, or one at a time.
+     */
+    public Camera withPacketTracing(boolean packetTracing) {
+        return new Camera(this, this.adaptiveSampling, this.adaptiveSamplingThreshold, this.minimumSamplesPerPixel, this.samplerType, packetTracing);
+    }
+    /*
+       Method that returns a copy of this camera placed at the given position
+       and looking at the given point, with its up direction as close to the
+       positive direction of the y-axis as possible (i.e. without roll).
+
+       Throws an IllegalArgumentException if the two points are the same,
+       or the camera would look straight up or down.
+     */
+    public Camera withPose(Vector3D position, Vector3D lookAt) {
+        Vector3D viewingDirection = lookAt.added(position.negated());
+        Vector3D left = new Vector3D(0, 1, 0).crossProduct(viewingDirection);
+        if(viewingDirection.magnitude() == 0) {
+            throw new IllegalArgumentException("Camera can not look at its own position.");
+        }
+        if(left.magnitude() == 0) {
+            throw new IllegalArgumentException("Camera can not look straight up or down.");
+        }
+        Vector3D axisZ = viewingDirection.normalised();
+        Vector3D axisX = left.normalised();
+        return new Camera(this, position, axisX, axisZ.crossProduct(axisX), axisZ);
+    }
+    /*
+       Method that writes the settings of this camera that determine the
+       rendered image (the screen plane, sampling, reflection and packet
+       tracing settings, and the pose) into the given buffer, taking
+       'settingsSizeInBytes' bytes, e.g. to send the camera to the workers
+       of a render farm. They are read back by 'readSettings'.
+     */
+    public void writeSettings(ByteBuffer buffer) {
+        buffer.putDouble(this.screenPlaneHeight);
+        buffer.putDouble(this.screenPlaneDepth);
+        buffer.putDouble(this.screenPlaneWidthToHeightRatio);
+        buffer.putInt(this.screenPlaneHeightInPixels);
+        buffer.putInt(this.reflectionTracingLimit);
+        buffer.putInt(this.samplesPerPixelSide);
+        buffer.putInt(this.samplerType.ordinal());
+        buffer.put((byte) (this.adaptiveSampling ? 1 : 0));
+        buffer.putDouble(this.adaptiveSamplingThreshold);
+        buffer.putInt(this.minimumSamplesPerPixel);
+        buffer.put((byte) (this.packetTracing ? 1 : 0));
+        buffer.put((byte) (this.position == null ? 0 : 1));
+        Vector3D origin = new Vector3D(0);
+        for(Vector3D v : this.position == null ? new Vector3D[]{origin, origin, origin, origin} : new Vector3D[]{this.position, this.axisX, this.axisY, this.axisZ}) {
+            buffer.putDouble(v.getX());
+            buffer.putDouble(v.getY());
+            buffer.putDouble(v.getZ());
+        }
+    }
     /*
        Method to render a scene description into a
        digital image, from the point of view of this particular camera.
@@ -134,73 +374,20 @@ public class Camera {
        'renderWithCPUCoreParallelization' does.
      */
     public BufferedImage render(String sceneDescriptionPath) throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
-        Scene scene = new Scene(sceneDescriptionPath);
+        Scene scene = Scene.load(sceneDescriptionPath);
         Shader shader = new PhongShader(scene);
 
         BufferedImage digitalImage = new BufferedImage(this.getScreenPlaneWidthInPixels(), this.screenPlaneHeightInPixels, BufferedImage.TYPE_INT_RGB);
         int screenPlaneWidthInPixels = this.getScreenPlaneWidthInPixels();
-        double pixelWidth = this.getPixelWidth();
-        double pixelHeight = this.getPixelHeight();
-        double subPixelWidth = pixelWidth / this.samplesPerPixelSide;
-        double subPixelHeight = pixelHeight / this.samplesPerPixelSide;
 
         /// setup timing and progress
         long startTime = System.currentTimeMillis();
         int milestone = (this.screenPlaneHeightInPixels * screenPlaneWidthInPixels) / 20;
 
+        Sampler sampler = this.samplerType.create(this.samplesPerPixelSide);
         for(int y = 0; y < this.screenPlaneHeightInPixels; y++) {
             for (int x = 0; x < screenPlaneWidthInPixels; x++) {
-
-                /// if we want just one sample per pixel side, just cast one ray through pixel center
-                if(this.samplesPerPixelSide == 1) {
-                    /// x,y coordinates of pixel center from image origin (top left)
-                    double pixelCenterX = x * pixelWidth + 0.5 * pixelWidth;
-                    double pixelCenterY = y * pixelHeight + 0.5 * pixelHeight;
-                    /// transform to x,y coordinates where both x,y axes are in
-                    /// opposite directions from the standard image axes
-                    pixelCenterX = this.getScreenPlaneWidth() / 2 - pixelCenterX;
-                    pixelCenterY = this.screenPlaneHeight / 2 - pixelCenterY;
-
-                    /// create a ray to be cast from the camera through the center of the current pixel
-                    Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(pixelCenterX, pixelCenterY, this.screenPlaneDepth));
-                    //RTColor rayColorValue = r.trace(scene, shader);  <- tracing without reflections
-                    RTColor rayColorValue = r.traceWithReflections(scene, shader, this.reflectionTracingLimit);
-
-                    /// clip the color values to 0.0 to 1.0 range, and store them
-                    RTColor rayColorValueNormed = rayColorValue.normalised();
-                    digitalImage.setRGB(x, y, rayColorValueNormed.getRGB());
-                }
-                else { /// otherwise perform antialiasing by jittered super-sampling
-                    Random rnd = new Random();
-                    RTColor finalColorValue = RTColor.blank;
-                    for(int i = 0; i < this.samplesPerPixelSide; i++) {
-                        for(int j = 0; j < this.samplesPerPixelSide; j++) {
-                            /// x,y coordinates of the point in this sub-pixel
-                            // which we'll shoot the ray through, from image origin (top left)
-                            double subpixelSampleX = x * pixelWidth + j * subPixelWidth + rnd.nextDouble() * subPixelWidth;
-                            double subpixelSampleY = y * pixelHeight + i * subPixelHeight + rnd.nextDouble() * subPixelHeight;
-
-                            /// transform to x,y coordinates where both x,y axes are in
-                            /// opposite directions from the standard image axes
-                            subpixelSampleX = this.getScreenPlaneWidth() / 2 - subpixelSampleX;
-                            subpixelSampleY = this.screenPlaneHeight / 2 - subpixelSampleY;
-
-                            /// create a ray to be cast from the camera through the selected sample point
-                            Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(subpixelSampleX, subpixelSampleY, this.screenPlaneDepth));
-                            RTColor rayColorValue = r.traceWithReflections(scene, shader, this.reflectionTracingLimit);
-
-                            /// add this ray's contribution
-                            finalColorValue = finalColorValue.added(rayColorValue);
-                        }
-                    }
-
-                    /// take the average of samples' contributions
-                    finalColorValue = finalColorValue.scaled(1 / (double) (this.samplesPerPixelSide * this.samplesPerPixelSide));
-
-                    /// clip the color values to 0.0 to 1.0 range, and store them
-                    RTColor finalColorValueNormed = finalColorValue.normalised();
-                    digitalImage.setRGB(x, y, finalColorValueNormed.getRGB());
-                }
+                digitalImage.setRGB(x, y, this.renderPixel(scene, shader, x, y, sampler));
 
                 /// update progress
                 if((x+y != 0) && (y*screenPlaneWidthInPixels + x) % milestone == 0) {
@@ -211,6 +398,9 @@ public class Camera {
             }
         }
 
+        /// the sampler of this camera is not used by this thread anymore
+        Sampler.setForCurrentThread(null);
+
         System.out.println("100% done. Total time: " + (double) (System.currentTimeMillis() - startTime) / 1000 + " seconds");
 
         return digitalImage;
@@ -258,9 +448,12 @@ public class Camera {
        on a 'samplesPerPixelSide' X 'samplesPerPixelSide' regular
        grid of sub-pixels.
 
-       This method uses Java Streams API to distribute rays to be traced
-       among the cores of the CPU, i.e. rays through different pixels
-       are traced in parallel in different threads.
+       This method splits the image into square tiles of 'tileSize' pixels,
+       and uses a TileScheduler to render the tiles in parallel on
+       'numberOfThreads' threads, i.e. rays through pixels in different
+       tiles are traced in parallel in different threads. Pixels are
+       written into a Framebuffer, and each tile is copied into the
+       returned BufferedImage once it is finished.
 
        This method has an additional optional Consumer<Double> argument
        'progressUpdaterConsumer' that can be passed to this method and
@@ -274,102 +467,191 @@ public class Camera {
        'renderWithGPUCoreParallelization' method.
      */
     public BufferedImage renderWithCPUCoreParallelization(String sceneDescriptionPath, Consumer<Double> progressUpdaterConsumer) throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
-        Scene scene = new Scene(sceneDescriptionPath);
+        return this.renderWithCPUCoreParallelization(Scene.load(sceneDescriptionPath), progressUpdaterConsumer);
+    }
+    /*
+       Method to render an already created scene into a digital image,
+       from the point of view of this particular camera, in the same way
+       as 'renderWithCPUCoreParallelization' above. Useful when the same
+       scene is rendered several times.
+     */
+    public BufferedImage renderWithCPUCoreParallelization(Scene scene, Consumer<Double> progressUpdaterConsumer) {
         Shader shader = new PhongShader(scene);
 
         BufferedImage digitalImage = new BufferedImage(this.getScreenPlaneWidthInPixels(), this.screenPlaneHeightInPixels, BufferedImage.TYPE_INT_RGB);
-        int screenPlaneWidthInPixels = this.getScreenPlaneWidthInPixels();
-        double pixelWidth = this.getPixelWidth();
-        double pixelHeight = this.getPixelHeight();
-        double subPixelWidth = pixelWidth / this.samplesPerPixelSide;
-        double subPixelHeight = pixelHeight / this.samplesPerPixelSide;
+        Framebuffer framebuffer = new Framebuffer(this.getScreenPlaneWidthInPixels(), this.screenPlaneHeightInPixels);
+        TileScheduler tileScheduler = new TileScheduler(this.tileSize, this.numberOfThreads);
 
         /// setup timing and progress
         long startTime = System.currentTimeMillis();
-        AtomicInteger progress = new AtomicInteger();
+        /// the last multiple of 5% of progress that was printed
+        AtomicInteger printedPercentage = new AtomicInteger();
         /// if a progress updater is given, set progress to 0
         if(progressUpdaterConsumer != null) {
             progressUpdaterConsumer.accept(.0);
         }
 
-        /// create a list of pixel positions, pixel (i,j) is coded as i*screenPlaneWidthInPixels + j
-        ArrayList<Integer> pixelPositions = new ArrayList<>();
-        for(int y = 0; y < this.screenPlaneHeightInPixels; y++) {
-            for (int x = 0; x < screenPlaneWidthInPixels; x++) {
-                pixelPositions.add(y*screenPlaneWidthInPixels + x);
+        Consumer<Double> progressConsumer = (Double done) -> {
+            /// print progress whenever another 5% is done
+            int percentage = (int)(done * 100) / 5 * 5;
+            int previousPercentage = printedPercentage.get();
+            if(percentage > previousPercentage && printedPercentage.compareAndSet(previousPercentage, percentage)) {
+                double eta = (double) (System.currentTimeMillis() - startTime) * ((1 - done) / done);
+                System.out.println(percentage + "% done. ETA: " + Double.toString(Math.round(eta/ 1000)) + " seconds");
             }
+            /// if a progress updater is given, update progress
+            if(progressUpdaterConsumer != null) {
+                progressUpdaterConsumer.accept(done);
+            }
+        };
+
+        /// render the tiles in parallel, copy each finished tile into the image
+        ThreadLocal<Sampler> samplers = this.createSamplers();
+        if(this.packetTracing) {
+            ThreadLocal<RayPacket> packets = ThreadLocal.withInitial(RayPacket::new);
+            tileScheduler.renderTiles(framebuffer, (Tile tile, Framebuffer tileFramebuffer) -> this.renderTile(scene, shader, tile, tileFramebuffer, samplers.get(), packets.get()),
+                    (tile) -> framebuffer.copyTileInto(digitalImage, tile), progressConsumer, null);
+        }
+        else {
+            tileScheduler.render(framebuffer, (int x, int y) -> this.renderPixel(scene, shader, x, y, samplers.get()),
+                    (tile) -> framebuffer.copyTileInto(digitalImage, tile), progressConsumer);
         }
 
-        /// parallelize tracing of rays across CPU cores for each pixel using Java Stream API
-        pixelPositions.parallelStream().forEach((Integer codedPixelPosition) -> {
-            /// decode pixel position
-            int y = codedPixelPosition / screenPlaneWidthInPixels;
-            int x = codedPixelPosition - y*screenPlaneWidthInPixels;
-
-            /// now for each pixel, trace all rays through it
-
-            /// if we want just one sample per pixel side, just cast one ray through pixel center
-            if(this.samplesPerPixelSide == 1) {
-                /// x,y coordinates of pixel center from image origin (top left)
-                double pixelCenterX = x * pixelWidth + 0.5 * pixelWidth;
-                double pixelCenterY = y * pixelHeight + 0.5 * pixelHeight;
-                /// transform to x,y coordinates where both x,y axes are in
-                /// opposite directions from the standard image axes
-                pixelCenterX = this.getScreenPlaneWidth() / 2 - pixelCenterX;
-                pixelCenterY = this.screenPlaneHeight / 2 - pixelCenterY;
-
-                /// create a ray to be cast from the camera through the center of the current pixel
-                Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(pixelCenterX, pixelCenterY, this.screenPlaneDepth));
-                //RTColor rayColorValue = r.trace(scene, shader);  <- tracing without reflections
-                RTColor rayColorValue = r.traceWithReflections(scene, shader, this.reflectionTracingLimit);
-
-                /// clip the color values to 0.0 to 1.0 range, and store them
-                RTColor rayColorValueNormed = rayColorValue.normalised();
-                digitalImage.setRGB(x, y, rayColorValueNormed.getRGB());
-            }
-            else { /// otherwise perform antialiasing by jittered super-sampling
-                Random rnd = new Random();
-                RTColor finalColorValue = RTColor.blank;
-                for(int i = 0; i < this.samplesPerPixelSide; i++) {
-                    for(int j = 0; j < this.samplesPerPixelSide; j++) {
-                        /// x,y coordinates of the point in this sub-pixel
-                        // which we'll shoot the ray through, from image origin (top left)
-                        double subpixelSampleX = x * pixelWidth + j * subPixelWidth + rnd.nextDouble() * subPixelWidth;
-                        double subpixelSampleY = y * pixelHeight + i * subPixelHeight + rnd.nextDouble() * subPixelHeight;
-
-                        /// transform to x,y coordinates where both x,y axes are in
-                        /// opposite directions from the standard image axes
-                        subpixelSampleX = this.getScreenPlaneWidth() / 2 - subpixelSampleX;
-                        subpixelSampleY = this.screenPlaneHeight / 2 - subpixelSampleY;
-
-                        /// create a ray to be cast from the camera through the selected sample point
-                        Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(subpixelSampleX, subpixelSampleY, this.screenPlaneDepth));
-                        RTColor rayColorValue = r.traceWithReflections(scene, shader, this.reflectionTracingLimit);
-
-                        /// add this ray's contribution
-                        finalColorValue = finalColorValue.added(rayColorValue);
-                    }
+        System.out.println("Total time: " + (double) (System.currentTimeMillis() - startTime) / 1000 + " seconds");
+
+        return digitalImage;
+    }
+    /*
+       Method that renders only the pixels of the given tile of the image of
+       the given scene, on the calling thread, and returns their 32 bit RGB
+       values row by row. The pixels are exactly the same as those of the whole
+       image rendered by 'renderWithCPUCoreParallelization', so the tiles of an
+       image can be rendered anywhere, e.g. by the workers of a render farm
+       (see RenderFarmWorker), and put together afterwards.
+
+       It can be called from many threads at the same time.
+     */
+    public int[] renderTile(Scene scene, Tile tile) {
+        Shader shader = new PhongShader(scene);
+        Sampler sampler = this.samplerType.create(this.samplesPerPixelSide);
+        Framebuffer framebuffer = new Framebuffer(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight());
+        if(this.packetTracing) {
+            this.renderTile(scene, shader, tile, framebuffer, sampler, new RayPacket());
+        }
+        else {
+            for(int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+                for(int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                    framebuffer.setRGB(x, y, this.renderPixel(scene, shader, x, y, sampler));
                 }
+            }
+        }
+        return framebuffer.getPixels();
+    }
+    /*
+       Method that returns a JavaFX Task that renders a scene description
+       progressively, using the 'renderProgressively' method.
+
+       Every preview frame becomes the value of the Task (so it can be shown
+       in the UI as soon as it is available), the progress property of the
+       Task is updated as in 'getRenderWithCPUCoreParallelizationTask', and
+       cancelling the Task stops the rendering after the tiles that are
+       being rendered. Once the rendering is finished (or stopped), the last
+       image is saved at the default location
+       "./src/main/resources/rendered images/result.png".
+     */
+    public Task<BufferedImage> getProgressiveRenderTask(String sceneDescriptionPath) {
+        return new Task<BufferedImage>() {
+            @Override
+            public BufferedImage call() throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
+                BufferedImage digitalImage = Camera.this.renderProgressively(Scene.load(sceneDescriptionPath),
+                        (BufferedImage preview) -> updateValue(preview),
+                        (Double progress) -> updateProgress(progress, 1),
+                        this::isCancelled);
+
+                Camera.saveImage(digitalImage);
+
+                return digitalImage;
+            }
+        };
+    }
+    /*
+       Method to render a scene into a digital image progressively, from
+       the point of view of this particular camera, so that a preview of
+       the image is available long before it is finished.
+
+       The pixels of the 'samplesPerPixelSide' X 'samplesPerPixelSide' grid
+       of sub-pixels of every pixel are sampled in as many passes, one
+       sub-pixel of every pixel per pass, so the first pass traces a single
+       ray per pixel. The samples are added to an AccumulationBuffer, and
+       every pixel shows the average of its samples so far. After the last
+       pass, the image has exactly the samples (and quality) of an image
+       rendered by 'renderWithCPUCoreParallelization'. Pass k takes the k-th
+       sample of the sampler of every pixel, and all samplers spread the
+       first samples over the pixel (e.g. the default stratified sampler
+       visits the sub-pixels diagonal by diagonal, so the first
+       'samplesPerPixelSide' passes already sample every row and every
+       column of the grid once).
+
+       Every pass is rendered on many CPU cores, tile by tile, in the same
+       way as in 'renderWithCPUCoreParallelization'. After every pass, a
+       copy of the current image is given to the optional (can be null)
+       'previewConsumer', and the optional 'progressUpdaterConsumer' is
+       given the progress of all passes (as a real value between 0 and 1).
+
+       The optional 'stopRequested' is checked before rendering each tile.
+       Once it returns true, no more samples are taken, and the current
+       image is returned (and also given to the 'previewConsumer'); pixels
+       that were sampled in more passes than others are still averaged
+       correctly.
+     */
+    public BufferedImage renderProgressively(Scene scene, Consumer<BufferedImage> previewConsumer, Consumer<Double> progressUpdaterConsumer, BooleanSupplier stopRequested) {
+        Shader shader = new PhongShader(scene);
+
+        int width = this.getScreenPlaneWidthInPixels();
+        AccumulationBuffer accumulationBuffer = new AccumulationBuffer(width, this.screenPlaneHeightInPixels);
+        Framebuffer framebuffer = new Framebuffer(width, this.screenPlaneHeightInPixels);
+        TileScheduler tileScheduler = new TileScheduler(this.tileSize, this.numberOfThreads);
 
-                /// take the average of samples' contributions
-                finalColorValue = finalColorValue.scaled(1 / (double) (this.samplesPerPixelSide * this.samplesPerPixelSide));
+        int numberOfPasses = this.samplesPerPixelSide * this.samplesPerPixelSide;
+        long startTime = System.currentTimeMillis();
+        if(progressUpdaterConsumer != null) {
+            progressUpdaterConsumer.accept(.0);
+        }
 
-                /// clip the color values to 0.0 to 1.0 range, and store them
-                RTColor finalColorValueNormed = finalColorValue.normalised();
-                digitalImage.setRGB(x, y, finalColorValueNormed.getRGB());
+        BufferedImage digitalImage = framebuffer.toBufferedImage();
+        ThreadLocal<RayPacket> packets = ThreadLocal.withInitial(RayPacket::new);
+        for(int pass = 0; pass < numberOfPasses; pass++) {
+            if(stopRequested != null && stopRequested.getAsBoolean()) {
+                break;
             }
+            int finishedPasses = pass;
 
-            /// update progress
-            double done = (double) progress.incrementAndGet() / (double) (this.screenPlaneHeightInPixels * screenPlaneWidthInPixels);
-            if(Math.abs((int)(done*100) - (done*100)) < 1e-9 && (int)(done*100) % 5 == 0) {
-                double eta = (double) (System.currentTimeMillis() - startTime) * ((1 - done) / done);
-                System.out.println((int)(done * 100) + "% done. ETA: " + Double.toString(Math.round(eta/ 1000)) + " seconds");
+            ThreadLocal<Sampler> samplers = this.createSamplers();
+            Consumer<Double> passProgressConsumer = (Double done) -> {
+                if(progressUpdaterConsumer != null) {
+                    progressUpdaterConsumer.accept((finishedPasses + done) / numberOfPasses);
+                }
+            };
+            if(this.packetTracing) {
+                tileScheduler.renderTiles(framebuffer, (Tile tile, Framebuffer tileFramebuffer) ->
+                        this.renderTilePass(scene, shader, tile, tileFramebuffer, finishedPasses, samplers.get(), packets.get(), accumulationBuffer),
+                        null, passProgressConsumer, stopRequested);
             }
-            /// if a progress updater is given, update progress
-            if(progressUpdaterConsumer != null) {
-                progressUpdaterConsumer.accept(done);
+            else {
+                tileScheduler.render(framebuffer, (int x, int y) -> {
+                            accumulationBuffer.addSample(x, y, this.traceSample(scene, shader, x, y, finishedPasses, samplers.get()));
+                            /// clip the color values to 0.0 to 1.0 range
+                            return accumulationBuffer.getAverage(x, y).normalised().getRGB();
+                        }, null, passProgressConsumer, stopRequested);
             }
-        });
+
+            /// publish the preview after every pass
+            digitalImage = framebuffer.toBufferedImage();
+            if(previewConsumer != null) {
+                previewConsumer.accept(digitalImage);
+            }
+            System.out.println("Pass " + (pass + 1) + "/" + numberOfPasses + " done after " + (double) (System.currentTimeMillis() - startTime) / 1000 + " seconds");
+        }
 
         System.out.println("Total time: " + (double) (System.currentTimeMillis() - startTime) / 1000 + " seconds");
 
@@ -432,15 +714,13 @@ public class Camera {
        property of the Task from this method.
      */
     public BufferedImage renderWithGPUCoreParallelization(String sceneDescriptionPath, Consumer<Double> progressUpdaterConsumer) throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
-        Scene scene = new Scene(sceneDescriptionPath);
+        Scene scene = Scene.load(sceneDescriptionPath);
         Shader shader = new PhongShader(scene);
 
         BufferedImage digitalImage = new BufferedImage(this.getScreenPlaneWidthInPixels(), this.screenPlaneHeightInPixels, BufferedImage.TYPE_INT_RGB);
         int screenPlaneWidthInPixels = this.getScreenPlaneWidthInPixels();
-        double pixelWidth = this.getPixelWidth();
-        double pixelHeight = this.getPixelHeight();
-        double subPixelWidth = pixelWidth / this.samplesPerPixelSide;
-        double subPixelHeight = pixelHeight / this.samplesPerPixelSide;
+        /// the samplers of the kernel's threads, which place the samples in the pixels
+        ThreadLocal<Sampler> samplers = this.createSamplers();
 
         /// setup timing and progress
         long startTime = System.currentTimeMillis();
@@ -476,18 +756,9 @@ public class Camera {
 
                 /// if we want just one sample per pixel side, just cast one ray through pixel center
                 if(Camera.this.samplesPerPixelSide == 1) {
-                    /// x,y coordinates of pixel center from image origin (top left)
-                    double pixelCenterX = x * pixelWidth + 0.5 * pixelWidth;
-                    double pixelCenterY = y * pixelHeight + 0.5 * pixelHeight;
-                    /// transform to x,y coordinates where both x,y axes are in
-                    /// opposite directions from the standard image axes
-                    pixelCenterX = Camera.this.getScreenPlaneWidth() / 2 - pixelCenterX;
-                    pixelCenterY = Camera.this.screenPlaneHeight / 2 - pixelCenterY;
-
-                    /// create a ray to be cast from the camera through the center of the current pixel
-                    Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(pixelCenterX, pixelCenterY, Camera.this.screenPlaneDepth));
-                    //RTColor rayColorValue = r.trace(scene, shader);  <- tracing without reflections
-                    RTColor rayColorValue = r.traceWithReflections(scene, shader, Camera.this.reflectionTracingLimit);
+                    /// trace a ray from the camera through the center of the current pixel, with the sampler
+                    /// of this thread started at the pixel's only sample (e.g. for sphere lights)
+                    RTColor rayColorValue = Camera.this.traceSample(scene, shader, x, y, 0, samplers.get());
 
                     /// clip the color values to 0.0 to 1.0 range
                     RTColor rayColorValueNormed = rayColorValue.normalised();
@@ -497,23 +768,12 @@ public class Camera {
                     computedRGBValues[x][y] = rayColorValueNormed.getRGB();
                 }
                 else { /// otherwise perform antialiasing by jittered super-sampling
-                    Random rnd = new Random();
                     RTColor finalColorValue = RTColor.blank;
                     for(int i = 0; i < Camera.this.samplesPerPixelSide; i++) {
                         for(int j = 0; j < Camera.this.samplesPerPixelSide; j++) {
-                            /// x,y coordinates of the point in this sub-pixel
-                            // which we'll shoot the ray through, from image origin (top left)
-                            double subpixelSampleX = x * pixelWidth + j * subPixelWidth + rnd.nextDouble() * subPixelWidth;
-                            double subpixelSampleY = y * pixelHeight + i * subPixelHeight + rnd.nextDouble() * subPixelHeight;
-
-                            /// transform to x,y coordinates where both x,y axes are in
-                            /// opposite directions from the standard image axes
-                            subpixelSampleX = Camera.this.getScreenPlaneWidth() / 2 - subpixelSampleX;
-                            subpixelSampleY = Camera.this.screenPlaneHeight / 2 - subpixelSampleY;
-
-                            /// create a ray to be cast from the camera through the selected sample point
-                            Ray r = new Ray(new Vector3D(0, 0, 0), new Vector3D(subpixelSampleX, subpixelSampleY, Camera.this.screenPlaneDepth));
-                            RTColor rayColorValue = r.traceWithReflections(scene, shader, Camera.this.reflectionTracingLimit);
+                            /// trace a ray from the camera through the point of the pixel given by the
+                            /// sampler of this thread, which the rest of the sample uses too, as the CPU renderers do
+                            RTColor rayColorValue = Camera.this.traceSample(scene, shader, x, y, i * Camera.this.samplesPerPixelSide + j, samplers.get());
 
                             /// add this ray's contribution
                             finalColorValue = finalColorValue.added(rayColorValue);
@@ -531,6 +791,9 @@ public class Camera {
                     computedRGBValues[x][y] = finalColorValueNormed.getRGB();
                 }
 
+                /// the sampler of this camera is not used by this thread anymore
+                Sampler.setForCurrentThread(null);
+
                 /// update progress
                 double done = (double) progress.incrementAndGet() / (double) (Camera.this.screenPlaneHeightInPixels * screenPlaneWidthInPixels);
                 if(Math.abs((int)(done*100) - (done*100)) < 1e-9 && (int)(done*100) % 5 == 0) {
@@ -564,12 +827,273 @@ public class Camera {
 
         return digitalImage;    
     }
+    /*
+       Method that traces all rays through the pixel (x,y) (from the top
+       left origin pixel (0,0)) of the image of the given scene, and returns
+       the final 32 bit RGB value of the pixel.
+
+       If samplesPerPixelSide = 1, then only a single
+       ray is cast exactly through the center of the
+       pixel, otherwise jittered super-sampling is performed
+       on a 'samplesPerPixelSide' X 'samplesPerPixelSide' regular
+       grid of sub-pixels (only until the pixel has converged,
+       if adaptive sampling is enabled).
+
+       It can be called from many threads at the same time.
+     */
+    private int renderPixel(Scene scene, Shader shader, int x, int y, Sampler sampler) {
+        /// if we want just one sample per pixel side, just cast one ray through pixel center
+        if(this.samplesPerPixelSide == 1) {
+            /// clip the color values to 0.0 to 1.0 range
+            return this.traceSample(scene, shader, x, y, 0, sampler).normalised().getRGB();
+        }
+
+        /// otherwise perform antialiasing by super-sampling
+        if(this.adaptiveSampling) {
+            return this.renderPixelAdaptively(scene, shader, x, y, sampler);
+        }
+        int numberOfSamples = this.samplesPerPixelSide * this.samplesPerPixelSide;
+        RTColor finalColorValue = RTColor.blank;
+        for(int sample = 0; sample < numberOfSamples; sample++) {
+            /// add this ray's contribution
+            finalColorValue = finalColorValue.added(this.traceSample(scene, shader, x, y, sample, sampler));
+        }
+
+        /// take the average of samples' contributions
+        finalColorValue = finalColorValue.scaled(1 / (double) numberOfSamples);
+
+        /// clip the color values to 0.0 to 1.0 range
+        return finalColorValue.normalised().getRGB();
+    }
+    /*
+       Method that renders the pixel (x,y) with adaptive antialiasing, taking
+       the samples of the sampler in order until the pixel has converged. All
+       samplers spread the first samples over the pixel (e.g. the default
+       stratified sampler visits the sub-pixels diagonal by diagonal, so the
+       first samples are spread over every row and column of the grid).
+     */
+    private int renderPixelAdaptively(Scene scene, Shader shader, int x, int y, Sampler sampler) {
+        int numberOfSamples = this.samplesPerPixelSide * this.samplesPerPixelSide;
+        PixelVarianceEstimator varianceEstimator = new PixelVarianceEstimator();
+        RTColor finalColorValue = RTColor.blank;
+
+        for(int sample = 0; sample < numberOfSamples; sample++) {
+            RTColor rayColorValue = this.traceSample(scene, shader, x, y, sample, sampler);
+            finalColorValue = finalColorValue.added(rayColorValue);
+            varianceEstimator.addSample(rayColorValue);
+
+            if(varianceEstimator.hasConverged(this.minimumSamplesPerPixel, this.adaptiveSamplingThreshold)) {
+                break;
+            }
+        }
+
+        /// take the average of samples' contributions, and clip the color values to 0.0 to 1.0 range
+        return finalColorValue.scaled(1 / (double) varianceEstimator.getNumberOfSamples()).normalised().getRGB();
+    }
+    /*
+       Method that traces the ray of the sample with the given index (from 0)
+       of pixel (x,y), through the point of the pixel given by the first two
+       dimensions of the given sampler, and returns its (not clipped) color
+       value. The sampler is also made the sampler of the current thread,
+       for the rest of the sample (e.g. for sphere lights).
+
+       If samplesPerPixelSide = 1, the ray is cast exactly through the
+       center of the pixel.
+     */
+    private RTColor traceSample(Scene scene, Shader shader, int x, int y, int sampleIndex, Sampler sampler) {
+        Ray r = this.createPrimaryRay(x, y, sampleIndex, sampler);
+        Sampler.setForCurrentThread(sampler);
+        //RTColor rayColorValue = r.trace(scene, shader);  <- tracing without reflections
+        return r.traceWithReflections(scene, shader, this.reflectionTracingLimit);
+    }
+    /*
+       Method that renders all pixels of the given tile into the framebuffer,
+       with exactly the same samples and colors as 'renderPixel', but traces
+       the primary rays of blocks of up to RayPacket.side X RayPacket.side
+       pixels of the tile together: the k-th sample of every pixel of a block
+       (that has not converged yet, with adaptive sampling) is traced as one
+       packet.
+     */
+    private void renderTile(Scene scene, Shader shader, Tile tile, Framebuffer framebuffer, Sampler sampler, RayPacket packet) {
+        int numberOfSamples = this.samplesPerPixelSide * this.samplesPerPixelSide;
+        boolean adaptiveSampling = this.adaptiveSampling && this.samplesPerPixelSide > 1;
+
+        /// the pixels of the current block, their sums of sample colors and (with adaptive sampling) their estimators
+        int[] blockPixelsX = new int[RayPacket.capacity], blockPixelsY = new int[RayPacket.capacity];
+        RTColor[] colorSums = new RTColor[RayPacket.capacity];
+        PixelVarianceEstimator[] varianceEstimators = new PixelVarianceEstimator[RayPacket.capacity];
+        /// the pixels of the block (indices into the arrays above) that still take samples, and their positions
+        int[] activePixels = new int[RayPacket.capacity];
+        int[] pixelsX = new int[RayPacket.capacity], pixelsY = new int[RayPacket.capacity];
+        RTColor[] sampleColors = new RTColor[RayPacket.capacity];
+
+        for(int blockY = tile.getY(); blockY < tile.getY() + tile.getHeight(); blockY += RayPacket.side) {
+            for(int blockX = tile.getX(); blockX < tile.getX() + tile.getWidth(); blockX += RayPacket.side) {
+                int numberOfPixels = 0;
+                for(int y = blockY; y < Math.min(blockY + RayPacket.side, tile.getY() + tile.getHeight()); y++) {
+                    for(int x = blockX; x < Math.min(blockX + RayPacket.side, tile.getX() + tile.getWidth()); x++) {
+                        blockPixelsX[numberOfPixels] = x;
+                        blockPixelsY[numberOfPixels] = y;
+                        colorSums[numberOfPixels] = RTColor.blank;
+                        if(adaptiveSampling) {
+                            varianceEstimators[numberOfPixels] = new PixelVarianceEstimator();
+                        }
+                        activePixels[numberOfPixels] = numberOfPixels;
+                        numberOfPixels++;
+                    }
+                }
+
+                int numberOfActivePixels = numberOfPixels;
+                for(int sample = 0; sample < numberOfSamples && numberOfActivePixels > 0; sample++) {
+                    for(int i = 0; i < numberOfActivePixels; i++) {
+                        pixelsX[i] = blockPixelsX[activePixels[i]];
+                        pixelsY[i] = blockPixelsY[activePixels[i]];
+                    }
+                    this.traceSamples(scene, shader, pixelsX, pixelsY, numberOfActivePixels, sample, sampler, packet, sampleColors);
+
+                    /// add the samples' contributions, and keep only the pixels that have not converged yet
+                    int numberOfRemainingPixels = 0;
+                    for(int i = 0; i < numberOfActivePixels; i++) {
+                        int pixel = activePixels[i];
+                        colorSums[pixel] = colorSums[pixel].added(sampleColors[i]);
+                        if(adaptiveSampling) {
+                            varianceEstimators[pixel].addSample(sampleColors[i]);
+                            if(varianceEstimators[pixel].hasConverged(this.minimumSamplesPerPixel, this.adaptiveSamplingThreshold)) {
+                                continue;
+                            }
+                        }
+                        activePixels[numberOfRemainingPixels++] = pixel;
+                    }
+                    numberOfActivePixels = numberOfRemainingPixels;
+                }
+
+                for(int pixel = 0; pixel < numberOfPixels; pixel++) {
+                    /// a single ray is cast through the center of the pixel if samplesPerPixelSide = 1, otherwise take the average
+                    int takenSamples = adaptiveSampling ? varianceEstimators[pixel].getNumberOfSamples() : numberOfSamples;
+                    RTColor color = this.samplesPerPixelSide == 1 ? colorSums[pixel] : colorSums[pixel].scaled(1 / (double) takenSamples);
+                    /// clip the color values to 0.0 to 1.0 range
+                    framebuffer.setRGB(blockPixelsX[pixel], blockPixelsY[pixel], color.normalised().getRGB());
+                }
+            }
+        }
+    }
+    /*
+       Method that renders one pass of 'renderProgressively' for all pixels of
+       the given tile, i.e. adds the sample with the index of the pass of every
+       pixel to the accumulation buffer, and writes the average of the samples
+       of the pixel so far into the framebuffer, tracing the primary rays of
+       blocks of pixels as packets (as in 'renderTile').
+     */
+    private void renderTilePass(Scene scene, Shader shader, Tile tile, Framebuffer framebuffer, int pass, Sampler sampler, RayPacket packet, AccumulationBuffer accumulationBuffer) {
+        int[] pixelsX = new int[RayPacket.capacity], pixelsY = new int[RayPacket.capacity];
+        RTColor[] sampleColors = new RTColor[RayPacket.capacity];
+
+        for(int blockY = tile.getY(); blockY < tile.getY() + tile.getHeight(); blockY += RayPacket.side) {
+            for(int blockX = tile.getX(); blockX < tile.getX() + tile.getWidth(); blockX += RayPacket.side) {
+                int numberOfPixels = 0;
+                for(int y = blockY; y < Math.min(blockY + RayPacket.side, tile.getY() + tile.getHeight()); y++) {
+                    for(int x = blockX; x < Math.min(blockX + RayPacket.side, tile.getX() + tile.getWidth()); x++) {
+                        pixelsX[numberOfPixels] = x;
+                        pixelsY[numberOfPixels] = y;
+                        numberOfPixels++;
+                    }
+                }
+                this.traceSamples(scene, shader, pixelsX, pixelsY, numberOfPixels, pass, sampler, packet, sampleColors);
+
+                for(int i = 0; i < numberOfPixels; i++) {
+                    accumulationBuffer.addSample(pixelsX[i], pixelsY[i], sampleColors[i]);
+                    /// clip the color values to 0.0 to 1.0 range
+                    framebuffer.setRGB(pixelsX[i], pixelsY[i], accumulationBuffer.getAverage(pixelsX[i], pixelsY[i]).normalised().getRGB());
+                }
+            }
+        }
+    }
+    /*
+       Method that traces the rays of the sample with the given index of the
+       first 'numberOfPixels' given pixels (at most RayPacket.capacity), and
+       writes their (not clipped) color values into 'colors', in the same
+       order. The primary rays are intersected with the scene together, as
+       the given packet, and every ray is then traced further (reflections,
+       shadow rays) on its own, with the sampler of its own pixel sample, so
+       every color is exactly the one 'traceSample' gives.
+     */
+    private void traceSamples(Scene scene, Shader shader, int[] pixelsX, int[] pixelsY, int numberOfPixels, int sampleIndex, Sampler sampler, RayPacket packet, RTColor[] colors) {
+        packet.clear();
+        for(int i = 0; i < numberOfPixels; i++) {
+            packet.add(this.createPrimaryRay(pixelsX[i], pixelsY[i], sampleIndex, sampler), Double.POSITIVE_INFINITY);
+        }
+        scene.findClosestHits(packet);
+
+        for(int i = 0; i < numberOfPixels; i++) {
+            /// restart the sample of the pixel, after the two dimensions of the position in the pixel
+            sampler.startPixelSample(pixelsX[i], pixelsY[i], sampleIndex);
+            sampler.next();
+            sampler.next();
+            Sampler.setForCurrentThread(sampler);
+
+            Ray r = packet.getRay(i);
+            colors[i] = r.traceWithReflections(scene, shader, this.reflectionTracingLimit, packet.getHitRecord(i).toIntersection(r));
+        }
+    }
+    /*
+       Method that creates the primary ray of the sample with the given
+       index (from 0) of pixel (x,y), through the point of the pixel given
+       by the first two dimensions of the given sampler, which is started
+       at that sample.
+
+       If samplesPerPixelSide = 1, the ray is cast exactly through the
+       center of the pixel.
+     */
+    private Ray createPrimaryRay(int x, int y, int sampleIndex, Sampler sampler) {
+        sampler.startPixelSample(x, y, sampleIndex);
+        double offsetX = sampler.next();
+        double offsetY = sampler.next();
+        if(this.samplesPerPixelSide == 1) {
+            offsetX = 0.5;
+            offsetY = 0.5;
+        }
+
+        /// x,y coordinates of the sample point from image origin (top left)
+        double sampleX = (x + offsetX) * this.getPixelWidth();
+        double sampleY = (y + offsetY) * this.getPixelHeight();
+
+        /// transform to x,y coordinates where both x,y axes are in
+        /// opposite directions from the standard image axes
+        sampleX = this.getScreenPlaneWidth() / 2 - sampleX;
+        sampleY = this.screenPlaneHeight / 2 - sampleY;
+
+        /// create a ray to be cast from the camera through the selected sample point
+        return this.createRay(sampleX, sampleY);
+    }
+    /*
+       Method that creates the ray cast from the camera through the point
+       with the given x,y coordinates on the screen plane, in the coordinates
+       of the camera, i.e. transformed to world coordinates by the pose of the
+       camera, if it has one.
+     */
+    private Ray createRay(double screenPlaneX, double screenPlaneY) {
+        if(this.position == null) {
+            return new Ray(new Vector3D(0, 0, 0), new Vector3D(screenPlaneX, screenPlaneY, this.screenPlaneDepth));
+        }
+        Vector3D direction = this.axisX.scaled(screenPlaneX).added(this.axisY.scaled(screenPlaneY)).added(this.axisZ.scaled(this.screenPlaneDepth));
+        return new Ray(this.position, direction);
+    }
+    /*
+       Method that creates the samplers of a render, one per rendering
+       thread, each created on first use.
+     */
+    private ThreadLocal<Sampler> createSamplers() {
+        return ThreadLocal.withInitial(() -> this.samplerType.create(this.samplesPerPixelSide));
+    }
     /**
      * Getters
      */
     public int getScreenPlaneWidthInPixels() {
         return (int) Math.ceil(this.screenPlaneWidthToHeightRatio * this.screenPlaneHeightInPixels);
     }
+    public int getScreenPlaneHeightInPixels() {
+        return this.screenPlaneHeightInPixels;
+    }
     public double getScreenPlaneWidth() {
         return this.screenPlaneHeight * this.screenPlaneWidthToHeightRatio;
     }
@@ -599,10 +1123,65 @@ public class Camera {
     public double getScreenPlaneHeight() {
         return this.screenPlaneHeight;
     }
+    public int getTileSize() {
+        return this.tileSize;
+    }
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+    public boolean isAdaptiveSampling() {
+        return this.adaptiveSampling;
+    }
+    public double getAdaptiveSamplingThreshold() {
+        return this.adaptiveSamplingThreshold;
+    }
+    public int getMinimumSamplesPerPixel() {
+        return this.minimumSamplesPerPixel;
+    }
+    public SamplerType getSamplerType() {
+        return this.samplerType;
+    }
+    public boolean isPacketTracing() {
+        return this.packetTracing;
+    }
+    /*
+       Getter for the position of the camera, null for the default pose.
+     */
+    public Vector3D getPosition() {
+        return this.position;
+    }
 
     /**
      * Static Utility Methods
      */
+    /*
+       Method that reads the settings written by 'writeSettings' from the
+       given buffer, and returns a camera with them, which renders exactly the
+       same images as the camera that wrote them, with the given tile size
+       and number of threads. Throws an IllegalArgumentException if the
+       settings are invalid.
+     */
+    public static Camera readSettings(ByteBuffer buffer, int tileSize, int numberOfThreads) {
+        double height = buffer.getDouble(), depth = buffer.getDouble(), widthToHeightRatio = buffer.getDouble();
+        int heightInPixels = buffer.getInt(), reflectionTracingLimit = buffer.getInt(), samplesPerPixelSide = buffer.getInt();
+        int samplerType = buffer.getInt();
+        boolean adaptiveSampling = buffer.get() != 0;
+        double adaptiveSamplingThreshold = buffer.getDouble();
+        int minimumSamplesPerPixel = buffer.getInt();
+        boolean packetTracing = buffer.get() != 0;
+        boolean posed = buffer.get() != 0;
+        Vector3D[] pose = new Vector3D[4];
+        for(int i = 0; i < pose.length; i++) {
+            pose[i] = new Vector3D(buffer.getDouble(), buffer.getDouble(), buffer.getDouble());
+        }
+
+        if(heightInPixels <= 0 || samplesPerPixelSide <= 0 || samplerType < 0 || samplerType >= SamplerType.values().length || minimumSamplesPerPixel <= 0) {
+            throw new IllegalArgumentException("Invalid camera settings.");
+        }
+        Camera camera = new Camera(height, depth, widthToHeightRatio, heightInPixels, reflectionTracingLimit, samplesPerPixelSide, tileSize, numberOfThreads);
+        camera = new Camera(camera, adaptiveSampling, adaptiveSamplingThreshold, minimumSamplesPerPixel, SamplerType.values()[samplerType], packetTracing);
+        return posed ? new Camera(camera, pose[0], pose[1], pose[2], pose[3]) : camera;
+    }
     /*
        Method to output a digital image.
        Given a BufferedImage, it creates a 'result.png'
@@ -0,0 +1,100 @@
+package rendering.acceleration;
+
+import rendering.utility.Vector3D;
+
+/**
+ * Class for an axis-aligned bounding box (AABB), i.e. a box
+ * whose sides are parallel to the three axes, given by the
+ * minimum and maximum value of each coordinate.
+ *
+ * Unlike the Box RTShape (which is a mesh of 12 triangles
+ * that can be rendered), an AxisAlignedBoundingBox is never
+ * shaded, it is only used to bound RTShape's in acceleration
+ * structures such as the BoundingVolumeHierarchy.
+ *
+ * AxisAlignedBoundingBox is immutable.
+ */
+
+public class AxisAlignedBoundingBox {
+    private final double minX;
+    private final double minY;
+    private final double minZ;
+    private final double maxX;
+    private final double maxY;
+    private final double maxZ;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from minimum and maximum values of
+       each of the three coordinates.
+     */
+    public AxisAlignedBoundingBox(double minX, double minY, double minZ, double maxX, double maxY, double maxZ) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+    }
+    /*
+       Constructor from the minimum and the maximum corner
+       of the box.
+     */
+    public AxisAlignedBoundingBox(Vector3D minimum, Vector3D maximum) {
+        this(minimum.getX(), minimum.getY(), minimum.getZ(), maximum.getX(), maximum.getY(), maximum.getZ());
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that returns the smallest axis-aligned
+       bounding box that contains both this box and
+       the given box.
+     */
+    public AxisAlignedBoundingBox union(AxisAlignedBoundingBox box) {
+        return new AxisAlignedBoundingBox(Math.min(this.minX, box.minX), Math.min(this.minY, box.minY), Math.min(this.minZ, box.minZ),
+                Math.max(this.maxX, box.maxX), Math.max(this.maxY, box.maxY), Math.max(this.maxZ, box.maxZ));
+    }
+    /*
+       Method that returns the surface area of the box,
+       used by the surface area heuristic when building
+       a BoundingVolumeHierarchy.
+     */
+    public double getSurfaceArea() {
+        double dx = this.maxX - this.minX;
+        double dy = this.maxY - this.minY;
+        double dz = this.maxZ - this.minZ;
+        return 2 * (dx*dy + dy*dz + dz*dx);
+    }
+    /*
+       Method that returns the center of the box.
+     */
+    public Vector3D getCentroid() {
+        return new Vector3D(0.5 * (this.minX + this.maxX), 0.5 * (this.minY + this.maxY), 0.5 * (this.minZ + this.maxZ));
+    }
+
+    /**
+     * Getters
+     */
+    public double getMinX() {
+        return this.minX;
+    }
+    public double getMinY() {
+        return this.minY;
+    }
+    public double getMinZ() {
+        return this.minZ;
+    }
+    public double getMaxX() {
+        return this.maxX;
+    }
+    public double getMaxY() {
+        return this.maxY;
+    }
+    public double getMaxZ() {
+        return this.maxZ;
+    }
+}
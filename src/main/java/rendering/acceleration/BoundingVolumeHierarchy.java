@@ -0,0 +1,818 @@
+package rendering.acceleration;
+
+import rendering.utility.GeometryPrecision;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Class for a bounding volume hierarchy (BVH), i.e. a binary tree
+ * of axis-aligned bounding boxes over a set of primitives (e.g.
+ * RTShape's in a scene), each of which is given only by its own
+ * axis-aligned bounding box. A ray has to be intersected with the
+ * primitives of a node only if it intersects the bounds of that
+ * node, so the number of intersection tests per ray becomes
+ * logarithmic rather than linear in the number of primitives.
+ *
+ * The tree is built top-down, using the surface area heuristic
+ * (SAH) to decide where to split each node: the primitive centroids
+ * are sorted into a fixed number of bins along each axis, and the
+ * split between bins which minimises the expected cost of
+ * intersecting a random ray with the two children (proportional to
+ * the surface area of each child times the number of primitives in
+ * it) is chosen. A node becomes a leaf when it contains few enough
+ * primitives that splitting it further is not expected to pay off.
+ *
+ * The nodes are stored flattened in depth-first order in arrays
+ * of primitive values, so that traversal does not chase pointers.
+ * The left child of an interior node is always the node immediately
+ * after it, and the index of its right child is stored in
+ * 'nodeOffsets'. For a leaf node, 'nodeOffsets' instead stores the
+ * position of its first primitive in 'primitiveIndices', and
+ * 'nodePrimitiveCounts' stores how many primitives it contains.
+ *
+ * If the primitives of a leaf are intersected several at a time
+ * (e.g. by a SIMD kernel, 'primitivesPerTest' at once), the cost of
+ * a leaf is the number of such tests rather than of primitives, so
+ * leaves are allowed to hold (up to) that many primitives.
+ *
+ * Once the tree is built, the arrays are trimmed to the number of
+ * nodes actually used. The node bounds are stored in double or (for
+ * GeometryPrecision.FLOAT) in float precision, rounded outwards so
+ * that the bounds of a node still contain all of its primitives.
+ *
+ * Besides single rays, a whole packet of coherent rays with a common
+ * origin can be tested against the bounds of a node at once, with
+ * interval arithmetic ('intersectNodeBoundsInterval').
+ *
+ * A built hierarchy can be written to a snapshot and read back
+ * as it is, without building it again (see SceneSnapshot), and
+ * its tree can be refitted to new bounds of its primitives
+ * ('refitted'), or refitted in place above only those primitives
+ * whose bounds have changed ('refitPrimitives', e.g. for the shapes
+ * of a scene that moved between two frames).
+ *
+ * The BVH only stores indices of primitives, so the user of the
+ * BVH (e.g. the Scene) is responsible for intersecting the actual
+ * primitives in the leaves during traversal.
+ */
+
+public class BoundingVolumeHierarchy {
+    /// number of bins that primitive centroids are sorted into when evaluating candidate SAH splits
+    private static final int numberOfBins = 16;
+    /// maximum number of primitives in a leaf node, if primitives are intersected one at a time
+    private static final int maxPrimitivesInLeaf = 4;
+    /// cost of traversing an interior node, relative to the cost of intersecting a single primitive
+    private static final double traversalCost = 0.125;
+    /// beyond this depth nodes are split at the median centroid instead, so the depth stays bounded
+    private static final int maxSurfaceAreaHeuristicDepth = 64;
+
+    private final GeometryPrecision precision;
+    /// number of primitives that are intersected at once, by a single test
+    private final int primitivesPerTest;
+    /// bounds of each node, 6 consecutive values per node (minX, minY, minZ, maxX, maxY, maxZ), null for float precision
+    private double[] nodeBounds;
+    /// the same bounds in float precision, null for double precision
+    private float[] floatNodeBounds;
+    /// index of the right child of an interior node, or of the first primitive of a leaf in 'primitiveIndices'
+    private int[] nodeOffsets;
+    /// number of primitives in each node, 0 for interior nodes
+    private int[] nodePrimitiveCounts;
+    /// axis (0 for x, 1 for y, 2 for z) along which each interior node is split
+    private byte[] nodeSplitAxes;
+    private int numberOfNodes;
+    /// depth of the deepest node, the root is at depth 0
+    private int depth;
+
+    /// indices of primitives, reordered so that each leaf references a contiguous range
+    private final int[] primitiveIndices;
+
+    /// bounds of the primitives, 6 consecutive values per primitive, as given to the constructor (only while building)
+    private double[] primitiveBounds;
+
+    /// parent of each node (-1 for the root), and the leaf of each primitive, only computed once needed by 'refitPrimitives'
+    private int[] parentNodes;
+    private int[] primitiveLeaves;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the bounds of all primitives, 6 consecutive
+       values (minX, minY, minZ, maxX, maxY, maxZ) per primitive, and
+       the number of primitives. Builds the whole hierarchy immediately,
+       with the node bounds in double precision.
+     */
+    public BoundingVolumeHierarchy(double[] primitiveBounds, int numberOfPrimitives) {
+        this(primitiveBounds, numberOfPrimitives, GeometryPrecision.DOUBLE);
+    }
+    /*
+       Constructor as above, with the node bounds stored
+       in the given precision.
+     */
+    public BoundingVolumeHierarchy(double[] primitiveBounds, int numberOfPrimitives, GeometryPrecision precision) {
+        this(primitiveBounds, numberOfPrimitives, precision, 1);
+    }
+    /*
+       Constructor as above, for primitives that are intersected
+       'primitivesPerTest' at a time.
+     */
+    public BoundingVolumeHierarchy(double[] primitiveBounds, int numberOfPrimitives, GeometryPrecision precision, int primitivesPerTest) {
+        if(primitivesPerTest <= 0) {
+            throw new IllegalArgumentException("Number of primitives per test must be positive.");
+        }
+        this.precision = precision;
+        this.primitivesPerTest = primitivesPerTest;
+        this.primitiveBounds = primitiveBounds;
+        this.primitiveIndices = new int[numberOfPrimitives];
+        for(int i = 0; i < numberOfPrimitives; i++) {
+            this.primitiveIndices[i] = i;
+        }
+
+        /// a binary tree with n leaves has at most 2n-1 nodes
+        int maxNumberOfNodes = Math.max(1, 2 * numberOfPrimitives - 1);
+        this.nodeBounds = new double[6 * maxNumberOfNodes];
+        this.nodeOffsets = new int[maxNumberOfNodes];
+        this.nodePrimitiveCounts = new int[maxNumberOfNodes];
+        this.nodeSplitAxes = new byte[maxNumberOfNodes];
+        this.numberOfNodes = 0;
+        this.depth = 0;
+
+        if(numberOfPrimitives > 0) {
+            this.buildNode(0, numberOfPrimitives, 0);
+        }
+
+        /// drop what was only needed for building, and the unused nodes (an empty hierarchy keeps one node, with zero bounds)
+        this.primitiveBounds = null;
+        int usedNodes = Math.max(1, this.numberOfNodes);
+        this.nodeOffsets = Arrays.copyOf(this.nodeOffsets, usedNodes);
+        this.nodePrimitiveCounts = Arrays.copyOf(this.nodePrimitiveCounts, usedNodes);
+        this.nodeSplitAxes = Arrays.copyOf(this.nodeSplitAxes, usedNodes);
+        this.setNodeBounds(this.nodeBounds, usedNodes);
+    }
+    /*
+       Constructor from the arrays of an already built hierarchy,
+       used to restore a hierarchy from a snapshot.
+     */
+    private BoundingVolumeHierarchy(GeometryPrecision precision, int primitivesPerTest, double[] nodeBounds, float[] floatNodeBounds,
+                                    int[] nodeOffsets, int[] nodePrimitiveCounts, byte[] nodeSplitAxes, int numberOfNodes, int depth, int[] primitiveIndices) {
+        this.precision = precision;
+        this.primitivesPerTest = primitivesPerTest;
+        this.nodeBounds = nodeBounds;
+        this.floatNodeBounds = floatNodeBounds;
+        this.nodeOffsets = nodeOffsets;
+        this.nodePrimitiveCounts = nodePrimitiveCounts;
+        this.nodeSplitAxes = nodeSplitAxes;
+        this.numberOfNodes = numberOfNodes;
+        this.depth = depth;
+        this.primitiveIndices = primitiveIndices;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that intersects a ray with the bounds of the given node,
+       using the slab method. The ray is given by its origin and by the
+       reciprocals of the components of its direction, which the caller
+       computes once per ray rather than once per node.
+
+       Returns the value of the ray parameter s at which the ray enters the
+       bounds of the node (0 if the origin is inside them), or
+       Double.POSITIVE_INFINITY if the ray misses the bounds, or only hits
+       them for parameter values larger than 'maxParameter'.
+     */
+    public double intersectNodeBounds(int node, double originX, double originY, double originZ,
+                                      double inverseDirectionX, double inverseDirectionY, double inverseDirectionZ, double maxParameter) {
+        int offset = 6 * node;
+        double minX, minY, minZ, maxX, maxY, maxZ;
+        if(this.floatNodeBounds == null) {
+            minX = this.nodeBounds[offset];
+            minY = this.nodeBounds[offset + 1];
+            minZ = this.nodeBounds[offset + 2];
+            maxX = this.nodeBounds[offset + 3];
+            maxY = this.nodeBounds[offset + 4];
+            maxZ = this.nodeBounds[offset + 5];
+        }
+        else {
+            minX = this.floatNodeBounds[offset];
+            minY = this.floatNodeBounds[offset + 1];
+            minZ = this.floatNodeBounds[offset + 2];
+            maxX = this.floatNodeBounds[offset + 3];
+            maxY = this.floatNodeBounds[offset + 4];
+            maxZ = this.floatNodeBounds[offset + 5];
+        }
+        double near = 0;
+        double far = maxParameter;
+
+        /// comparisons are written so that NaN values (ray parallel to a slab, origin on its boundary) are ignored
+        double t0 = (minX - originX) * inverseDirectionX;
+        double t1 = (maxX - originX) * inverseDirectionX;
+        if(t0 > t1) {
+            double swap = t0; t0 = t1; t1 = swap;
+        }
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (minY - originY) * inverseDirectionY;
+        t1 = (maxY - originY) * inverseDirectionY;
+        if(t0 > t1) {
+            double swap = t0; t0 = t1; t1 = swap;
+        }
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        t0 = (minZ - originZ) * inverseDirectionZ;
+        t1 = (maxZ - originZ) * inverseDirectionZ;
+        if(t0 > t1) {
+            double swap = t0; t0 = t1; t1 = swap;
+        }
+        near = t0 > near ? t0 : near;
+        far = t1 < far ? t1 : far;
+
+        if(near > far) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return near;
+    }
+    /*
+       Method that intersects a whole packet of rays with a common origin
+       with the bounds of the given node, using interval arithmetic. The
+       reciprocals of the direction components of all rays along each axis
+       lie in the given intervals [min, max], which must not contain 0.
+
+       Returns a lower bound of the values that 'intersectNodeBounds' returns
+       for the rays of the packet (with this 'maxParameter' as the largest
+       maximum parameter of the rays), so that if it is Double.POSITIVE_INFINITY
+       or at least 'maxParameter', no ray of the packet needs to visit the
+       node. The products are rounded as in 'intersectNodeBounds', so the
+       bound is exact, not only up to rounding errors.
+     */
+    public double intersectNodeBoundsInterval(int node, double originX, double originY, double originZ,
+                                              double minInverseDirectionX, double maxInverseDirectionX,
+                                              double minInverseDirectionY, double maxInverseDirectionY,
+                                              double minInverseDirectionZ, double maxInverseDirectionZ, double maxParameter) {
+        int offset = 6 * node;
+        double near = 0;
+        double far = maxParameter;
+
+        /// the rays enter the slab of an axis through its lower bound if they point in its positive direction, and leave it
+        /// through the upper bound, and the other way around otherwise; the extreme entry and exit parameters of all rays
+        /// are the products with the extreme reciprocals, as the products are monotonic in them
+        double nearBound = minInverseDirectionX > 0 ? this.getNodeBound(offset) : this.getNodeBound(offset + 3);
+        double farBound = minInverseDirectionX > 0 ? this.getNodeBound(offset + 3) : this.getNodeBound(offset);
+        near = Math.max(near, Math.min((nearBound - originX) * minInverseDirectionX, (nearBound - originX) * maxInverseDirectionX));
+        far = Math.min(far, Math.max((farBound - originX) * minInverseDirectionX, (farBound - originX) * maxInverseDirectionX));
+
+        nearBound = minInverseDirectionY > 0 ? this.getNodeBound(offset + 1) : this.getNodeBound(offset + 4);
+        farBound = minInverseDirectionY > 0 ? this.getNodeBound(offset + 4) : this.getNodeBound(offset + 1);
+        near = Math.max(near, Math.min((nearBound - originY) * minInverseDirectionY, (nearBound - originY) * maxInverseDirectionY));
+        far = Math.min(far, Math.max((farBound - originY) * minInverseDirectionY, (farBound - originY) * maxInverseDirectionY));
+
+        nearBound = minInverseDirectionZ > 0 ? this.getNodeBound(offset + 2) : this.getNodeBound(offset + 5);
+        farBound = minInverseDirectionZ > 0 ? this.getNodeBound(offset + 5) : this.getNodeBound(offset + 2);
+        near = Math.max(near, Math.min((nearBound - originZ) * minInverseDirectionZ, (nearBound - originZ) * maxInverseDirectionZ));
+        far = Math.min(far, Math.max((farBound - originZ) * minInverseDirectionZ, (farBound - originZ) * maxInverseDirectionZ));
+
+        if(near > far) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return near;
+    }
+    /*
+       Method that returns the bound at the given index of the bounds
+       of all nodes, in whichever precision they are stored.
+     */
+    private double getNodeBound(int index) {
+        return this.floatNodeBounds == null ? this.nodeBounds[index] : this.floatNodeBounds[index];
+    }
+    /*
+       Method that writes the hierarchy to the given snapshot
+       output, to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeString(this.precision.name());
+        output.writeInt(this.primitivesPerTest);
+        output.writeInt(this.numberOfNodes);
+        output.writeInt(this.depth);
+        output.writeDoubles(this.nodeBounds);
+        output.writeFloats(this.floatNodeBounds);
+        output.writeInts(this.nodeOffsets);
+        output.writeInts(this.nodePrimitiveCounts);
+        output.writeBytes(this.nodeSplitAxes);
+        output.writeInts(this.primitiveIndices);
+    }
+    /*
+       Method that returns a hierarchy with the same tree as this one (the
+       same nodes, referencing the same primitives), but with the bounds of
+       the nodes computed from the given bounds of the primitives, stored in
+       the given precision. The bounds of each node are the smallest bounds
+       containing its primitives, as when building a hierarchy.
+
+       Refitting takes time linear in the number of nodes, much less than
+       building a new hierarchy, e.g. for a hierarchy built over the primitives
+       in other coordinates, or after the primitives have moved. The tree stays
+       valid for any primitive bounds, but the further the primitives have moved,
+       the more the bounds of the nodes overlap, and the slower traversal gets.
+
+       Throws IllegalArgumentException if the bounds are not those of as many
+       primitives as the hierarchy was built over.
+     */
+    public BoundingVolumeHierarchy refitted(double[] primitiveBounds, GeometryPrecision precision) {
+        if(primitiveBounds.length != 6 * this.getNumberOfPrimitives()) {
+            throw new IllegalArgumentException("Refitting a hierarchy over " + this.getNumberOfPrimitives() + " primitives requires the bounds of as many primitives.");
+        }
+        int usedNodes = this.nodeOffsets.length;
+        double[] nodeBounds = new double[6 * usedNodes];
+        /// children are stored after their parents, so visiting the nodes backwards visits children first
+        for(int node = this.numberOfNodes - 1; node >= 0; node--) {
+            BoundingVolumeHierarchy.clearBounds(nodeBounds, 6 * node);
+            if(this.isLeaf(node)) {
+                for(int position = this.nodeOffsets[node]; position < this.nodeOffsets[node] + this.nodePrimitiveCounts[node]; position++) {
+                    BoundingVolumeHierarchy.growBounds(nodeBounds, 6 * node, primitiveBounds, 6 * this.primitiveIndices[position]);
+                }
+            }
+            else {
+                BoundingVolumeHierarchy.growBounds(nodeBounds, 6 * node, nodeBounds, 6 * (node + 1));
+                BoundingVolumeHierarchy.growBounds(nodeBounds, 6 * node, nodeBounds, 6 * this.nodeOffsets[node]);
+            }
+        }
+
+        BoundingVolumeHierarchy refitted = new BoundingVolumeHierarchy(precision, this.primitivesPerTest, null, null, this.nodeOffsets,
+                this.nodePrimitiveCounts, this.nodeSplitAxes, this.numberOfNodes, this.depth, this.primitiveIndices);
+        refitted.setNodeBounds(nodeBounds, usedNodes);
+        return refitted;
+    }
+    /*
+       Method that refits the hierarchy in place to new bounds of the given
+       primitives, given (for all primitives, 6 values per primitive, as to
+       the constructor) in 'primitiveBounds'. Only the leaves of the given
+       primitives and their ancestors are recomputed, and going up from a leaf
+       stops at the first node whose bounds stay the same, so this takes time
+       proportional to the number of the given primitives times the depth of
+       the tree, independently of the number of all primitives. The resulting
+       bounds are exactly those that 'refitted' would compute.
+
+       The tree is kept as it is, so (as for 'refitted') the further the
+       primitives move, the slower traversal gets. The hierarchy must not be
+       traversed while it is refitted.
+
+       Throws IllegalArgumentException if the bounds are not those of as many
+       primitives as the hierarchy was built over.
+     */
+    public void refitPrimitives(int[] primitives, double[] primitiveBounds) {
+        if(primitiveBounds.length != 6 * this.getNumberOfPrimitives()) {
+            throw new IllegalArgumentException("Refitting a hierarchy over " + this.getNumberOfPrimitives() + " primitives requires the bounds of as many primitives.");
+        }
+        if(this.parentNodes == null) {
+            this.findParentNodes();
+        }
+
+        double[] bounds = new double[6];
+        for(int primitive : primitives) {
+            int node = this.primitiveLeaves[primitive];
+            while(node != -1) {
+                BoundingVolumeHierarchy.clearBounds(bounds, 0);
+                if(this.isLeaf(node)) {
+                    for(int position = this.nodeOffsets[node]; position < this.nodeOffsets[node] + this.nodePrimitiveCounts[node]; position++) {
+                        BoundingVolumeHierarchy.growBounds(bounds, 0, primitiveBounds, 6 * this.primitiveIndices[position]);
+                    }
+                }
+                else {
+                    this.growByNodeBounds(bounds, node + 1);
+                    this.growByNodeBounds(bounds, this.nodeOffsets[node]);
+                }
+                /// the ancestors of a node whose bounds stay the same stay the same too
+                if(!this.updateNodeBounds(node, bounds)) {
+                    break;
+                }
+                node = this.parentNodes[node];
+            }
+        }
+    }
+    /*
+       Method that finds the parent of every node and the leaf
+       of every primitive, for refitting in place.
+     */
+    private void findParentNodes() {
+        int[] parentNodes = new int[Math.max(1, this.numberOfNodes)];
+        int[] primitiveLeaves = new int[this.getNumberOfPrimitives()];
+        parentNodes[0] = -1;
+        for(int node = 0; node < this.numberOfNodes; node++) {
+            if(this.isLeaf(node)) {
+                for(int position = this.nodeOffsets[node]; position < this.nodeOffsets[node] + this.nodePrimitiveCounts[node]; position++) {
+                    primitiveLeaves[this.primitiveIndices[position]] = node;
+                }
+            }
+            else {
+                parentNodes[node + 1] = node;
+                parentNodes[this.nodeOffsets[node]] = node;
+            }
+        }
+        this.primitiveLeaves = primitiveLeaves;
+        this.parentNodes = parentNodes;
+    }
+    /*
+       Method that grows the given bounds so that they
+       also contain the (stored) bounds of the given node.
+     */
+    private void growByNodeBounds(double[] bounds, int node) {
+        for(int axis = 0; axis < 3; axis++) {
+            bounds[axis] = Math.min(bounds[axis], this.getNodeBound(6 * node + axis));
+            bounds[3 + axis] = Math.max(bounds[3 + axis], this.getNodeBound(6 * node + 3 + axis));
+        }
+    }
+    /*
+       Method that stores the given bounds as the bounds of the given node,
+       in the precision of the hierarchy (rounded outwards for float precision),
+       and returns true iff they differ from the bounds it had before.
+     */
+    private boolean updateNodeBounds(int node, double[] bounds) {
+        boolean changed = false;
+        for(int i = 0; i < 6; i++) {
+            if(this.floatNodeBounds != null) {
+                float bound = i < 3 ? GeometryPrecision.roundDown(bounds[i]) : GeometryPrecision.roundUp(bounds[i]);
+                changed |= this.floatNodeBounds[6 * node + i] != bound;
+                this.floatNodeBounds[6 * node + i] = bound;
+            }
+            else {
+                changed |= this.nodeBounds[6 * node + i] != bounds[i];
+                this.nodeBounds[6 * node + i] = bounds[i];
+            }
+        }
+        return changed;
+    }
+    /*
+       Method that stores the bounds of the first 'usedNodes' nodes
+       from the given array in the precision of the hierarchy, rounded
+       outwards for float precision.
+     */
+    private void setNodeBounds(double[] nodeBounds, int usedNodes) {
+        if(this.precision == GeometryPrecision.FLOAT) {
+            this.floatNodeBounds = new float[6 * usedNodes];
+            for(int i = 0; i < 6 * usedNodes; i++) {
+                this.floatNodeBounds[i] = (i % 6 < 3) ? GeometryPrecision.roundDown(nodeBounds[i]) : GeometryPrecision.roundUp(nodeBounds[i]);
+            }
+            this.nodeBounds = null;
+        }
+        else {
+            this.floatNodeBounds = null;
+            this.nodeBounds = Arrays.copyOf(nodeBounds, 6 * usedNodes);
+        }
+    }
+    /*
+       Method that recursively builds the subtree over the primitives in
+       the range [start, end) of 'primitiveIndices', and returns the index
+       of the root node of that subtree.
+     */
+    private int buildNode(int start, int end, int depth) {
+        int node = this.numberOfNodes++;
+        this.depth = Math.max(this.depth, depth);
+
+        /// find the bounds of all primitives in this node, and the bounds of their centroids
+        double[] bounds = BoundingVolumeHierarchy.emptyBounds();
+        double[] centroidBounds = BoundingVolumeHierarchy.emptyBounds();
+        for(int i = start; i < end; i++) {
+            int primitiveOffset = 6 * this.primitiveIndices[i];
+            for(int axis = 0; axis < 3; axis++) {
+                double min = this.primitiveBounds[primitiveOffset + axis];
+                double max = this.primitiveBounds[primitiveOffset + 3 + axis];
+                double centroid = 0.5 * (min + max);
+                bounds[axis] = Math.min(bounds[axis], min);
+                bounds[3 + axis] = Math.max(bounds[3 + axis], max);
+                centroidBounds[axis] = Math.min(centroidBounds[axis], centroid);
+                centroidBounds[3 + axis] = Math.max(centroidBounds[3 + axis], centroid);
+            }
+        }
+        System.arraycopy(bounds, 0, this.nodeBounds, 6 * node, 6);
+
+        int count = end - start;
+        if(count == 1) {
+            this.makeLeaf(node, start, count);
+            return node;
+        }
+
+        /// split along the axis in which the centroids are spread the most
+        int axis = 0;
+        for(int a = 1; a < 3; a++) {
+            if(centroidBounds[3 + a] - centroidBounds[a] > centroidBounds[3 + axis] - centroidBounds[axis]) {
+                axis = a;
+            }
+        }
+        /// if all centroids coincide, no split can separate the primitives
+        if(centroidBounds[3 + axis] - centroidBounds[axis] <= 0) {
+            this.makeLeaf(node, start, count);
+            return node;
+        }
+
+        int mid = -1;
+        if(depth < BoundingVolumeHierarchy.maxSurfaceAreaHeuristicDepth) {
+            /// find the cheapest split between bins along the chosen axis
+            int[] binCounts = new int[BoundingVolumeHierarchy.numberOfBins];
+            double[] binBounds = new double[6 * BoundingVolumeHierarchy.numberOfBins];
+            for(int b = 0; b < BoundingVolumeHierarchy.numberOfBins; b++) {
+                BoundingVolumeHierarchy.clearBounds(binBounds, 6 * b);
+            }
+            for(int i = start; i < end; i++) {
+                int primitiveOffset = 6 * this.primitiveIndices[i];
+                int b = this.getBin(primitiveOffset, axis, centroidBounds);
+                binCounts[b]++;
+                BoundingVolumeHierarchy.growBounds(binBounds, 6 * b, this.primitiveBounds, primitiveOffset);
+            }
+
+            /// sweep from the left to get the area and primitive count left of each split
+            double[] leftAreas = new double[BoundingVolumeHierarchy.numberOfBins - 1];
+            int[] leftCounts = new int[BoundingVolumeHierarchy.numberOfBins - 1];
+            double[] accumulatedBounds = BoundingVolumeHierarchy.emptyBounds();
+            int accumulatedCount = 0;
+            for(int b = 0; b < BoundingVolumeHierarchy.numberOfBins - 1; b++) {
+                BoundingVolumeHierarchy.growBounds(accumulatedBounds, 0, binBounds, 6 * b);
+                accumulatedCount += binCounts[b];
+                leftAreas[b] = BoundingVolumeHierarchy.getSurfaceArea(accumulatedBounds, 0);
+                leftCounts[b] = accumulatedCount;
+            }
+
+            /// sweep from the right and evaluate the SAH cost of each split
+            double nodeArea = BoundingVolumeHierarchy.getSurfaceArea(bounds, 0);
+            double bestCost = Double.POSITIVE_INFINITY;
+            int bestSplit = -1;
+            accumulatedBounds = BoundingVolumeHierarchy.emptyBounds();
+            accumulatedCount = 0;
+            for(int b = BoundingVolumeHierarchy.numberOfBins - 1; b > 0; b--) {
+                BoundingVolumeHierarchy.growBounds(accumulatedBounds, 0, binBounds, 6 * b);
+                accumulatedCount += binCounts[b];
+                if(accumulatedCount == 0 || leftCounts[b - 1] == 0) {
+                    continue;
+                }
+                double rightArea = BoundingVolumeHierarchy.getSurfaceArea(accumulatedBounds, 0);
+                /// for flat nodes (zero area) fall back to balancing primitive counts
+                double cost = nodeArea > 0
+                        ? BoundingVolumeHierarchy.traversalCost + (leftAreas[b - 1] * this.getTestCost(leftCounts[b - 1]) + rightArea * this.getTestCost(accumulatedCount)) / nodeArea
+                        : BoundingVolumeHierarchy.traversalCost + Math.max(this.getTestCost(leftCounts[b - 1]), this.getTestCost(accumulatedCount));
+                if(cost < bestCost) {
+                    bestCost = cost;
+                    bestSplit = b;
+                }
+            }
+
+            /// intersecting all primitives in a leaf costs one per test, so only split if that is expected to be slower
+            if(count <= Math.max(BoundingVolumeHierarchy.maxPrimitivesInLeaf, this.primitivesPerTest) && bestCost >= this.getTestCost(count)) {
+                this.makeLeaf(node, start, count);
+                return node;
+            }
+
+            if(bestSplit != -1) {
+                /// partition primitives in place, those in bins left of the split go first
+                int i = start;
+                int j = end - 1;
+                while(i <= j) {
+                    if(this.getBin(6 * this.primitiveIndices[i], axis, centroidBounds) < bestSplit) {
+                        i++;
+                    }
+                    else {
+                        int swap = this.primitiveIndices[i];
+                        this.primitiveIndices[i] = this.primitiveIndices[j];
+                        this.primitiveIndices[j] = swap;
+                        j--;
+                    }
+                }
+                mid = i;
+            }
+        }
+
+        /// if SAH gives no usable split (or the tree is too deep), split at the median centroid
+        if(mid <= start || mid >= end) {
+            mid = (start + end) / 2;
+            this.selectByCentroid(start, end, mid, axis);
+        }
+
+        this.nodeSplitAxes[node] = (byte) axis;
+        this.nodePrimitiveCounts[node] = 0;
+        /// the left child is always node + 1
+        this.buildNode(start, mid, depth + 1);
+        this.nodeOffsets[node] = this.buildNode(mid, end, depth + 1);
+
+        return node;
+    }
+    /*
+       Method that returns the cost of intersecting the given number of
+       primitives, i.e. the number of tests needed to intersect them.
+     */
+    private int getTestCost(int numberOfPrimitives) {
+        return (numberOfPrimitives + this.primitivesPerTest - 1) / this.primitivesPerTest;
+    }
+    /*
+       Method that turns the given node into a leaf with 'count'
+       primitives starting at position 'start' in 'primitiveIndices'.
+     */
+    private void makeLeaf(int node, int start, int count) {
+        this.nodeOffsets[node] = start;
+        this.nodePrimitiveCounts[node] = count;
+    }
+    /*
+       Method that returns the index of the bin that the centroid of
+       the primitive (whose bounds start at 'primitiveOffset') falls
+       into along the given axis.
+     */
+    private int getBin(int primitiveOffset, int axis, double[] centroidBounds) {
+        double centroid = 0.5 * (this.primitiveBounds[primitiveOffset + axis] + this.primitiveBounds[primitiveOffset + 3 + axis]);
+        double extent = centroidBounds[3 + axis] - centroidBounds[axis];
+        int bin = (int) (BoundingVolumeHierarchy.numberOfBins * (centroid - centroidBounds[axis]) / extent);
+        return Math.min(Math.max(bin, 0), BoundingVolumeHierarchy.numberOfBins - 1);
+    }
+    /*
+       Method that reorders the primitives in the range [start, end) so
+       that the primitive at position k is the one that would be there if
+       the range was sorted by centroids along the given axis, with no
+       larger centroids before it and no smaller ones after it (quickselect).
+     */
+    private void selectByCentroid(int start, int end, int k, int axis) {
+        int low = start;
+        int high = end - 1;
+        while(low < high) {
+            double pivot = this.getCentroidKey(this.primitiveIndices[(low + high) >>> 1], axis);
+            int i = low;
+            int j = high;
+            while(i <= j) {
+                while(this.getCentroidKey(this.primitiveIndices[i], axis) < pivot) {
+                    i++;
+                }
+                while(this.getCentroidKey(this.primitiveIndices[j], axis) > pivot) {
+                    j--;
+                }
+                if(i <= j) {
+                    int swap = this.primitiveIndices[i];
+                    this.primitiveIndices[i] = this.primitiveIndices[j];
+                    this.primitiveIndices[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) {
+                high = j;
+            }
+            else if(k >= i) {
+                low = i;
+            }
+            else {
+                return;
+            }
+        }
+    }
+    /*
+       Method that returns twice the centroid of the given primitive along
+       the given axis, used only for comparing centroids.
+     */
+    private double getCentroidKey(int primitive, int axis) {
+        return this.primitiveBounds[6 * primitive + axis] + this.primitiveBounds[6 * primitive + 3 + axis];
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that reads a hierarchy written by 'writeSnapshot'
+       from the given snapshot input.
+     */
+    public static BoundingVolumeHierarchy readSnapshot(SnapshotInput input) throws IOException {
+        GeometryPrecision precision;
+        try {
+            precision = GeometryPrecision.valueOf(input.readString());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Unknown geometry precision in snapshot.", e);
+        }
+        int primitivesPerTest = input.readInt();
+        int numberOfNodes = input.readInt();
+        int depth = input.readInt();
+        double[] nodeBounds = input.readDoubles();
+        float[] floatNodeBounds = input.readFloats();
+        int[] nodeOffsets = input.readInts();
+        int[] nodePrimitiveCounts = input.readInts();
+        byte[] nodeSplitAxes = input.readBytes();
+        int[] primitiveIndices = input.readInts();
+
+        int usedNodes = Math.max(1, numberOfNodes);
+        if(primitivesPerTest <= 0 || nodeOffsets == null || nodePrimitiveCounts == null || nodeSplitAxes == null || primitiveIndices == null
+                || nodeOffsets.length != usedNodes || nodePrimitiveCounts.length != usedNodes || nodeSplitAxes.length != usedNodes
+                || (precision == GeometryPrecision.FLOAT ? floatNodeBounds == null || floatNodeBounds.length != 6 * usedNodes
+                                                         : nodeBounds == null || nodeBounds.length != 6 * usedNodes)) {
+            throw new IOException("Corrupted bounding volume hierarchy in snapshot.");
+        }
+        return new BoundingVolumeHierarchy(precision, primitivesPerTest, nodeBounds, floatNodeBounds,
+                nodeOffsets, nodePrimitiveCounts, nodeSplitAxes, numberOfNodes, depth, primitiveIndices);
+    }
+    /*
+       Method that returns bounds that contain nothing, so that
+       growing them by any bounds gives those bounds.
+     */
+    private static double[] emptyBounds() {
+        return new double[]{Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    }
+    /*
+       Method that sets the bounds starting at 'offset' in 'bounds' to
+       bounds that contain nothing (see 'emptyBounds'), in place.
+     */
+    private static void clearBounds(double[] bounds, int offset) {
+        for(int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Double.POSITIVE_INFINITY;
+            bounds[offset + 3 + axis] = Double.NEGATIVE_INFINITY;
+        }
+    }
+    /*
+       Method that grows the bounds starting at 'offset' in 'bounds' so
+       that they also contain the bounds starting at 'otherOffset' in
+       'otherBounds'.
+     */
+    private static void growBounds(double[] bounds, int offset, double[] otherBounds, int otherOffset) {
+        for(int axis = 0; axis < 3; axis++) {
+            bounds[offset + axis] = Math.min(bounds[offset + axis], otherBounds[otherOffset + axis]);
+            bounds[offset + 3 + axis] = Math.max(bounds[offset + 3 + axis], otherBounds[otherOffset + 3 + axis]);
+        }
+    }
+    /*
+       Method that returns the surface area of the bounds starting
+       at 'offset' in 'bounds', or 0 for empty bounds.
+     */
+    private static double getSurfaceArea(double[] bounds, int offset) {
+        double dx = bounds[offset + 3] - bounds[offset];
+        double dy = bounds[offset + 4] - bounds[offset + 1];
+        double dz = bounds[offset + 5] - bounds[offset + 2];
+        if(dx < 0 || dy < 0 || dz < 0) {
+            return 0;
+        }
+        return 2 * (dx*dy + dy*dz + dz*dx);
+    }
+
+    /**
+     * Getters
+     */
+    public int getNumberOfNodes() {
+        return this.numberOfNodes;
+    }
+    public int getDepth() {
+        return this.depth;
+    }
+    public int getNumberOfPrimitives() {
+        return this.primitiveIndices.length;
+    }
+    public boolean isLeaf(int node) {
+        return this.nodePrimitiveCounts[node] > 0;
+    }
+    /*
+       Getter for the right child of an interior node,
+       the left child is always 'node + 1'.
+     */
+    public int getRightChild(int node) {
+        return this.nodeOffsets[node];
+    }
+    public int getSplitAxis(int node) {
+        return this.nodeSplitAxes[node];
+    }
+    /*
+       Getters for the range of positions in 'primitiveIndices'
+       that a leaf node references.
+     */
+    public int getFirstPrimitive(int node) {
+        return this.nodeOffsets[node];
+    }
+    public int getPrimitiveCount(int node) {
+        return this.nodePrimitiveCounts[node];
+    }
+    /*
+       Getter for the index of the primitive at the given position,
+       for positions referenced by leaf nodes.
+     */
+    public int getPrimitiveIndex(int position) {
+        return this.primitiveIndices[position];
+    }
+    /*
+       Getter for the bounds of the whole hierarchy, i.e.
+       the bounds of the root node.
+     */
+    public AxisAlignedBoundingBox getBounds() {
+        return this.getNodeBounds(0);
+    }
+    public AxisAlignedBoundingBox getNodeBounds(int node) {
+        return new AxisAlignedBoundingBox(this.getNodeBound(6 * node), this.getNodeBound(6 * node + 1), this.getNodeBound(6 * node + 2),
+                this.getNodeBound(6 * node + 3), this.getNodeBound(6 * node + 4), this.getNodeBound(6 * node + 5));
+    }
+    public GeometryPrecision getPrecision() {
+        return this.precision;
+    }
+    public int getPrimitivesPerTest() {
+        return this.primitivesPerTest;
+    }
+    /*
+       Getter for the (approximate) number of bytes taken by the
+       arrays of the hierarchy.
+     */
+    public long getSizeInBytes() {
+        long boundsSize = this.floatNodeBounds != null ? 4L * this.floatNodeBounds.length : 8L * this.nodeBounds.length;
+        return boundsSize + 4L * this.nodeOffsets.length + 4L * this.nodePrimitiveCounts.length + this.nodeSplitAxes.length
+                + 4L * this.primitiveIndices.length;
+    }
+}
@@ -0,0 +1,280 @@
+package rendering.animation;
+
+import rendering.Camera;
+import rendering.shapes.MeshInstance;
+import rendering.shapes.RTShape;
+import rendering.tracing.Light;
+import rendering.tracing.PointLight;
+import rendering.tracing.Scene;
+import rendering.tracing.SphereLight;
+import rendering.utility.Matrix4D;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Class for the animation of a scene, i.e. the keyframe tracks (see
+ * KeyframeTrack) of its animated shapes, lights and camera, by which
+ * the scene is brought to any frame of the animation.
+ *
+ * Animated shapes must be mesh instances (see MeshInstance), whose
+ * modelling transformation is given by the parameters "scale",
+ * "rotateX", "rotateY", "rotateZ" and "translate" of their tracks,
+ * performed in the order they are listed, as in the "model-transform"
+ * of a scene description. Moving an instance never touches its geometry,
+ * so the meshes (and their bounding volume hierarchies) are shared by all
+ * frames. Animated lights may have the parameters "position", "color"
+ * (0 to 255, as in scene descriptions) and "intensity", and the camera
+ * has the parameters "position" and "look-at" (see Camera.withPose).
+ *
+ * A scene is brought to a frame in place, by 'applyFrame', which only
+ * replaces the elements that changed since the previous frame (see
+ * Scene.updateShapes and Scene.updateLights), so that static shapes,
+ * and the parts of the hierarchy of the scene above them, are not
+ * touched from one frame to the next.
+ *
+ * Animations are immutable, tracks are added to copies of an
+ * animation with 'withShapeTrack', 'withLightTrack' and
+ * 'withCameraTrack'.
+ */
+
+public class Animation {
+    /// numbers of components of the parameters of the tracks of each kind of element
+    private static final Map<String, Integer> shapeParameters = Map.of("scale", 3, "rotateX", 1, "rotateY", 1, "rotateZ", 1, "translate", 3);
+    private static final Map<String, Integer> lightParameters = Map.of("position", 3, "color", 3, "intensity", 1);
+    private static final Map<String, Integer> cameraParameters = Map.of("position", 3, "look-at", 3);
+
+    /// tracks of the animated shapes and lights, by their indices in the scene
+    private final TreeMap<Integer, KeyframeTrack> shapeTracks;
+    private final TreeMap<Integer, KeyframeTrack> lightTracks;
+    /// track of the camera, null if the camera is not animated
+    private final KeyframeTrack cameraTrack;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor of an animation in which nothing moves.
+     */
+    public Animation() {
+        this(new TreeMap<>(), new TreeMap<>(), null);
+    }
+    private Animation(TreeMap<Integer, KeyframeTrack> shapeTracks, TreeMap<Integer, KeyframeTrack> lightTracks, KeyframeTrack cameraTrack) {
+        this.shapeTracks = shapeTracks;
+        this.lightTracks = lightTracks;
+        this.cameraTrack = cameraTrack;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Methods that return a copy of this animation in which the shape
+       or light with the given index in the scene, or the camera, is animated
+       by the given track, which replaces its previous track, if any.
+
+       Throws an IllegalArgumentException if the track has no keyframes, or
+       has a parameter that is not a parameter of that kind of element, or has
+       the wrong number of components. A camera track must give both the
+       position and the look-at point.
+     */
+    public Animation withShapeTrack(int shapeIndex, KeyframeTrack track) {
+        Animation.checkShapeTrack(track);
+        TreeMap<Integer, KeyframeTrack> shapeTracks = new TreeMap<>(this.shapeTracks);
+        shapeTracks.put(shapeIndex, track);
+        return new Animation(shapeTracks, this.lightTracks, this.cameraTrack);
+    }
+    public Animation withLightTrack(int lightIndex, KeyframeTrack track) {
+        Animation.checkLightTrack(track);
+        TreeMap<Integer, KeyframeTrack> lightTracks = new TreeMap<>(this.lightTracks);
+        lightTracks.put(lightIndex, track);
+        return new Animation(this.shapeTracks, lightTracks, this.cameraTrack);
+    }
+    public Animation withCameraTrack(KeyframeTrack track) {
+        Animation.checkCameraTrack(track);
+        return new Animation(this.shapeTracks, this.lightTracks, track);
+    }
+    /*
+       Method that brings the given scene to the given frame, in place, given
+       the frame that the scene is currently at. Only the animated elements whose
+       parameters differ between the two frames are replaced, so the first frame
+       of a sequence must be applied with a previous frame of -1, which replaces
+       every animated element. Returns the number of replaced shapes and lights.
+
+       Throws an IllegalArgumentException if an animated shape is not a mesh
+       instance, an animated light is not a point or sphere light, or the scene
+       has no shape or light with the index of a track.
+     */
+    public int applyFrame(Scene scene, int frame, int previousFrame) {
+        ArrayList<Integer> shapeIndices = new ArrayList<>();
+        ArrayList<RTShape> newShapes = new ArrayList<>();
+        for(Map.Entry<Integer, KeyframeTrack> entry : this.shapeTracks.entrySet()) {
+            if(previousFrame >= 0 && entry.getValue().isUnchangedBetween(frame, previousFrame)) {
+                continue;
+            }
+            if(entry.getKey() < 0 || entry.getKey() >= scene.getShapes().size()) {
+                throw new IllegalArgumentException("There is no shape with index " + entry.getKey() + " in the scene.");
+            }
+            if(!(scene.getShapes().get(entry.getKey()) instanceof MeshInstance instance)) {
+                throw new IllegalArgumentException("Animated shape " + entry.getKey() + " is not an instanced mesh.");
+            }
+            shapeIndices.add(entry.getKey());
+            newShapes.add(instance.withModelTransformation(Animation.transformationAt(entry.getValue(), frame)));
+        }
+
+        ArrayList<Integer> lightIndices = new ArrayList<>();
+        ArrayList<Light> newLights = new ArrayList<>();
+        for(Map.Entry<Integer, KeyframeTrack> entry : this.lightTracks.entrySet()) {
+            if(previousFrame >= 0 && entry.getValue().isUnchangedBetween(frame, previousFrame)) {
+                continue;
+            }
+            if(entry.getKey() < 0 || entry.getKey() >= scene.getLights().size()) {
+                throw new IllegalArgumentException("There is no light with index " + entry.getKey() + " in the scene.");
+            }
+            if(!(scene.getLights().get(entry.getKey()) instanceof PointLight light)) {
+                throw new IllegalArgumentException("Animated light " + entry.getKey() + " is not a point or sphere light.");
+            }
+            lightIndices.add(entry.getKey());
+            newLights.add(Animation.lightAt(light, entry.getValue(), frame));
+        }
+
+        if(!shapeIndices.isEmpty()) {
+            scene.updateShapes(shapeIndices.stream().mapToInt(Integer::intValue).toArray(), newShapes.toArray(new RTShape[0]));
+        }
+        if(!lightIndices.isEmpty()) {
+            scene.updateLights(lightIndices.stream().mapToInt(Integer::intValue).toArray(), newLights.toArray(new Light[0]));
+        }
+        return shapeIndices.size() + lightIndices.size();
+    }
+    /*
+       Method that returns a copy of the given camera in its pose at the
+       given frame, or the given camera itself if the camera is not animated.
+     */
+    public Camera cameraAt(Camera camera, int frame) {
+        if(this.cameraTrack == null) {
+            return camera;
+        }
+        double[][] values = this.cameraTrack.valuesAt(frame);
+        return camera.withPose(Animation.toVector3D(values[this.cameraTrack.indexOf("position")]),
+                Animation.toVector3D(values[this.cameraTrack.indexOf("look-at")]));
+    }
+    /*
+       Method that returns the number of frames of the animation, i.e. one
+       more than the last keyframe of all tracks (1 if nothing is animated).
+     */
+    public int getNumberOfFrames() {
+        int lastFrame = this.cameraTrack == null ? 0 : this.cameraTrack.getLastFrame();
+        for(KeyframeTrack track : this.shapeTracks.values()) {
+            lastFrame = Math.max(lastFrame, track.getLastFrame());
+        }
+        for(KeyframeTrack track : this.lightTracks.values()) {
+            lastFrame = Math.max(lastFrame, track.getLastFrame());
+        }
+        return lastFrame + 1;
+    }
+    public boolean isEmpty() {
+        return this.shapeTracks.isEmpty() && this.lightTracks.isEmpty() && this.cameraTrack == null;
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the modelling transformation of a shape animated
+       by the given track at the given frame, with the transformations performed
+       in the order of the parameters of the track (the first one first), as
+       in SceneDescriptionParser.
+     */
+    public static Matrix4D transformationAt(KeyframeTrack track, int frame) {
+        double[][] values = track.valuesAt(frame);
+        Matrix4D modelTransformation = Matrix4D.identity;
+        /// start from the back and multiply matrices from the right side, so the first transform is performed first
+        for(int i = values.length - 1; i >= 0; i--) {
+            Matrix4D matrixRepresentation = switch (track.getParameterNames().get(i)) {
+                case "scale" -> Matrix4D.getScalingMatrix(Animation.toVector3D(values[i]));
+                case "rotateX" -> Matrix4D.getRotationMatrixAboutX(values[i][0]);
+                case "rotateY" -> Matrix4D.getRotationMatrixAboutY(values[i][0]);
+                case "rotateZ" -> Matrix4D.getRotationMatrixAboutZ(values[i][0]);
+                case "translate" -> Matrix4D.getTranslationMatrix(Animation.toVector3D(values[i]));
+                default -> throw new IllegalArgumentException("Unknown transformation '" + track.getParameterNames().get(i) + "'.");
+            };
+            modelTransformation = modelTransformation.multiplyFromRight(matrixRepresentation);
+        }
+        return modelTransformation;
+    }
+    /*
+       Method that returns a copy of the given point or sphere light with the
+       parameters given by the track at the given frame, and the others (and
+       the radius and maximum number of shadow rays of a sphere light) kept.
+     */
+    public static PointLight lightAt(PointLight light, KeyframeTrack track, int frame) {
+        double[][] values = track.valuesAt(frame);
+        int positionIndex = track.indexOf("position"), colorIndex = track.indexOf("color"), intensityIndex = track.indexOf("intensity");
+
+        Vector3D position = positionIndex < 0 ? light.getPosition() : Animation.toVector3D(values[positionIndex]);
+        RTColor color = colorIndex < 0 ? light.getColor()
+                : new RTColor(values[colorIndex][0] / 255.0, values[colorIndex][1] / 255.0, values[colorIndex][2] / 255.0);
+        double intensity = intensityIndex < 0 ? light.getIntensity() : values[intensityIndex][0];
+
+        if(light instanceof SphereLight sphereLight) {
+            return new SphereLight(position, color, intensity, sphereLight.getRadius(), sphereLight.getMaximumNumberOfShadowRays());
+        }
+        return new PointLight(position, color, intensity);
+    }
+    /*
+       Methods that check that the given track can animate a shape, a light
+       or the camera (see 'withShapeTrack' etc.), and throw an
+       IllegalArgumentException otherwise.
+     */
+    public static void checkShapeTrack(KeyframeTrack track) {
+        Animation.checkParameters(track, Animation.shapeParameters, "shape");
+    }
+    public static void checkLightTrack(KeyframeTrack track) {
+        Animation.checkParameters(track, Animation.lightParameters, "light");
+    }
+    public static void checkCameraTrack(KeyframeTrack track) {
+        Animation.checkParameters(track, Animation.cameraParameters, "camera");
+        if(track.indexOf("position") < 0 || track.indexOf("look-at") < 0) {
+            throw new IllegalArgumentException("Camera keyframes must give both 'position' and 'look-at'.");
+        }
+    }
+    /*
+       Method that checks that the given track has keyframes, and only
+       parameters of the given names with the given numbers of components.
+     */
+    private static void checkParameters(KeyframeTrack track, Map<String, Integer> parameters, String element) {
+        if(track.getNumberOfKeyframes() == 0) {
+            throw new IllegalArgumentException("Animation of a " + element + " has no keyframes.");
+        }
+        double[][] values = track.valuesAt(track.getFirstFrame());
+        for(int i = 0; i < values.length; i++) {
+            String name = track.getParameterNames().get(i);
+            if(!parameters.containsKey(name)) {
+                throw new IllegalArgumentException("'" + name + "' can not be animated in a " + element + ", expected one of " + parameters.keySet() + ".");
+            }
+            if(values[i].length != parameters.get(name)) {
+                throw new IllegalArgumentException("Animated '" + name + "' of a " + element + " must have " + parameters.get(name) + " components, got " + Arrays.toString(values[i]) + ".");
+            }
+        }
+    }
+    private static Vector3D toVector3D(double[] values) {
+        return new Vector3D(values[0], values[1], values[2]);
+    }
+
+    /**
+     * Getters
+     */
+    public Map<Integer, KeyframeTrack> getShapeTracks() {
+        return Map.copyOf(this.shapeTracks);
+    }
+    public Map<Integer, KeyframeTrack> getLightTracks() {
+        return Map.copyOf(this.lightTracks);
+    }
+    public KeyframeTrack getCameraTrack() {
+        return this.cameraTrack;
+    }
+}
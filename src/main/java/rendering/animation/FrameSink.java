@@ -0,0 +1,21 @@
+package rendering.animation;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Interface for the destination of the frames rendered by the
+ * SequenceRenderer, e.g. a sequence of image files (ImageFileSink)
+ * or a stream of images piped to a video encoder (PPMStreamSink).
+ *
+ * Frames are passed to the sink as soon as they are rendered, in
+ * order, so a sequence never has to be held in memory. 'close' is
+ * called once after the last frame, also if rendering failed.
+ */
+
+public interface FrameSink extends AutoCloseable {
+    void accept(int frame, BufferedImage image) throws IOException;
+
+    @Override
+    default void close() throws IOException {}
+}
@@ -0,0 +1,60 @@
+package rendering.animation;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.IllegalFormatException;
+
+/**
+ * Class for a frame sink that writes every frame to its own image
+ * file, whose path is given by a pattern containing the frame number
+ * as a format specifier (e.g. "frames/frame%04d.png" for frame0000.png,
+ * frame0001.png, ...), in the format given by the extension of the
+ * pattern (png if it has none). Missing directories are created.
+ */
+
+public class ImageFileSink implements FrameSink {
+    private final String pathPattern;
+    private final String format;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the path pattern, which throws an IllegalArgumentException
+       if it does not give different paths to different frames.
+     */
+    public ImageFileSink(String pathPattern) {
+        try {
+            if(String.format(pathPattern, 0).equals(String.format(pathPattern, 1))) {
+                throw new IllegalArgumentException("Output pattern '" + pathPattern + "' must contain the frame number, e.g. as %04d.");
+            }
+        }
+        catch (IllegalFormatException e) {
+            throw new IllegalArgumentException("Output pattern '" + pathPattern + "' is not a valid format for the frame number: " + e.getMessage());
+        }
+        this.pathPattern = pathPattern;
+
+        String name = new File(pathPattern).getName();
+        this.format = name.contains(".") ? name.substring(name.lastIndexOf('.') + 1).toLowerCase() : "png";
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    public void accept(int frame, BufferedImage image) throws IOException {
+        File outputFile = new File(this.getPath(frame));
+        File parent = outputFile.getAbsoluteFile().getParentFile();
+        if(parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Could not create directory '" + parent + "'.");
+        }
+        if(!ImageIO.write(image, this.format, outputFile)) {
+            throw new IOException("No image writer for format '" + this.format + "'.");
+        }
+    }
+    public String getPath(int frame) {
+        return String.format(this.pathPattern, frame);
+    }
+}
@@ -0,0 +1,161 @@
+package rendering.animation;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class for the keyframes of a single animated element of a scene
+ * (a shape, a light or the camera), i.e. the values of a list of named
+ * parameters (e.g. "rotateY" and "translate", or "position") at a few
+ * frames of the animation.
+ *
+ * Every parameter has one or more components (e.g. 1 for an angle,
+ * 3 for a vector), and every keyframe gives all parameters, with the
+ * same numbers of components. Between two keyframes, every component
+ * is interpolated linearly, and before the first keyframe or after the
+ * last one the values of that keyframe are held.
+ *
+ * Tracks are immutable, keyframes are added to copies of a
+ * track with 'withKeyframe', in the order of their frames.
+ */
+
+public class KeyframeTrack {
+    private final String[] parameterNames;
+    /// frames of the keyframes, strictly increasing
+    private final int[] frames;
+    /// values of the parameters at each keyframe, indexed by keyframe and then parameter
+    private final double[][][] values;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor of a track without keyframes for the given parameters,
+       which must be distinct.
+     */
+    public KeyframeTrack(List<String> parameterNames) {
+        if(parameterNames.isEmpty()) {
+            throw new IllegalArgumentException("Keyframes must have at least one parameter.");
+        }
+        if(parameterNames.stream().distinct().count() != parameterNames.size()) {
+            throw new IllegalArgumentException("Parameters of keyframes must be distinct, got " + parameterNames + ".");
+        }
+        this.parameterNames = parameterNames.toArray(new String[0]);
+        this.frames = new int[0];
+        this.values = new double[0][][];
+    }
+    private KeyframeTrack(String[] parameterNames, int[] frames, double[][][] values) {
+        this.parameterNames = parameterNames;
+        this.frames = frames;
+        this.values = values;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that returns a copy of this track with a keyframe added at the
+       given frame, which must be after the last keyframe, with the given values
+       of the parameters, in the order of 'getParameterNames'.
+
+       Throws an IllegalArgumentException if the frame is negative or not after
+       the last keyframe, a parameter is missing, or it has a different number
+       of components than in the previous keyframes.
+     */
+    public KeyframeTrack withKeyframe(int frame, double[]... parameterValues) {
+        if(frame < 0) {
+            throw new IllegalArgumentException("Frame of a keyframe must not be negative, got " + frame + ".");
+        }
+        if(this.frames.length > 0 && frame <= this.frames[this.frames.length - 1]) {
+            throw new IllegalArgumentException("Keyframes must be in increasing order of frames, got frame " + frame + " after frame " + this.frames[this.frames.length - 1] + ".");
+        }
+        if(parameterValues.length != this.parameterNames.length) {
+            throw new IllegalArgumentException("Every keyframe must give the parameters " + Arrays.toString(this.parameterNames) + ".");
+        }
+        double[][] keyframeValues = new double[parameterValues.length][];
+        for(int i = 0; i < parameterValues.length; i++) {
+            if(this.values.length > 0 && parameterValues[i].length != this.values[0][i].length) {
+                throw new IllegalArgumentException("Parameter '" + this.parameterNames[i] + "' has a different number of components than in the previous keyframes.");
+            }
+            keyframeValues[i] = parameterValues[i].clone();
+        }
+
+        int[] frames = Arrays.copyOf(this.frames, this.frames.length + 1);
+        frames[this.frames.length] = frame;
+        double[][][] values = Arrays.copyOf(this.values, this.values.length + 1);
+        values[this.values.length] = keyframeValues;
+        return new KeyframeTrack(this.parameterNames, frames, values);
+    }
+    /*
+       Method that returns the values of the parameters at the given frame,
+       interpolated linearly between the keyframes around it, or those of
+       the first or last keyframe if the frame is before or after all of them.
+       The track must have at least one keyframe.
+     */
+    public double[][] valuesAt(int frame) {
+        if(this.frames.length == 0) {
+            throw new IllegalStateException("Track has no keyframes.");
+        }
+        /// index of the first keyframe after the frame
+        int next = 0;
+        while(next < this.frames.length && this.frames[next] <= frame) {
+            next++;
+        }
+        if(next == 0) {
+            return KeyframeTrack.copy(this.values[0]);
+        }
+        if(next == this.frames.length || this.frames[next - 1] == frame) {
+            return KeyframeTrack.copy(this.values[next - 1]);
+        }
+
+        double t = (double) (frame - this.frames[next - 1]) / (this.frames[next] - this.frames[next - 1]);
+        double[][] before = this.values[next - 1], after = this.values[next];
+        double[][] interpolated = new double[before.length][];
+        for(int i = 0; i < before.length; i++) {
+            interpolated[i] = new double[before[i].length];
+            for(int j = 0; j < before[i].length; j++) {
+                interpolated[i][j] = before[i][j] + t * (after[i][j] - before[i][j]);
+            }
+        }
+        return interpolated;
+    }
+    /*
+       Method that returns true iff the parameters have the same values at both
+       given frames, i.e. an element animated by this track does not change
+       from one of them to the other (e.g. it is at rest between two keyframes
+       with the same values, or both frames are after the last keyframe).
+     */
+    public boolean isUnchangedBetween(int frame, int otherFrame) {
+        return Arrays.deepEquals(this.valuesAt(frame), this.valuesAt(otherFrame));
+    }
+    /*
+       Method that returns the index of the parameter with the
+       given name, or -1 if the track has no such parameter.
+     */
+    public int indexOf(String parameterName) {
+        return Arrays.asList(this.parameterNames).indexOf(parameterName);
+    }
+    private static double[][] copy(double[][] values) {
+        double[][] copy = new double[values.length][];
+        for(int i = 0; i < values.length; i++) {
+            copy[i] = values[i].clone();
+        }
+        return copy;
+    }
+
+    /**
+     * Getters
+     */
+    public List<String> getParameterNames() {
+        return List.of(this.parameterNames);
+    }
+    public int getNumberOfKeyframes() {
+        return this.frames.length;
+    }
+    public int getFirstFrame() {
+        return this.frames[0];
+    }
+    public int getLastFrame() {
+        return this.frames[this.frames.length - 1];
+    }
+}
@@ -0,0 +1,54 @@
+package rendering.animation;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class for a frame sink that writes the frames, one after another,
+ * as binary PPM images (P6) to an output stream, e.g. the standard
+ * output piped into a video encoder:
+ *
+ *      ... | ffmpeg -f image2pipe -c:v ppm -framerate 24 -i - video.mp4
+ *
+ * The stream is flushed after every frame, and not closed by the
+ * sink (only flushed), so the standard output can be used.
+ */
+
+public class PPMStreamSink implements FrameSink {
+    private final OutputStream output;
+
+    /**
+     * Constructors
+     */
+    public PPMStreamSink(OutputStream output) {
+        this.output = new BufferedOutputStream(output, 1 << 16);
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    public void accept(int frame, BufferedImage image) throws IOException {
+        int width = image.getWidth(), height = image.getHeight();
+        this.output.write(("P6\n" + width + " " + height + "\n255\n").getBytes());
+
+        int[] row = new int[width];
+        byte[] bytes = new byte[3 * width];
+        for(int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for(int x = 0; x < width; x++) {
+                bytes[3*x] = (byte) (row[x] >> 16);
+                bytes[3*x+1] = (byte) (row[x] >> 8);
+                bytes[3*x+2] = (byte) row[x];
+            }
+            this.output.write(bytes);
+        }
+        this.output.flush();
+    }
+    @Override
+    public void close() throws IOException {
+        this.output.flush();
+    }
+}
@@ -0,0 +1,65 @@
+package rendering.animation;
+
+import rendering.Camera;
+import rendering.tracing.Scene;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Class for rendering the frames of an animation of a scene, one
+ * after another, into a frame sink (see FrameSink).
+ *
+ * The scene is loaded and built once, and brought from one frame to
+ * the next in place (see Animation.applyFrame), so only the shapes and
+ * lights that move between two frames are replaced, the hierarchy of
+ * the scene is only refitted above them, and the meshes (with their
+ * own hierarchies) of all shapes are shared by all frames. Each frame
+ * is rendered on all CPU cores, as a single image, and handed to the
+ * sink as soon as it is done.
+ */
+
+public class SequenceRenderer {
+    private final Camera camera;
+    private final Animation animation;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the camera to render with (posed at every frame
+       if the animation animates the camera) and the animation.
+     */
+    public SequenceRenderer(Camera camera, Animation animation) {
+        this.camera = camera;
+        this.animation = animation;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that renders the frames from 'firstFrame' to 'lastFrame'
+       (inclusive) of the animation of the given scene, which is modified in
+       place (and left at the last frame), passes them to the given sink in
+       order, and closes the sink.
+
+       Throws an IllegalArgumentException if the range of frames is empty
+       or starts before frame 0, and passes up the exceptions of the sink.
+     */
+    public void render(Scene scene, int firstFrame, int lastFrame, FrameSink sink) throws IOException {
+        if(firstFrame < 0 || lastFrame < firstFrame) {
+            throw new IllegalArgumentException("Invalid range of frames " + firstFrame + "-" + lastFrame + ".");
+        }
+        try(sink) {
+            int previousFrame = -1;
+            for(int frame = firstFrame; frame <= lastFrame; frame++) {
+                this.animation.applyFrame(scene, frame, previousFrame);
+                previousFrame = frame;
+
+                BufferedImage image = this.animation.cameraAt(this.camera, frame).renderWithCPUCoreParallelization(scene, null);
+                sink.accept(frame, image);
+            }
+        }
+    }
+}
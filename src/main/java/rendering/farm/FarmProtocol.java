@@ -0,0 +1,130 @@
+package rendering.farm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Class for the messages exchanged by the coordinator and the workers
+ * of a render farm (see RenderFarmCoordinator and RenderFarmWorker).
+ *
+ * Every message is a ByteBuffer (in big-endian byte order) holding the
+ * length of the rest of the message (an int), the type of the message
+ * (a byte), and its payload:
+ *
+ *      hello   (worker)        magic number, protocol version
+ *      setup   (coordinator)   render id, scene path, camera settings (see Camera.writeSettings)
+ *      request (worker)        render id
+ *      tile    (coordinator)   render id, tile index, x, y, width, height
+ *      result  (worker)        render id, tile index, RGB values of the pixels of the tile, row by row
+ *      failure (worker)        render id, error message
+ *
+ * Strings are written as their length in bytes followed by their UTF-8
+ * bytes. A worker pulls tiles by sending a request for each tile it can
+ * take, and the coordinator answers every request of the current render
+ * with a tile, as long as there are tiles left.
+ */
+
+public final class FarmProtocol {
+    public static final int magic = 0x52544641;
+    public static final int version = 1;
+
+    public static final byte hello = 1;
+    public static final byte setup = 2;
+    public static final byte request = 3;
+    public static final byte tile = 4;
+    public static final byte result = 5;
+    public static final byte failure = 6;
+
+    /// longest message accepted, so a corrupted length can not exhaust the memory
+    public static final int maximumMessageLength = 1 << 28;
+
+    /**
+     * Constructors
+     */
+    private FarmProtocol() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that allocates a message of the given type with room for a
+       payload of the given length, with its header already written, so the
+       payload can be put right away. The message is sent once it is full
+       and flipped.
+     */
+    public static ByteBuffer createMessage(byte type, int payloadLength) {
+        ByteBuffer message = ByteBuffer.allocate(5 + payloadLength);
+        message.putInt(1 + payloadLength);
+        message.put(type);
+        return message;
+    }
+    public static int stringLength(String s) {
+        return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+    }
+    public static void putString(ByteBuffer buffer, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+    public static String getString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if(length < 0 || length > buffer.remaining()) {
+            throw new IOException("Corrupted render farm message: invalid string length.");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    /*
+       Method that checks the length of a message read from its header, and
+       throws an IOException if it is not the length of a valid message.
+     */
+    public static int checkLength(int length) throws IOException {
+        if(length < 1 || length > FarmProtocol.maximumMessageLength) {
+            throw new IOException("Corrupted render farm message: invalid length " + length + ".");
+        }
+        return length;
+    }
+    /*
+       Method that reads the next message from the given blocking channel,
+       and returns it (from its type on, ready to be read), or returns null
+       if the channel was closed between two messages.
+     */
+    public static ByteBuffer readMessage(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if(!FarmProtocol.readFully(channel, header)) {
+            return null;
+        }
+        ByteBuffer message = ByteBuffer.allocate(FarmProtocol.checkLength(header.flip().getInt()));
+        if(!FarmProtocol.readFully(channel, message)) {
+            throw new EOFException("Render farm connection closed in the middle of a message.");
+        }
+        return message.flip();
+    }
+    /*
+       Method that writes the whole message (flipped) to the given blocking channel.
+     */
+    public static void writeMessage(SocketChannel channel, ByteBuffer message) throws IOException {
+        while(message.hasRemaining()) {
+            channel.write(message);
+        }
+    }
+    /*
+       Method that fills the given buffer from the given blocking channel, and
+       returns false if the channel was closed before anything was read.
+     */
+    private static boolean readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while(buffer.hasRemaining()) {
+            if(channel.read(buffer) < 0) {
+                if(buffer.position() == 0) {
+                    return false;
+                }
+                throw new EOFException("Render farm connection closed in the middle of a message.");
+            }
+        }
+        return true;
+    }
+}
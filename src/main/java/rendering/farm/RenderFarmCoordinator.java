@@ -0,0 +1,446 @@
+package rendering.farm;
+
+import rendering.Camera;
+import rendering.scheduling.Tile;
+import rendering.scheduling.TileScheduler;
+
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.function.Consumer;
+
+/**
+ * Class for the coordinator of a render farm, which renders images by
+ * handing out their tiles to worker processes (see RenderFarmWorker)
+ * connected to it over TCP, and assembling the rendered tiles into the
+ * image (see FarmProtocol for the messages).
+ *
+ * Workers may connect (and disconnect) at any time, also in the middle
+ * of a render: every worker connected when a render starts, or connecting
+ * during it, is sent the scene path and the camera settings, and then
+ * pulls tiles until there are none left. The tiles of a worker that
+ * disconnects or fails are handed out again to the other workers.
+ *
+ * All connections are served by the thread calling 'render', with
+ * non-blocking channels and a selector, so a worker waiting for a tile
+ * never holds up the others. Between renders, workers stay connected,
+ * and keep the scene they loaded last (e.g. for the next frame rendered
+ * with another camera).
+ */
+
+public class RenderFarmCoordinator implements Closeable {
+    public static final long defaultTimeoutMillis = 5 * 60 * 1000;
+
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    /// longest time a render waits for the next tile, before it fails
+    private final long timeoutMillis;
+    private final HashSet<WorkerConnection> workers = new HashSet<>();
+
+    /// the render in progress, if any
+    private long renderId = 0;
+    private ByteBuffer setupMessage = null;
+    private ArrayList<Tile> tiles = null;
+    private ArrayDeque<Integer> queuedTiles = null;
+    private boolean[] finishedTiles = null;
+    private int numberOfFinishedTiles = 0;
+    private BufferedImage image = null;
+    private String lastFailure = null;
+
+    /**
+     * Constructors
+     */
+    public RenderFarmCoordinator(int port) throws IOException {
+        this(port, RenderFarmCoordinator.defaultTimeoutMillis);
+    }
+    /*
+       Constructor that listens for workers on the given port (any free
+       port if it is 0, see getPort) of all addresses of this host.
+     */
+    public RenderFarmCoordinator(int port, long timeoutMillis) throws IOException {
+        if(port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Port must be between 0 and 65535.");
+        }
+        if(timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Timeout must be positive.");
+        }
+        this.timeoutMillis = timeoutMillis;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        try {
+            this.serverChannel.bind(new InetSocketAddress(port));
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.register(this.selector, SelectionKey.OP_ACCEPT);
+        }
+        catch (IOException e) {
+            this.serverChannel.close();
+            this.selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that renders the scene at the given path (which the workers
+       must be able to read) with the given camera on the workers, and
+       returns the image, once all of its tiles are rendered. It throws an
+       IOException if no tile is rendered for longer than the timeout (e.g.
+       because no worker is connected, or all of them failed).
+     */
+    public BufferedImage render(String scenePath, Camera camera, Consumer<Double> progressUpdaterConsumer) throws IOException {
+        int width = camera.getScreenPlaneWidthInPixels();
+        int height = camera.getScreenPlaneHeightInPixels();
+
+        this.renderId++;
+        this.setupMessage = FarmProtocol.createMessage(FarmProtocol.setup, 8 + FarmProtocol.stringLength(scenePath) + Camera.settingsSizeInBytes);
+        this.setupMessage.putLong(this.renderId);
+        FarmProtocol.putString(this.setupMessage, scenePath);
+        camera.writeSettings(this.setupMessage);
+        this.setupMessage.flip();
+        this.tiles = new TileScheduler(camera.getTileSize(), 1).createTiles(width, height);
+        this.queuedTiles = new ArrayDeque<>();
+        for(int i = 0; i < this.tiles.size(); i++) {
+            this.queuedTiles.add(i);
+        }
+        this.finishedTiles = new boolean[this.tiles.size()];
+        this.numberOfFinishedTiles = 0;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        this.lastFailure = null;
+
+        try {
+            for(WorkerConnection worker : new ArrayList<>(this.workers)) {
+                if(worker.isGreeted()) {
+                    this.startRender(worker);
+                }
+            }
+            long lastProgressTime = System.currentTimeMillis();
+            while(this.numberOfFinishedTiles < this.tiles.size()) {
+                long waitingTime = this.timeoutMillis - (System.currentTimeMillis() - lastProgressTime);
+                if(waitingTime <= 0) {
+                    throw new IOException("No tile was rendered by the render farm for " + this.timeoutMillis / 1000.0 + " s (" +
+                            this.workers.size() + " workers connected" + (this.lastFailure == null ? "" : ", last failure: " + this.lastFailure) + ").");
+                }
+                this.selector.select(waitingTime);
+                int finishedBefore = this.numberOfFinishedTiles;
+                for(SelectionKey key : this.selector.selectedKeys()) {
+                    this.handle(key);
+                }
+                this.selector.selectedKeys().clear();
+                if(this.numberOfFinishedTiles > finishedBefore) {
+                    lastProgressTime = System.currentTimeMillis();
+                    if(progressUpdaterConsumer != null) {
+                        progressUpdaterConsumer.accept((double) this.numberOfFinishedTiles / this.tiles.size());
+                    }
+                }
+            }
+            return this.image;
+        }
+        finally {
+            this.setupMessage = null;
+            this.tiles = null;
+            this.queuedTiles = null;
+            this.finishedTiles = null;
+            this.image = null;
+            for(WorkerConnection worker : this.workers) {
+                worker.startRender();
+            }
+        }
+    }
+    /*
+       Method that closes the connections to all workers (which makes
+       them stop), and stops listening for new ones.
+     */
+    @Override
+    public void close() throws IOException {
+        for(WorkerConnection worker : this.workers) {
+            worker.getChannel().close();
+        }
+        this.workers.clear();
+        this.selector.close();
+        this.serverChannel.close();
+    }
+    private void handle(SelectionKey key) throws IOException {
+        if(!key.isValid()) {
+            return;
+        }
+        if(key.isAcceptable()) {
+            SocketChannel channel = this.serverChannel.accept();
+            if(channel != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                WorkerConnection worker = new WorkerConnection(channel);
+                worker.setKey(channel.register(this.selector, SelectionKey.OP_READ, worker));
+                this.workers.add(worker);
+            }
+            return;
+        }
+        WorkerConnection worker = (WorkerConnection) key.attachment();
+        try {
+            if(key.isWritable()) {
+                worker.flush();
+            }
+            if(key.isReadable()) {
+                ByteBuffer message;
+                while(this.workers.contains(worker) && (message = worker.readMessage()) != null) {
+                    this.handleMessage(worker, message);
+                }
+            }
+        }
+        catch (IOException | BufferUnderflowException e) {
+            /// the worker is gone, or does not follow the protocol
+            this.dropWorker(worker);
+        }
+    }
+    private void handleMessage(WorkerConnection worker, ByteBuffer message) throws IOException {
+        byte type = message.get();
+        if(type == FarmProtocol.hello) {
+            if(message.getInt() != FarmProtocol.magic || message.getInt() != FarmProtocol.version) {
+                throw new IOException("Worker speaks another protocol.");
+            }
+            worker.setGreeted();
+            if(this.setupMessage != null) {
+                this.startRender(worker);
+            }
+            return;
+        }
+        if(!worker.isGreeted()) {
+            throw new IOException("Worker did not introduce itself.");
+        }
+        long messageRenderId = message.getLong();
+        boolean current = this.tiles != null && messageRenderId == this.renderId;
+        if(type == FarmProtocol.request) {
+            if(current) {
+                worker.addRequest();
+                this.assignTiles(worker);
+            }
+        }
+        else if(type == FarmProtocol.result) {
+            int tileIndex = message.getInt();
+            if(!current) {
+                return;
+            }
+            if(!worker.getAssignedTiles().remove(tileIndex)) {
+                throw new IOException("Worker sent a tile it was not assigned.");
+            }
+            Tile tile = this.tiles.get(tileIndex);
+            if(message.remaining() != 4 * tile.getNumberOfPixels()) {
+                throw new IOException("Worker sent a tile of the wrong size.");
+            }
+            int[] pixels = new int[tile.getNumberOfPixels()];
+            message.asIntBuffer().get(pixels);
+            if(!this.finishedTiles[tileIndex]) {
+                this.image.setRGB(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), pixels, 0, tile.getWidth());
+                this.finishedTiles[tileIndex] = true;
+                this.numberOfFinishedTiles++;
+            }
+        }
+        else if(type == FarmProtocol.failure) {
+            String errorMessage = FarmProtocol.getString(message);
+            if(current) {
+                this.lastFailure = errorMessage;
+                System.err.println("Render farm worker " + worker + " failed: " + errorMessage);
+                this.dropWorker(worker);
+            }
+        }
+        else {
+            throw new IOException("Unexpected render farm message of type " + type + ".");
+        }
+    }
+    /*
+       Method that sends the setup of the current render to the given worker.
+     */
+    private void startRender(WorkerConnection worker) throws IOException {
+        worker.startRender();
+        try {
+            worker.send(this.setupMessage.duplicate());
+        }
+        catch (IOException e) {
+            this.dropWorker(worker);
+        }
+    }
+    /*
+       Method that answers the open requests of the given worker
+       with queued tiles, as long as there are any.
+     */
+    private void assignTiles(WorkerConnection worker) throws IOException {
+        while(worker.getNumberOfRequests() > 0 && !this.queuedTiles.isEmpty()) {
+            int tileIndex = this.queuedTiles.poll();
+            if(this.finishedTiles[tileIndex]) {
+                continue;
+            }
+            Tile tile = this.tiles.get(tileIndex);
+            ByteBuffer tileMessage = FarmProtocol.createMessage(FarmProtocol.tile, 8 + 5 * 4);
+            tileMessage.putLong(this.renderId).putInt(tileIndex);
+            tileMessage.putInt(tile.getX()).putInt(tile.getY()).putInt(tile.getWidth()).putInt(tile.getHeight());
+            worker.removeRequest();
+            worker.getAssignedTiles().add(tileIndex);
+            worker.send(tileMessage.flip());
+        }
+    }
+    /*
+       Method that disconnects the given worker, and hands out
+       the tiles assigned to it again to the other workers.
+     */
+    private void dropWorker(WorkerConnection worker) throws IOException {
+        if(!this.workers.remove(worker)) {
+            return;
+        }
+        worker.getChannel().close();
+        if(this.tiles == null) {
+            return;
+        }
+        for(int tileIndex : worker.getAssignedTiles()) {
+            if(!this.finishedTiles[tileIndex]) {
+                this.queuedTiles.addFirst(tileIndex);
+            }
+        }
+        for(WorkerConnection otherWorker : new ArrayList<>(this.workers)) {
+            if(this.workers.contains(otherWorker)) {
+                try {
+                    this.assignTiles(otherWorker);
+                }
+                catch (IOException e) {
+                    this.dropWorker(otherWorker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Getters
+     */
+    /*
+       Method that returns the port the coordinator listens on for workers.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.serverChannel.getLocalAddress()).getPort();
+    }
+    public int getNumberOfWorkers() {
+        return this.workers.size();
+    }
+
+    /**
+     * Class for the connection to a worker, with the messages that are
+     * being read from and written to it, and the state of the worker in
+     * the current render.
+     */
+    private static class WorkerConnection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private boolean greeted = false;
+
+        /// the message being read, starting with its length
+        private ByteBuffer input = ByteBuffer.allocate(64);
+        private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+
+        /// open requests for tiles, and the tiles assigned but not yet rendered, in the current render
+        private int numberOfRequests = 0;
+        private final HashSet<Integer> assignedTiles = new HashSet<>();
+
+        WorkerConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /*
+           Method that reads from the channel, and returns the next complete
+           message (from its type on), or null if there is none yet.
+         */
+        ByteBuffer readMessage() throws IOException {
+            if(this.channel.read(this.input) < 0) {
+                throw new IOException("Worker disconnected.");
+            }
+            if(this.input.position() < 4) {
+                return null;
+            }
+            int length = FarmProtocol.checkLength(this.input.getInt(0));
+            if(this.input.capacity() < 4 + length) {
+                ByteBuffer largerInput = ByteBuffer.allocate(4 + length);
+                largerInput.put(this.input.flip());
+                this.input = largerInput;
+                this.channel.read(this.input);
+            }
+            if(this.input.position() < 4 + length) {
+                return null;
+            }
+            this.input.flip();
+            ByteBuffer message = ByteBuffer.allocate(length);
+            message.put(this.input.position(4).slice().limit(length));
+            this.input.position(4 + length);
+            this.input.compact();
+            return message.flip();
+        }
+        /*
+           Method that queues the given (flipped) message, and writes
+           as much of the queued messages as the channel takes now.
+         */
+        void send(ByteBuffer message) throws IOException {
+            this.output.add(message);
+            this.flush();
+        }
+        void flush() throws IOException {
+            while(!this.output.isEmpty()) {
+                ByteBuffer message = this.output.peek();
+                this.channel.write(message);
+                if(message.hasRemaining()) {
+                    break;
+                }
+                this.output.poll();
+            }
+            if(this.key.isValid()) {
+                this.key.interestOps(this.output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            }
+        }
+        void startRender() {
+            this.numberOfRequests = 0;
+            this.assignedTiles.clear();
+        }
+        void addRequest() {
+            this.numberOfRequests++;
+        }
+        void removeRequest() {
+            this.numberOfRequests--;
+        }
+
+        void setKey(SelectionKey key) {
+            this.key = key;
+        }
+        void setGreeted() {
+            this.greeted = true;
+        }
+        SocketChannel getChannel() {
+            return this.channel;
+        }
+        boolean isGreeted() {
+            return this.greeted;
+        }
+        int getNumberOfRequests() {
+            return this.numberOfRequests;
+        }
+        HashSet<Integer> getAssignedTiles() {
+            return this.assignedTiles;
+        }
+
+        @Override
+        public String toString() {
+            try {
+                return String.valueOf(this.channel.getRemoteAddress());
+            }
+            catch (IOException e) {
+                return "(disconnected)";
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package rendering.farm;
+
+import rendering.Camera;
+import rendering.scheduling.Tile;
+import rendering.scheduling.TileScheduler;
+import rendering.tracing.Scene;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Class for a worker of a render farm, i.e. a process (on the same
+ * host as the coordinator, or on another one) that connects to a
+ * RenderFarmCoordinator, and renders the tiles of the images that the
+ * coordinator hands out to it (see FarmProtocol).
+ *
+ * For every render, the worker loads the scene from the path given by
+ * the coordinator (which must be readable by the worker, e.g. on shared
+ * storage), unless it is the scene (and file) it already has, so a scene
+ * rendered many times (e.g. with different cameras) is only loaded once.
+ * It then keeps one more tile requested than it has rendering threads, so
+ * that every thread starts on its next tile as soon as it finishes one,
+ * without waiting for the coordinator. Every tile is rendered on a single
+ * thread (see Camera.renderTile).
+ *
+ * If the scene can not be loaded, or a tile can not be rendered, the
+ * worker reports the failure to the coordinator, which then drops it,
+ * i.e. closes the connection, so that 'run' fails with that failure.
+ */
+
+public class RenderFarmWorker {
+    private final int numberOfThreads;
+
+    /// the scene loaded last, with the path and modification time of its file
+    private Scene scene = null;
+    private String scenePath = null;
+    private long sceneLastModified = 0;
+    /// the failure reported to the coordinator last, null if there was none
+    private volatile String reportedFailure = null;
+
+    /**
+     * Constructors
+     */
+    public RenderFarmWorker(int numberOfThreads) {
+        if(numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        }
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that connects to the coordinator at the given address, and
+       renders tiles for it until it closes the connection (e.g. when it
+       is closed itself, see RenderFarmCoordinator.close), and returns then.
+
+       Throws IOException if the connection fails, or if the coordinator
+       closed it after the worker reported a failure (i.e. dropped it).
+     */
+    public void run(InetSocketAddress coordinatorAddress) throws IOException {
+        this.reportedFailure = null;
+        ExecutorService pool = Executors.newFixedThreadPool(this.numberOfThreads);
+        try(SocketChannel channel = SocketChannel.open(coordinatorAddress)) {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            ByteBuffer helloMessage = FarmProtocol.createMessage(FarmProtocol.hello, 8);
+            helloMessage.putInt(FarmProtocol.magic).putInt(FarmProtocol.version);
+            FarmProtocol.writeMessage(channel, helloMessage.flip());
+
+            long renderId = -1;
+            Camera camera = null;
+            ByteBuffer message;
+            while((message = FarmProtocol.readMessage(channel)) != null) {
+                byte type = message.get();
+                if(type == FarmProtocol.setup) {
+                    /// the coordinator still uses this worker, so failures reported before did not drop it
+                    this.reportedFailure = null;
+                    renderId = message.getLong();
+                    String scenePath = FarmProtocol.getString(message);
+                    try {
+                        camera = Camera.readSettings(message, TileScheduler.defaultTileSize, 1);
+                        this.loadScene(scenePath);
+                    }
+                    catch (Exception e) {
+                        this.sendFailure(channel, renderId, "Worker failed to load scene '" + scenePath + "': " + e);
+                        continue;
+                    }
+                    for(int i = 0; i <= this.numberOfThreads; i++) {
+                        RenderFarmWorker.sendRequest(channel, renderId);
+                    }
+                }
+                else if(type == FarmProtocol.tile) {
+                    long tileRenderId = message.getLong();
+                    int tileIndex = message.getInt();
+                    Tile tile = new Tile(message.getInt(), message.getInt(), message.getInt(), message.getInt());
+                    if(tileRenderId != renderId || camera == null) {
+                        continue;
+                    }
+                    Camera tileCamera = camera;
+                    Scene tileScene = this.scene;
+                    pool.execute(() -> this.renderTile(channel, tileRenderId, tileIndex, tile, tileCamera, tileScene));
+                }
+                else {
+                    throw new IOException("Unexpected render farm message of type " + type + ".");
+                }
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        if(this.reportedFailure != null) {
+            throw new IOException("Coordinator dropped the worker after its failure: " + this.reportedFailure);
+        }
+    }
+    /*
+       Method that loads the scene at the given path, unless the
+       scene loaded last is from the same, unmodified, file.
+     */
+    private void loadScene(String scenePath) throws Exception {
+        long lastModified = new File(scenePath).lastModified();
+        if(scenePath.equals(this.scenePath) && lastModified == this.sceneLastModified && this.scene != null) {
+            return;
+        }
+        this.scene = null;
+        this.scene = Scene.load(scenePath);
+        this.scenePath = scenePath;
+        this.sceneLastModified = lastModified;
+    }
+    /*
+       Method that renders a tile, and sends its pixels and a request for
+       another tile to the coordinator (or the failure, if rendering fails
+       in any way, e.g. runs out of memory, so that the coordinator hands
+       the tile to another worker). Messages are sent by many rendering
+       threads, one whole message at a time.
+     */
+    private void renderTile(SocketChannel channel, long renderId, int tileIndex, Tile tile, Camera camera, Scene scene) {
+        try {
+            int[] pixels;
+            try {
+                pixels = camera.renderTile(scene, tile);
+            }
+            catch (Throwable e) {
+                this.sendFailure(channel, renderId, "Worker failed to render a tile: " + e);
+                return;
+            }
+            ByteBuffer resultMessage = FarmProtocol.createMessage(FarmProtocol.result, 8 + 4 + 4 * pixels.length);
+            resultMessage.putLong(renderId).putInt(tileIndex);
+            resultMessage.asIntBuffer().put(pixels);
+            resultMessage.position(resultMessage.limit());
+            synchronized(channel) {
+                FarmProtocol.writeMessage(channel, resultMessage.flip());
+            }
+            RenderFarmWorker.sendRequest(channel, renderId);
+        }
+        catch (IOException e) {
+            /// the connection is gone, so the reading thread stops as well
+        }
+    }
+    /*
+       Method that reports a failure to the coordinator, and remembers
+       it, so that 'run' fails with it once the coordinator drops this
+       worker.
+     */
+    private void sendFailure(SocketChannel channel, long renderId, String errorMessage) throws IOException {
+        ByteBuffer failureMessage = FarmProtocol.createMessage(FarmProtocol.failure, 8 + FarmProtocol.stringLength(errorMessage));
+        failureMessage.putLong(renderId);
+        FarmProtocol.putString(failureMessage, errorMessage);
+        this.reportedFailure = errorMessage;
+        synchronized(channel) {
+            FarmProtocol.writeMessage(channel, failureMessage.flip());
+        }
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    private static void sendRequest(SocketChannel channel, long renderId) throws IOException {
+        ByteBuffer requestMessage = FarmProtocol.createMessage(FarmProtocol.request, 8);
+        requestMessage.putLong(renderId);
+        synchronized(channel) {
+            FarmProtocol.writeMessage(channel, requestMessage.flip());
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+}
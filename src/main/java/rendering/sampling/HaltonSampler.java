@@ -0,0 +1,78 @@
+package rendering.sampling;
+
+/**
+ * Class for a sampler based on the Halton sequence: the value
+ * of dimension d of sample s is the radical inverse of s in the
+ * base of the d-th prime number (2, 3, 5, ...), so the samples
+ * of a pixel fill every dimension (and low-dimensional projections)
+ * evenly, for any number of samples.
+ *
+ * All pixels would otherwise get the same points, so every
+ * dimension is shifted by a random amount per pixel, modulo 1
+ * (a Cranley-Patterson rotation), which keeps the points evenly
+ * spread. Dimensions beyond the table of primes reuse the primes
+ * from the start, with different shifts.
+ *
+ * The values are deterministic, given the seed.
+ */
+
+public class HaltonSampler extends Sampler {
+    /// number of primes, i.e. of distinct dimensions
+    private static final int numberOfPrimes = 256;
+    private static final int[] primes = HaltonSampler.firstPrimes(HaltonSampler.numberOfPrimes);
+
+    private final long seed;
+
+    /**
+     * Constructors
+     */
+    public HaltonSampler(int samplesPerPixel) {
+        this(samplesPerPixel, 0);
+    }
+    public HaltonSampler(int samplesPerPixel, long seed) {
+        super(samplesPerPixel);
+        this.seed = seed;
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    protected double sample(int dimension) {
+        double value = SamplingUtility.radicalInverse(HaltonSampler.primes[dimension % HaltonSampler.numberOfPrimes], this.sampleIndex);
+        double shift = SamplingUtility.toUnitInterval(SamplingUtility.hash(this.pixelX, this.pixelY, dimension, this.seed));
+        value += shift;
+        if(value >= 1) {
+            value -= 1;
+        }
+        return Math.min(value, SamplingUtility.oneMinusEpsilon);
+    }
+    @Override
+    public Sampler copy() {
+        return new HaltonSampler(this.samplesPerPixel, this.seed);
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the first n prime numbers.
+     */
+    private static int[] firstPrimes(int n) {
+        int[] primes = new int[n];
+        int count = 0;
+        for(int candidate = 2; count < n; candidate++) {
+            boolean isPrime = true;
+            for(int i = 0; i < count && primes[i] * primes[i] <= candidate; i++) {
+                if(candidate % primes[i] == 0) {
+                    isPrime = false;
+                    break;
+                }
+            }
+            if(isPrime) {
+                primes[count++] = candidate;
+            }
+        }
+        return primes;
+    }
+}
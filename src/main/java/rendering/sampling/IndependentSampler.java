@@ -0,0 +1,44 @@
+package rendering.sampling;
+
+/**
+ * Class for a sampler whose values are independent
+ * uniformly distributed random numbers, i.e. plain
+ * Monte Carlo sampling. It is the baseline the other
+ * samplers are compared to, and the sampler used when
+ * no other sampler is set.
+ *
+ * The values are not drawn from a shared generator, but
+ * computed from the pixel, sample index and dimension (see
+ * SamplingUtility.randomValue), so they are the same no
+ * matter which thread renders the pixel, or in what order.
+ */
+
+public class IndependentSampler extends Sampler {
+    private final long seed;
+
+    /**
+     * Constructors
+     */
+    public IndependentSampler() {
+        this(1);
+    }
+    public IndependentSampler(int samplesPerPixel) {
+        this(samplesPerPixel, 0);
+    }
+    public IndependentSampler(int samplesPerPixel, long seed) {
+        super(samplesPerPixel);
+        this.seed = seed;
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    protected double sample(int dimension) {
+        return SamplingUtility.randomValue(this.pixelX, this.pixelY, this.sampleIndex, dimension, this.seed);
+    }
+    @Override
+    public Sampler copy() {
+        return new IndependentSampler(this.samplesPerPixel, this.seed);
+    }
+}
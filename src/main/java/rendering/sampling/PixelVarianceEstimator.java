@@ -0,0 +1,89 @@
+package rendering.sampling;
+
+import rendering.utility.RTColor;
+
+/**
+ * Class for a running estimate of the mean and variance of
+ * the color values of the samples of a single pixel, used to
+ * decide when a pixel has converged and needs no more samples.
+ *
+ * The variance is computed per color channel using Welford's
+ * online algorithm (numerically stable, one pass, no storage
+ * of the samples), from sample values clipped to the 0.0 to
+ * 1.0 range (as in the final image), so a few very bright
+ * samples do not keep a pixel from converging.
+ *
+ * A pixel has converged once the standard error of its mean,
+ * i.e. sqrt(variance / number of samples), is at most a given
+ * threshold in every channel. The mean then changes by less
+ * than about the threshold with more samples.
+ *
+ * The estimator is mutable and not thread-safe.
+ */
+
+public class PixelVarianceEstimator {
+    private int numberOfSamples;
+    /// running means of the clipped red, green and blue values
+    private final double[] means = new double[3];
+    /// running sums of squared differences from the means
+    private final double[] squaredDifferenceSums = new double[3];
+
+    /**
+     * Methods
+     */
+    /*
+       Method that clears all samples.
+     */
+    public void reset() {
+        this.numberOfSamples = 0;
+        for(int c = 0; c < 3; c++) {
+            this.means[c] = 0;
+            this.squaredDifferenceSums[c] = 0;
+        }
+    }
+    /*
+       Method that adds the color value of a new sample.
+     */
+    public void addSample(RTColor color) {
+        this.numberOfSamples++;
+        this.addChannelValue(0, color.getRed());
+        this.addChannelValue(1, color.getGreen());
+        this.addChannelValue(2, color.getBlue());
+    }
+    private void addChannelValue(int channel, double value) {
+        double clippedValue = Math.min(Math.max(value, 0), 1);
+        double difference = clippedValue - this.means[channel];
+        this.means[channel] += difference / this.numberOfSamples;
+        this.squaredDifferenceSums[channel] += difference * (clippedValue - this.means[channel]);
+    }
+    /*
+       Method that returns the largest (over the three channels) standard
+       error of the mean of the samples, or positive infinity if there are
+       fewer than 2 samples.
+     */
+    public double getStandardError() {
+        if(this.numberOfSamples < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double maximumVariance = 0;
+        for(int c = 0; c < 3; c++) {
+            maximumVariance = Math.max(maximumVariance, this.squaredDifferenceSums[c] / (this.numberOfSamples - 1));
+        }
+        return Math.sqrt(maximumVariance / this.numberOfSamples);
+    }
+    /*
+       Method that returns true iff there are at least 'minimumNumberOfSamples'
+       samples, and the standard error of their mean is at most the given
+       threshold.
+     */
+    public boolean hasConverged(int minimumNumberOfSamples, double standardErrorThreshold) {
+        return this.numberOfSamples >= Math.max(minimumNumberOfSamples, 2) && this.getStandardError() <= standardErrorThreshold;
+    }
+
+    /**
+     * Getters
+     */
+    public int getNumberOfSamples() {
+        return this.numberOfSamples;
+    }
+}
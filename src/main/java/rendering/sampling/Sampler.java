@@ -0,0 +1,114 @@
+package rendering.sampling;
+
+/**
+ * Class for a sampler, which generates the real values in
+ * [0, 1) that all random decisions of rendering a single
+ * sample of a pixel are made from, e.g. the position of
+ * the ray in the pixel, or the points on sphere lights
+ * that shadow rays are cast to.
+ *
+ * Every sample of a pixel is a point in a space of many
+ * dimensions, whose coordinates are requested one after
+ * the other with 'next'. The first two dimensions are
+ * always the position in the pixel, and every shadow ray
+ * to a sphere light uses the next two dimensions. Samplers
+ * other than the IndependentSampler place the samples of a
+ * pixel so that they are spread out more evenly than random
+ * points in the dimensions that matter most, which gives
+ * less noise for the same number of samples.
+ *
+ * Samplers are mutable (they keep track of the current pixel,
+ * sample and dimension), so every thread needs its own. The
+ * renderer makes the sampler of the pixel being rendered
+ * available to the rest of the rendering code (e.g. lights)
+ * with 'setForCurrentThread'.
+ *
+ * The values of all samplers are functions of the pixel, the
+ * sample index and the dimension only (there is no generator
+ * shared between pixels), and the dimensions of a sample are
+ * requested in the order its path is traced, bounce by bounce.
+ * So every bounce of every sample gets the same values whatever
+ * the number of threads or the order the tiles are rendered in,
+ * and the rendered images are identical, bit for bit.
+ */
+
+public abstract class Sampler {
+    /// sampler of the pixel sample being rendered on each thread, an IndependentSampler if none is set
+    private static final ThreadLocal<Sampler> threadSampler = ThreadLocal.withInitial(IndependentSampler::new);
+
+    /// number of samples that every pixel will have (at most)
+    protected final int samplesPerPixel;
+    protected int pixelX;
+    protected int pixelY;
+    protected int sampleIndex;
+    /// index of the next dimension to generate
+    private int dimension;
+
+    /**
+     * Constructors
+     */
+    protected Sampler(int samplesPerPixel) {
+        if(samplesPerPixel <= 0) {
+            throw new IllegalArgumentException("Number of samples per pixel must be positive.");
+        }
+        this.samplesPerPixel = samplesPerPixel;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that starts generating the sample with the given index
+       (from 0) of the pixel (x,y), from its first dimension.
+     */
+    public void startPixelSample(int x, int y, int sampleIndex) {
+        this.pixelX = x;
+        this.pixelY = y;
+        this.sampleIndex = sampleIndex;
+        this.dimension = 0;
+    }
+    /*
+       Method that returns the value of the next dimension of the
+       current sample, in [0, 1).
+     */
+    public double next() {
+        return this.sample(this.dimension++);
+    }
+    /*
+       Method that returns the value of the given dimension
+       of the current sample, in [0, 1).
+     */
+    protected abstract double sample(int dimension);
+    /*
+       Method that returns a new sampler of the same kind and with the
+       same settings, e.g. for another thread.
+     */
+    public abstract Sampler copy();
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Methods that return and set the sampler of the pixel sample
+       being rendered on the calling thread. Setting it to null
+       restores the default IndependentSampler.
+     */
+    public static Sampler forCurrentThread() {
+        return Sampler.threadSampler.get();
+    }
+    public static void setForCurrentThread(Sampler sampler) {
+        if(sampler == null) {
+            Sampler.threadSampler.remove();
+        }
+        else {
+            Sampler.threadSampler.set(sampler);
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public int getSamplesPerPixel() {
+        return this.samplesPerPixel;
+    }
+}
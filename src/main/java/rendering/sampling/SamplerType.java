@@ -0,0 +1,29 @@
+package rendering.sampling;
+
+/**
+ * Enum for the kinds of samplers that a Camera can use.
+ */
+
+public enum SamplerType {
+    INDEPENDENT,
+    STRATIFIED,
+    HALTON,
+    SOBOL;
+
+    /**
+     * Methods
+     */
+    /*
+       Method that creates a new sampler of this kind for pixels
+       with 'samplesPerPixelSide' X 'samplesPerPixelSide' samples.
+     */
+    public Sampler create(int samplesPerPixelSide) {
+        int samplesPerPixel = samplesPerPixelSide * samplesPerPixelSide;
+        return switch (this) {
+            case INDEPENDENT -> new IndependentSampler(samplesPerPixel);
+            case STRATIFIED -> new StratifiedSampler(samplesPerPixelSide);
+            case HALTON -> new HaltonSampler(samplesPerPixel);
+            case SOBOL -> new SobolSampler(samplesPerPixel);
+        };
+    }
+}
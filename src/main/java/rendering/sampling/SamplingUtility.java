@@ -0,0 +1,167 @@
+package rendering.sampling;
+
+/**
+ * Class with static utility methods shared by the samplers:
+ * hashing (to derive per-pixel and per-dimension seeds without
+ * storing any tables), random permutations of sample indices,
+ * and the building blocks of Halton and Sobol sequences.
+ *
+ * All methods are pure functions of their arguments, so they
+ * can be called from many threads at the same time.
+ */
+
+public final class SamplingUtility {
+    /// largest double below 1, used to keep sample values in [0, 1)
+    public static final double oneMinusEpsilon = Math.nextDown(1.0);
+    /// 2^-32, to map 32 bit integers to [0, 1)
+    private static final double twoToMinus32 = 0x1p-32;
+    /// key that separates the random values from the other hashes of the same pixel and seed
+    private static final long randomValueKey = 0x9e3779b97f4a7c15L;
+
+    /// generator matrix of the second dimension of the Sobol sequence
+    /// (the first dimension is the van der Corput sequence, i.e. bit reversal)
+    private static final int[] sobolSecondDimensionMatrix = new int[32];
+    static {
+        sobolSecondDimensionMatrix[0] = 0x80000000;
+        for(int j = 1; j < 32; j++) {
+            sobolSecondDimensionMatrix[j] = sobolSecondDimensionMatrix[j - 1] ^ (sobolSecondDimensionMatrix[j - 1] >>> 1);
+        }
+    }
+
+    /**
+     * Constructors
+     */
+    private SamplingUtility() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that mixes the bits of a 64 bit value (the finaliser of
+       MurmurHash3), so that similar inputs give unrelated outputs.
+     */
+    public static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+    /*
+       Method that hashes the given values into a single 64 bit value.
+     */
+    public static long hash(long a, long b, long c, long d) {
+        return SamplingUtility.mix(d ^ SamplingUtility.mix(c ^ SamplingUtility.mix(b ^ SamplingUtility.mix(a))));
+    }
+    /*
+       Method that returns a random value in [0, 1) for the given dimension
+       of the given sample of the pixel (x,y), i.e. a counter-based random
+       number generator: the value is a hash of its key, so it does not
+       depend on which thread asks for it, or on what was generated before,
+       and no generator object (or state) is needed.
+     */
+    public static double randomValue(int x, int y, int sampleIndex, int dimension, long seed) {
+        long counter = ((long) sampleIndex << 32) | (dimension & 0xFFFFFFFFL);
+        return SamplingUtility.toUnitInterval(SamplingUtility.hash(x, y, counter, seed ^ SamplingUtility.randomValueKey));
+    }
+    /*
+       Method that maps the upper 32 bits of a 64 bit (hash) value
+       to a real value in [0, 1).
+     */
+    public static double toUnitInterval(long value) {
+        return (value >>> 32) * SamplingUtility.twoToMinus32;
+    }
+    /*
+       Method that returns the i-th element of a random permutation of
+       0, ..., l-1 given by the seed p, without storing the permutation
+       (Kensler, "Correlated Multi-Jittered Sampling", 2013).
+     */
+    public static int permutationElement(int i, int l, int p) {
+        int w = l - 1;
+        w |= w >>> 1;
+        w |= w >>> 2;
+        w |= w >>> 4;
+        w |= w >>> 8;
+        w |= w >>> 16;
+        do {
+            i ^= p;
+            i *= 0xe170893d;
+            i ^= p >>> 16;
+            i ^= (i & w) >>> 4;
+            i ^= p >>> 8;
+            i *= 0x0929eb3f;
+            i ^= p >>> 23;
+            i ^= (i & w) >>> 1;
+            i *= 1 | p >>> 27;
+            i *= 0x6935fa69;
+            i ^= (i & w) >>> 11;
+            i *= 0x74dcb303;
+            i ^= (i & w) >>> 2;
+            i *= 0x9e501cc3;
+            i ^= (i & w) >>> 2;
+            i *= 0xc860a3df;
+            i &= w;
+            i ^= i >>> 5;
+        } while(Integer.compareUnsigned(i, l) >= 0);
+        return Integer.remainderUnsigned(i + p, l);
+    }
+    /*
+       Method that returns the radical inverse of the index in the given
+       base, i.e. its digits in that base mirrored around the decimal
+       point (the index-th element of the van der Corput sequence in
+       that base). It is in [0, 1).
+     */
+    public static double radicalInverse(int base, int index) {
+        double inverseBase = 1.0 / base;
+        double inverseBaseToPower = 1;
+        long reversedDigits = 0;
+        long remaining = Integer.toUnsignedLong(index);
+        while(remaining > 0) {
+            long next = remaining / base;
+            reversedDigits = reversedDigits * base + (remaining - next * base);
+            inverseBaseToPower *= inverseBase;
+            remaining = next;
+        }
+        return Math.min(reversedDigits * inverseBaseToPower, SamplingUtility.oneMinusEpsilon);
+    }
+    /*
+       Method that returns the bits of the index-th element of the given
+       dimension (0 or 1) of the Sobol sequence, as a 32 bit fraction.
+     */
+    public static int sobolBits(int dimension, int index) {
+        if(dimension == 0) {
+            return Integer.reverse(index);
+        }
+        int bits = 0;
+        for(int j = 0; index != 0; j++, index >>>= 1) {
+            if((index & 1) != 0) {
+                bits ^= SamplingUtility.sobolSecondDimensionMatrix[j];
+            }
+        }
+        return bits;
+    }
+    /*
+       Method that applies a random (given by the seed) nested uniform
+       (Owen) scramble to the bits of a 32 bit fraction, using a hash
+       of the reversed bits (Laine and Karras, "Stratified Sampling
+       for Stochastic Transparency", 2011). Scrambling keeps the
+       stratification of Sobol points, while removing the structure
+       shared by all pixels.
+     */
+    public static int owenScramble(int bits, int seed) {
+        bits = Integer.reverse(bits);
+        bits ^= bits * 0x3d20adea;
+        bits += seed;
+        bits *= (seed >>> 16) | 1;
+        bits ^= bits * 0x05526c56;
+        bits ^= bits * 0x53a22864;
+        return Integer.reverse(bits);
+    }
+    /*
+       Method that maps a 32 bit fraction to a real value in [0, 1).
+     */
+    public static double bitsToUnitInterval(int bits) {
+        return Integer.toUnsignedLong(bits) * SamplingUtility.twoToMinus32;
+    }
+}
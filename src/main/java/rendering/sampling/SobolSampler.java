@@ -0,0 +1,62 @@
+package rendering.sampling;
+
+/**
+ * Class for a sampler based on the first two dimensions of
+ * the Sobol sequence, with Owen scrambling, "padded" to any
+ * number of dimensions.
+ *
+ * Every pair of dimensions takes its values from the two
+ * dimensions of the Sobol sequence, which are a (0,2)-sequence:
+ * the first 2^m samples have exactly one point in every
+ * rectangle of area 2^-m with sides 2^-a and 2^-(m-a), so
+ * the samples of a pixel are stratified in every such grid
+ * at once, and any prefix of a power of two samples is.
+ *
+ * Every pair is Owen scrambled with a different seed per pixel
+ * and pair, which keeps these properties while removing the
+ * structure shared by all pixels. Pairs after the first (the
+ * position in the pixel) also visit the samples in a different
+ * random order per pixel and pair, so that they are not
+ * correlated with each other.
+ *
+ * The values are deterministic, given the seed. The number
+ * of samples per pixel should be a power of two.
+ */
+
+public class SobolSampler extends Sampler {
+    private final long seed;
+
+    /**
+     * Constructors
+     */
+    public SobolSampler(int samplesPerPixel) {
+        this(samplesPerPixel, 0);
+    }
+    public SobolSampler(int samplesPerPixel, long seed) {
+        super(samplesPerPixel);
+        this.seed = seed;
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    protected double sample(int dimension) {
+        int pair = dimension / 2;
+        long hash = SamplingUtility.hash(this.pixelX, this.pixelY, pair, this.seed);
+
+        int index = this.sampleIndex;
+        if(pair > 0 && index < this.samplesPerPixel) {
+            index = SamplingUtility.permutationElement(index, this.samplesPerPixel, (int) hash);
+        }
+
+        /// a different scramble for each of the two dimensions of the pair
+        int scrambleSeed = (dimension % 2 == 0) ? (int) (hash >>> 32) : (int) SamplingUtility.mix(hash);
+        int bits = SamplingUtility.owenScramble(SamplingUtility.sobolBits(dimension % 2, index), scrambleSeed);
+        return Math.min(SamplingUtility.bitsToUnitInterval(bits), SamplingUtility.oneMinusEpsilon);
+    }
+    @Override
+    public Sampler copy() {
+        return new SobolSampler(this.samplesPerPixel, this.seed);
+    }
+}
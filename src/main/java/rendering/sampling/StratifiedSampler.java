@@ -0,0 +1,79 @@
+package rendering.sampling;
+
+/**
+ * Class for a sampler that splits every pair of dimensions
+ * into an n X n grid of strata (e.g. the sub-pixels of a
+ * pixel), and places each of the n * n samples of a pixel
+ * at a random point of a different stratum, i.e. jittered
+ * stratified sampling.
+ *
+ * In the first pair of dimensions (the position in the
+ * pixel), sample s is in the stratum of the s-th sub-pixel
+ * visited diagonal by diagonal (wrapping around), i.e.
+ * (0,0), (1,1), ..., then (0,1), (1,2), ..., so that every
+ * n consecutive samples cover every row and every column
+ * of the grid (useful when not all samples are taken, as
+ * in adaptive or progressive rendering). In the other pairs
+ * of dimensions, the samples are assigned to the strata in
+ * a different random order per pixel and pair, so that the
+ * pairs are not correlated.
+ *
+ * Samples with indices beyond n * n are not stratified.
+ *
+ * The jitter is a counter-based random value of the pixel,
+ * sample and dimension, so the values are deterministic,
+ * given the seed.
+ */
+
+public class StratifiedSampler extends Sampler {
+    private final int samplesPerPixelSide;
+    /// seed of the random orders of the strata, and of the jitter
+    private final long seed;
+
+    /**
+     * Constructors
+     */
+    public StratifiedSampler(int samplesPerPixelSide) {
+        this(samplesPerPixelSide, 0);
+    }
+    public StratifiedSampler(int samplesPerPixelSide, long seed) {
+        super(samplesPerPixelSide * samplesPerPixelSide);
+        this.samplesPerPixelSide = samplesPerPixelSide;
+        this.seed = seed;
+    }
+
+    /**
+     * Methods
+     */
+    @Override
+    protected double sample(int dimension) {
+        double jitter = SamplingUtility.randomValue(this.pixelX, this.pixelY, this.sampleIndex, dimension, this.seed);
+        if(this.sampleIndex >= this.samplesPerPixel) {
+            return jitter;
+        }
+
+        int n = this.samplesPerPixelSide;
+        int pair = dimension / 2;
+        int stratum = this.sampleIndex;
+        if(pair > 0) {
+            int permutationSeed = (int) SamplingUtility.hash(this.pixelX, this.pixelY, pair, this.seed);
+            stratum = SamplingUtility.permutationElement(stratum, this.samplesPerPixel, permutationSeed);
+        }
+
+        /// row (first dimension of the pair) or column (second dimension) of the stratum, diagonal by diagonal
+        int row = stratum % n;
+        int coordinate = (dimension % 2 == 0) ? row : (row + stratum / n) % n;
+        return Math.min((coordinate + jitter) / n, SamplingUtility.oneMinusEpsilon);
+    }
+    @Override
+    public Sampler copy() {
+        return new StratifiedSampler(this.samplesPerPixelSide, this.seed);
+    }
+
+    /**
+     * Getters
+     */
+    public int getSamplesPerPixelSide() {
+        return this.samplesPerPixelSide;
+    }
+}
@@ -0,0 +1,77 @@
+package rendering.scheduling;
+
+import rendering.utility.RTColor;
+
+/**
+ * Class for an accumulation buffer, i.e. the sum of the
+ * (not yet clipped) color values of all samples taken so
+ * far in every pixel of an image, and the number of these
+ * samples, used for progressive rendering where samples
+ * are added to the pixels in passes.
+ *
+ * The average of the samples of a pixel is its current
+ * color value, which converges to the final color value
+ * as more samples are added.
+ *
+ * As with the Framebuffer, different threads must add
+ * samples to different pixels, so no synchronisation
+ * is needed.
+ */
+
+public class AccumulationBuffer {
+    private final int width;
+    private final int height;
+    /// red, green and blue sums of pixel (x,y) are at indices 3 * (y * width + x) + 0, 1, 2
+    private final double[] colorSums;
+    /// number of samples of pixel (x,y) is at index y * width + x
+    private final int[] sampleCounts;
+
+    /**
+     * Constructors
+     */
+    public AccumulationBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.colorSums = new double[3 * width * height];
+        this.sampleCounts = new int[width * height];
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that adds the color value of a new sample to the given pixel.
+     */
+    public void addSample(int x, int y, RTColor color) {
+        int pixel = y * this.width + x;
+        this.colorSums[3 * pixel] += color.getRed();
+        this.colorSums[3 * pixel + 1] += color.getGreen();
+        this.colorSums[3 * pixel + 2] += color.getBlue();
+        this.sampleCounts[pixel]++;
+    }
+    /*
+       Method that returns the average color value of all samples
+       of the given pixel, or RTColor.blank if it has no samples yet.
+     */
+    public RTColor getAverage(int x, int y) {
+        int pixel = y * this.width + x;
+        int count = this.sampleCounts[pixel];
+        if(count == 0) {
+            return RTColor.blank;
+        }
+        return new RTColor(this.colorSums[3 * pixel] / count, this.colorSums[3 * pixel + 1] / count, this.colorSums[3 * pixel + 2] / count);
+    }
+    public int getSampleCount(int x, int y) {
+        return this.sampleCounts[y * this.width + x];
+    }
+
+    /**
+     * Getters
+     */
+    public int getWidth() {
+        return this.width;
+    }
+    public int getHeight() {
+        return this.height;
+    }
+}
@@ -0,0 +1,98 @@
+package rendering.scheduling;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Class for a framebuffer, i.e. the 32 bit RGB values
+ * of all pixels of an image stored in a single array of
+ * ints, row by row from the top left origin pixel (0,0).
+ *
+ * Rendering threads write the pixels of their tiles into
+ * the framebuffer (different tiles never share pixels, so
+ * no synchronisation is needed), and every finished tile
+ * is copied into the BufferedImage in a single call, rather
+ * than calling BufferedImage.setRGB for every pixel from
+ * many threads at once.
+ *
+ * A framebuffer can also hold only a rectangular region of
+ * the image (e.g. a single tile rendered by a worker of a render
+ * farm), whose pixels are still addressed by their coordinates in
+ * the whole image.
+ */
+
+public class Framebuffer {
+    /// coordinates of the top left pixel of the framebuffer in the image
+    private final int originX;
+    private final int originY;
+    private final int width;
+    private final int height;
+    /// RGB value of pixel (x,y) is at index (y - originY) * width + (x - originX)
+    private final int[] pixels;
+
+    /**
+     * Constructors
+     */
+    public Framebuffer(int width, int height) {
+        this(0, 0, width, height);
+    }
+    /*
+       Constructor of a framebuffer holding the region of the image
+       with the given top left pixel, width and height.
+     */
+    public Framebuffer(int originX, int originY, int width, int height) {
+        this.originX = originX;
+        this.originY = originY;
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+    }
+
+    /**
+     * Methods
+     */
+    public void setRGB(int x, int y, int rgb) {
+        this.pixels[(y - this.originY) * this.width + (x - this.originX)] = rgb;
+    }
+    public int getRGB(int x, int y) {
+        return this.pixels[(y - this.originY) * this.width + (x - this.originX)];
+    }
+    /*
+       Method that copies the pixels of the given tile into the
+       same pixels of the given image (which must be the whole
+       image, even if the framebuffer only holds a region of it).
+
+       Copies into the same image are serialised, since a
+       BufferedImage is not thread-safe.
+     */
+    public void copyTileInto(BufferedImage image, Tile tile) {
+        synchronized(image) {
+            image.setRGB(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), this.pixels, (tile.getY() - this.originY) * this.width + (tile.getX() - this.originX), this.width);
+        }
+    }
+    /*
+       Method that creates a new BufferedImage (TYPE_INT_RGB)
+       containing all pixels of the framebuffer.
+     */
+    public BufferedImage toBufferedImage() {
+        BufferedImage image = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, this.width, this.height, this.pixels, 0, this.width);
+        return image;
+    }
+
+    /**
+     * Getters
+     */
+    public int getWidth() {
+        return this.width;
+    }
+    public int getHeight() {
+        return this.height;
+    }
+    /*
+       Getter for the RGB values of all pixels of the framebuffer,
+       row by row (the array itself, not a copy).
+     */
+    public int[] getPixels() {
+        return this.pixels;
+    }
+}
@@ -0,0 +1,19 @@
+package rendering.scheduling;
+
+/**
+ * Interface for the computation of the final color
+ * of a single pixel, that the TileScheduler calls for
+ * every pixel of every tile.
+ *
+ * Implementations are called from many threads at the
+ * same time (for different pixels), so they must be
+ * thread-safe.
+ */
+@FunctionalInterface
+public interface PixelRenderer {
+    /*
+       Method that returns the 32 bit RGB value of the
+       pixel (x,y), from the top left origin pixel (0,0).
+     */
+    int renderPixel(int x, int y);
+}
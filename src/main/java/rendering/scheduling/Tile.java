@@ -0,0 +1,48 @@
+package rendering.scheduling;
+
+/**
+ * Class for a rectangular tile of the image, given by
+ * the pixel coordinates of its top left corner (from the
+ * top left origin pixel (0,0) of the image), its width
+ * and its height in pixels.
+ *
+ * Tiles are the units of work of the TileScheduler.
+ *
+ * Tile is immutable.
+ */
+
+public class Tile {
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+
+    /**
+     * Constructors
+     */
+    public Tile(int x, int y, int width, int height) {
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Getters
+     */
+    public int getX() {
+        return this.x;
+    }
+    public int getY() {
+        return this.y;
+    }
+    public int getWidth() {
+        return this.width;
+    }
+    public int getHeight() {
+        return this.height;
+    }
+    public int getNumberOfPixels() {
+        return this.width * this.height;
+    }
+}
@@ -0,0 +1,21 @@
+package rendering.scheduling;
+
+/**
+ * Interface for the computation of the final colors of
+ * all pixels of a tile at once, for renderers that share
+ * work between the pixels of a tile (e.g. trace the rays of
+ * neighbouring pixels together), which the TileScheduler
+ * calls for every tile.
+ *
+ * Implementations are called from many threads at the
+ * same time (for different tiles), so they must be
+ * thread-safe.
+ */
+@FunctionalInterface
+public interface TileRenderer {
+    /*
+       Method that writes the 32 bit RGB values of all pixels
+       of the given tile into the framebuffer.
+     */
+    void renderTile(Tile tile, Framebuffer framebuffer);
+}
@@ -0,0 +1,159 @@
+package rendering.scheduling;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Class for a scheduler that renders an image on many
+ * CPU cores, by splitting it into square tiles (the ones
+ * at the right and bottom border can be smaller) that are
+ * rendered in parallel by the threads of a work-stealing
+ * ForkJoinPool.
+ *
+ * Every tile is rendered by a single thread, pixel by pixel
+ * (or as a whole, by a TileRenderer), into a Framebuffer. Progress is counted once per finished
+ * tile rather than once per pixel, so threads do not contend
+ * on a shared counter, and no boxed list of pixel positions
+ * is needed.
+ *
+ * The tile size and the number of threads are configurable.
+ * Tiles of 16 to 64 pixels keep the pixels of a tile (and
+ * the parts of the scene they see) in the caches of a core,
+ * while still giving enough tiles to balance the load.
+ */
+
+public class TileScheduler {
+    /// default width and height of a tile, in pixels
+    public static final int defaultTileSize = 32;
+
+    private final int tileSize;
+    private final int numberOfThreads;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the width and height of a tile in pixels,
+       and the number of threads to render the tiles with.
+     */
+    public TileScheduler(int tileSize, int numberOfThreads) {
+        if(tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+        if(numberOfThreads <= 0) {
+            throw new IllegalArgumentException("Number of threads must be positive.");
+        }
+        this.tileSize = tileSize;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that splits an image of the given size into tiles,
+       row by row from the top left corner.
+     */
+    public ArrayList<Tile> createTiles(int width, int height) {
+        ArrayList<Tile> tiles = new ArrayList<>();
+        for(int y = 0; y < height; y += this.tileSize) {
+            for(int x = 0; x < width; x += this.tileSize) {
+                tiles.add(new Tile(x, y, Math.min(this.tileSize, width - x), Math.min(this.tileSize, height - y)));
+            }
+        }
+        return tiles;
+    }
+    /*
+       Method that renders every pixel of the given framebuffer with the
+       given PixelRenderer, tile by tile, on the threads of a ForkJoinPool,
+       and returns once all tiles are finished.
+
+       After a tile is written into the framebuffer, the optional (can be
+       null) 'tileFinishedConsumer' is given the tile (e.g. to copy it into
+       a BufferedImage), and the optional 'progressUpdaterConsumer' is given
+       the fraction of pixels rendered so far, as a real value between 0
+       and 1. Both are called from the rendering threads.
+
+       If rendering a pixel throws an exception, it is rethrown from this
+       method.
+     */
+    public void render(Framebuffer framebuffer, PixelRenderer pixelRenderer, Consumer<Tile> tileFinishedConsumer, Consumer<Double> progressUpdaterConsumer) {
+        this.render(framebuffer, pixelRenderer, tileFinishedConsumer, progressUpdaterConsumer, null);
+    }
+    /*
+       Method that renders the framebuffer in the same way as 'render'
+       above, but checks the optional (can be null) 'stopRequested'
+       before starting each tile. Once it returns true, the remaining
+       tiles are skipped (and keep their previous pixels), and the
+       method returns as soon as the tiles already started are finished.
+     */
+    public void render(Framebuffer framebuffer, PixelRenderer pixelRenderer, Consumer<Tile> tileFinishedConsumer, Consumer<Double> progressUpdaterConsumer, BooleanSupplier stopRequested) {
+        this.renderTiles(framebuffer, (Tile tile, Framebuffer tileFramebuffer) -> TileScheduler.renderTile(tile, tileFramebuffer, pixelRenderer),
+                tileFinishedConsumer, progressUpdaterConsumer, stopRequested);
+    }
+    /*
+       Method that renders the framebuffer in the same way as 'render'
+       above, but with a TileRenderer that renders every tile as a whole.
+     */
+    public void renderTiles(Framebuffer framebuffer, TileRenderer tileRenderer, Consumer<Tile> tileFinishedConsumer, Consumer<Double> progressUpdaterConsumer, BooleanSupplier stopRequested) {
+        ArrayList<Tile> tiles = this.createTiles(framebuffer.getWidth(), framebuffer.getHeight());
+        double numberOfPixels = (double) framebuffer.getWidth() * framebuffer.getHeight();
+        AtomicLong renderedPixels = new AtomicLong();
+
+        ForkJoinPool pool = new ForkJoinPool(this.numberOfThreads);
+        try {
+            ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for(Tile tile : tiles) {
+                tasks.add(pool.submit(() -> {
+                    if(stopRequested != null && stopRequested.getAsBoolean()) {
+                        return;
+                    }
+                    tileRenderer.renderTile(tile, framebuffer);
+
+                    if(tileFinishedConsumer != null) {
+                        tileFinishedConsumer.accept(tile);
+                    }
+                    double done = renderedPixels.addAndGet(tile.getNumberOfPixels()) / numberOfPixels;
+                    if(progressUpdaterConsumer != null) {
+                        progressUpdaterConsumer.accept(done);
+                    }
+                }));
+            }
+            for(ForkJoinTask<?> task : tasks) {
+                task.join();
+            }
+        }
+        finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that renders all pixels of the given tile into the
+       framebuffer, row by row.
+     */
+    private static void renderTile(Tile tile, Framebuffer framebuffer, PixelRenderer pixelRenderer) {
+        for(int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            for(int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                framebuffer.setRGB(x, y, pixelRenderer.renderPixel(x, y));
+            }
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public int getTileSize() {
+        return this.tileSize;
+    }
+    public int getNumberOfThreads() {
+        return this.numberOfThreads;
+    }
+}
@@ -2,8 +2,12 @@ package rendering.shading;
 
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.SceneDescriptionParser;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
 import rendering.utility.Vector3D;
 
+import java.io.IOException;
+
 /**
  * A class to encapsulate material properties
  * of a certain point on a RTShape that is to
@@ -76,9 +80,30 @@ public class Material {
         this.reflectionCoefficient = reflection;
     }
 
+    /**
+     * Methods
+     */
+    /*
+       Method that writes the material to a snapshot
+       (see SceneSnapshot), to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeVector3D(this.ambientCoefficient);
+        output.writeVector3D(this.diffuseCoefficient);
+        output.writeVector3D(this.specularCoefficient);
+        output.writeDouble(this.phongRoughnessCoefficient);
+        output.writeDouble(this.reflectionCoefficient);
+    }
+
     /**
      * Static Utility Methods
      */
+    /*
+       Method that reads a material written by 'writeSnapshot'.
+     */
+    public static Material readSnapshot(SnapshotInput input) throws IOException {
+        return new Material(input.readVector3D(), input.readVector3D(), input.readVector3D(), input.readDouble(), input.readDouble());
+    }
     /*
        Method to parse a Material object from a String
        of form (ambient, diffuse, specular, roughness, reflection),
@@ -3,6 +3,7 @@ package rendering.shapes;
 import rendering.shading.Material;
 import rendering.utility.*;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Map;
 
@@ -44,6 +45,13 @@ public class Box extends TriangleMesh implements RTShape {
                 modelTransformation,
                 color, material);
     }
+    /*
+       Constructor from the already built geometry of a box, its
+       color and its material, used to read a box from a snapshot.
+     */
+    private Box(TriangleMeshGeometry geometry, RTColor color, Material material) {
+        super(geometry, color, material);
+    }
 
     /**
      * Static Utility Methods
@@ -197,6 +205,13 @@ public class Box extends TriangleMesh implements RTShape {
 
         return vertexNormals;
     }
+    /*
+       Method that reads a box written by 'writeSnapshot' (which
+       it inherits from the TriangleMesh).
+     */
+    public static Box readSnapshot(SnapshotInput input) throws IOException {
+        return new Box(TriangleMeshGeometry.readSnapshot(input), input.readColor(), Material.readSnapshot(input));
+    }
 
     /**
      * Getters
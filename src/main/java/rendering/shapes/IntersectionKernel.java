@@ -0,0 +1,81 @@
+package rendering.shapes;
+
+/**
+ * Enum for the kernels that rays can be intersected with the
+ * triangles of a TriangleMesh by.
+ *
+ * SCALAR intersects one triangle at a time (Triangle.intersect).
+ * SIMD intersects a ray with all triangles of a leaf of the
+ * bounding volume hierarchy at once, one triangle per lane of the
+ * widest vectors of the CPU (4 doubles with AVX2, 8 with AVX-512),
+ * using the Vector API (SimdTriangleKernel). Both kernels do the same
+ * arithmetic in the same order, so they find exactly the same hits.
+ *
+ * The Vector API is the incubator module jdk.incubator.vector, which
+ * is only available if the JVM is started with
+ *      --add-modules jdk.incubator.vector
+ * otherwise the SCALAR kernel is always used.
+ *
+ * The kernel a mesh uses is chosen when the mesh is created, from
+ * the default kernel. The default is given by the system property
+ * "raytracer.intersection-kernel" ("scalar" or "simd"), or else is
+ * SIMD if it is available, and can be changed with 'setDefault'
+ * (e.g. by the --kernel option of the command-line renderer).
+ */
+
+public enum IntersectionKernel {
+    SCALAR,
+    SIMD;
+
+    /// name of the system property that chooses the default kernel
+    public static final String systemPropertyName = "raytracer.intersection-kernel";
+
+    private static final boolean simdAvailable = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    private static volatile IntersectionKernel defaultKernel = IntersectionKernel.initialDefault();
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that parses a kernel from its name, "scalar" or "simd".
+     */
+    public static IntersectionKernel parse(String s) {
+        return switch (s.trim().toLowerCase()) {
+            case "scalar" -> IntersectionKernel.SCALAR;
+            case "simd" -> IntersectionKernel.SIMD;
+            default -> throw new IllegalArgumentException("Unknown intersection kernel '" + s.trim() + "', expected 'scalar' or 'simd'.");
+        };
+    }
+    /*
+       Method that returns true iff the SIMD kernel can be used,
+       i.e. the Vector API module is available.
+     */
+    public static boolean isSimdAvailable() {
+        return IntersectionKernel.simdAvailable;
+    }
+    /*
+       Methods that return and set the kernel used by the meshes
+       created from now on. Setting the SIMD kernel when it is not
+       available throws an IllegalArgumentException.
+     */
+    public static IntersectionKernel getDefault() {
+        return IntersectionKernel.defaultKernel;
+    }
+    public static void setDefault(IntersectionKernel kernel) {
+        if(kernel == IntersectionKernel.SIMD && !IntersectionKernel.simdAvailable) {
+            throw new IllegalArgumentException("The SIMD intersection kernel needs the JVM option '--add-modules jdk.incubator.vector'.");
+        }
+        IntersectionKernel.defaultKernel = kernel;
+    }
+    /*
+       Method that returns the default kernel given by the system
+       property, or the fastest available kernel if it is not set.
+       If the property asks for SIMD but it is not available, the
+       scalar kernel is used.
+     */
+    private static IntersectionKernel initialDefault() {
+        String property = System.getProperty(IntersectionKernel.systemPropertyName);
+        IntersectionKernel kernel = property == null ? IntersectionKernel.SIMD : IntersectionKernel.parse(property);
+        return IntersectionKernel.simdAvailable ? kernel : IntersectionKernel.SCALAR;
+    }
+}
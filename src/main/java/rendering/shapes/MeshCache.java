@@ -0,0 +1,298 @@
+package rendering.shapes;
+
+import rendering.utility.GeometryPrecision;
+import rendering.utility.Matrix4D;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Class for the process-wide cache of the geometries (packed triangles
+ * and bounding volume hierarchies) of the meshes loaded from mesh files,
+ * so that a mesh file used by many scenes rendered in the same process
+ * (e.g. a batch of scenes, or repeated renders in the UI) is only read,
+ * transformed and built once.
+ *
+ * A geometry is cached by the absolute path and modification time of
+ * its mesh file, the modelling transformation it was transformed by
+ * (none for the object coordinates of a MeshInstance), its precision and
+ * its intersection kernel, so modifying the file or placing the mesh
+ * elsewhere loads it anew. Cached geometries are never modified, so they
+ * can be shared by any number of meshes and instances.
+ *
+ * The cache is bounded by a memory budget (the total of the sizes of
+ * the cached geometries, see TriangleMeshGeometry.getSizeInBytes). Once
+ * the budget is exceeded, the least recently used geometries are evicted.
+ * An evicted geometry is still only weakly referenced, so it is shared
+ * as long as some mesh in use has it (and comes back into the cache if it
+ * is asked for again). The budget is given in megabytes by the system
+ * property "raytracer.mesh-cache-budget" (a quarter of the maximum heap
+ * by default), and can be changed with 'setBudget' (e.g. by the
+ * --mesh-cache option of the command-line renderer). A budget of 0
+ * disables the cache: nothing is kept, not even weakly, so every
+ * geometry is loaded anew (and counted as a miss).
+ *
+ * The numbers of hits, misses and evictions since the cache was last
+ * cleared are returned by 'getStatistics'.
+ */
+
+public final class MeshCache {
+    /// name of the system property that gives the budget of the cache in megabytes
+    public static final String systemPropertyName = "raytracer.mesh-cache-budget";
+
+    /// cached geometries, from the least to the most recently used
+    private static final LinkedHashMap<CacheKey, TriangleMeshGeometry> geometries = new LinkedHashMap<>(16, 0.75f, true);
+    /// geometries evicted from the cache, only weakly referenced
+    private static final HashMap<CacheKey, WeakReference<TriangleMeshGeometry>> evictedGeometries = new HashMap<>();
+
+    private static long budget = MeshCache.initialBudget();
+    private static long sizeInBytes = 0;
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long evictions = 0;
+
+    /**
+     * Constructors
+     */
+    private MeshCache() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the geometry of the mesh file at the given path
+       (an .obj or binary mesh file, see MeshFile), transformed by the given
+       modelling transformation (or in object coordinates, if it is null),
+       stored in the given precision, for the current default IntersectionKernel.
+
+       The geometry is only read and built if it is not in the cache, in which
+       case it is added to it. The file is read without holding the lock of the
+       cache, so other meshes can be taken from the cache in the meantime.
+     */
+    public static TriangleMeshGeometry getGeometry(String pathToMeshFile, Matrix4D modelTransformation, GeometryPrecision precision) throws IOException {
+        IntersectionKernel kernel = IntersectionKernel.getDefault();
+        CacheKey key = new CacheKey(new File(pathToMeshFile), modelTransformation, precision, kernel);
+
+        TriangleMeshGeometry geometry = MeshCache.lookUp(key);
+        if(geometry != null) {
+            return geometry;
+        }
+
+        MeshFile meshFile = MeshFile.read(pathToMeshFile, modelTransformation);
+        geometry = new TriangleMeshGeometry(meshFile.getVertexPositions(), meshFile.getVertexNormals(), meshFile.getFaceVertexIndices(),
+                meshFile.getFaceNormalIndices(), precision, kernel, meshFile.getHierarchy());
+        return MeshCache.insert(key, geometry);
+    }
+    /*
+       Methods that return and set the budget of the cache, in bytes.
+       Setting a smaller budget evicts geometries immediately, and setting
+       it to 0 also forgets the evicted geometries. A negative budget throws
+       an IllegalArgumentException.
+     */
+    public static synchronized long getBudget() {
+        return MeshCache.budget;
+    }
+    public static synchronized void setBudget(long bytes) {
+        if(bytes < 0) {
+            throw new IllegalArgumentException("The budget of the mesh cache must not be negative.");
+        }
+        MeshCache.budget = bytes;
+        MeshCache.evictToBudget();
+        if(bytes == 0) {
+            MeshCache.evictedGeometries.clear();
+        }
+    }
+    /*
+       Method that returns the statistics of the cache since it was last cleared.
+     */
+    public static synchronized Statistics getStatistics() {
+        return new Statistics(MeshCache.hits, MeshCache.misses, MeshCache.evictions, MeshCache.geometries.size(), MeshCache.sizeInBytes, MeshCache.budget);
+    }
+    /*
+       Method that removes every geometry from the cache,
+       and resets its statistics (but not its budget).
+     */
+    public static synchronized void clear() {
+        MeshCache.geometries.clear();
+        MeshCache.evictedGeometries.clear();
+        MeshCache.sizeInBytes = 0;
+        MeshCache.hits = 0;
+        MeshCache.misses = 0;
+        MeshCache.evictions = 0;
+    }
+    /*
+       Method that returns the geometry with the given key from the cache,
+       or from the evicted geometries still in use (which is moved back into
+       the cache), and counts a hit, or counts a miss and returns null (always,
+       if the cache is disabled).
+     */
+    private static synchronized TriangleMeshGeometry lookUp(CacheKey key) {
+        if(MeshCache.budget == 0) {
+            MeshCache.misses++;
+            return null;
+        }
+        TriangleMeshGeometry geometry = MeshCache.geometries.get(key);
+        if(geometry == null) {
+            WeakReference<TriangleMeshGeometry> reference = MeshCache.evictedGeometries.remove(key);
+            geometry = reference == null ? null : reference.get();
+            if(geometry != null) {
+                MeshCache.add(key, geometry);
+            }
+        }
+        if(geometry == null) {
+            MeshCache.misses++;
+        }
+        else {
+            MeshCache.hits++;
+        }
+        return geometry;
+    }
+    /*
+       Method that adds a newly built geometry to the cache, and returns it,
+       or returns the geometry added by another thread which built the same
+       geometry in the meantime, so that only one of them is shared. If the
+       cache is disabled, the geometry is returned without adding it.
+     */
+    private static synchronized TriangleMeshGeometry insert(CacheKey key, TriangleMeshGeometry geometry) {
+        if(MeshCache.budget == 0) {
+            return geometry;
+        }
+        TriangleMeshGeometry cached = MeshCache.geometries.get(key);
+        if(cached != null) {
+            return cached;
+        }
+        MeshCache.add(key, geometry);
+        return geometry;
+    }
+    private static void add(CacheKey key, TriangleMeshGeometry geometry) {
+        MeshCache.geometries.put(key, geometry);
+        MeshCache.sizeInBytes += geometry.getSizeInBytes();
+        MeshCache.evictToBudget();
+    }
+    /*
+       Method that evicts the least recently used geometries until the
+       cached geometries fit into the budget, and forgets the evicted
+       geometries that are no longer used.
+     */
+    private static void evictToBudget() {
+        Iterator<Map.Entry<CacheKey, TriangleMeshGeometry>> leastRecentlyUsed = MeshCache.geometries.entrySet().iterator();
+        while(MeshCache.sizeInBytes > MeshCache.budget && leastRecentlyUsed.hasNext()) {
+            Map.Entry<CacheKey, TriangleMeshGeometry> entry = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            MeshCache.sizeInBytes -= entry.getValue().getSizeInBytes();
+            MeshCache.evictedGeometries.put(entry.getKey(), new WeakReference<>(entry.getValue()));
+            MeshCache.evictions++;
+        }
+        MeshCache.evictedGeometries.values().removeIf(evicted -> evicted.get() == null);
+    }
+    /*
+       Method that returns the budget given by the system property,
+       or a quarter of the maximum heap size if it is not set.
+     */
+    private static long initialBudget() {
+        String property = System.getProperty(MeshCache.systemPropertyName);
+        if(property == null) {
+            return Runtime.getRuntime().maxMemory() / 4;
+        }
+        try {
+            return Math.max(0, Long.parseLong(property.trim())) << 20;
+        }
+        catch (NumberFormatException e) {
+            throw new IllegalArgumentException("System property '" + MeshCache.systemPropertyName + "' must be a number of megabytes, got '" + property + "'.");
+        }
+    }
+
+    /**
+     * Class for the statistics of the cache at some moment: the numbers
+     * of hits, misses and evictions, and the number and total size of the
+     * cached geometries.
+     */
+    public static class Statistics {
+        private final long hits;
+        private final long misses;
+        private final long evictions;
+        private final int entries;
+        private final long sizeInBytes;
+        private final long budget;
+
+        private Statistics(long hits, long misses, long evictions, int entries, long sizeInBytes, long budget) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.entries = entries;
+            this.sizeInBytes = sizeInBytes;
+            this.budget = budget;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d hits, %d misses, %d evictions, %d meshes cached (%.1f of %.1f MB)",
+                    this.hits, this.misses, this.evictions, this.entries, this.sizeInBytes / 1048576.0, this.budget / 1048576.0);
+        }
+
+        public long getHits() {
+            return this.hits;
+        }
+        public long getMisses() {
+            return this.misses;
+        }
+        public long getEvictions() {
+            return this.evictions;
+        }
+        public int getEntries() {
+            return this.entries;
+        }
+        public long getSizeInBytes() {
+            return this.sizeInBytes;
+        }
+        public long getBudget() {
+            return this.budget;
+        }
+    }
+
+    /**
+     * Class for the key of a cached geometry: the mesh file (by absolute
+     * path and modification time), the modelling transformation (null
+     * for object coordinates), the precision and the intersection kernel.
+     */
+    private static class CacheKey {
+        private final String absolutePath;
+        private final long lastModified;
+        private final double[] modelTransformation;
+        private final GeometryPrecision precision;
+        private final IntersectionKernel kernel;
+
+        private CacheKey(File file, Matrix4D modelTransformation, GeometryPrecision precision, IntersectionKernel kernel) {
+            this.absolutePath = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.modelTransformation = modelTransformation == null ? null : new double[]{
+                    modelTransformation.getM00(), modelTransformation.getM01(), modelTransformation.getM02(), modelTransformation.getM03(),
+                    modelTransformation.getM10(), modelTransformation.getM11(), modelTransformation.getM12(), modelTransformation.getM13(),
+                    modelTransformation.getM20(), modelTransformation.getM21(), modelTransformation.getM22(), modelTransformation.getM23(),
+                    modelTransformation.getM30(), modelTransformation.getM31(), modelTransformation.getM32(), modelTransformation.getM33()};
+            this.precision = precision;
+            this.kernel = kernel;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof CacheKey other)) {
+                return false;
+            }
+            return this.absolutePath.equals(other.absolutePath) && this.lastModified == other.lastModified
+                    && Arrays.equals(this.modelTransformation, other.modelTransformation)
+                    && this.precision == other.precision && this.kernel == other.kernel;
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.absolutePath, this.lastModified, Arrays.hashCode(this.modelTransformation), this.precision, this.kernel);
+        }
+    }
+}
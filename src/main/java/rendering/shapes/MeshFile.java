@@ -0,0 +1,227 @@
+package rendering.shapes;
+
+import rendering.acceleration.BoundingVolumeHierarchy;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.Matrix4D;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
+
+import java.io.IOException;
+
+/**
+ * Class for the contents of a mesh file: the vertex positions and
+ * vertex normals (three coordinates per vertex or normal), and the
+ * indices of the vertices and vertex normals of each triangle (three
+ * per triangle).
+ *
+ * The coordinates are read from the file as floats, and either kept
+ * in object coordinates, or transformed to world coordinates by the
+ * modelling transformation of a mesh while they are read (see
+ * MeshTransformation), so that a TriangleMesh can build its geometry
+ * directly from the arrays of the mesh file.
+ *
+ * A mesh file is either a Wavefront OBJ file (read by the ObjParser), or
+ * (if its path ends in 'fileExtension') a binary mesh file, which is written
+ * from an OBJ file once (see MeshConverter), and then read much faster than
+ * the OBJ file:
+ * it is memory-mapped (see SnapshotInput) and its arrays are copied out
+ * of it in bulk, without any text parsing. A binary mesh file also stores
+ * a bounding volume hierarchy over the triangles in object coordinates,
+ * whose tree a TriangleMeshGeometry refits to the triangles in world
+ * coordinates instead of building a new hierarchy.
+ *
+ * The binary mesh format consists of a magic number and a format version,
+ * followed by the arrays of vertex coordinates (floats), normal coordinates
+ * (floats), face vertex indices (ints) and face normal indices (ints, or none
+ * for a flat shaded mesh), each as its length followed by its elements, and
+ * finally the hierarchy (see BoundingVolumeHierarchy.writeSnapshot), if any.
+ * All values are little-endian.
+ */
+
+public class MeshFile {
+    /// extension of binary mesh files, which are read as binary rather than as OBJ files
+    public static final String fileExtension = ".rtmesh";
+    /// "RTMH" in ASCII, at the start of every binary mesh file
+    private static final int magicNumber = 0x484D5452;
+    /// version of the binary format, to be increased whenever the format changes
+    private static final int formatVersion = 1;
+
+    /// vertex positions and vertex normals, three coordinates per vertex (normal)
+    private final double[] vertexPositions;
+    private final double[] vertexNormals;
+    private final int[] faceVertexIndices;
+    /// null if the mesh is flat shaded
+    private final int[] faceNormalIndices;
+    /// hierarchy over the triangles in object coordinates, null if there is none
+    private final BoundingVolumeHierarchy hierarchy;
+    /// true iff the coordinates are object coordinates (rather than transformed)
+    private final boolean inObjectCoordinates;
+
+    /**
+     * Constructors
+     */
+    MeshFile(double[] vertexPositions, double[] vertexNormals, int[] faceVertexIndices, int[] faceNormalIndices, BoundingVolumeHierarchy hierarchy,
+             MeshTransformation transformation) {
+        this.vertexPositions = vertexPositions;
+        this.vertexNormals = vertexNormals;
+        this.faceVertexIndices = faceVertexIndices;
+        this.faceNormalIndices = faceNormalIndices;
+        this.hierarchy = hierarchy;
+        this.inObjectCoordinates = transformation.keepsObjectCoordinates();
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that writes the mesh to the binary mesh file at the given path,
+       with a hierarchy over its triangles (in object coordinates) built for
+       the given kernel, so that meshes intersected by that kernel can be
+       created from the file without building a hierarchy.
+
+       Throws IllegalStateException if the mesh was transformed when it was
+       read, as binary mesh files are in object coordinates.
+     */
+    public void writeBinary(String path, IntersectionKernel kernel) throws IOException {
+        if(!this.inObjectCoordinates) {
+            throw new IllegalStateException("Only meshes in object coordinates can be written to a binary mesh file.");
+        }
+        /// bounds of the triangles
+        int numberOfTriangles = this.faceVertexIndices.length / 3;
+        double[] primitiveBounds = new double[6 * numberOfTriangles];
+        for(int face = 0; face < numberOfTriangles; face++) {
+            for(int axis = 0; axis < 3; axis++) {
+                double a = this.vertexPositions[3 * this.faceVertexIndices[3*face] + axis];
+                double b = this.vertexPositions[3 * this.faceVertexIndices[3*face+1] + axis];
+                double c = this.vertexPositions[3 * this.faceVertexIndices[3*face+2] + axis];
+                primitiveBounds[6*face+axis] = Math.min(a, Math.min(b, c));
+                primitiveBounds[6*face+3+axis] = Math.max(a, Math.max(b, c));
+            }
+        }
+        /// only the tree of the hierarchy is used when reading, so its bounds are stored in float precision
+        BoundingVolumeHierarchy hierarchy = new BoundingVolumeHierarchy(primitiveBounds, numberOfTriangles, GeometryPrecision.FLOAT,
+                TriangleMeshGeometry.getTrianglesPerTest(kernel));
+
+        try(SnapshotOutput output = new SnapshotOutput(path)) {
+            output.writeInt(MeshFile.magicNumber);
+            output.writeInt(MeshFile.formatVersion);
+            /// the coordinates were read as floats, so they are exactly floats again
+            output.writeFloats(MeshFile.toFloats(this.vertexPositions));
+            output.writeFloats(MeshFile.toFloats(this.vertexNormals));
+            output.writeInts(this.faceVertexIndices);
+            output.writeInts(this.faceNormalIndices);
+            output.writeInt(1);
+            hierarchy.writeSnapshot(output);
+        }
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns true iff the given path is the path
+       of a binary mesh file (by its extension).
+     */
+    public static boolean isBinaryMeshPath(String path) {
+        return path.endsWith(MeshFile.fileExtension);
+    }
+    /*
+       Method that reads the mesh file at the given path, as a binary
+       mesh file or as an OBJ file depending on its extension, with its
+       coordinates transformed by the given modelling transformation
+       (see MeshTransformation), or in object coordinates if it is null.
+     */
+    public static MeshFile read(String path, Matrix4D modelTransformation) throws IOException {
+        return MeshFile.isBinaryMeshPath(path) ? MeshFile.readBinary(path, modelTransformation) : MeshFile.readObj(path, modelTransformation);
+    }
+    /*
+       Method that reads a Wavefront OBJ file (see ObjParser), with its
+       coordinates transformed as for 'read'.
+     */
+    public static MeshFile readObj(String path, Matrix4D modelTransformation) throws IOException {
+        return ObjParser.parse(path, new MeshTransformation(modelTransformation));
+    }
+    /*
+       Method that reads a binary mesh file written by 'writeBinary', with
+       its coordinates transformed as for 'read'.
+
+       Throws IOException if the file is not a binary mesh file, was written
+       by another version of the format, or is truncated or corrupted (e.g.
+       has indices of vertices or normals that do not exist).
+     */
+    public static MeshFile readBinary(String path, Matrix4D modelTransformation) throws IOException {
+        SnapshotInput input = new SnapshotInput(path);
+        if(input.readInt() != MeshFile.magicNumber) {
+            throw new IOException("'" + path + "' is not a binary mesh file.");
+        }
+        int version = input.readInt();
+        if(version != MeshFile.formatVersion) {
+            throw new IOException("Binary mesh file '" + path + "' has format version " + version + ", expected " + MeshFile.formatVersion + ".");
+        }
+        float[] vertexCoordinates = input.readFloats();
+        float[] normalCoordinates = input.readFloats();
+        int[] faceVertexIndices = input.readInts();
+        int[] faceNormalIndices = input.readInts();
+        BoundingVolumeHierarchy hierarchy = input.readInt() != 0 ? BoundingVolumeHierarchy.readSnapshot(input) : null;
+
+        if(vertexCoordinates == null || normalCoordinates == null || faceVertexIndices == null || faceVertexIndices.length % 3 != 0
+                || (faceNormalIndices != null && faceNormalIndices.length != faceVertexIndices.length)
+                || !MeshFile.indicesInRange(faceVertexIndices, vertexCoordinates.length / 3)
+                || !MeshFile.indicesInRange(faceNormalIndices, normalCoordinates.length / 3)
+                || (hierarchy != null && hierarchy.getNumberOfPrimitives() != faceVertexIndices.length / 3)) {
+            throw new IOException("Corrupted binary mesh file '" + path + "'.");
+        }
+
+        MeshTransformation transformation = new MeshTransformation(modelTransformation);
+        double[] vertexPositions = new double[vertexCoordinates.length / 3 * 3];
+        for(int i = 0; i < vertexCoordinates.length / 3; i++) {
+            transformation.putVertex(vertexPositions, i, vertexCoordinates[3*i], vertexCoordinates[3*i+1], vertexCoordinates[3*i+2]);
+        }
+        double[] vertexNormals = new double[normalCoordinates.length / 3 * 3];
+        for(int i = 0; i < normalCoordinates.length / 3; i++) {
+            transformation.putNormal(vertexNormals, i, normalCoordinates[3*i], normalCoordinates[3*i+1], normalCoordinates[3*i+2]);
+        }
+        return new MeshFile(vertexPositions, vertexNormals, faceVertexIndices, faceNormalIndices, hierarchy, transformation);
+    }
+    /*
+       Method that returns true iff all given indices (if any)
+       are indices of one of the given number of elements.
+     */
+    static boolean indicesInRange(int[] indices, int numberOfElements) {
+        if(indices == null) {
+            return true;
+        }
+        for(int index : indices) {
+            if(index < 0 || index >= numberOfElements) {
+                return false;
+            }
+        }
+        return true;
+    }
+    private static float[] toFloats(double[] values) {
+        float[] floats = new float[values.length];
+        for(int i = 0; i < values.length; i++) {
+            floats[i] = (float) values[i];
+        }
+        return floats;
+    }
+
+    /**
+     * Getters
+     */
+    public double[] getVertexPositions() {
+        return this.vertexPositions;
+    }
+    public double[] getVertexNormals() {
+        return this.vertexNormals;
+    }
+    public int[] getFaceVertexIndices() {
+        return this.faceVertexIndices;
+    }
+    public int[] getFaceNormalIndices() {
+        return this.faceNormalIndices;
+    }
+    public BoundingVolumeHierarchy getHierarchy() {
+        return this.hierarchy;
+    }
+}
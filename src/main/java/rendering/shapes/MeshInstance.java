@@ -0,0 +1,361 @@
+package rendering.shapes;
+
+import rendering.acceleration.AxisAlignedBoundingBox;
+import rendering.shading.Material;
+import rendering.tracing.HitRecord;
+import rendering.tracing.Intersection;
+import rendering.tracing.Ray;
+import rendering.utility.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Class for an instance of a triangle mesh, i.e. a mesh whose geometry
+ * (and bounding volume hierarchy) is kept in object coordinates and
+ * shared with every other instance of the same mesh file, and which is
+ * placed in the scene by its own modelling transformation.
+ *
+ * A TriangleMesh transforms all of its vertices to world coordinates
+ * and builds a hierarchy over them, so a scene that places the same mesh
+ * many times (e.g. a forest of the same tree) stores and builds it once
+ * per placement. An instance only stores its modelling transformation,
+ * the inverse of it, its bounding box in world coordinates, its color and
+ * its material, and intersects a ray by transforming the ray into object
+ * coordinates (by the inverse modelling transformation) and intersecting
+ * it with the shared geometry.
+ *
+ * The direction of the transformed ray is not normalised, so the point
+ * O + s * D of the ray in world coordinates is the point O' + s * D' of
+ * the transformed ray in object coordinates, for the same parameter s.
+ * Hits with instances are therefore recorded and compared in the same
+ * hit record as hits with any other shape. Normals are transformed back
+ * to world coordinates by (M^inverse)^transpose, as for a TriangleMesh.
+ *
+ * Instances of the same mesh file (stored in the same precision) share
+ * one geometry, kept in object coordinates in the MeshCache.
+ *
+ * Instances are the objects of the two-level acceleration structure of
+ * a scene: the hierarchy of the scene is built over the bounding boxes
+ * of the instances in world coordinates, and the hierarchy of each
+ * geometry over its triangles in object coordinates. An instance that
+ * moves is replaced by a moved copy ('withModelTransformation') whose
+ * geometry and hierarchy are unchanged, and only the hierarchy of the
+ * scene is refitted above it (see Scene.updateShapes).
+ *
+ * Every polygonal mesh's class variable shapeID must end in "mesh", so
+ * that an instance can have a "model-transform" attribute.
+ */
+
+public class MeshInstance implements RTShape {
+    public static final String shapeID = "instanced-mesh";
+
+    /// the geometry of the mesh in object coordinates, shared with other instances
+    private final TriangleMeshGeometry geometry;
+    private final Matrix4D modelTransformation;
+    /// upper three rows of the inverse modelling transformation, row by row, to transform rays into object coordinates
+    private final double[] inverseTransformation;
+    /// (M^inverse)^transpose of the upper 3x3 sub-matrix of the modelling transformation, to transform normals
+    private final Matrix3D normalTransformation;
+    /// bounds of the transformed geometry, in world coordinates
+    private final AxisAlignedBoundingBox boundingBox;
+
+    private final RTColor diffuseColor;
+    private final Material material;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the geometry of a mesh in object coordinates (which
+       is not copied, so that it can be shared), the modelling transformation
+       of this instance, its color, and its material.
+
+       Throws IllegalArgumentException if the modelling transformation
+       can not be inverted.
+     */
+    public MeshInstance(TriangleMeshGeometry geometry, Matrix4D modelTransformation, RTColor color, Material material) {
+        if(modelTransformation.getDeterminant() == 0) {
+            throw new IllegalArgumentException("The modelling transformation of a mesh instance must be invertible.");
+        }
+        Matrix4D inverse = modelTransformation.getInverse();
+        this.geometry = geometry;
+        this.modelTransformation = modelTransformation;
+        this.inverseTransformation = new double[]{
+                inverse.getM00(), inverse.getM01(), inverse.getM02(), inverse.getM03(),
+                inverse.getM10(), inverse.getM11(), inverse.getM12(), inverse.getM13(),
+                inverse.getM20(), inverse.getM21(), inverse.getM22(), inverse.getM23()};
+        this.normalTransformation = (new Matrix3D(modelTransformation)).getInverse().transposed();
+        this.boundingBox = MeshInstance.transformedBounds(geometry.getBoundingVolumeHierarchy().getBounds(), modelTransformation);
+        this.diffuseColor = color;
+        this.material = material;
+    }
+    /*
+       Constructor from a mesh file (see MeshFile), whose geometry is shared
+       with the other instances of the same file in the same precision, the
+       modelling transformation of this instance, its color, and its material.
+     */
+    public MeshInstance(String pathToMeshFile, Matrix4D modelTransformation, RTColor color, Material material, GeometryPrecision precision) throws IOException {
+        this(MeshCache.getGeometry(pathToMeshFile, null, precision), modelTransformation, color, material);
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that intersects a ray with the instance, by intersecting the
+       ray transformed into object coordinates with the shared geometry (see
+       TriangleMeshGeometry.intersectClosest). The record receives the instance
+       as the intersected shape, with the index of the intersected triangle and
+       the barycentric coordinates of the intersection point within it.
+     */
+    public boolean intersect(Ray ray, HitRecord hitRecord) {
+        double[] m = this.inverseTransformation;
+        double originX = ray.getOriginX(), originY = ray.getOriginY(), originZ = ray.getOriginZ();
+        double directionX = ray.getDirectionX(), directionY = ray.getDirectionY(), directionZ = ray.getDirectionZ();
+        int face = this.geometry.intersectClosest(
+                m[0]*originX + m[1]*originY + m[2]*originZ + m[3],
+                m[4]*originX + m[5]*originY + m[6]*originZ + m[7],
+                m[8]*originX + m[9]*originY + m[10]*originZ + m[11],
+                m[0]*directionX + m[1]*directionY + m[2]*directionZ,
+                m[4]*directionX + m[5]*directionY + m[6]*directionZ,
+                m[8]*directionX + m[9]*directionY + m[10]*directionZ, hitRecord);
+        if(face == -1) {
+            return false;
+        }
+        hitRecord.setIntersectedPrimitive(this, face);
+        return true;
+    }
+    /*
+       Method that returns true iff the ray intersects some triangle
+       of the instance at a point P = O + s * D with s < maxParameter,
+       stopping at the first such triangle.
+
+       It uses the hit record of the current thread for the intersection
+       kernel, so it must not be called while that record is in use.
+     */
+    public boolean occluded(Ray ray, double maxParameter) {
+        double[] m = this.inverseTransformation;
+        double originX = ray.getOriginX(), originY = ray.getOriginY(), originZ = ray.getOriginZ();
+        double directionX = ray.getDirectionX(), directionY = ray.getDirectionY(), directionZ = ray.getDirectionZ();
+        return this.geometry.intersectsAny(
+                m[0]*originX + m[1]*originY + m[2]*originZ + m[3],
+                m[4]*originX + m[5]*originY + m[6]*originZ + m[7],
+                m[8]*originX + m[9]*originY + m[10]*originZ + m[11],
+                m[0]*directionX + m[1]*directionY + m[2]*directionZ,
+                m[4]*directionX + m[5]*directionY + m[6]*directionZ,
+                m[8]*directionX + m[9]*directionY + m[10]*directionZ, maxParameter);
+    }
+    /*
+       Method that returns the axis-aligned bounding box of the instance
+       in world coordinates, i.e. the bounding box of the transformed
+       corners of the bounds of the geometry in object coordinates.
+     */
+    public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+        return this.boundingBox;
+    }
+    /*
+       Method that returns the unit normal at a given point on the surface
+       of the instance, given as an Intersection returned by the 'intersect'
+       method of this instance.
+
+       As for a TriangleMesh, the vertex normals of the intersected triangle
+       are transformed to world coordinates and normalised before they are
+       interpolated (which for non-uniform scales is not the same as transforming
+       the interpolated normal), or the surface normal of the triangle is
+       transformed, if the mesh is flat shaded.
+     */
+    public Vector3D getUnitNormalAt(Intersection intersection) {
+        int face = intersection.getPrimitiveIndex();
+        Vector3D barycentricCoordinates = intersection.getBarycentricCoordinates();
+        if(this.geometry.isFlatShaded()) {
+            Vector3D objectNormal = this.geometry.getUnitNormal(face, barycentricCoordinates.getY(), barycentricCoordinates.getZ());
+            return this.normalTransformation.multiplyFromRight(objectNormal).normalised();
+        }
+
+        double[] weights = {barycentricCoordinates.getX(), barycentricCoordinates.getY(), barycentricCoordinates.getZ()};
+        double x = 0, y = 0, z = 0;
+        for(int corner = 0; corner < 3; corner++) {
+            Vector3D n = this.normalTransformation.multiplyFromRight(this.geometry.getNormal(this.geometry.getNormalIndex(face, corner)));
+            double weight = weights[corner] / Math.sqrt(n.getX()*n.getX() + n.getY()*n.getY() + n.getZ()*n.getZ());
+            x += weight * n.getX();
+            y += weight * n.getY();
+            z += weight * n.getZ();
+        }
+        double length = Math.sqrt(x*x + y*y + z*z);
+        return new Vector3D(x / length, y / length, z / length);
+    }
+    /*
+       Method that returns the diffuse color of the instance at a given
+       point on its surface, which is the same everywhere.
+     */
+    public RTColor getColorAt(Vector3D point) {
+        return this.diffuseColor;
+    }
+    public Material getMaterialAt(Vector3D point) {
+        return this.material;
+    }
+    /*
+       Methods that return a copy of this instance moved by another modelling
+       transformation, or with another geometry (e.g. a deformed one, see
+       TriangleMeshGeometry.deformed), and the same color and material, e.g.
+       to replace the instance in its scene for the next frame of an animation
+       (see Scene.updateShapes). Neither touches the geometry, so moving an
+       instance takes constant time, whatever the size of its mesh.
+     */
+    public MeshInstance withModelTransformation(Matrix4D modelTransformation) {
+        return new MeshInstance(this.geometry, modelTransformation, this.diffuseColor, this.material);
+    }
+    public MeshInstance withGeometry(TriangleMeshGeometry geometry) {
+        return new MeshInstance(geometry, this.modelTransformation, this.diffuseColor, this.material);
+    }
+    /*
+       Method that writes the instance to a snapshot (see SceneSnapshot),
+       to be read back by 'readSnapshot'. The shared geometry is only written
+       with the first instance that uses it, and referred to by the others.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        if(!output.writeReference(this.geometry)) {
+            this.geometry.writeSnapshot(output);
+        }
+        Matrix4D m = this.modelTransformation;
+        for(double element : new double[]{m.getM00(), m.getM01(), m.getM02(), m.getM03(), m.getM10(), m.getM11(), m.getM12(), m.getM13(),
+                m.getM20(), m.getM21(), m.getM22(), m.getM23(), m.getM30(), m.getM31(), m.getM32(), m.getM33()}) {
+            output.writeDouble(element);
+        }
+        output.writeColor(this.diffuseColor);
+        this.material.writeSnapshot(output);
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the bounding box of the given box
+       transformed by the given transformation, i.e. of its
+       eight transformed corners.
+     */
+    private static AxisAlignedBoundingBox transformedBounds(AxisAlignedBoundingBox bounds, Matrix4D transformation) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY, minZ = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY, maxZ = Double.NEGATIVE_INFINITY;
+        for(int corner = 0; corner < 8; corner++) {
+            Vector3D p = transformation.multiplyFromRight(new Vector3D(
+                    (corner & 1) == 0 ? bounds.getMinX() : bounds.getMaxX(),
+                    (corner & 2) == 0 ? bounds.getMinY() : bounds.getMaxY(),
+                    (corner & 4) == 0 ? bounds.getMinZ() : bounds.getMaxZ()));
+            minX = Math.min(minX, p.getX());
+            minY = Math.min(minY, p.getY());
+            minZ = Math.min(minZ, p.getZ());
+            maxX = Math.max(maxX, p.getX());
+            maxY = Math.max(maxY, p.getY());
+            maxZ = Math.max(maxZ, p.getZ());
+        }
+        /// widened by the rounding error of the transformation, so that the box contains every transformed point
+        double margin = 0x1p-40 * Math.max(Math.max(Math.abs(minX), Math.abs(maxX)), Math.max(Math.max(Math.abs(minY), Math.abs(maxY)), Math.max(Math.abs(minZ), Math.abs(maxZ))));
+        return new AxisAlignedBoundingBox(minX - margin, minY - margin, minZ - margin, maxX + margin, maxY + margin, maxZ + margin);
+    }
+    /*
+       Method that parses a mesh instance from a Map<String,String>
+       mapping attribute names to their values.
+
+       A mesh instance is described by the same attributes as a triangle
+       mesh (see TriangleMesh.parseShape): a "path-to-obj-file" (or
+       "path-to-mesh-file"), "model-transform", "color", a "material",
+       and an optional "precision" ("double" or "float") attribute. Instead
+       of a "model-transform", an instance may have an "animation" (see
+       SceneDescriptionParser and Animation).
+
+       If the material attribute is missing from the XML
+       description of the RTShape, Material.defaultNonReflectiveMaterial
+       is set.
+     */
+    public static MeshInstance parseShape(Map<String, String> leafAttributes, Matrix4D modelTransformation) throws IncorrectSceneDescriptionXMLStructureException, IOException {
+        String path = null;
+        RTColor color = null;
+        Material material = null;
+        GeometryPrecision precision = GeometryPrecision.DOUBLE;
+
+        for (Map.Entry<String, String> entry : leafAttributes.entrySet()) {
+            String attributeName = entry.getKey();
+            String attributeValue = entry.getValue();
+
+            switch (attributeName) {
+                case "path-to-obj-file", "path-to-mesh-file" -> {
+                    if(path != null) {
+                        throw new IncorrectSceneDescriptionXMLStructureException("More than one mesh file path in MeshInstance description.");
+                    }
+                    path = attributeValue;
+                }
+                case "color" -> color = SceneDescriptionParser.parseColor(attributeValue);
+                case "material" ->
+                {
+                    /// first try to parse the material from name, then try to parse from description
+                    try {
+                        material = Material.parseMaterialFromName(attributeValue);
+                    }
+                    catch (IncorrectSceneDescriptionXMLStructureException e) {
+                        material = Material.parseMaterial(attributeValue);
+                    }
+                }
+                case "precision" -> precision = GeometryPrecision.parse(attributeValue);
+                default -> throw new IncorrectSceneDescriptionXMLStructureException("Undefined attribute in MeshInstance description.");
+            }
+        }
+
+        if(path == null) {
+            throw new IncorrectSceneDescriptionXMLStructureException("Missing 'path-to-obj-file' (or 'path-to-mesh-file') attribute in MeshInstance description.");
+        }
+        else if(color == null) {
+            throw new IncorrectSceneDescriptionXMLStructureException("Missing 'color' attribute in MeshInstance description.");
+        }
+
+        /// if missing material in XML, set default
+        if(material == null) {
+            material = Material.defaultNonReflectiveMaterial;
+        }
+
+        try {
+            return new MeshInstance(path, modelTransformation, color, material, precision);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IncorrectSceneDescriptionXMLStructureException("Non-invertible 'model-transform' in MeshInstance description.");
+        }
+    }
+    /*
+       Method that reads an instance written by 'writeSnapshot', sharing
+       its geometry with the instances read before it that use the same one.
+     */
+    public static MeshInstance readSnapshot(SnapshotInput input) throws IOException {
+        TriangleMeshGeometry geometry = input.readReference(TriangleMeshGeometry.class);
+        if(geometry == null) {
+            geometry = TriangleMeshGeometry.readSnapshot(input);
+            input.addShared(geometry);
+        }
+        double[] m = new double[16];
+        for(int i = 0; i < 16; i++) {
+            m[i] = input.readDouble();
+        }
+        Matrix4D modelTransformation = new Matrix4D(m[0], m[1], m[2], m[3], m[4], m[5], m[6], m[7], m[8], m[9], m[10], m[11], m[12], m[13], m[14], m[15]);
+        RTColor color = input.readColor();
+        Material material = Material.readSnapshot(input);
+        try {
+            return new MeshInstance(geometry, modelTransformation, color, material);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted mesh instance in scene snapshot.", e);
+        }
+    }
+
+    /**
+     * Getters
+     */
+    public String getShapeID() {
+        return MeshInstance.shapeID;
+    }
+    public TriangleMeshGeometry getGeometry() {
+        return this.geometry;
+    }
+    public Matrix4D getModelTransformation() {
+        return this.modelTransformation;
+    }
+}
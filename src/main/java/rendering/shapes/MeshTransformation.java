@@ -0,0 +1,83 @@
+package rendering.shapes;
+
+import rendering.utility.Matrix3D;
+import rendering.utility.Matrix4D;
+import rendering.utility.Vector3D;
+
+/**
+ * Class for the transformation of the vertices and vertex normals
+ * of a mesh from object coordinates (as read from a mesh file) to
+ * world coordinates, by the modelling transformation M of the mesh.
+ *
+ * Vertices are transformed by M, and normals by (M^inverse)^transpose
+ * of the upper 3x3 sub-matrix of M (i.e. of its rotations and scales),
+ * so that they stay perpendicular to the surface also for non-orthogonal
+ * transformations (e.g. non-uniform scales).
+ *
+ * Without a modelling transformation, coordinates are kept exactly
+ * as they are, i.e. in object coordinates.
+ */
+
+final class MeshTransformation {
+    /// null if the coordinates are kept in object coordinates
+    private final Matrix4D modelTransformation;
+    private final Matrix3D normalTransformation;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the modelling transformation of the
+       mesh, or null to keep the object coordinates.
+     */
+    MeshTransformation(Matrix4D modelTransformation) {
+        this.modelTransformation = modelTransformation;
+        this.normalTransformation = modelTransformation == null ? null : (new Matrix3D(modelTransformation)).getInverse().transposed();
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that transforms the given vertex (in object coordinates),
+       and stores it as vertex 'i' of the given packed array.
+     */
+    void putVertex(double[] packed, int i, float x, float y, float z) {
+        if(this.modelTransformation == null) {
+            MeshTransformation.put(packed, i, x, y, z);
+        }
+        else {
+            Vector3D v = this.modelTransformation.multiplyFromRight(new Vector3D(x, y, z));
+            MeshTransformation.put(packed, i, v.getX(), v.getY(), v.getZ());
+        }
+    }
+    /*
+       Method that transforms the given vertex normal (in object
+       coordinates), and stores it as normal 'i' of the given packed array.
+     */
+    void putNormal(double[] packed, int i, float x, float y, float z) {
+        if(this.normalTransformation == null) {
+            MeshTransformation.put(packed, i, x, y, z);
+        }
+        else {
+            Vector3D n = this.normalTransformation.multiplyFromRight(new Vector3D(x, y, z));
+            MeshTransformation.put(packed, i, n.getX(), n.getY(), n.getZ());
+        }
+    }
+    /*
+       Method that returns true iff coordinates are kept
+       in object coordinates (without a transformation).
+     */
+    boolean keepsObjectCoordinates() {
+        return this.modelTransformation == null;
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    private static void put(double[] packed, int i, double x, double y, double z) {
+        packed[3*i] = x;
+        packed[3*i+1] = y;
+        packed[3*i+2] = z;
+    }
+}
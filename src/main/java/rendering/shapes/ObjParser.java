@@ -0,0 +1,523 @@
+package rendering.shapes;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class for the parser of Wavefront OBJ files, which reads the vertices,
+ * vertex normals and faces of a mesh straight into the packed arrays of
+ * a MeshFile.
+ *
+ * The file is split into chunks on line boundaries, and the chunks are
+ * memory-mapped (FileChannel.map) and parsed in parallel, on the threads
+ * of a ForkJoinPool. Each chunk is parsed byte by byte into primitive
+ * arrays, without creating a String or any other object per line or per
+ * number, and every vertex and normal is transformed to world coordinates
+ * as soon as it is parsed (see MeshTransformation). Once all chunks are
+ * parsed, their arrays are concatenated, and the indices that are relative
+ * to the start of their chunk are offset by the number of vertices (normals)
+ * in the chunks before it.
+ *
+ * Numbers are parsed exactly as Float.parseFloat parses them (most of them
+ * without Float.parseFloat, see 'parseFloat').
+ *
+ * Only the statements that describe the geometry are read:
+ *      "v x y z [w]" (vertex, w is ignored)
+ *      "vn x y z" (vertex normal)
+ *      "f v1 v2 v3 ..." (face)
+ * where each vertex of a face is given as "v", "v/vt", "v//vn" or "v/vt/vn",
+ * by 1-based indices, or by negative indices counting back from the last
+ * vertex (normal) given before the face. Faces with more than three vertices
+ * are split into triangles (as a fan around their first vertex). All other
+ * statements (texture coordinates, groups, objects, materials, comments, ...)
+ * are ignored.
+ *
+ * Either all faces of a mesh give vertex normal indices, or none do (and
+ * the mesh is flat shaded).
+ */
+
+final class ObjParser {
+    /// files smaller than this (in bytes) are parsed as a single chunk
+    private static final int minimumChunkSize = 1 << 20;
+    /// chunks are at most this large (in bytes), so that each of them can be mapped as a single buffer
+    private static final int maximumChunkSize = 1 << 26;
+    /// maximum number of chunks per thread, for the threads to finish at about the same time
+    private static final int chunksPerThread = 4;
+
+    /// powers of ten that are exact as doubles, for 'parseFloat'
+    private static final double[] powersOfTen = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /// the chunk of the file being parsed, and the position of the next byte to parse in it
+    private final byte[] bytes;
+    private final long chunkStart;
+    private final MeshTransformation transformation;
+    private int position = 0;
+
+    /// what was parsed so far, with the number of vertices (normals, face vertices) in the arrays
+    private double[] vertexPositions;
+    private int numberOfVertices = 0;
+    private double[] vertexNormals;
+    private int numberOfNormals = 0;
+    private int[] faceVertexIndices;
+    private int[] faceNormalIndices;
+    private int numberOfFaceVertices = 0;
+    private boolean facesWithNormals = false;
+    private boolean facesWithoutNormals = false;
+    /// positions in 'faceVertexIndices' ('faceNormalIndices') of the indices relative to the start of the chunk
+    private int[] relativeVertexIndices = new int[0];
+    private int numberOfRelativeVertexIndices = 0;
+    private int[] relativeNormalIndices = new int[0];
+    private int numberOfRelativeNormalIndices = 0;
+
+    /// vertex (normal) indices of the current face, before it is split into triangles, and whether they are relative
+    private int[] polygonVertexIndices = new int[8];
+    private int[] polygonNormalIndices = new int[8];
+    private boolean[] polygonRelativeVertexIndices = new boolean[8];
+    private boolean[] polygonRelativeNormalIndices = new boolean[8];
+    /// whether the index last parsed is relative to the start of the chunk
+    private boolean relativeIndex;
+
+    /**
+     * Constructors
+     */
+    private ObjParser(byte[] bytes, long chunkStart, MeshTransformation transformation) {
+        this.bytes = bytes;
+        this.chunkStart = chunkStart;
+        this.transformation = transformation;
+
+        /// the arrays are grown as needed, starting from a guess based on the typical length of lines
+        this.vertexPositions = new double[3 * Math.max(bytes.length / 64, 16)];
+        this.vertexNormals = new double[3 * Math.max(bytes.length / 64, 16)];
+        this.faceVertexIndices = new int[3 * Math.max(bytes.length / 64, 16)];
+        this.faceNormalIndices = new int[this.faceVertexIndices.length];
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that parses the whole chunk, line by line.
+     */
+    private void parseLines() throws IOException {
+        while(this.position < this.bytes.length) {
+            this.skipSpaces();
+            int statementLength = this.statementLength();
+            if(statementLength == 1 && this.bytes[this.position] == 'v') {
+                this.position += 1;
+                this.parseVertex();
+            }
+            else if(statementLength == 2 && this.bytes[this.position] == 'v' && this.bytes[this.position + 1] == 'n') {
+                this.position += 2;
+                this.parseNormal();
+            }
+            else if(statementLength == 1 && this.bytes[this.position] == 'f') {
+                this.position += 1;
+                this.parseFace();
+            }
+            this.skipLine();
+        }
+    }
+    private void parseVertex() throws IOException {
+        float x = this.parseFloat();
+        float y = this.parseFloat();
+        float z = this.parseFloat();
+        if(3 * this.numberOfVertices == this.vertexPositions.length) {
+            this.vertexPositions = Arrays.copyOf(this.vertexPositions, 2 * this.vertexPositions.length);
+        }
+        this.transformation.putVertex(this.vertexPositions, this.numberOfVertices++, x, y, z);
+    }
+    private void parseNormal() throws IOException {
+        float x = this.parseFloat();
+        float y = this.parseFloat();
+        float z = this.parseFloat();
+        if(3 * this.numberOfNormals == this.vertexNormals.length) {
+            this.vertexNormals = Arrays.copyOf(this.vertexNormals, 2 * this.vertexNormals.length);
+        }
+        this.transformation.putNormal(this.vertexNormals, this.numberOfNormals++, x, y, z);
+    }
+    /*
+       Method that parses the vertices of a face, and adds
+       the face, split into triangles, to the faces parsed so far.
+     */
+    private void parseFace() throws IOException {
+        int polygonSize = 0;
+        int verticesWithNormals = 0;
+        while(true) {
+            this.skipSpaces();
+            if(this.isEndOfLine()) {
+                break;
+            }
+            if(polygonSize == this.polygonVertexIndices.length) {
+                this.polygonVertexIndices = Arrays.copyOf(this.polygonVertexIndices, 2 * polygonSize);
+                this.polygonNormalIndices = Arrays.copyOf(this.polygonNormalIndices, 2 * polygonSize);
+                this.polygonRelativeVertexIndices = Arrays.copyOf(this.polygonRelativeVertexIndices, 2 * polygonSize);
+                this.polygonRelativeNormalIndices = Arrays.copyOf(this.polygonRelativeNormalIndices, 2 * polygonSize);
+            }
+            /// "v", "v/vt", "v//vn" or "v/vt/vn"
+            this.polygonVertexIndices[polygonSize] = this.parseIndex(this.numberOfVertices);
+            this.polygonRelativeVertexIndices[polygonSize] = this.relativeIndex;
+            this.polygonNormalIndices[polygonSize] = 0;
+            this.polygonRelativeNormalIndices[polygonSize] = false;
+            if(this.position < this.bytes.length && this.bytes[this.position] == '/') {
+                this.position++;
+                if(this.position < this.bytes.length && this.bytes[this.position] != '/') {
+                    /// texture coordinates are not used
+                    this.parseIndex(0);
+                }
+                if(this.position < this.bytes.length && this.bytes[this.position] == '/') {
+                    this.position++;
+                    this.polygonNormalIndices[polygonSize] = this.parseIndex(this.numberOfNormals);
+                    this.polygonRelativeNormalIndices[polygonSize] = this.relativeIndex;
+                    verticesWithNormals++;
+                }
+            }
+            polygonSize++;
+        }
+        if(polygonSize < 3) {
+            throw this.error("Face with fewer than three vertices");
+        }
+        if(verticesWithNormals != 0 && verticesWithNormals != polygonSize) {
+            throw this.error("Face with vertex normals for only some of its vertices");
+        }
+        this.facesWithNormals |= verticesWithNormals != 0;
+        this.facesWithoutNormals |= verticesWithNormals == 0;
+
+        /// fan of triangles around the first vertex
+        for(int i = 1; i + 1 < polygonSize; i++) {
+            this.addFaceVertex(0);
+            this.addFaceVertex(i);
+            this.addFaceVertex(i + 1);
+        }
+    }
+    /*
+       Method that adds the vertex at the given position in the
+       current face as the next vertex of the current triangle.
+     */
+    private void addFaceVertex(int polygonPosition) {
+        if(this.numberOfFaceVertices == this.faceVertexIndices.length) {
+            this.faceVertexIndices = Arrays.copyOf(this.faceVertexIndices, 2 * this.faceVertexIndices.length);
+            this.faceNormalIndices = Arrays.copyOf(this.faceNormalIndices, 2 * this.faceNormalIndices.length);
+        }
+        if(this.polygonRelativeVertexIndices[polygonPosition]) {
+            this.relativeVertexIndices = ObjParser.append(this.relativeVertexIndices, this.numberOfRelativeVertexIndices++, this.numberOfFaceVertices);
+        }
+        if(this.polygonRelativeNormalIndices[polygonPosition]) {
+            this.relativeNormalIndices = ObjParser.append(this.relativeNormalIndices, this.numberOfRelativeNormalIndices++, this.numberOfFaceVertices);
+        }
+        this.faceVertexIndices[this.numberOfFaceVertices] = this.polygonVertexIndices[polygonPosition];
+        this.faceNormalIndices[this.numberOfFaceVertices] = this.polygonNormalIndices[polygonPosition];
+        this.numberOfFaceVertices++;
+    }
+    /*
+       Method that parses a 1-based index, or a negative index counting back
+       from the given number of elements parsed so far in this chunk, and
+       returns the 0-based index. For a negative index, the returned index
+       is relative to the start of the chunk (and may itself be negative),
+       and 'relativeIndex' is set.
+     */
+    private int parseIndex(int numberOfElements) throws IOException {
+        boolean negative = this.position < this.bytes.length && this.bytes[this.position] == '-';
+        if(negative) {
+            this.position++;
+        }
+        int start = this.position;
+        long value = 0;
+        while(this.position < this.bytes.length && this.bytes[this.position] >= '0' && this.bytes[this.position] <= '9') {
+            value = Math.min(10 * value + (this.bytes[this.position] - '0'), Integer.MAX_VALUE);
+            this.position++;
+        }
+        if(this.position == start || value == 0) {
+            throw this.error("Invalid index");
+        }
+        this.relativeIndex = negative;
+        return negative ? (int) (numberOfElements - value) : (int) (value - 1);
+    }
+    /*
+       Method that parses the next number on the line, and returns
+       exactly what Float.parseFloat returns for it.
+
+       Decimal numbers with at most 18 significant digits and a decimal
+       exponent of at most 22 (e.g. "-0.163700", "1.5e-3") are parsed by
+       converting the digits to a long and multiplying or dividing it by a
+       power of ten, which gives the double nearest to the number (as both
+       of them are exact doubles). Rounding that double to a float gives
+       the float nearest to the number, unless the double lies exactly
+       halfway between two floats. In that case, and for all other numbers,
+       Float.parseFloat is used.
+     */
+    private float parseFloat() throws IOException {
+        this.skipSpaces();
+        int start = this.position;
+        boolean negative = false;
+        if(this.position < this.bytes.length && (this.bytes[this.position] == '-' || this.bytes[this.position] == '+')) {
+            negative = this.bytes[this.position] == '-';
+            this.position++;
+        }
+        long digits = 0;
+        int numberOfDigits = 0;
+        int exponent = 0;
+        boolean tooManyDigits = false;
+        boolean fraction = false;
+        for(; this.position < this.bytes.length; this.position++) {
+            byte b = this.bytes[this.position];
+            if(b >= '0' && b <= '9') {
+                numberOfDigits++;
+                if(digits < 100_000_000_000_000_000L) {
+                    digits = 10 * digits + (b - '0');
+                    exponent -= fraction ? 1 : 0;
+                }
+                else {
+                    tooManyDigits = true;
+                }
+            }
+            else if(b == '.' && !fraction) {
+                fraction = true;
+            }
+            else {
+                break;
+            }
+        }
+        if(numberOfDigits > 0 && this.position < this.bytes.length && (this.bytes[this.position] == 'e' || this.bytes[this.position] == 'E')) {
+            this.position++;
+            boolean negativeExponent = false;
+            if(this.position < this.bytes.length && (this.bytes[this.position] == '-' || this.bytes[this.position] == '+')) {
+                negativeExponent = this.bytes[this.position] == '-';
+                this.position++;
+            }
+            int exponentStart = this.position;
+            int exponentValue = 0;
+            while(this.position < this.bytes.length && this.bytes[this.position] >= '0' && this.bytes[this.position] <= '9') {
+                exponentValue = Math.min(10 * exponentValue + (this.bytes[this.position] - '0'), 1000);
+                this.position++;
+            }
+            tooManyDigits |= this.position == exponentStart;
+            exponent += negativeExponent ? -exponentValue : exponentValue;
+        }
+
+        if(numberOfDigits > 0 && !tooManyDigits && this.isEndOfNumber() && digits <= (1L << 53) && Math.abs(exponent) <= 22) {
+            double value = exponent < 0 ? digits / ObjParser.powersOfTen[-exponent] : digits * ObjParser.powersOfTen[exponent];
+            float rounded = (float) value;
+            float neighbour = value > rounded ? Math.nextUp(rounded) : Math.nextDown(rounded);
+            if(value == rounded || ((double) rounded + (double) neighbour) / 2 != value) {
+                return negative ? -rounded : rounded;
+            }
+        }
+
+        /// anything else (e.g. "NaN", "Infinity", or too many digits) is left to Float.parseFloat
+        while(!this.isEndOfNumber()) {
+            this.position++;
+        }
+        if(this.position == start) {
+            throw this.error("Missing coordinate");
+        }
+        String number = new String(this.bytes, start, this.position - start, StandardCharsets.US_ASCII);
+        try {
+            return Float.parseFloat(number);
+        }
+        catch (NumberFormatException e) {
+            throw this.error("Invalid number '" + number + "'");
+        }
+    }
+    /*
+       Methods for moving through the bytes of the chunk.
+     */
+    private void skipSpaces() {
+        while(this.position < this.bytes.length && (this.bytes[this.position] == ' ' || this.bytes[this.position] == '\t' || this.bytes[this.position] == '\r')) {
+            this.position++;
+        }
+    }
+    private void skipLine() {
+        while(this.position < this.bytes.length && this.bytes[this.position] != '\n') {
+            this.position++;
+        }
+        this.position++;
+    }
+    private boolean isEndOfLine() {
+        return this.position >= this.bytes.length || this.bytes[this.position] == '\n' || this.bytes[this.position] == '#';
+    }
+    private boolean isEndOfNumber() {
+        return this.isEndOfLine() || this.bytes[this.position] == ' ' || this.bytes[this.position] == '\t' || this.bytes[this.position] == '\r';
+    }
+    /*
+       Method that returns the length of the statement keyword (e.g.
+       "v", "vn", "f") at the current position.
+     */
+    private int statementLength() {
+        int end = this.position;
+        while(end < this.bytes.length && this.bytes[end] != ' ' && this.bytes[end] != '\t' && this.bytes[end] != '\r' && this.bytes[end] != '\n') {
+            end++;
+        }
+        return end - this.position;
+    }
+    private IOException error(String message) {
+        return new IOException(message + " in OBJ file at byte " + (this.chunkStart + this.position) + ".");
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that parses the OBJ file at the given path into a mesh
+       file, transformed by the given modelling transformation (see
+       MeshTransformation, null to keep the object coordinates).
+
+       Throws IOException if the file can not be read, or does not
+       describe a valid mesh (e.g. a face refers to a vertex that does
+       not exist, or only some of the faces give vertex normals).
+     */
+    static MeshFile parse(String path, MeshTransformation transformation) throws IOException {
+        ArrayList<ObjParser> chunks = new ArrayList<>();
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            long[] chunkStarts = ObjParser.chunkStarts(channel);
+            if(chunkStarts.length == 2) {
+                chunks.add(ObjParser.parseChunk(channel, chunkStarts[0], chunkStarts[1], transformation));
+            }
+            else {
+                ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                try {
+                    ArrayList<Future<ObjParser>> tasks = new ArrayList<>();
+                    for(int i = 0; i + 1 < chunkStarts.length; i++) {
+                        long start = chunkStarts[i];
+                        long end = chunkStarts[i+1];
+                        tasks.add(pool.submit(() -> ObjParser.parseChunk(channel, start, end, transformation)));
+                    }
+                    for(Future<ObjParser> task : tasks) {
+                        chunks.add(task.get());
+                    }
+                }
+                catch (ExecutionException e) {
+                    if(e.getCause() instanceof IOException ioException) {
+                        throw ioException;
+                    }
+                    throw new IOException("Failed to parse OBJ file '" + path + "'.", e.getCause());
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while parsing OBJ file '" + path + "'.", e);
+                }
+                finally {
+                    pool.shutdownNow();
+                }
+            }
+        }
+        return ObjParser.concatenate(chunks, transformation, path);
+    }
+    /*
+       Method that returns the positions in the file at which the chunks
+       start (each right after the end of a line), followed by the size of
+       the file.
+     */
+    private static long[] chunkStarts(FileChannel channel) throws IOException {
+        long size = channel.size();
+        int numberOfChunks = (int) Math.min(size / ObjParser.minimumChunkSize, (long) ObjParser.chunksPerThread * Runtime.getRuntime().availableProcessors());
+        numberOfChunks = (int) Math.max(numberOfChunks, Math.max(1, (size + ObjParser.maximumChunkSize / 2 - 1) / (ObjParser.maximumChunkSize / 2)));
+
+        long[] chunkStarts = new long[numberOfChunks + 1];
+        chunkStarts[numberOfChunks] = size;
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        for(int i = 1; i < numberOfChunks; i++) {
+            /// move the nominal start forward to the start of the next line
+            long start = Math.max(size / numberOfChunks * i, chunkStarts[i-1]);
+            boolean lineStart = false;
+            while(!lineStart && start < size) {
+                buffer.clear();
+                int read = channel.read(buffer, start - 1);
+                for(int j = 0; j < read && !lineStart; j++) {
+                    if(buffer.get(j) == '\n') {
+                        lineStart = true;
+                        start += j;
+                    }
+                }
+                if(!lineStart) {
+                    start += Math.max(read, 1);
+                }
+            }
+            chunkStarts[i] = Math.min(start, size);
+        }
+        return chunkStarts;
+    }
+    /*
+       Method that maps the given part of the file into memory, and parses it.
+     */
+    private static ObjParser parseChunk(FileChannel channel, long start, long end, MeshTransformation transformation) throws IOException {
+        byte[] bytes = new byte[(int) (end - start)];
+        if(bytes.length > 0) {
+            channel.map(FileChannel.MapMode.READ_ONLY, start, end - start).get(bytes);
+        }
+        ObjParser parser = new ObjParser(bytes, start, transformation);
+        parser.parseLines();
+        return parser;
+    }
+    /*
+       Method that concatenates the arrays parsed from all chunks
+       (in the order of the chunks), and checks the result.
+     */
+    private static MeshFile concatenate(ArrayList<ObjParser> chunks, MeshTransformation transformation, String path) throws IOException {
+        int numberOfVertices = 0;
+        int numberOfNormals = 0;
+        int numberOfFaceVertices = 0;
+        boolean facesWithNormals = false;
+        boolean facesWithoutNormals = false;
+        for(ObjParser chunk : chunks) {
+            numberOfVertices += chunk.numberOfVertices;
+            numberOfNormals += chunk.numberOfNormals;
+            numberOfFaceVertices += chunk.numberOfFaceVertices;
+            facesWithNormals |= chunk.facesWithNormals;
+            facesWithoutNormals |= chunk.facesWithoutNormals;
+        }
+        if(facesWithNormals && facesWithoutNormals) {
+            throw new IOException("OBJ file '" + path + "' has faces both with and without vertex normals.");
+        }
+
+        double[] vertexPositions = new double[3 * numberOfVertices];
+        double[] vertexNormals = new double[3 * numberOfNormals];
+        int[] faceVertexIndices = new int[numberOfFaceVertices];
+        int[] faceNormalIndices = facesWithNormals ? new int[numberOfFaceVertices] : null;
+        int vertexOffset = 0;
+        int normalOffset = 0;
+        int faceVertexOffset = 0;
+        for(ObjParser chunk : chunks) {
+            System.arraycopy(chunk.vertexPositions, 0, vertexPositions, 3 * vertexOffset, 3 * chunk.numberOfVertices);
+            System.arraycopy(chunk.vertexNormals, 0, vertexNormals, 3 * normalOffset, 3 * chunk.numberOfNormals);
+            System.arraycopy(chunk.faceVertexIndices, 0, faceVertexIndices, faceVertexOffset, chunk.numberOfFaceVertices);
+            for(int i = 0; i < chunk.numberOfRelativeVertexIndices; i++) {
+                faceVertexIndices[faceVertexOffset + chunk.relativeVertexIndices[i]] += vertexOffset;
+            }
+            if(faceNormalIndices != null) {
+                System.arraycopy(chunk.faceNormalIndices, 0, faceNormalIndices, faceVertexOffset, chunk.numberOfFaceVertices);
+                for(int i = 0; i < chunk.numberOfRelativeNormalIndices; i++) {
+                    faceNormalIndices[faceVertexOffset + chunk.relativeNormalIndices[i]] += normalOffset;
+                }
+            }
+            vertexOffset += chunk.numberOfVertices;
+            normalOffset += chunk.numberOfNormals;
+            faceVertexOffset += chunk.numberOfFaceVertices;
+        }
+
+        if(!MeshFile.indicesInRange(faceVertexIndices, numberOfVertices) || !MeshFile.indicesInRange(faceNormalIndices, numberOfNormals)) {
+            throw new IOException("OBJ file '" + path + "' has a face that refers to a vertex or vertex normal that does not exist.");
+        }
+        return new MeshFile(vertexPositions, vertexNormals, faceVertexIndices, faceNormalIndices, null, transformation);
+    }
+    /*
+       Method that stores the given value at the given position of the
+       given array, and returns the array (grown if it was too short).
+     */
+    private static int[] append(int[] array, int position, int value) {
+        if(position == array.length) {
+            array = Arrays.copyOf(array, Math.max(16, 2 * array.length));
+        }
+        array[position] = value;
+        return array;
+    }
+}
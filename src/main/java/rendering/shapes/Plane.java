@@ -1,13 +1,18 @@
 package rendering.shapes;
 
+import rendering.acceleration.AxisAlignedBoundingBox;
 import rendering.shading.Material;
+import rendering.tracing.HitRecord;
 import rendering.tracing.Intersection;
 import rendering.tracing.Ray;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.RTColor;
 import rendering.utility.SceneDescriptionParser;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
 import rendering.utility.Vector3D;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -45,40 +50,45 @@ public class Plane implements RTShape {
      * Methods
      */
     /*
-       Method that intersects a ray with the plane. It
-       gives the closest intersection (minimum non-negative
-       value of parameter s in P = O + s * D ray equation)
-       if an intersection exists, or 'null' if no intersection
-       exists (don't want to use exceptions for control
+       Method that intersects a ray with the plane. If the
+       ray intersects the plane (at a positive value of parameter
+       s in P = O + s * D ray equation) closer than the hit
+       already in the given hit record, the intersection is
+       written into the record and true is returned, otherwise
+       false is returned (don't want to use exceptions for control
        flow when rendering).
-
-       The point of intersection is bundled together with the
-       intersected shape, into an Intersection object.
      */
-    public Intersection intersect(Ray ray) {
+    public boolean intersect(Ray ray, HitRecord hitRecord) {
         /*
         (O+s*D - A) dot N = 0
 
         (O-A) dot N + s (D dot N) = 0
          */
+        double normalX = this.unitNormal.getX(), normalY = this.unitNormal.getY(), normalZ = this.unitNormal.getZ();
 
-        double denominator = ray.getDirection().scalarProduct(this.unitNormal);
+        double denominator = ray.getDirectionX()*normalX + ray.getDirectionY()*normalY + ray.getDirectionZ()*normalZ;
 
         /// if ray is parallel to plane, there is no intersection
         if(Math.abs(denominator) < 1e-12) {
-            return null;
+            return false;
         }
-        else {
-            double numerator = (ray.getOrigin().added(this.pointInPlane.negated())).scalarProduct(this.unitNormal);
-            double s = -numerator / denominator;
 
-            if(s > 0) {
-                return new Intersection(this, ray.pointAt(s));
-            }
-            else {
-                return null;
-            }
+        double numerator = (ray.getOriginX() - this.pointInPlane.getX())*normalX + (ray.getOriginY() - this.pointInPlane.getY())*normalY
+                + (ray.getOriginZ() - this.pointInPlane.getZ())*normalZ;
+        double s = -numerator / denominator;
+
+        if(s > 0 && s < hitRecord.getParameter()) {
+            hitRecord.record(s, this);
+            return true;
         }
+        return false;
+    }
+    /*
+       Method that returns the axis-aligned bounding box of
+       the plane. A plane is unbounded, so it returns null.
+     */
+    public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+        return null;
     }
     /*
        Method that returns the unit normal at a given point on
@@ -118,6 +128,16 @@ public class Plane implements RTShape {
     public Material getMaterialAt(Vector3D point) {
         return this.material;
     }
+    /*
+       Method that writes the plane to a snapshot (see
+       SceneSnapshot), to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeVector3D(this.unitNormal);
+        output.writeVector3D(this.pointInPlane);
+        output.writeColor(this.diffuseColor);
+        this.material.writeSnapshot(output);
+    }
 
     /**
      * Static Utility Methods
@@ -178,6 +198,19 @@ public class Plane implements RTShape {
 
         return new Plane(normal, point, color, material);
     }
+    /*
+       Method that reads a plane written by 'writeSnapshot'.
+
+       The unit normal is restored as it was written, since
+       normalising it again in the constructor can change its
+       last bits.
+     */
+    public static Plane readSnapshot(SnapshotInput input) throws IOException {
+        Vector3D unitNormal = input.readVector3D();
+        Plane plane = new Plane(unitNormal, input.readVector3D(), input.readColor(), Material.readSnapshot(input));
+        plane.unitNormal = unitNormal;
+        return plane;
+    }
 
     /**
      * Getters
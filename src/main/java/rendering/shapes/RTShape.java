@@ -1,10 +1,15 @@
 package rendering.shapes;
+import rendering.acceleration.AxisAlignedBoundingBox;
 import rendering.shading.Material;
+import rendering.tracing.HitRecord;
 import rendering.tracing.Intersection;
 import rendering.utility.RTColor;
+import rendering.utility.SnapshotOutput;
 import rendering.utility.Vector3D;
 import rendering.tracing.Ray;
 
+import java.io.IOException;
+
 /**
  * Interface for a shape that can be included in
  * the XML scene description.
@@ -24,6 +29,12 @@ import rendering.tracing.Ray;
  * that RTShape has a "model-transform" attribute (only allowed if it is
  * a polygonal mesh). The SceneDescriptionParser uses this method to pass
  * the parsing to the appropriate RTShape.
+ *
+ * EACH SHAPE MUST ALSO HAVE A
+ *      public static RTShape readSnapshot(SnapshotInput input){}
+ * TO READ THE SHAPE BACK FROM WHAT ITS 'writeSnapshot' METHOD WROTE.
+ * The SceneSnapshot uses these methods (through the ShapeMapper) to
+ * store and restore fully built shapes.
  * !!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!
  *
  * Each shape defines the unit normal, color, and material (shading
@@ -38,10 +49,30 @@ public interface RTShape {
        on every invocation.
      */
     String getShapeID();
+    /*
+       Method that writes everything needed to restore this exact
+       shape (including any precomputed data, e.g. the bounding volume
+       hierarchy of a mesh) to the given snapshot output, to be read back
+       by the static readSnapshot method of its class. The shapeID is
+       written by the SceneSnapshot, not by this method.
+     */
+    void writeSnapshot(SnapshotOutput output) throws IOException;
 
     /**
      * Methods For Tracing
      */
+    /*
+       Method that intersects the Ray with the RTShape, and
+       if the closest intersection (minimum non-negative value
+       of parameter s in P = O + s * D ray equation) is closer
+       than the hit already in the given HitRecord (has a smaller
+       parameter), writes it into the record and returns true.
+       Otherwise, the record is left unchanged and false is returned.
+
+       Implementations must not allocate, so that searching for
+       the closest hit among many shapes creates no garbage.
+     */
+    boolean intersect(Ray ray, HitRecord hitRecord);
     /*
        Method that returns the point (as a Vector3D)
        of intersection of the Ray r with the RTShape,
@@ -49,8 +80,41 @@ public interface RTShape {
        Intersection object, or returns null if there
        is no intersection (so that a triangle mesh can
        return the exact intersected triangle).
+
+       It uses the hit record of the current thread, so
+       it must not be called while that record is in use.
+     */
+    default Intersection intersect(Ray ray) {
+        HitRecord hitRecord = HitRecord.forCurrentThread();
+        hitRecord.reset(Double.POSITIVE_INFINITY);
+        this.intersect(ray, hitRecord);
+        return hitRecord.toIntersection(ray);
+    }
+    /*
+       Method that returns true iff the Ray intersects the RTShape
+       at any point P = O + s * D with s < maxParameter (i.e. closer
+       than the given parameter). Unlike 'intersect', it does not have to find
+       the closest such intersection, so shapes made of many primitives
+       can stop at the first one they find. Used for shadow rays.
+
+       By default, the closest intersection is searched for using the
+       hit record of the current thread, so it must not be called
+       while that record is in use.
+     */
+    default boolean occluded(Ray ray, double maxParameter) {
+        HitRecord hitRecord = HitRecord.forCurrentThread();
+        hitRecord.reset(maxParameter);
+        return this.intersect(ray, hitRecord);
+    }
+    /*
+       Method that returns the axis-aligned bounding box
+       of the RTShape, so that it can be put into an
+       acceleration structure (BoundingVolumeHierarchy)
+       of the scene, or returns null if the RTShape is
+       unbounded (e.g. a plane), in which case the ray
+       has to be intersected with it directly.
      */
-    Intersection intersect(Ray ray);
+    AxisAlignedBoundingBox getAxisAlignedBoundingBox();
 
     /**
      * Methods For Shading
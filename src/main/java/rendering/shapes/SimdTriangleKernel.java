@@ -0,0 +1,198 @@
+package rendering.shapes;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+import rendering.tracing.HitRecord;
+
+/**
+ * Class with the SIMD version of the Moller-Trumbore kernel of
+ * Triangle.intersect, which intersects a ray with as many triangles
+ * at once as there are double lanes in the preferred vector shape of
+ * the CPU, using the Vector API (see IntersectionKernel).
+ *
+ * The triangles are packed in a structure-of-arrays layout: the same
+ * values that Triangle.packIntersectionData writes for one triangle,
+ * but as 10 components (vertex A, edges or vertices B and C, threshold)
+ * that are each stored for all triangles in a row, one after the other,
+ * 'stride' values apart. The stride is the number of triangles plus the
+ * width, so a full vector can be loaded at any triangle; the padding
+ * triangles have an infinite threshold and are never hit.
+ *
+ * Every lane does exactly the operations of the scalar kernel, in
+ * the same order, and of all hits in a block the first one with the
+ * smallest parameter is recorded (as the scalar kernel would when
+ * intersecting the triangles one after the other), so both kernels
+ * give identical results.
+ *
+ * This class must only be loaded if IntersectionKernel.isSimdAvailable.
+ */
+
+final class SimdTriangleKernel {
+    private static final VectorSpecies<Double> species = DoubleVector.SPECIES_PREFERRED;
+    /// float vectors with as many lanes as 'species', for float precision data
+    private static final VectorSpecies<Float> floatSpecies = VectorSpecies.of(float.class, VectorShape.forBitSize(SimdTriangleKernel.species.vectorBitSize() / 2));
+    /// number of values packed per triangle
+    static final int numberOfComponents = 10;
+
+    /**
+     * Constructors
+     */
+    private SimdTriangleKernel() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the number of triangles intersected at once.
+     */
+    static int getWidth() {
+        return SimdTriangleKernel.species.length();
+    }
+    /*
+       Method that returns the distance between the components of the
+       packed data of the given number of triangles.
+     */
+    static int getStride(int numberOfTriangles) {
+        return numberOfTriangles + SimdTriangleKernel.getWidth();
+    }
+    /*
+       Methods that copy the intersection data of one triangle, in the
+       layout of Triangle.packIntersectionData, to the given position of
+       the packed structure-of-arrays data.
+     */
+    static void pack(double[] data, int stride, int position, double[] triangleData) {
+        for(int component = 0; component < SimdTriangleKernel.numberOfComponents; component++) {
+            data[component * stride + position] = triangleData[component];
+        }
+    }
+    static void pack(float[] data, int stride, int position, float[] triangleData) {
+        for(int component = 0; component < SimdTriangleKernel.numberOfComponents; component++) {
+            data[component * stride + position] = triangleData[component];
+        }
+    }
+    /*
+       Method that fills the thresholds of the padding triangles after
+       the last triangle with infinity, so that they are never hit.
+     */
+    static void padThresholds(double[] data, int stride, int numberOfTriangles) {
+        for(int position = numberOfTriangles; position < stride; position++) {
+            data[9 * stride + position] = Double.POSITIVE_INFINITY;
+        }
+    }
+    static void padThresholds(float[] data, int stride, int numberOfTriangles) {
+        for(int position = numberOfTriangles; position < stride; position++) {
+            data[9 * stride + position] = Float.POSITIVE_INFINITY;
+        }
+    }
+    /*
+       Method that intersects the ray P = O + s * D with the 'count' triangles
+       starting at position 'first' of the packed double precision data (vertex
+       A and edges B-A, C-A), and writes the closest hit that is closer than the
+       one already in the hit record into the record.
+
+       Returns the position of the triangle that was hit, or -1 if none was.
+     */
+    static int intersect(double[] data, int stride, int first, int count, double originX, double originY, double originZ,
+                         double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        return SimdTriangleKernel.intersect(data, null, stride, first, count, originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+    }
+    /*
+       Method that intersects the ray with triangles of the packed float
+       precision data (vertices A, B, C) in the same way as above. The floats
+       are converted to doubles, and the edges are computed from them in double
+       precision, as in the scalar kernel for float data.
+     */
+    static int intersect(float[] data, int stride, int first, int count, double originX, double originY, double originZ,
+                         double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        return SimdTriangleKernel.intersect(null, data, stride, first, count, originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+    }
+    /*
+       Method with the Moller-Trumbore kernel shared by the two methods above,
+       for the double data, or (if that is null) for the float data.
+
+       All vectors are created and used within this method (the vectors of
+       the Vector API are only kept in registers if they do not cross the
+       boundaries of methods that are not inlined).
+     */
+    private static int intersect(double[] data, float[] floatData, int stride, int first, int count, double originX, double originY, double originZ,
+                                 double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        VectorSpecies<Double> species = SimdTriangleKernel.species;
+        boolean isFloat = data == null;
+        int end = first + count;
+        int closestPosition = -1;
+        for(int block = first; block < end; block += species.length()) {
+            DoubleVector ax = SimdTriangleKernel.load(data, floatData, block);
+            DoubleVector ay = SimdTriangleKernel.load(data, floatData, stride + block);
+            DoubleVector az = SimdTriangleKernel.load(data, floatData, 2 * stride + block);
+            DoubleVector edge1X = SimdTriangleKernel.load(data, floatData, 3 * stride + block);
+            DoubleVector edge1Y = SimdTriangleKernel.load(data, floatData, 4 * stride + block);
+            DoubleVector edge1Z = SimdTriangleKernel.load(data, floatData, 5 * stride + block);
+            DoubleVector edge2X = SimdTriangleKernel.load(data, floatData, 6 * stride + block);
+            DoubleVector edge2Y = SimdTriangleKernel.load(data, floatData, 7 * stride + block);
+            DoubleVector edge2Z = SimdTriangleKernel.load(data, floatData, 8 * stride + block);
+            DoubleVector threshold = SimdTriangleKernel.load(data, floatData, 9 * stride + block);
+            /// float data stores vertices B and C rather than the edges
+            if(isFloat) {
+                edge1X = edge1X.sub(ax);
+                edge1Y = edge1Y.sub(ay);
+                edge1Z = edge1Z.sub(az);
+                edge2X = edge2X.sub(ax);
+                edge2Y = edge2Y.sub(ay);
+                edge2Z = edge2Z.sub(az);
+            }
+
+            /// P = D X (C-A), determinant = (B-A) . P
+            DoubleVector pX = edge2Z.mul(directionY).sub(edge2Y.mul(directionZ));
+            DoubleVector pY = edge2X.mul(directionZ).sub(edge2Z.mul(directionX));
+            DoubleVector pZ = edge2Y.mul(directionX).sub(edge2X.mul(directionY));
+            DoubleVector determinant = edge1X.mul(pX).add(edge1Y.mul(pY)).add(edge1Z.mul(pZ));
+            /// lanes where the ray is parallel to the triangle (or the triangle is degenerate, or
+            /// belongs to the next leaf) have no intersection
+            VectorMask<Double> hits = species.indexInRange(block, end).and(determinant.abs().compare(VectorOperators.GT, threshold));
+            if(!hits.anyTrue()) {
+                continue;
+            }
+            DoubleVector inverseDeterminant = DoubleVector.broadcast(species, 1).div(determinant);
+
+            DoubleVector tX = DoubleVector.broadcast(species, originX).sub(ax);
+            DoubleVector tY = DoubleVector.broadcast(species, originY).sub(ay);
+            DoubleVector tZ = DoubleVector.broadcast(species, originZ).sub(az);
+            DoubleVector u = tX.mul(pX).add(tY.mul(pY)).add(tZ.mul(pZ)).mul(inverseDeterminant);
+            hits = hits.andNot(u.compare(VectorOperators.LT, -1e-12).or(u.compare(VectorOperators.GT, 1 + 1e-12)));
+
+            DoubleVector qX = tY.mul(edge1Z).sub(tZ.mul(edge1Y));
+            DoubleVector qY = tZ.mul(edge1X).sub(tX.mul(edge1Z));
+            DoubleVector qZ = tX.mul(edge1Y).sub(tY.mul(edge1X));
+            DoubleVector v = qX.mul(directionX).add(qY.mul(directionY)).add(qZ.mul(directionZ)).mul(inverseDeterminant);
+            hits = hits.andNot(v.compare(VectorOperators.LT, -1e-12).or(u.add(v).compare(VectorOperators.GT, 1 + 1e-12)));
+
+            DoubleVector s = edge2X.mul(qX).add(edge2Y.mul(qY)).add(edge2Z.mul(qZ)).mul(inverseDeterminant);
+            hits = hits.and(s.compare(VectorOperators.GT, 0)).and(s.compare(VectorOperators.LT, hitRecord.getParameter()));
+            if(!hits.anyTrue()) {
+                continue;
+            }
+
+            /// record the first of the closest hits
+            double closestParameter = s.reduceLanes(VectorOperators.MIN, hits);
+            int lane = hits.and(s.compare(VectorOperators.EQ, closestParameter)).firstTrue();
+            hitRecord.record(closestParameter, u.lane(lane), v.lane(lane));
+            closestPosition = block + lane;
+        }
+        return closestPosition;
+    }
+    /*
+       Method that loads a vector from the given offset of the double
+       data, or (if that is null) of the float data, converted to doubles.
+     */
+    private static DoubleVector load(double[] data, float[] floatData, int offset) {
+        if(data != null) {
+            return DoubleVector.fromArray(SimdTriangleKernel.species, data, offset);
+        }
+        return (DoubleVector) FloatVector.fromArray(SimdTriangleKernel.floatSpecies, floatData, offset)
+                .convertShape(VectorOperators.F2D, SimdTriangleKernel.species, 0);
+    }
+}
@@ -1,13 +1,18 @@
 package rendering.shapes;
 
+import rendering.acceleration.AxisAlignedBoundingBox;
 import rendering.shading.Material;
+import rendering.tracing.HitRecord;
 import rendering.tracing.Intersection;
 import rendering.tracing.Ray;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.RTColor;
 import rendering.utility.SceneDescriptionParser;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
 import rendering.utility.Vector3D;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -35,51 +40,51 @@ public class Sphere implements RTShape {
      * Methods
      */
     /*
-       Method that intersects a ray with the sphere. It
-       gives the closest intersection (minimum non-negative
-       value of parameter s in P = O + s * D ray equation)
-       if an intersection exists, or 'null' if no intersection
-       exists (don't want to use exceptions for control
-       flow when rendering).
-
-       The point of intersection is bundled together with the
-       intersected shape, into an Intersection object.
+       Method that intersects a ray with the sphere. If the
+       ray intersects the sphere closer than the hit already in
+       the given hit record, the closest intersection (minimum
+       non-negative value of parameter s in P = O + s * D ray
+       equation) is written into the record and true is returned,
+       otherwise false is returned (don't want to use exceptions
+       for control flow when rendering).
      */
-    public Intersection intersect(Ray ray) {
+    public boolean intersect(Ray ray, HitRecord hitRecord) {
         /// quadratic equation a*s^2 + b*s + c = 0
-        Vector3D D = ray.getDirection();
-        Vector3D O = ray.getOrigin();
-        Vector3D C = this.center;
+        double dX = ray.getDirectionX(), dY = ray.getDirectionY(), dZ = ray.getDirectionZ();
+        /// O - C
+        double ocX = ray.getOriginX() - this.center.getX(), ocY = ray.getOriginY() - this.center.getY(), ocZ = ray.getOriginZ() - this.center.getZ();
         double r = this.radius;
 
-        double a = D.magnitudeSquared();
+        double a = dX*dX + dY*dY + dZ*dZ;
         assert(a > 0);
-        double b = 2 * D.scalarProduct(O.added(C.negated()));
-        double c = O.added(C.negated()).magnitudeSquared() - r*r;
+        double b = 2 * (dX*ocX + dY*ocY + dZ*ocZ);
+        double c = ocX*ocX + ocY*ocY + ocZ*ocZ - r*r;
 
         double discriminant = b*b - 4*a*c;
 
         if(discriminant < 0) { /// no intersection
-            return null;
+            return false;
         }
-        else {
-            double s1 = (-b + Math.sqrt(discriminant)) / (2*a);
-            double s2 = (-b - Math.sqrt(discriminant)) / (2*a);
 
-            if(s1 < 0 && s2 < 0) {
-                return null;
-            }
-
-            if(s1 < 0) {
-                return new Intersection(this, ray.pointAt(s2));
-            }
-
-            if(s2 < 0) {
-                return new Intersection(this, ray.pointAt(s1));
-            }
+        double s1 = (-b + Math.sqrt(discriminant)) / (2*a);
+        double s2 = (-b - Math.sqrt(discriminant)) / (2*a);
 
-            return new Intersection(this, ray.pointAt(Math.min(s1,s2)));
+        /// s2 <= s1, so take s2 unless it is behind the origin of the ray (origin inside the sphere)
+        double s = s2 >= 0 ? s2 : s1;
+        if(s >= 0 && s < hitRecord.getParameter()) {
+            hitRecord.record(s, this);
+            return true;
         }
+        return false;
+    }
+    /*
+       Method that returns the axis-aligned bounding box of
+       the sphere, i.e. the cube centered at the center of the
+       sphere whose sides are twice the radius.
+     */
+    public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+        return new AxisAlignedBoundingBox(this.center.getX() - this.radius, this.center.getY() - this.radius, this.center.getZ() - this.radius,
+                this.center.getX() + this.radius, this.center.getY() + this.radius, this.center.getZ() + this.radius);
     }
     /*
        Method that returns the unit normal at a given point on
@@ -118,7 +123,16 @@ public class Sphere implements RTShape {
     public Material getMaterialAt(Vector3D point) {
         return this.material;
     }
-
+    /*
+       Method that writes the sphere to a snapshot (see
+       SceneSnapshot), to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeVector3D(this.center);
+        output.writeDouble(this.radius);
+        output.writeColor(this.diffuseColor);
+        this.material.writeSnapshot(output);
+    }
 
     /**
      * Static Utility Methods
@@ -178,6 +192,12 @@ public class Sphere implements RTShape {
 
         return new Sphere(center, radius, color, material);
     }
+    /*
+       Method that reads a sphere written by 'writeSnapshot'.
+     */
+    public static Sphere readSnapshot(SnapshotInput input) throws IOException {
+        return new Sphere(input.readVector3D(), input.readDouble(), input.readColor(), Material.readSnapshot(input));
+    }
 
     /**
      * Getters
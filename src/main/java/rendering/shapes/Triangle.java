@@ -1,13 +1,19 @@
 package rendering.shapes;
 
+import rendering.acceleration.AxisAlignedBoundingBox;
 import rendering.shading.Material;
+import rendering.tracing.HitRecord;
 import rendering.tracing.Intersection;
 import rendering.tracing.Ray;
+import rendering.utility.GeometryPrecision;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.RTColor;
 import rendering.utility.SceneDescriptionParser;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
 import rendering.utility.Vector3D;
 
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -24,11 +30,28 @@ import java.util.Map;
  * vector cross product (B-A) X (C-A) of the vertices
  * as the outwards unit normal to the triangle (i.e.
  * following counterclockwise direction A-B-C).
+ *
+ * Rays are intersected with triangles using the
+ * Moller-Trumbore algorithm, which finds the parameter
+ * of the hit point on the ray and its barycentric
+ * coordinates in a single pass, from the vertex A and
+ * the edges B-A and C-A of the triangle. These are
+ * precomputed and packed into an array of doubles, in
+ * the same layout that TriangleMeshGeometry uses for
+ * all triangles of a mesh, so that both are intersected
+ * by the same allocation-free kernel.
  */
 
 public class Triangle implements RTShape {
     public static final String shapeID = "triangle";
 
+    /// number of doubles per triangle in packed intersection data: vertex A, edge B-A, edge C-A,
+    /// and the threshold below which the Moller-Trumbore determinant means the ray is parallel to the triangle
+    public static final int intersectionDataStride = 10;
+    /// number of floats per triangle in packed float intersection data: vertices A, B, C, and the threshold,
+    /// the edges are not stored but computed (exactly) in double precision, so that shared vertices stay shared
+    public static final int floatIntersectionDataStride = 10;
+
     /// the outer surface of the triangle is A-B-C counterclockwise
     private final Vector3D vertexA;
     private final Vector3D vertexB;
@@ -46,6 +69,9 @@ public class Triangle implements RTShape {
 
     private final Vector3D surfaceUnitNormal;
 
+    /// packed vertex A, edges B-A and C-A, and the parallelism threshold, for ray intersection
+    private final double[] intersectionData;
+
     /**
      * Constructors
      */
@@ -62,18 +88,7 @@ public class Triangle implements RTShape {
        to the constructor.
      */
     public Triangle(Vector3D verA, Vector3D verB, Vector3D verC, Vector3D norA, Vector3D norB, Vector3D norC, RTColor color, Material material) {
-        this.vertexA = verA;
-        this.vertexB = verB;
-        this.vertexC = verC;
-
-        this.unitNormalA = norA.normalised();
-        this.unitNormalB = norB.normalised();
-        this.unitNormalC = norC.normalised();
-
-        this.diffuseColor = color;
-        this.material = material;
-
-        this.surfaceUnitNormal = this.vertexB.added(this.vertexA.negated()).crossProduct(this.vertexC.added(this.vertexA.negated())).normalised();
+        this(verA, verB, verC, new Vector3D[]{norA.normalised(), norB.normalised(), norC.normalised()}, color, material);
     }
     /*
        Constructor from three vertices, diffuse color,
@@ -86,6 +101,18 @@ public class Triangle implements RTShape {
        are set to be equal to the unit normal to triangle surface.
      */
     public Triangle(Vector3D verA, Vector3D verB, Vector3D verC, RTColor color, Material material) {
+        this(verA, verB, verC, null, color, material);
+    }
+    /*
+       Constructor from three vertices, their unit normals (or null for
+       a flat shaded triangle, whose vertex normals are then all set to
+       the unit normal to its surface), diffuse color and material.
+
+       The given normals are used as they are, so that a triangle can be
+       restored exactly from a snapshot (normalising a unit normal again
+       can change its last bits).
+     */
+    private Triangle(Vector3D verA, Vector3D verB, Vector3D verC, Vector3D[] unitNormals, RTColor color, Material material) {
         this.vertexA = verA;
         this.vertexB = verB;
         this.vertexC = verC;
@@ -95,43 +122,53 @@ public class Triangle implements RTShape {
 
         this.surfaceUnitNormal = this.vertexB.added(this.vertexA.negated()).crossProduct(this.vertexC.added(this.vertexA.negated())).normalised();
 
-        this.unitNormalA = surfaceUnitNormal;
-        this.unitNormalB = surfaceUnitNormal;
-        this.unitNormalC = surfaceUnitNormal;
+        this.unitNormalA = unitNormals != null ? unitNormals[0] : this.surfaceUnitNormal;
+        this.unitNormalB = unitNormals != null ? unitNormals[1] : this.surfaceUnitNormal;
+        this.unitNormalC = unitNormals != null ? unitNormals[2] : this.surfaceUnitNormal;
+
+        this.intersectionData = new double[Triangle.intersectionDataStride];
+        Triangle.packIntersectionData(this.intersectionData, 0, verA.getX(), verA.getY(), verA.getZ(),
+                verB.getX(), verB.getY(), verB.getZ(), verC.getX(), verC.getY(), verC.getZ());
     }
 
     /**
      * Methods
      */
     /*
-       Method that intersects a ray with the triangle. It
-       gives the closest intersection (minimum non-negative
-       value of parameter s in P = O + s * D ray equation)
-       if an intersection exists, or 'null' if no intersection
-       exists (don't want to use exceptions for control
-       flow when rendering).
-
-       The point of intersection is bundled together with the
-       intersected shape, into an Intersection object.
+       Method that intersects a ray with the triangle. If the
+       ray intersects the triangle (at a positive value of parameter
+       s in P = O + s * D ray equation) closer than the hit already
+       in the given hit record, the intersection is written into the
+       record and true is returned, otherwise false is returned (don't
+       want to use exceptions for control flow when rendering).
+
+       The record also receives the barycentric coordinates of the
+       point (so that getUnitNormalAt does not have to find them
+       again), and 0 as the index of the intersected primitive.
+
+       Nothing is allocated.
      */
-    public Intersection intersect(Ray ray) {
-        Plane plane = new Plane(this.surfaceUnitNormal, this.vertexA, null, null);
-        Intersection planeIntersection = plane.intersect(ray);
-
-        /// if ray does not intersect triangle's plane, no intersection exists
-        if(planeIntersection == null) {
-            return null;
-        }
-
-        Vector3D barycentricCoordinates = this.getBarycentricCoordinates(planeIntersection.getIntersectionPoint());
-
-        /// if not all barycentric coordinates are non-negative, intersection point with plane is outside of triangle
-        /// allow barycentric coordinates to be slightly negative (-1e12) so that edges and vertices of triangle are allowed
-        if(barycentricCoordinates.getX() < -1e-12 || barycentricCoordinates.getY() < -1e-12 || barycentricCoordinates.getZ() < -1e-12) {
-            return null;
+    public boolean intersect(Ray ray, HitRecord hitRecord) {
+        if(!Triangle.intersect(this.intersectionData, 0, ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+                ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), hitRecord)) {
+            return false;
         }
-
-        return new Intersection(this, planeIntersection.getIntersectionPoint());
+        hitRecord.setIntersectedPrimitive(this, 0);
+        return true;
+    }
+    /*
+       Method that returns the axis-aligned bounding box of
+       the triangle, by taking the min and max value of x,y,z
+       coordinates of its three vertices.
+     */
+    public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+        return new AxisAlignedBoundingBox(
+                Math.min(this.vertexA.getX(), Math.min(this.vertexB.getX(), this.vertexC.getX())),
+                Math.min(this.vertexA.getY(), Math.min(this.vertexB.getY(), this.vertexC.getY())),
+                Math.min(this.vertexA.getZ(), Math.min(this.vertexB.getZ(), this.vertexC.getZ())),
+                Math.max(this.vertexA.getX(), Math.max(this.vertexB.getX(), this.vertexC.getX())),
+                Math.max(this.vertexA.getY(), Math.max(this.vertexB.getY(), this.vertexC.getY())),
+                Math.max(this.vertexA.getZ(), Math.max(this.vertexB.getZ(), this.vertexC.getZ())));
     }
     /*
        Method that returns the unit normal at a given point on
@@ -144,18 +181,25 @@ public class Triangle implements RTShape {
        (B-A) X (C-A) (take care not to confuse this normal with
        the three vertex normals).
 
+       If the Intersection was returned by the 'intersect' method,
+       it already contains the barycentric coordinates of the point,
+       otherwise they are computed here.
+
        If the precondition (point must be on the surface of
        the shape) is violated, behaviour is undefined.
      */
     public Vector3D getUnitNormalAt(Intersection intersection) {
         /// if all three vertex normals are set to be equal to the surface unit normal, omit interpolation, and use flat shading (no normal interpolation)
-        if(this.unitNormalA == this.surfaceUnitNormal && this.unitNormalB == this.surfaceUnitNormal && this.unitNormalC == this.surfaceUnitNormal) {
+        if(this.isFlatShaded()) {
             return this.surfaceUnitNormal;
         }
         /// otherwise, interpolate surface normal at given point between triangle vertices, to perform smooth shading
         else {
             /// use barycentric coordinates of given point to interpolate unit normal at given point
-            Vector3D barycentricCoordinates = this.getBarycentricCoordinates(intersection.getIntersectionPoint());
+            Vector3D barycentricCoordinates = intersection.getBarycentricCoordinates();
+            if(barycentricCoordinates == null || intersection.getIntersectedShape() != this) {
+                barycentricCoordinates = this.getBarycentricCoordinates(intersection.getIntersectionPoint());
+            }
             return this.unitNormalA.scaled(barycentricCoordinates.getX()).added(
                     this.unitNormalB.scaled(barycentricCoordinates.getY()).added(
                             this.unitNormalC.scaled(barycentricCoordinates.getZ())
@@ -227,10 +271,147 @@ public class Triangle implements RTShape {
 
         return new Vector3D(1 - v - w, v, w);
     }
+    /*
+       Method that writes the triangle to a snapshot (see
+       SceneSnapshot), to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeVector3D(this.vertexA);
+        output.writeVector3D(this.vertexB);
+        output.writeVector3D(this.vertexC);
+        /// a flat shaded triangle has no vertex normals of its own, so that it is read back as flat shaded
+        output.writeInt(this.isFlatShaded() ? 1 : 0);
+        if(!this.isFlatShaded()) {
+            output.writeVector3D(this.unitNormalA);
+            output.writeVector3D(this.unitNormalB);
+            output.writeVector3D(this.unitNormalC);
+        }
+        output.writeColor(this.diffuseColor);
+        this.material.writeSnapshot(output);
+    }
 
     /**
      * Static Utility Methods
      */
+    /*
+       Method that writes the intersection data of the triangle with
+       vertices A, B, C into the given array, starting at the given
+       offset: vertex A, edge B-A, edge C-A, and the threshold for the
+       Moller-Trumbore determinant.
+
+       The determinant equals -(D . N) |(B-A) X (C-A)| for the unit
+       surface normal N, so the threshold 1e-12 |(B-A) X (C-A)| rejects
+       exactly the rays that Plane.intersect treats as parallel to the
+       plane of the triangle. For a degenerate triangle the threshold is
+       0 and every ray misses it.
+     */
+    public static void packIntersectionData(double[] data, int offset, double ax, double ay, double az, double bx, double by, double bz, double cx, double cy, double cz) {
+        double edge1X = bx - ax, edge1Y = by - ay, edge1Z = bz - az;
+        double edge2X = cx - ax, edge2Y = cy - ay, edge2Z = cz - az;
+        double nX = edge1Y*edge2Z - edge1Z*edge2Y, nY = edge1Z*edge2X - edge1X*edge2Z, nZ = edge1X*edge2Y - edge1Y*edge2X;
+
+        data[offset] = ax;
+        data[offset+1] = ay;
+        data[offset+2] = az;
+        data[offset+3] = edge1X;
+        data[offset+4] = edge1Y;
+        data[offset+5] = edge1Z;
+        data[offset+6] = edge2X;
+        data[offset+7] = edge2Y;
+        data[offset+8] = edge2Z;
+        data[offset+9] = 1e-12 * Math.sqrt(nX*nX + nY*nY + nZ*nZ);
+    }
+    /*
+       Method that writes the float intersection data of the triangle with
+       vertices A, B, C into the given array, starting at the given offset:
+       vertices A, B, C, and the threshold for the Moller-Trumbore determinant,
+       computed from the float vertices in the same way as above.
+     */
+    public static void packIntersectionData(float[] data, int offset, float ax, float ay, float az, float bx, float by, float bz, float cx, float cy, float cz) {
+        double edge1X = (double) bx - ax, edge1Y = (double) by - ay, edge1Z = (double) bz - az;
+        double edge2X = (double) cx - ax, edge2Y = (double) cy - ay, edge2Z = (double) cz - az;
+        double nX = edge1Y*edge2Z - edge1Z*edge2Y, nY = edge1Z*edge2X - edge1X*edge2Z, nZ = edge1X*edge2Y - edge1Y*edge2X;
+
+        data[offset] = ax;
+        data[offset+1] = ay;
+        data[offset+2] = az;
+        data[offset+3] = bx;
+        data[offset+4] = by;
+        data[offset+5] = bz;
+        data[offset+6] = cx;
+        data[offset+7] = cy;
+        data[offset+8] = cz;
+        data[offset+9] = GeometryPrecision.roundUp(1e-12 * Math.sqrt(nX*nX + nY*nY + nZ*nZ));
+    }
+    /*
+       Method that intersects the ray P = O + s * D with the triangle whose
+       packed intersection data starts at the given offset of the given array,
+       using the Moller-Trumbore algorithm.
+
+       The hit is written into the given hit record (parameter s and the
+       barycentric coordinates (1-u-v, u, v) of the hit point) only if
+       s > 0 and s is smaller than the parameter already in the record, in
+       which case true is returned. Otherwise the record is left unchanged
+       and false is returned.
+
+       Barycentric coordinates are allowed to be slightly negative (-1e-12)
+       so that edges and vertices of the triangle are hit. Nothing is
+       allocated.
+     */
+    public static boolean intersect(double[] data, int offset, double originX, double originY, double originZ,
+                                    double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        return Triangle.intersect(data[offset], data[offset+1], data[offset+2], data[offset+3], data[offset+4], data[offset+5],
+                data[offset+6], data[offset+7], data[offset+8], data[offset+9], originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+    }
+    /*
+       Method that intersects the ray with the triangle whose packed float
+       intersection data starts at the given offset of the given array, in
+       the same way as above. The edges are computed from the float vertices
+       in double precision, in which the difference of two floats is exact,
+       so two triangles that share an edge are intersected as if that edge
+       was stored once, and rays can not pass between them.
+     */
+    public static boolean intersect(float[] data, int offset, double originX, double originY, double originZ,
+                                    double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        double ax = data[offset], ay = data[offset+1], az = data[offset+2];
+        return Triangle.intersect(ax, ay, az, data[offset+3] - ax, data[offset+4] - ay, data[offset+5] - az,
+                data[offset+6] - ax, data[offset+7] - ay, data[offset+8] - az, data[offset+9], originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+    }
+    /*
+       Method with the Moller-Trumbore kernel shared by the two methods
+       above, given vertex A, the edges B-A and C-A, and the threshold
+       for the determinant.
+     */
+    private static boolean intersect(double ax, double ay, double az, double edge1X, double edge1Y, double edge1Z,
+                                     double edge2X, double edge2Y, double edge2Z, double threshold, double originX, double originY, double originZ,
+                                     double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        /// P = D X (C-A), determinant = (B-A) . P
+        double pX = directionY*edge2Z - directionZ*edge2Y, pY = directionZ*edge2X - directionX*edge2Z, pZ = directionX*edge2Y - directionY*edge2X;
+        double determinant = edge1X*pX + edge1Y*pY + edge1Z*pZ;
+        /// if ray is parallel to the triangle (or the triangle is degenerate), there is no intersection
+        if(!(Math.abs(determinant) > threshold)) {
+            return false;
+        }
+        double inverseDeterminant = 1 / determinant;
+
+        double tX = originX - ax, tY = originY - ay, tZ = originZ - az;
+        double u = (tX*pX + tY*pY + tZ*pZ) * inverseDeterminant;
+        if(u < -1e-12 || u > 1 + 1e-12) {
+            return false;
+        }
+        double qX = tY*edge1Z - tZ*edge1Y, qY = tZ*edge1X - tX*edge1Z, qZ = tX*edge1Y - tY*edge1X;
+        double v = (directionX*qX + directionY*qY + directionZ*qZ) * inverseDeterminant;
+        if(v < -1e-12 || u + v > 1 + 1e-12) {
+            return false;
+        }
+
+        double s = (edge2X*qX + edge2Y*qY + edge2Z*qZ) * inverseDeterminant;
+        if(s > 0 && s < hitRecord.getParameter()) {
+            hitRecord.record(s, u, v);
+            return true;
+        }
+        return false;
+    }
     /*
        Method that parses a triangle from a Map<String,String>
        mapping attribute names to their values.
@@ -308,6 +489,17 @@ public class Triangle implements RTShape {
         /// otherwise use the given vertex normals for smooth shading i.e. normal interpolation
         return new Triangle(vertexA, vertexB, vertexC, normalA, normalB, normalC, color, material);
     }
+    /*
+       Method that reads a triangle written by 'writeSnapshot',
+       with exactly the unit vertex normals that were written,
+       or flat shaded if it was written flat shaded.
+     */
+    public static Triangle readSnapshot(SnapshotInput input) throws IOException {
+        Vector3D vertexA = input.readVector3D(), vertexB = input.readVector3D(), vertexC = input.readVector3D();
+        boolean flatShaded = input.readInt() != 0;
+        Vector3D[] unitNormals = flatShaded ? null : new Vector3D[]{input.readVector3D(), input.readVector3D(), input.readVector3D()};
+        return new Triangle(vertexA, vertexB, vertexC, unitNormals, input.readColor(), Material.readSnapshot(input));
+    }
 
     /**
      * Getters
@@ -333,4 +525,8 @@ public class Triangle implements RTShape {
     public Vector3D getNormalC() {
         return this.unitNormalC;
     }
+    /// all three vertex normals are the unit normal to the surface itself (not just equal to it) for flat shading
+    public boolean isFlatShaded() {
+        return this.unitNormalA == this.surfaceUnitNormal && this.unitNormalB == this.surfaceUnitNormal && this.unitNormalC == this.surfaceUnitNormal;
+    }
 }
@@ -1,20 +1,16 @@
 package rendering.shapes;
 
+import rendering.acceleration.AxisAlignedBoundingBox;
 import rendering.shading.Material;
+import rendering.tracing.HitRecord;
 import rendering.tracing.Intersection;
 import rendering.tracing.Ray;
 import rendering.utility.*;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Map;
 
-import de.javagl.obj.Obj;
-import de.javagl.obj.ObjReader;
-import de.javagl.obj.ObjData;
-
 /**
  * Class for a mesh of triangles, defined by the vertices it contains,
  * normals to surface at each vertex, color and material.
@@ -23,6 +19,10 @@ import de.javagl.obj.ObjData;
  * place it into project folder, and insert the path to it into the
  * XML node of the triangle mesh in the scene description file.
  *
+ * Large meshes load much faster from a binary mesh file (see MeshFile),
+ * which is written from the .obj file once with the MeshConverter, and
+ * can be given in the XML node instead of the .obj file.
+ *
  * The vertex coordinates of every mesh are given in object coordinates.
  * To position the triangle mesh in the scene, we define scaling,
  * rotation, and translation transformations in the XML description of
@@ -43,26 +43,33 @@ import de.javagl.obj.ObjData;
  *
  * Every polygonal mesh's class variable shapeID must end in "mesh".
  *
- * Every triangle mesh has a bounding Box object created by taking
- * min and max value of x,y,z coordinates of each vertex.
- * In the 'intersect' method, we first check if the ray intersects
- * the bounding box and return immediately if it does not to speed
- * up rendering.
+ * Every triangle mesh has its own bounding volume hierarchy over its
+ * triangles, built once in the constructor. In the 'intersect' method,
+ * the ray is only intersected with the triangles in the leaves of the
+ * hierarchy whose bounds it enters, so the number of ray-triangle tests
+ * grows logarithmically rather than linearly with the number of
+ * triangles. The bounds of the root of the hierarchy are the bounding
+ * box of the whole mesh.
+ *
+ * The mesh does not keep a Triangle object per face. Its vertices,
+ * normals and faces are stored in a packed TriangleMeshGeometry (flat
+ * arrays of coordinates and indices), and rays are intersected directly
+ * with the precomputed edge vectors in it, so that neither the memory
+ * used by a mesh nor the cost of intersecting it includes an object
+ * per triangle.
+ *
+ * The geometry of a mesh can be stored in float rather than double
+ * precision (the optional "precision" attribute in the XML node of the
+ * mesh, "double" by default), which halves the memory used by the mesh
+ * and its bounding volume hierarchy. See GeometryPrecision.
  */
 
 public class TriangleMesh implements RTShape {
     public static final String shapeID = "triangle-mesh";
 
-    /// the vertices of the mesh, in object coordinates
-    private final ArrayList<Vector3D> vertices;
-    /// the normals to the mesh at each vertex, found by averaging adjacent face (triangle) normals, triangleFaces
-    /// arraylist references objects from this vertexNormals arraylist (for triangle vertex normals)
-    private final ArrayList<Vector3D> vertexNormals;
-    /// the triangles that the vertices form
-    private final ArrayList<Triangle> triangleFaces;
-
-    /// bounding box for this triangle mesh
-    private final Box boundingBox;
+    /// the packed vertices, vertex normals and triangles of the mesh (in world coordinates), and
+    /// the bounding volume hierarchy over the triangles
+    private final TriangleMeshGeometry geometry;
 
     private final RTColor diffuseColor;
     private final Material material;
@@ -71,184 +78,163 @@ public class TriangleMesh implements RTShape {
      * Constructors
      */
     /*
-       Constructor from mesh description as a Wavefront OBJ file, modelling transform
-       to be performed to obtain triangle mesh in world coordinates, its color, and
-       its material.
+       Constructor from mesh description as a Wavefront OBJ file (or a binary
+       mesh file, see MeshFile), modelling transform to be performed to obtain
+       triangle mesh in world coordinates, its color, and its material.
 
        The transformations ("scale", "rotateX", "rotateY", "rotateZ", "translate")
        are performed in the order in which they are listed in the XML description
        of the mesh, in the "model-transform" attribute.
 
-       An open source Wavefront OBJ parser (https://github.com/javagl/Obj/tree/master)
-       is used to extract mesh info.
+       OBJ files are parsed in parallel, with the vertices and normals transformed
+       to world coordinates while they are parsed (see ObjParser).
 
        This constructor creates triangles which do not necessarily have to be flat
        shaded - if vertex normals indices use different normals for different vertices
        in the same triangle, normals will be linearly interpolated.
-     */
-    public TriangleMesh(String pathToObjFile, Matrix4D modelTransformation, RTColor color, Material material) throws IOException {
-        InputStream objInputStream = new FileInputStream(pathToObjFile);
-        Obj obj = ObjReader.read(objInputStream);
-
-        float[] vertexCoordinates = ObjData.getVerticesArray(obj);
-        float[] vertexNormalsCoordinates = ObjData.getNormalsArray(obj);
-        int[] faceVertexIndices = ObjData.getFaceVertexIndicesArray(obj);
-        int[] faceVertexNormalsIndices = ObjData.getFaceNormalIndicesArray(obj);
-
-        /// extract list of vertices by grouping coordinates three by three
-        this.vertices = new ArrayList<>();
-        for(int i = 0; i < vertexCoordinates.length / 3; i++) {
-            /// extract the vertex in object coordinates from .obj file
-            Vector3D v = new Vector3D(vertexCoordinates[3*i], vertexCoordinates[3*i+1], vertexCoordinates[3*i+2]);
-            /// apply modelling transformation to transform the vertex to world coordinates (in scene), and add it to list
-            this.vertices.add(modelTransformation.multiplyFromRight(v));
-        }
 
-        /// extract list of vertex normals by grouping coordinates three by three
-        this.vertexNormals = new ArrayList<>();
-        /// Prepare (M^inverse)^transpose to transform normals (for non-orthogonal matrices, e.g. scales) by first
-        /// taking only the rotations and scales (i.e. the upper 3x3 sub-matrix of the model transform), then
-        /// inverting it, and then transposing it.
-        Matrix3D normalTransformation = (new Matrix3D(modelTransformation)).getInverse().transposed();
-        for(int i = 0; i < vertexNormalsCoordinates.length / 3; i++) {
-            /// extract the vertex normal in object coordinates from .obj file
-            Vector3D n = new Vector3D(vertexNormalsCoordinates[3*i], vertexNormalsCoordinates[3*i+1], vertexNormalsCoordinates[3*i+2]);
-            /// apply the appropriate transformation (M^inverse)^transpose to the normal
-            this.vertexNormals.add(normalTransformation.multiplyFromRight(n));
-        }
+       The geometry is stored in double precision.
+     */
+    public TriangleMesh(String pathToMeshFile, Matrix4D modelTransformation, RTColor color, Material material) throws IOException {
+        this(pathToMeshFile, modelTransformation, color, material, GeometryPrecision.DOUBLE);
+    }
+    /*
+       Constructor as above, with the geometry (in world coordinates)
+       stored in the given precision.
 
-        /// extract list of triangles
-        this.triangleFaces = new ArrayList<>();
-        for(int i = 0; i < faceVertexIndices.length / 3; i++) {
-            this.triangleFaces.add(
-                    new Triangle(
-                            this.vertices.get(faceVertexIndices[3*i]), this.vertices.get(faceVertexIndices[3*i+1]), this.vertices.get(faceVertexIndices[3*i+2]),
-                            this.vertexNormals.get(faceVertexNormalsIndices[3*i]), this.vertexNormals.get(faceVertexNormalsIndices[3*i+1]), this.vertexNormals.get(faceVertexNormalsIndices[3*i+2]),
-                            color, material)
-            );
-        }
+       For a binary mesh file, the bounding volume hierarchy stored in
+       it is refitted to the transformed triangles rather than a new
+       one being built (see TriangleMeshGeometry).
 
-        /// create the bounding box
-        this.boundingBox = this.createBoundingBox();
+       The geometry is taken from the MeshCache if the same file has been
+       loaded with the same modelling transformation before (e.g. by an
+       earlier render in the same process), and added to it otherwise.
+     */
+    public TriangleMesh(String pathToMeshFile, Matrix4D modelTransformation, RTColor color, Material material, GeometryPrecision precision) throws IOException {
+        /// read the mesh, with its vertices transformed to world coordinates (in scene) by the modelling
+        /// transformation, and its normals by (M^inverse)^transpose (see MeshTransformation), pack the
+        /// triangles and build the bounding volume hierarchy over them, unless it is cached
+        this.geometry = MeshCache.getGeometry(pathToMeshFile, modelTransformation, precision);
 
         this.diffuseColor = color;
         this.material = material;
     }
     /*
        Constructor from all attributes (and modelling transform to be performed to obtain triangle
-       mesh in world coordinates) except triangleFaces, which is here extracted from the given
-       indices of vertices and normals.
+       mesh in world coordinates) except the triangles, which are here formed from the given
+       indices of vertices.
 
        The constructor takes the vertex indices as an argument, but not vertex normals indices
        because this constructor creates flat shaded triangles, i.e. vertex normals are all set
        to be equal to the unit normal to the surface of the triangle.
 
-       This constructor is 'package'-level, to be used solely for construction of a Box object,
-       because a Box object is a TriangleMesh, but one without a bounding Box, to avoid infinite
-       recursive creation of bounding boxes. Hence, this constructor does not create a bounding
-       box for this triangle mesh, rather it sets it to 'null'. The 'intersect' method later
-       checks if the bounding box exists (is it null) before it intersects the ray with it.
+       This constructor is 'package'-level, to be used solely for construction of a Box object.
      */
      TriangleMesh(ArrayList<Vector3D> vertices, ArrayList<Vector3D> vertexNormals, int[] faceVertexIndices, Matrix4D modelTransformation, RTColor color, Material material) {
-        this.vertices = new ArrayList<>();
-        for(Vector3D vertex : vertices) {
-            /// apply modelling transformation to transform the vertex to world coordinates (in scene), and add it to list
-            this.vertices.add(modelTransformation.multiplyFromRight(vertex));
+        double[] vertexPositions = new double[3 * vertices.size()];
+        for(int i = 0; i < vertices.size(); i++) {
+            /// apply modelling transformation to transform the vertex to world coordinates (in scene)
+            TriangleMesh.putVector3D(vertexPositions, i, modelTransformation.multiplyFromRight(vertices.get(i)));
         }
 
         /// TODO - transform normals using (M^inverse)^transpose (for non-orthogonal matrices)
-        this.vertexNormals = vertexNormals;
-
-        /// extract list of triangles
-        this.triangleFaces = new ArrayList<>();
-        for(int i = 0; i < faceVertexIndices.length / 3; i++) {
-            this.triangleFaces.add(
-                    new Triangle(
-                            this.vertices.get(faceVertexIndices[3*i]), this.vertices.get(faceVertexIndices[3*i+1]), this.vertices.get(faceVertexIndices[3*i+2]),
-                            color, material)
-            );
+        double[] packedVertexNormals = new double[3 * vertexNormals.size()];
+        for(int i = 0; i < vertexNormals.size(); i++) {
+            TriangleMesh.putVector3D(packedVertexNormals, i, vertexNormals.get(i));
         }
 
-        /*
-            This constructor is to be used only for construction of Box objects, so it does not create
-            a bounding box for this triangle mesh.
-        */
-        this.boundingBox = null;
+        /// pack the (flat shaded) triangles and build the bounding volume hierarchy over them
+        this.geometry = new TriangleMeshGeometry(vertexPositions, packedVertexNormals, faceVertexIndices, null);
 
         this.diffuseColor = color;
         this.material = material;
     }
 
+    /*
+       Constructor from an already built geometry (in world coordinates),
+       its color and its material, e.g. a geometry read from a snapshot.
+     */
+    public TriangleMesh(TriangleMeshGeometry geometry, RTColor color, Material material) {
+        this.geometry = geometry;
+        this.diffuseColor = color;
+        this.material = material;
+    }
+
     /**
      * Methods
      */
     /*
-       Method that intersects a ray with the mesh. It
-       gives the closest intersection (minimum non-negative
-       value of parameter s in P = O + s * D ray equation)
-       if an intersection exists, or 'null' if no intersection
-       exists (don't want to use exceptions for control
-       flow when rendering).
-
-       The point of intersection is bundled together with the
-       intersected shape, into an Intersection object.
-
-       Unlike most other primitives, a triangle mesh here returns
-       the intersected triangle in the returned Intersection object,
-       not the mesh itself (we need to know which exact triangle is
-       intersected later, so that was the motivation for making
-       the 'intersect' method return an Intersection object rather
-       than a simple Vector3D in the first place).
-
-       We first check if the ray intersects the bounding box of this
-       triangle mesh and return immediately if it does not, to speed
-       up rendering (290s for pawn before this, 31s after optimisation).
+       Method that intersects a ray with the mesh. If the ray
+       intersects the mesh (at a positive value of parameter s in
+       P = O + s * D ray equation) closer than the hit already in
+       the given hit record, the closest intersection is written into
+       the record and true is returned, otherwise false is returned
+       (don't want to use exceptions for control flow when rendering).
+
+       The record receives the mesh itself as the intersected shape,
+       together with the index of the intersected triangle and the
+       barycentric coordinates of the intersection point within it,
+       so that the normal at that point can later be found without
+       searching for the triangle again.
+
+       Only the triangles in the leaves of the bounding volume hierarchy
+       whose bounds the ray enters before the closest intersection found
+       so far are intersected (see TriangleMeshGeometry.intersectClosest).
      */
-    public Intersection intersect(Ray ray) {
-        /// if this triangle mesh has a bounding box, and
-        /// if the ray does not intersect the bounding Box of this triangle mesh, there are no intersections
-        if(this.boundingBox != null && this.boundingBox.intersect(ray) == null) {
-            return null;
+    public boolean intersect(Ray ray, HitRecord hitRecord) {
+        int face = this.geometry.intersectClosest(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+                ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), hitRecord);
+        if(face == -1) {
+            return false;
         }
+        hitRecord.setIntersectedPrimitive(this, face);
+        return true;
+    }
+    /*
+       Method that returns true iff the ray intersects some triangle
+       of the mesh at a point P = O + s * D with s < maxParameter.
 
-        Intersection closestIntersection = null;
-        double minDistanceSoFar = -1;
-
-        for(Triangle triangle : this.triangleFaces) {
-            Intersection intersection = triangle.intersect(ray);
-            if(intersection != null) {
-                if(closestIntersection == null || ray.distance(intersection.getIntersectionPoint()) < minDistanceSoFar) {
-                    closestIntersection = intersection;
-                    minDistanceSoFar = ray.distance(intersection.getIntersectionPoint());
-                }
-            }
-        }
+       Unlike 'intersect', the traversal of the bounding volume hierarchy
+       stops at the first such triangle (see TriangleMeshGeometry.intersectsAny).
 
-        return closestIntersection;
+       It uses the hit record of the current thread for the intersection
+       kernel, so it must not be called while that record is in use.
+     */
+    public boolean occluded(Ray ray, double maxParameter) {
+        return this.geometry.intersectsAny(ray.getOriginX(), ray.getOriginY(), ray.getOriginZ(),
+                ray.getDirectionX(), ray.getDirectionY(), ray.getDirectionZ(), maxParameter);
+    }
+    /*
+       Method that returns the axis-aligned bounding box of
+       the mesh, i.e. the bounds of the root of its bounding
+       volume hierarchy (in world coordinates, i.e. after
+       the modelling transformation).
+     */
+    public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+        return this.geometry.getBoundingVolumeHierarchy().getBounds();
     }
     /*
        Method that returns the unit normal at a given point on
        the surface of the mesh, given as an Intersection object,
        rather than just a Vector3D, so that we have information
-       which exact triangle is intersected (computed in an earlier
-       call to 'intersect' which returns an Intersection for the
-       same reason), so that we can pass the method invocation
-       to the appropriate triangle.
+       which exact triangle is intersected and where within it
+       (computed in an earlier call to 'intersect' which returns an
+       Intersection for the same reason).
 
        Hence, this method must be used only with an Intersection
-       object that contains a Triangle as an intersected shape.
+       object returned by the 'intersect' method of this mesh.
 
        The unit normal must point outwards by convention, which
-       for a mesh is the direction in which the unit normal is
-       defined when passed to the constructor of the corresponding
-       triangle.
+       for a mesh is the direction of the interpolated vertex
+       normals (or the surface normal (B-A) X (C-A) of the triangle,
+       if the mesh is flat shaded).
 
        If the precondition (point must be on the surface of
        the shape) is violated, behaviour is undefined.
      */
     public Vector3D getUnitNormalAt(Intersection intersection) {
-        /// find the unit normal to intersected triangle
-        return intersection.getIntersectedShape().getUnitNormalAt(intersection);
+        Vector3D barycentricCoordinates = intersection.getBarycentricCoordinates();
+        return this.geometry.getUnitNormal(intersection.getPrimitiveIndex(), barycentricCoordinates.getY(), barycentricCoordinates.getZ());
     }
     /*
        Method that returns the diffuse color of the mesh at
@@ -274,51 +260,41 @@ public class TriangleMesh implements RTShape {
         return this.material;
     }
     /*
-       Method that creates a bounding Box object for
-       this triangle mesh. It does so by taking the
-       min and max value of x,y,z coordinates of any
-       vertex in the mesh.
-
-       This method must be invoked only after 'vertices'
-       field has been initialized in the constructor and
-       after the modelling transformation has been applied
-       to function properly.
+       Method that writes the mesh, with its whole geometry and
+       bounding volume hierarchy, to a snapshot (see SceneSnapshot),
+       to be read back by 'readSnapshot'.
      */
-    public Box createBoundingBox() {
-        double minX = this.vertices.get(0).getX(), maxX = this.vertices.get(0).getX(),
-                minY = this.vertices.get(0).getY(), maxY = this.vertices.get(0).getY(),
-                minZ = this.vertices.get(0).getZ(), maxZ = this.vertices.get(0).getZ();
-        for(Vector3D vertex : this.vertices) {
-                minX = Math.min(minX, vertex.getX());
-                maxX = Math.max(maxX, vertex.getX());
-
-                minY = Math.min(minY, vertex.getY());
-                maxY = Math.max(maxY, vertex.getY());
-
-                minZ = Math.min(minZ, vertex.getZ());
-                maxZ = Math.max(maxZ, vertex.getZ());
-        }
-
-        /*
-           The color and the material of the bounding box don't matter, it will never be shaded,
-           it's just a way of speeding up intersections. The modelling transformation of the Box
-           set to identity because the modelling transformation of this triangle mesh has already
-           been applied.
-         */
-        return new Box(minX, maxX, minY, maxY, minZ, maxZ, Matrix4D.identity, RTColor.blank, Material.defaultNonReflectiveMaterial);
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        this.geometry.writeSnapshot(output);
+        output.writeColor(this.diffuseColor);
+        this.material.writeSnapshot(output);
     }
-
     /**
      * Static Utility Methods
      */
+    /*
+       Method that writes the coordinates of the given vector
+       into the given packed array, as the i-th group of three.
+     */
+    private static void putVector3D(double[] packed, int i, Vector3D v) {
+        packed[3*i] = v.getX();
+        packed[3*i+1] = v.getY();
+        packed[3*i+2] = v.getZ();
+    }
     /*
        Method that parses a triangle mesh from a Map<String,String>
        mapping attribute names to their values.
 
        Each triangle mesh is defined by a "path-to-obj-file",
-       "model-transform", "color", and a "material" attribute.
-       "path-to-obj-file", "color", and "material" are leaf
-       attributes (only contain a String value).
+       "model-transform", "color", a "material", and an optional
+       "precision" ("double" or "float") attribute.
+       "path-to-obj-file", "color", "material" and "precision" are
+       leaf attributes (only contain a String value).
+
+       The mesh file can also be given by a "path-to-mesh-file" attribute
+       instead of "path-to-obj-file". Either attribute can be the path of a
+       Wavefront OBJ file, or of a binary mesh file (ending in
+       MeshFile.fileExtension).
 
        The "model-transform" attribute is an XML sub-node that
        contains a list of transformations in arbitrary order
@@ -353,13 +329,19 @@ public class TriangleMesh implements RTShape {
         /// model transformation has already been parsed by SceneDescriptionParser
         RTColor color = null;
         Material material = null;
+        GeometryPrecision precision = GeometryPrecision.DOUBLE;
 
         for (Map.Entry<String, String> entry : leafAttributes.entrySet()) {
             String attributeName = entry.getKey();
             String attributeValue = entry.getValue();
 
             switch (attributeName) {
-                case "path-to-obj-file" -> path = attributeValue;
+                case "path-to-obj-file", "path-to-mesh-file" -> {
+                    if(path != null) {
+                        throw new IncorrectSceneDescriptionXMLStructureException("More than one mesh file path in TriangleMesh description.");
+                    }
+                    path = attributeValue;
+                }
 
                 /// model transformation has already been parsed by SceneDescriptionParser
 
@@ -374,12 +356,13 @@ public class TriangleMesh implements RTShape {
                         material = Material.parseMaterial(attributeValue);
                     }
                 }
+                case "precision" -> precision = GeometryPrecision.parse(attributeValue);
                 default -> throw new IncorrectSceneDescriptionXMLStructureException("Undefined attribute in TriangleMesh description.");
             }
         }
 
         if(path == null) {
-            throw new IncorrectSceneDescriptionXMLStructureException("Missing 'path-to-obj-file' attribute in TriangleMesh description.");
+            throw new IncorrectSceneDescriptionXMLStructureException("Missing 'path-to-obj-file' (or 'path-to-mesh-file') attribute in TriangleMesh description.");
         }
         else if(color == null) {
             throw new IncorrectSceneDescriptionXMLStructureException("Missing 'color' attribute in TriangleMesh description.");
@@ -390,7 +373,14 @@ public class TriangleMesh implements RTShape {
             material = Material.defaultNonReflectiveMaterial;
         }
 
-        return new TriangleMesh(path, modelTransformation, color, material);
+        return new TriangleMesh(path, modelTransformation, color, material, precision);
+    }
+    /*
+       Method that reads a mesh written by 'writeSnapshot', without
+       parsing its OBJ file or building its hierarchy again.
+     */
+    public static TriangleMesh readSnapshot(SnapshotInput input) throws IOException {
+        return new TriangleMesh(TriangleMeshGeometry.readSnapshot(input), input.readColor(), Material.readSnapshot(input));
     }
 
     /**
@@ -399,13 +389,45 @@ public class TriangleMesh implements RTShape {
     public String getShapeID() {
         return TriangleMesh.shapeID;
     }
+    public TriangleMeshGeometry getGeometry() {
+        return this.geometry;
+    }
+    /*
+       The methods below unpack the geometry into new lists of Vector3D's
+       and Triangle's on every call. They are meant for inspecting a mesh,
+       and are never used when rendering it.
+     */
     public ArrayList<Vector3D> getVertices() {
-        return this.vertices;
+        ArrayList<Vector3D> vertices = new ArrayList<>();
+        for(int i = 0; i < this.geometry.getNumberOfVertices(); i++) {
+            vertices.add(this.geometry.getVertex(i));
+        }
+        return vertices;
     }
     public ArrayList<Vector3D> getNormals() {
-        return this.vertexNormals;
+        ArrayList<Vector3D> normals = new ArrayList<>();
+        for(int i = 0; i < this.geometry.getNumberOfNormals(); i++) {
+            normals.add(this.geometry.getNormal(i));
+        }
+        return normals;
     }
     public ArrayList<Triangle> getTriangles() {
-        return this.triangleFaces;
+        ArrayList<Vector3D> vertices = this.getVertices();
+        ArrayList<Vector3D> normals = this.getNormals();
+        ArrayList<Triangle> triangles = new ArrayList<>();
+        for(int face = 0; face < this.geometry.getNumberOfTriangles(); face++) {
+            Vector3D a = vertices.get(this.geometry.getVertexIndex(face, 0));
+            Vector3D b = vertices.get(this.geometry.getVertexIndex(face, 1));
+            Vector3D c = vertices.get(this.geometry.getVertexIndex(face, 2));
+            if(this.geometry.isFlatShaded()) {
+                triangles.add(new Triangle(a, b, c, this.diffuseColor, this.material));
+            }
+            else {
+                triangles.add(new Triangle(a, b, c, normals.get(this.geometry.getNormalIndex(face, 0)),
+                        normals.get(this.geometry.getNormalIndex(face, 1)), normals.get(this.geometry.getNormalIndex(face, 2)),
+                        this.diffuseColor, this.material));
+            }
+        }
+        return triangles;
     }
 }
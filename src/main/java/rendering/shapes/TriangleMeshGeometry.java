@@ -0,0 +1,651 @@
+package rendering.shapes;
+
+import rendering.acceleration.BoundingVolumeHierarchy;
+import rendering.tracing.HitRecord;
+import rendering.tracing.TraversalStack;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
+import rendering.utility.Vector3D;
+
+import java.io.IOException;
+
+/**
+ * Class for the geometry of a triangle mesh, stored in a
+ * packed (structure-of-arrays) form: instead of a Triangle
+ * object per face and a Vector3D object per vertex, all
+ * coordinates and indices are kept in a few flat arrays.
+ *
+ * Vertex positions and vertex normals are stored three
+ * coordinates per vertex (normal), and the faces are stored
+ * as three vertex indices (and three normal indices) per
+ * triangle, in the order in which they were given.
+ *
+ * For ray intersection (Moller-Trumbore algorithm), each
+ * triangle additionally has its vertex A and its two edge
+ * vectors B-A and C-A precomputed, in the packed layout of
+ * Triangle.packIntersectionData (Triangle.intersectionDataStride
+ * doubles per triangle).
+ * These are stored in the order in which the triangles appear
+ * in the leaves of the bounding volume hierarchy built over the
+ * triangles, so that the triangles of a leaf are adjacent in
+ * memory. The index of the face at position i of this array
+ * is boundingVolumeHierarchy.getPrimitiveIndex(i).
+ *
+ * All of the above is stored either in double precision, or (for
+ * GeometryPrecision.FLOAT) in float precision, which halves the
+ * memory taken by the mesh and its hierarchy. For float precision,
+ * the vertices are rounded to floats first, and everything else is
+ * derived from the rounded vertices, so the stored data describes
+ * exactly the same triangles. The triangles are then stored as their
+ * three vertices rather than vertex A and two edges (see
+ * Triangle.packIntersectionData), so that triangles that share a
+ * vertex share it exactly.
+ *
+ * For the SIMD IntersectionKernel, the intersection data is instead
+ * stored in the structure-of-arrays layout of SimdTriangleKernel (still
+ * in the leaf order), and the hierarchy is built with leaves of up to
+ * as many triangles as the kernel intersects at once.
+ *
+ * If no normal indices are given, the mesh is flat shaded,
+ * i.e. the unit normal to the surface of the triangle,
+ * (B-A) X (C-A), is used for shading.
+ *
+ * A geometry can be written to a snapshot and read back with all of
+ * its precomputed data and its hierarchy (see SceneSnapshot), unless
+ * the data was laid out for a different kernel than the one that
+ * would be used now, in which case it is rebuilt from the vertices.
+ *
+ * A geometry whose vertices have moved (e.g. of an animated mesh) is
+ * created by 'deformed', which refits the hierarchy rather than building
+ * it again.
+ *
+ * TriangleMeshGeometry is immutable (the arrays are never
+ * modified after construction).
+ */
+
+public class TriangleMeshGeometry {
+    private final GeometryPrecision precision;
+    private final IntersectionKernel kernel;
+    /// vertex positions, three coordinates per vertex (exactly one of the two arrays is not null, depending on the precision)
+    private final double[] vertexPositions;
+    private final float[] floatVertexPositions;
+    /// vertex normals (not necessarily normalised), three coordinates per normal
+    private final double[] vertexNormals;
+    private final float[] floatVertexNormals;
+    /// indices of the three vertices (A, B, C) of each triangle
+    private final int[] faceVertexIndices;
+    /// indices of the three vertex normals of each triangle, null if the mesh is flat shaded
+    private final int[] faceNormalIndices;
+    /// unit normal to the surface of each triangle, three coordinates per triangle
+    private final double[] faceNormals;
+    private final float[] floatFaceNormals;
+    /// packed intersection data of each triangle, in the order of the leaves of the bounding volume hierarchy
+    private final double[] intersectionData;
+    private final float[] floatIntersectionData;
+    /// distance between the components of the intersection data for the SIMD kernel
+    private final int simdStride;
+    private final int numberOfTriangles;
+
+    /// bounding volume hierarchy over the triangles, primitive indices are face indices
+    private final BoundingVolumeHierarchy boundingVolumeHierarchy;
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the packed vertex positions and vertex normals
+       (three coordinates each), and the indices of the vertices and
+       normals of each triangle (three per triangle). The vertex normals
+       need not be normalised. If faceNormalIndices is null, the mesh is
+       flat shaded. The geometry is stored in double precision.
+
+       The given arrays are not copied, so they must not be modified
+       after they are passed to the constructor.
+     */
+    public TriangleMeshGeometry(double[] vertexPositions, double[] vertexNormals, int[] faceVertexIndices, int[] faceNormalIndices) {
+        this(vertexPositions, vertexNormals, faceVertexIndices, faceNormalIndices, GeometryPrecision.DOUBLE);
+    }
+    /*
+       Constructor as above, with the geometry stored in the given
+       precision. For float precision, the given vertex positions and
+       normals are rounded to floats (and the given arrays are not kept).
+       The triangles are intersected by the default IntersectionKernel.
+     */
+    public TriangleMeshGeometry(double[] vertexPositions, double[] vertexNormals, int[] faceVertexIndices, int[] faceNormalIndices, GeometryPrecision precision) {
+        this(vertexPositions, vertexNormals, faceVertexIndices, faceNormalIndices, precision, IntersectionKernel.getDefault());
+    }
+    /*
+       Constructor as above, with the triangles intersected by the given
+       kernel (the scalar kernel if the SIMD kernel is not available).
+     */
+    public TriangleMeshGeometry(double[] vertexPositions, double[] vertexNormals, int[] faceVertexIndices, int[] faceNormalIndices,
+                                GeometryPrecision precision, IntersectionKernel kernel) {
+        this(vertexPositions, vertexNormals, faceVertexIndices, faceNormalIndices, precision, kernel, null);
+    }
+    /*
+       Constructor as above, given a bounding volume hierarchy that was
+       built over the same triangles in other coordinates (e.g. the object
+       coordinates of a binary mesh file, see MeshFile), or null. If the
+       hierarchy was built for leaves of the kernel of this geometry, its
+       tree is refitted to the triangles (see BoundingVolumeHierarchy.refitted),
+       rather than a new hierarchy being built, which is much faster.
+     */
+    public TriangleMeshGeometry(double[] vertexPositions, double[] vertexNormals, int[] faceVertexIndices, int[] faceNormalIndices,
+                                GeometryPrecision precision, IntersectionKernel kernel, BoundingVolumeHierarchy hierarchy) {
+        this.precision = precision;
+        this.kernel = IntersectionKernel.isSimdAvailable() ? kernel : IntersectionKernel.SCALAR;
+        this.faceVertexIndices = faceVertexIndices;
+        this.faceNormalIndices = faceNormalIndices;
+        this.numberOfTriangles = faceVertexIndices.length / 3;
+
+        boolean isFloat = precision == GeometryPrecision.FLOAT;
+        if(isFloat) {
+            this.floatVertexPositions = TriangleMeshGeometry.toFloatArray(vertexPositions);
+            this.floatVertexNormals = TriangleMeshGeometry.toFloatArray(vertexNormals);
+            /// derive everything else from the rounded vertices
+            vertexPositions = TriangleMeshGeometry.toDoubleArray(this.floatVertexPositions);
+            this.vertexPositions = null;
+            this.vertexNormals = null;
+        }
+        else {
+            this.floatVertexPositions = null;
+            this.floatVertexNormals = null;
+            this.vertexPositions = vertexPositions;
+            this.vertexNormals = vertexNormals;
+        }
+
+        /// compute the unit surface normal and the bounds of each triangle
+        double[] faceNormals = new double[3 * this.numberOfTriangles];
+        double[] primitiveBounds = new double[6 * this.numberOfTriangles];
+        for(int face = 0; face < this.numberOfTriangles; face++) {
+            int a = 3 * faceVertexIndices[3*face], b = 3 * faceVertexIndices[3*face+1], c = 3 * faceVertexIndices[3*face+2];
+
+            double e1x = vertexPositions[b] - vertexPositions[a], e1y = vertexPositions[b+1] - vertexPositions[a+1], e1z = vertexPositions[b+2] - vertexPositions[a+2];
+            double e2x = vertexPositions[c] - vertexPositions[a], e2y = vertexPositions[c+1] - vertexPositions[a+1], e2z = vertexPositions[c+2] - vertexPositions[a+2];
+            double nx = e1y*e2z - e1z*e2y, ny = e1z*e2x - e1x*e2z, nz = e1x*e2y - e1y*e2x;
+            double length = Math.sqrt(nx*nx + ny*ny + nz*nz);
+            faceNormals[3*face] = nx / length;
+            faceNormals[3*face+1] = ny / length;
+            faceNormals[3*face+2] = nz / length;
+
+            for(int axis = 0; axis < 3; axis++) {
+                primitiveBounds[6*face+axis] = Math.min(vertexPositions[a+axis], Math.min(vertexPositions[b+axis], vertexPositions[c+axis]));
+                primitiveBounds[6*face+3+axis] = Math.max(vertexPositions[a+axis], Math.max(vertexPositions[b+axis], vertexPositions[c+axis]));
+            }
+        }
+        this.faceNormals = isFloat ? null : faceNormals;
+        this.floatFaceNormals = isFloat ? TriangleMeshGeometry.toFloatArray(faceNormals) : null;
+
+        /// build the bounding volume hierarchy over the triangles, with leaves as wide as the kernel (or refit the given one)
+        boolean isSimd = this.kernel == IntersectionKernel.SIMD;
+        int trianglesPerTest = TriangleMeshGeometry.getTrianglesPerTest(this.kernel);
+        if(hierarchy != null && hierarchy.getPrimitivesPerTest() == trianglesPerTest && hierarchy.getNumberOfPrimitives() == this.numberOfTriangles) {
+            this.boundingVolumeHierarchy = hierarchy.refitted(primitiveBounds, precision);
+        }
+        else {
+            this.boundingVolumeHierarchy = new BoundingVolumeHierarchy(primitiveBounds, this.numberOfTriangles, precision, trianglesPerTest);
+        }
+
+        /// precompute the intersection data of each triangle, in the order of the leaves of the hierarchy
+        this.simdStride = isSimd ? SimdTriangleKernel.getStride(this.numberOfTriangles) : 0;
+        if(isFloat) {
+            this.intersectionData = null;
+            this.floatIntersectionData = new float[isSimd ? SimdTriangleKernel.numberOfComponents * this.simdStride : Triangle.floatIntersectionDataStride * this.numberOfTriangles];
+            float[] triangleData = new float[Triangle.floatIntersectionDataStride];
+            float[] positions = this.floatVertexPositions;
+            for(int position = 0; position < this.numberOfTriangles; position++) {
+                int face = this.boundingVolumeHierarchy.getPrimitiveIndex(position);
+                int a = 3 * faceVertexIndices[3*face], b = 3 * faceVertexIndices[3*face+1], c = 3 * faceVertexIndices[3*face+2];
+                Triangle.packIntersectionData(isSimd ? triangleData : this.floatIntersectionData, isSimd ? 0 : Triangle.floatIntersectionDataStride * position,
+                        positions[a], positions[a+1], positions[a+2],
+                        positions[b], positions[b+1], positions[b+2],
+                        positions[c], positions[c+1], positions[c+2]);
+                if(isSimd) {
+                    SimdTriangleKernel.pack(this.floatIntersectionData, this.simdStride, position, triangleData);
+                }
+            }
+            if(isSimd) {
+                SimdTriangleKernel.padThresholds(this.floatIntersectionData, this.simdStride, this.numberOfTriangles);
+            }
+        }
+        else {
+            this.floatIntersectionData = null;
+            this.intersectionData = new double[isSimd ? SimdTriangleKernel.numberOfComponents * this.simdStride : Triangle.intersectionDataStride * this.numberOfTriangles];
+            double[] triangleData = new double[Triangle.intersectionDataStride];
+            for(int position = 0; position < this.numberOfTriangles; position++) {
+                int face = this.boundingVolumeHierarchy.getPrimitiveIndex(position);
+                int a = 3 * faceVertexIndices[3*face], b = 3 * faceVertexIndices[3*face+1], c = 3 * faceVertexIndices[3*face+2];
+                Triangle.packIntersectionData(isSimd ? triangleData : this.intersectionData, isSimd ? 0 : Triangle.intersectionDataStride * position,
+                        vertexPositions[a], vertexPositions[a+1], vertexPositions[a+2],
+                        vertexPositions[b], vertexPositions[b+1], vertexPositions[b+2],
+                        vertexPositions[c], vertexPositions[c+1], vertexPositions[c+2]);
+                if(isSimd) {
+                    SimdTriangleKernel.pack(this.intersectionData, this.simdStride, position, triangleData);
+                }
+            }
+            if(isSimd) {
+                SimdTriangleKernel.padThresholds(this.intersectionData, this.simdStride, this.numberOfTriangles);
+            }
+        }
+    }
+    /*
+       Constructor from all arrays of an already built geometry and
+       its hierarchy, used to restore a geometry from a snapshot.
+     */
+    private TriangleMeshGeometry(GeometryPrecision precision, IntersectionKernel kernel, double[] vertexPositions, float[] floatVertexPositions,
+                                 double[] vertexNormals, float[] floatVertexNormals, int[] faceVertexIndices, int[] faceNormalIndices,
+                                 double[] faceNormals, float[] floatFaceNormals, double[] intersectionData, float[] floatIntersectionData,
+                                 int simdStride, BoundingVolumeHierarchy boundingVolumeHierarchy) {
+        this.precision = precision;
+        this.kernel = kernel;
+        this.vertexPositions = vertexPositions;
+        this.floatVertexPositions = floatVertexPositions;
+        this.vertexNormals = vertexNormals;
+        this.floatVertexNormals = floatVertexNormals;
+        this.faceVertexIndices = faceVertexIndices;
+        this.faceNormalIndices = faceNormalIndices;
+        this.faceNormals = faceNormals;
+        this.floatFaceNormals = floatFaceNormals;
+        this.intersectionData = intersectionData;
+        this.floatIntersectionData = floatIntersectionData;
+        this.simdStride = simdStride;
+        this.numberOfTriangles = faceVertexIndices.length / 3;
+        this.boundingVolumeHierarchy = boundingVolumeHierarchy;
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that returns the unit normal used for shading at the point
+       with barycentric coordinates (1-u-v, u, v) within the given triangle.
+
+       If the mesh is flat shaded, the unit normal to the surface of the
+       triangle is returned. Otherwise, the normalised vertex normals of the
+       triangle are interpolated using the barycentric coordinates of the
+       point (the same way as in Triangle.getUnitNormalAt).
+     */
+    public Vector3D getUnitNormal(int face, double u, double v) {
+        if(this.faceNormalIndices == null) {
+            return new Vector3D(this.faceNormalCoordinate(3*face), this.faceNormalCoordinate(3*face+1), this.faceNormalCoordinate(3*face+2));
+        }
+
+        int na = 3 * this.faceNormalIndices[3*face], nb = 3 * this.faceNormalIndices[3*face+1], nc = 3 * this.faceNormalIndices[3*face+2];
+        /// weight of each vertex normal, divided by the length of that normal to normalise it
+        double wa = (1 - u - v) / this.normalLength(na), wb = u / this.normalLength(nb), wc = v / this.normalLength(nc);
+        double x = wa * this.normalCoordinate(na) + wb * this.normalCoordinate(nb) + wc * this.normalCoordinate(nc);
+        double y = wa * this.normalCoordinate(na+1) + wb * this.normalCoordinate(nb+1) + wc * this.normalCoordinate(nc+1);
+        double z = wa * this.normalCoordinate(na+2) + wb * this.normalCoordinate(nb+2) + wc * this.normalCoordinate(nc+2);
+        double length = Math.sqrt(x*x + y*y + z*z);
+        return new Vector3D(x / length, y / length, z / length);
+    }
+    /*
+       Method that returns the length of the vertex normal whose
+       x coordinate is at the given offset in the vertex normals.
+     */
+    private double normalLength(int offset) {
+        double x = this.normalCoordinate(offset), y = this.normalCoordinate(offset+1), z = this.normalCoordinate(offset+2);
+        return Math.sqrt(x*x + y*y + z*z);
+    }
+    /*
+       Method that intersects the ray P = O + s * D with the 'count' triangles
+       starting at the given position (in the leaf order of the bounding volume
+       hierarchy, e.g. the triangles of a leaf), with the intersection kernel
+       and for the precision of this geometry (see Triangle.intersect and
+       SimdTriangleKernel.intersect).
+
+       The closest hit closer than the one already in the hit record is written
+       into the record, and the position of its triangle is returned, or -1 if
+       no such triangle is hit.
+     */
+    public int intersectTriangles(int first, int count, double originX, double originY, double originZ,
+                                  double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        if(this.kernel == IntersectionKernel.SIMD) {
+            if(this.intersectionData != null) {
+                return SimdTriangleKernel.intersect(this.intersectionData, this.simdStride, first, count,
+                        originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+            }
+            return SimdTriangleKernel.intersect(this.floatIntersectionData, this.simdStride, first, count,
+                    originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+        }
+
+        int closestPosition = -1;
+        for(int position = first; position < first + count; position++) {
+            boolean hit = this.intersectionData != null
+                    ? Triangle.intersect(this.intersectionData, Triangle.intersectionDataStride * position, originX, originY, originZ, directionX, directionY, directionZ, hitRecord)
+                    : Triangle.intersect(this.floatIntersectionData, Triangle.floatIntersectionDataStride * position, originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+            if(hit) {
+                closestPosition = position;
+            }
+        }
+        return closestPosition;
+    }
+    /*
+       Method that intersects the ray P = O + s * D with the mesh, and
+       returns the index of the face of the closest intersection that is
+       closer than the hit already in the given hit record (writing the
+       intersection into the record), or -1 if there is no such intersection.
+
+       Only the triangles in the leaves of the bounding volume hierarchy
+       whose bounds the ray enters before the closest intersection found
+       so far are intersected. The hierarchy is traversed using an explicit
+       stack of nodes, visiting the child that is nearer along the ray
+       direction first, so that the closest intersection is found early
+       and more of the hierarchy can be skipped.
+
+       The triangles of a leaf are intersected by the allocation-free
+       Moller-Trumbore kernel of the geometry (Triangle.intersect, or
+       SimdTriangleKernel.intersect for all triangles of the leaf at once),
+       directly on the packed data of the triangles (in the precision of
+       the geometry), writing into the given hit record. The record is
+       not told which shape was hit, that is left to the caller.
+     */
+    public int intersectClosest(double originX, double originY, double originZ,
+                                double directionX, double directionY, double directionZ, HitRecord hitRecord) {
+        BoundingVolumeHierarchy bvh = this.boundingVolumeHierarchy;
+        if(bvh.getNumberOfNodes() == 0) {
+            return -1;
+        }
+
+        double inverseDirectionX = 1 / directionX, inverseDirectionY = 1 / directionY, inverseDirectionZ = 1 / directionZ;
+
+        /// position (in the leaf order of the hierarchy) of the triangle of the closest hit with this mesh
+        int closestPosition = -1;
+
+        /// stack of nodes still to be visited, its size never exceeds the depth of the hierarchy plus one
+        TraversalStack traversalStack = TraversalStack.forCurrentThread();
+        int base = traversalStack.push(bvh.getDepth() + 2);
+        int[] nodeStack = traversalStack.getNodes();
+        int stackSize = base;
+        nodeStack[stackSize++] = 0;
+        try {
+            while(stackSize > base) {
+                int node = nodeStack[--stackSize];
+                /// skip the node if the ray misses it, or if it only enters it beyond the closest intersection so far
+                double closestParameter = hitRecord.getParameter();
+                if(bvh.intersectNodeBounds(node, originX, originY, originZ, inverseDirectionX, inverseDirectionY, inverseDirectionZ, closestParameter) >= closestParameter) {
+                    continue;
+                }
+
+                if(bvh.isLeaf(node)) {
+                    int position = this.intersectTriangles(bvh.getFirstPrimitive(node), bvh.getPrimitiveCount(node),
+                            originX, originY, originZ, directionX, directionY, directionZ, hitRecord);
+                    if(position != -1) {
+                        closestPosition = position;
+                    }
+                }
+                else {
+                    /// push the farther child first, so that the nearer child is visited first
+                    int axis = bvh.getSplitAxis(node);
+                    boolean directionNegative = (axis == 0 ? directionX : (axis == 1 ? directionY : directionZ)) < 0;
+                    if(directionNegative) {
+                        nodeStack[stackSize++] = node + 1;
+                        nodeStack[stackSize++] = bvh.getRightChild(node);
+                    }
+                    else {
+                        nodeStack[stackSize++] = bvh.getRightChild(node);
+                        nodeStack[stackSize++] = node + 1;
+                    }
+                }
+            }
+        }
+        finally {
+            traversalStack.pop(base);
+        }
+
+        return closestPosition == -1 ? -1 : bvh.getPrimitiveIndex(closestPosition);
+    }
+    /*
+       Method that returns true iff the ray P = O + s * D intersects some
+       triangle of the mesh at a point with s < maxParameter.
+
+       Unlike 'intersectClosest', the traversal of the bounding volume
+       hierarchy stops at the first such triangle, and since the order in
+       which the nodes are visited does not matter, children are not sorted
+       along the ray direction.
+
+       It uses the hit record of the current thread for the intersection
+       kernel, so it must not be called while that record is in use.
+     */
+    public boolean intersectsAny(double originX, double originY, double originZ,
+                                 double directionX, double directionY, double directionZ, double maxParameter) {
+        BoundingVolumeHierarchy bvh = this.boundingVolumeHierarchy;
+        if(bvh.getNumberOfNodes() == 0) {
+            return false;
+        }
+
+        double inverseDirectionX = 1 / directionX, inverseDirectionY = 1 / directionY, inverseDirectionZ = 1 / directionZ;
+
+        HitRecord hitRecord = HitRecord.forCurrentThread();
+        hitRecord.reset(maxParameter);
+
+        /// stack of nodes still to be visited, its size never exceeds the depth of the hierarchy plus one
+        TraversalStack traversalStack = TraversalStack.forCurrentThread();
+        int base = traversalStack.push(bvh.getDepth() + 2);
+        int[] nodeStack = traversalStack.getNodes();
+        int stackSize = base;
+        nodeStack[stackSize++] = 0;
+        try {
+            while(stackSize > base) {
+                int node = nodeStack[--stackSize];
+                if(bvh.intersectNodeBounds(node, originX, originY, originZ, inverseDirectionX, inverseDirectionY, inverseDirectionZ, maxParameter) >= maxParameter) {
+                    continue;
+                }
+
+                if(bvh.isLeaf(node)) {
+                    if(this.intersectTriangles(bvh.getFirstPrimitive(node), bvh.getPrimitiveCount(node),
+                            originX, originY, originZ, directionX, directionY, directionZ, hitRecord) != -1) {
+                        return true;
+                    }
+                }
+                else {
+                    nodeStack[stackSize++] = bvh.getRightChild(node);
+                    nodeStack[stackSize++] = node + 1;
+                }
+            }
+        }
+        finally {
+            traversalStack.pop(base);
+        }
+
+        return false;
+    }
+    /*
+       Method that returns the geometry of the same triangles with their
+       vertices moved to the given positions (e.g. a deformed, animated mesh,
+       three coordinates per vertex), and with the given vertex normals, or
+       the vertex normals of this geometry if null is given, in the same
+       precision and for the same kernel.
+
+       The tree of the hierarchy of this geometry is kept and refitted to the
+       moved triangles (see BoundingVolumeHierarchy.refitted), so the new
+       geometry is computed in time linear in the size of the mesh, without
+       building a hierarchy. The given arrays are not copied.
+
+       Throws IllegalArgumentException if the number of vertices (or normals)
+       is not the same as in this geometry.
+     */
+    public TriangleMeshGeometry deformed(double[] vertexPositions, double[] vertexNormals) {
+        if(vertexPositions.length != 3 * this.getNumberOfVertices() || (vertexNormals != null && vertexNormals.length != 3 * this.getNumberOfNormals())) {
+            throw new IllegalArgumentException("A deformed mesh must have as many vertices and vertex normals as the original mesh.");
+        }
+        if(vertexNormals == null) {
+            vertexNormals = this.vertexNormals != null ? this.vertexNormals : TriangleMeshGeometry.toDoubleArray(this.floatVertexNormals);
+        }
+        return new TriangleMeshGeometry(vertexPositions, vertexNormals, this.faceVertexIndices, this.faceNormalIndices,
+                this.precision, this.kernel, this.boundingVolumeHierarchy);
+    }
+    /*
+       Method that writes the geometry, including its precomputed
+       intersection data and its hierarchy, to the given snapshot
+       output, to be read back by 'readSnapshot'.
+     */
+    public void writeSnapshot(SnapshotOutput output) throws IOException {
+        output.writeString(this.precision.name());
+        output.writeString(this.kernel.name());
+        output.writeInt(this.simdStride);
+        output.writeDoubles(this.vertexPositions);
+        output.writeFloats(this.floatVertexPositions);
+        output.writeDoubles(this.vertexNormals);
+        output.writeFloats(this.floatVertexNormals);
+        output.writeInts(this.faceVertexIndices);
+        output.writeInts(this.faceNormalIndices);
+        output.writeDoubles(this.faceNormals);
+        output.writeFloats(this.floatFaceNormals);
+        output.writeDoubles(this.intersectionData);
+        output.writeFloats(this.floatIntersectionData);
+        this.boundingVolumeHierarchy.writeSnapshot(output);
+    }
+    /*
+       Method that returns the vertex with the given index as a Vector3D.
+     */
+    public Vector3D getVertex(int vertex) {
+        return new Vector3D(this.positionCoordinate(3*vertex), this.positionCoordinate(3*vertex+1), this.positionCoordinate(3*vertex+2));
+    }
+    /*
+       Method that returns the vertex normal with the given index as a Vector3D.
+     */
+    public Vector3D getNormal(int normal) {
+        return new Vector3D(this.normalCoordinate(3*normal), this.normalCoordinate(3*normal+1), this.normalCoordinate(3*normal+2));
+    }
+    /*
+       Methods that return the coordinate at the given offset in the
+       vertex positions, vertex normals and face normals, in whichever
+       precision they are stored.
+     */
+    private double positionCoordinate(int offset) {
+        return this.vertexPositions != null ? this.vertexPositions[offset] : this.floatVertexPositions[offset];
+    }
+    private double normalCoordinate(int offset) {
+        return this.vertexNormals != null ? this.vertexNormals[offset] : this.floatVertexNormals[offset];
+    }
+    private double faceNormalCoordinate(int offset) {
+        return this.faceNormals != null ? this.faceNormals[offset] : this.floatFaceNormals[offset];
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that reads a geometry written by 'writeSnapshot' from the
+       given snapshot input.
+
+       The stored data is used as it is if it was laid out for the kernel
+       that a new geometry would be intersected by now (the default kernel,
+       with vectors as wide as now for the SIMD kernel). Otherwise, e.g. if
+       the snapshot was written with the SIMD kernel and the Vector API is
+       not available now, the geometry is rebuilt from the stored vertices
+       and normals, which gives the same triangles in the same precision
+       (rounding float values to floats again does not change them).
+     */
+    public static TriangleMeshGeometry readSnapshot(SnapshotInput input) throws IOException {
+        GeometryPrecision precision;
+        IntersectionKernel kernel;
+        try {
+            precision = GeometryPrecision.valueOf(input.readString());
+            kernel = IntersectionKernel.valueOf(input.readString());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Unknown geometry precision or intersection kernel in snapshot.", e);
+        }
+        int simdStride = input.readInt();
+        double[] vertexPositions = input.readDoubles();
+        float[] floatVertexPositions = input.readFloats();
+        double[] vertexNormals = input.readDoubles();
+        float[] floatVertexNormals = input.readFloats();
+        int[] faceVertexIndices = input.readInts();
+        int[] faceNormalIndices = input.readInts();
+        double[] faceNormals = input.readDoubles();
+        float[] floatFaceNormals = input.readFloats();
+        double[] intersectionData = input.readDoubles();
+        float[] floatIntersectionData = input.readFloats();
+        BoundingVolumeHierarchy boundingVolumeHierarchy = BoundingVolumeHierarchy.readSnapshot(input);
+
+        boolean isFloat = precision == GeometryPrecision.FLOAT;
+        if(faceVertexIndices == null || (isFloat ? floatVertexPositions == null || floatVertexNormals == null || floatFaceNormals == null || floatIntersectionData == null
+                                                 : vertexPositions == null || vertexNormals == null || faceNormals == null || intersectionData == null)
+                || boundingVolumeHierarchy.getNumberOfPrimitives() != faceVertexIndices.length / 3) {
+            throw new IOException("Corrupted triangle mesh geometry in snapshot.");
+        }
+
+        IntersectionKernel currentKernel = IntersectionKernel.isSimdAvailable() ? IntersectionKernel.getDefault() : IntersectionKernel.SCALAR;
+        boolean layoutMatches = kernel == currentKernel &&
+                (kernel == IntersectionKernel.SCALAR || simdStride == SimdTriangleKernel.getStride(faceVertexIndices.length / 3));
+        if(!layoutMatches) {
+            return new TriangleMeshGeometry(isFloat ? TriangleMeshGeometry.toDoubleArray(floatVertexPositions) : vertexPositions,
+                    isFloat ? TriangleMeshGeometry.toDoubleArray(floatVertexNormals) : vertexNormals,
+                    faceVertexIndices, faceNormalIndices, precision, currentKernel);
+        }
+        return new TriangleMeshGeometry(precision, kernel, vertexPositions, floatVertexPositions, vertexNormals, floatVertexNormals,
+                faceVertexIndices, faceNormalIndices, faceNormals, floatFaceNormals, intersectionData, floatIntersectionData,
+                simdStride, boundingVolumeHierarchy);
+    }
+    /*
+       Method that returns the number of triangles that the given kernel
+       intersects at once, which the leaves of the hierarchy are built for.
+     */
+    static int getTrianglesPerTest(IntersectionKernel kernel) {
+        return kernel == IntersectionKernel.SIMD && IntersectionKernel.isSimdAvailable() ? SimdTriangleKernel.getWidth() : 1;
+    }
+    /*
+       Methods that convert between double and float arrays, rounding
+       each value to the nearest float.
+     */
+    private static float[] toFloatArray(double[] values) {
+        float[] floatValues = new float[values.length];
+        for(int i = 0; i < values.length; i++) {
+            floatValues[i] = (float) values[i];
+        }
+        return floatValues;
+    }
+    private static double[] toDoubleArray(float[] values) {
+        double[] doubleValues = new double[values.length];
+        for(int i = 0; i < values.length; i++) {
+            doubleValues[i] = values[i];
+        }
+        return doubleValues;
+    }
+
+    /**
+     * Getters
+     */
+    public GeometryPrecision getPrecision() {
+        return this.precision;
+    }
+    public IntersectionKernel getKernel() {
+        return this.kernel;
+    }
+    public int getNumberOfVertices() {
+        return (this.vertexPositions != null ? this.vertexPositions.length : this.floatVertexPositions.length) / 3;
+    }
+    public int getNumberOfNormals() {
+        return (this.vertexNormals != null ? this.vertexNormals.length : this.floatVertexNormals.length) / 3;
+    }
+    public int getNumberOfTriangles() {
+        return this.numberOfTriangles;
+    }
+    public boolean isFlatShaded() {
+        return this.faceNormalIndices == null;
+    }
+    public int getVertexIndex(int face, int corner) {
+        return this.faceVertexIndices[3*face + corner];
+    }
+    public int getNormalIndex(int face, int corner) {
+        return this.faceNormalIndices[3*face + corner];
+    }
+    /*
+       Getter for the (approximate) number of bytes taken by the
+       arrays of the geometry, including its hierarchy.
+     */
+    public long getSizeInBytes() {
+        int bytesPerValue = this.precision == GeometryPrecision.FLOAT ? 4 : 8;
+        long intersectionDataLength = this.intersectionData != null ? this.intersectionData.length : this.floatIntersectionData.length;
+        long size = (long) bytesPerValue * (3L * this.getNumberOfVertices() + 3L * this.getNumberOfNormals() + 3L * this.numberOfTriangles + intersectionDataLength);
+        size += 4L * this.faceVertexIndices.length + (this.faceNormalIndices != null ? 4L * this.faceNormalIndices.length : 0);
+        return size + this.boundingVolumeHierarchy.getSizeInBytes();
+    }
+    public BoundingVolumeHierarchy getBoundingVolumeHierarchy() {
+        return this.boundingVolumeHierarchy;
+    }
+}
@@ -0,0 +1,141 @@
+package rendering.tracing;
+
+import rendering.shapes.RTShape;
+import rendering.utility.Vector3D;
+
+/**
+ * Class for a mutable record of the closest ray-shape
+ * hit found so far, written by the intersection methods
+ * instead of allocating an Intersection for every test.
+ *
+ * It holds the parameter s of the hit point P = O + s * D
+ * on the ray, the intersected shape, the index of the
+ * intersected primitive within the shape (the index of the
+ * triangle for triangles and meshes, -1 for other shapes),
+ * and the barycentric coordinates (1-u-v, u, v) of the hit
+ * point within the intersected triangle.
+ *
+ * A shape only writes a hit into the record if it is
+ * closer than the hit already in it, so the parameter of
+ * the record is also the maximum parameter of the hits
+ * that are still of interest, and the closest hit can be
+ * found by comparing parameters alone (no distances or
+ * square roots). An Intersection is only created from the
+ * record once the closest hit is final.
+ *
+ * HitRecord is not thread-safe. Each thread should use its
+ * own record, e.g. the one given by forCurrentThread().
+ */
+
+public class HitRecord {
+    /// one reusable record per thread
+    private static final ThreadLocal<HitRecord> threadRecord = ThreadLocal.withInitial(HitRecord::new);
+
+    private double parameter;
+    private RTShape shape;
+    private int primitiveIndex;
+    private double u;
+    private double v;
+
+    /**
+     * Constructors
+     */
+    public HitRecord() {
+        this.reset(Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that clears the record, so that only hits with
+       parameter s < maxParameter will be recorded.
+     */
+    public void reset(double maxParameter) {
+        this.parameter = maxParameter;
+        this.shape = null;
+        this.primitiveIndex = -1;
+        this.u = 0;
+        this.v = 0;
+    }
+    /*
+       Method that records a hit with the given shape (that is not
+       made of triangles) at the given parameter.
+     */
+    public void record(double parameter, RTShape shape) {
+        this.parameter = parameter;
+        this.shape = shape;
+        this.primitiveIndex = -1;
+        this.u = 0;
+        this.v = 0;
+    }
+    /*
+       Method that records a hit with a triangle at the given parameter,
+       with the given barycentric coordinates (1-u-v, u, v). The shape
+       and the index of the triangle are set afterwards by the shape
+       that owns the triangle, using setIntersectedPrimitive.
+     */
+    public void record(double parameter, double u, double v) {
+        this.parameter = parameter;
+        this.u = u;
+        this.v = v;
+    }
+    /*
+       Method that sets the intersected shape, and the index of the
+       intersected triangle within it, of the hit in the record.
+     */
+    public void setIntersectedPrimitive(RTShape shape, int primitiveIndex) {
+        this.shape = shape;
+        this.primitiveIndex = primitiveIndex;
+    }
+    /*
+       Method that returns true iff a hit has been recorded
+       since the last reset.
+     */
+    public boolean hasHit() {
+        return this.shape != null;
+    }
+    /*
+       Method that creates an Intersection object for the hit
+       in the record, of the given ray (the ray that the hit was
+       found for), or returns null if there is no hit.
+     */
+    public Intersection toIntersection(Ray ray) {
+        if(this.shape == null) {
+            return null;
+        }
+        if(this.primitiveIndex < 0) {
+            return new Intersection(this.shape, ray.pointAt(this.parameter));
+        }
+        return new Intersection(this.shape, ray.pointAt(this.parameter), this.primitiveIndex, new Vector3D(1 - this.u - this.v, this.u, this.v));
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the reusable record of the calling thread.
+     */
+    public static HitRecord forCurrentThread() {
+        return HitRecord.threadRecord.get();
+    }
+
+    /**
+     * Getters
+     */
+    public double getParameter() {
+        return this.parameter;
+    }
+    public RTShape getShape() {
+        return this.shape;
+    }
+    public int getPrimitiveIndex() {
+        return this.primitiveIndex;
+    }
+    public double getU() {
+        return this.u;
+    }
+    public double getV() {
+        return this.v;
+    }
+}
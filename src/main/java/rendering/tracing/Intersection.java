@@ -8,6 +8,12 @@ import rendering.utility.Vector3D;
  * shape that is hit, and a point on its surface
  * where it is hit.
  *
+ * For shapes made of many primitives (triangle
+ * meshes), the intersection also records the index
+ * of the primitive (triangle) that was hit, and the
+ * barycentric coordinates of the point inside it,
+ * so that shading does not have to find them again.
+ *
  * When the intersection does not exist, the
  * variable that's supposed to be the Intersection
  * object is null.
@@ -17,12 +23,27 @@ public class Intersection {
     private final RTShape intersectedShape;
     private final Vector3D intersectionPoint;
 
+    /// index of the intersected primitive within the intersected shape, -1 if not applicable
+    private final int primitiveIndex;
+    /// barycentric coordinates (alpha, beta, gamma) of the point within the intersected triangle, null if not applicable
+    private final Vector3D barycentricCoordinates;
+
     /**
      * Constructors
      */
     public Intersection(RTShape shape, Vector3D point) {
+        this(shape, point, -1, null);
+    }
+    /*
+       Constructor for an intersection with a triangle, given by its index
+       within the intersected shape, at a point with the given barycentric
+       coordinates within that triangle.
+     */
+    public Intersection(RTShape shape, Vector3D point, int primitiveIndex, Vector3D barycentricCoordinates) {
         this.intersectedShape = shape;
         this.intersectionPoint = point;
+        this.primitiveIndex = primitiveIndex;
+        this.barycentricCoordinates = barycentricCoordinates;
     }
 
     /**
@@ -35,4 +56,12 @@ public class Intersection {
     public Vector3D getIntersectionPoint() {
         return this.intersectionPoint;
     }
+
+    public int getPrimitiveIndex() {
+        return this.primitiveIndex;
+    }
+
+    public Vector3D getBarycentricCoordinates() {
+        return this.barycentricCoordinates;
+    }
 }
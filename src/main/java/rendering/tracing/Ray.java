@@ -6,8 +6,6 @@ import rendering.shapes.RTShape;
 import rendering.utility.RTColor;
 import rendering.utility.Vector3D;
 
-import java.util.ArrayList;
-
 /**
  * Class to encapsulate a ray in the
  * form P = O + s * D (s is a non-negative
@@ -24,6 +22,10 @@ public class Ray {
     /// surface of the shape to prevent them from
     /// intersecting the shape they originated from
     private static final double liftingCoefficient = 1e-6;
+    /// the rounding error of an intersection point grows with its distance
+    /// from the world origin, so points are lifted by at least this much
+    /// times their largest (absolute) coordinate
+    private static final double relativeLiftingCoefficient = 0x1p-30;
 
     /**
      * Constructors
@@ -67,7 +69,17 @@ public class Ray {
         }
 
         /// first find the first intersection of this ray and this scene
-        Intersection firstIntersection = this.findFirstIntersection(scene);
+        return this.traceWithReflections(scene, shader, tracingLimit, this.findFirstIntersection(scene));
+    }
+    /*
+       Method to trace this ray as above, given its first intersection
+       with the scene (null if it has none), which has already been found
+       (e.g. for a whole packet of rays at once, see Scene.findClosestHits).
+     */
+    public RTColor traceWithReflections(Scene scene, Shader shader, int tracingLimit, Intersection firstIntersection) {
+        if(tracingLimit == 0) {
+            return RTColor.blank;
+        }
 
         /// the ray does not intersect any RTShape
         if(firstIntersection == null) {
@@ -92,26 +104,12 @@ public class Ray {
     /*
        Method to find the first intersection of this ray with a RTShape from
        the given Scene object. Returns an Intersection object.
+
+       The search itself is done by the Scene, through its bounding
+       volume hierarchy.
      */
     public Intersection findFirstIntersection(Scene scene) {
-        ArrayList<RTShape> shapes = scene.getShapes();
-        ArrayList<Light> lights = scene.getLights();
-
-        /// find the first intersection of this ray with a shape
-        Intersection closestIntersection = null;
-        double minDistanceSoFar = -1;
-        for (RTShape shape : shapes) {
-            /// find the first intersection of this ray and this shape
-            Intersection intersection = shape.intersect(this);
-            if(intersection != null) {
-                if(closestIntersection == null || this.distance(intersection.getIntersectionPoint()) < minDistanceSoFar) {
-                    closestIntersection = intersection;
-                    minDistanceSoFar = this.distance(intersection.getIntersectionPoint());
-                }
-            }
-        }
-
-        return closestIntersection;
+        return scene.findFirstIntersection(this);
     }
     /*
        Method to return the point on this ray P = O + s * D for
@@ -138,6 +136,18 @@ public class Ray {
     public double distance(Vector3D point) {
         return point.added(this.origin.negated()).magnitude();
     }
+    /*
+       Method to get the value of the parameter s for which the
+       point P = O + s * D on this ray is the closest to the given
+       point (for a point on the ray, that is the point itself).
+
+       Unlike the distance, the parameter can be compared between
+       intersections without taking square roots, and it is the
+       same quantity that bounding volume hierarchies prune by.
+     */
+    public double parameterOf(Vector3D point) {
+        return point.added(this.origin.negated()).scalarProduct(this.direction) / this.direction.magnitudeSquared();
+    }
 
     /**
      * Static Utility Methods
@@ -145,7 +155,9 @@ public class Ray {
     /*
        Method that takes the intersection point on the surface of a shape, and lifts
        it up in the direction of the local unit normal to surface by a small amount
-       defined by the liftingCoefficient class variable.
+       defined by the liftingCoefficient class variable, or by a larger amount (given
+       by the relativeLiftingCoefficient) if the point is so far from the origin that
+       its rounding errors are larger.
 
        It is used to move the origin of a shadow ray or a reflected ray away from the
        surface so that it does not intersect the object it originated from
@@ -155,7 +167,9 @@ public class Ray {
     public static Vector3D liftOrigin(Intersection intersection) {
         RTShape intersectedShape = intersection.getIntersectedShape();
         Vector3D intersectionPoint = intersection.getIntersectionPoint();
-        return intersectionPoint.added(intersectedShape.getUnitNormalAt(intersection).scaled(Ray.liftingCoefficient));
+        double magnitude = Math.max(Math.abs(intersectionPoint.getX()), Math.max(Math.abs(intersectionPoint.getY()), Math.abs(intersectionPoint.getZ())));
+        double lift = Math.max(Ray.liftingCoefficient, Ray.relativeLiftingCoefficient * magnitude);
+        return intersectionPoint.added(intersectedShape.getUnitNormalAt(intersection).scaled(lift));
     }
 
     /**
@@ -167,4 +181,26 @@ public class Ray {
     public Vector3D getDirection(){
         return new Vector3D(this.direction);
     }
+    /*
+       Coordinates of the origin and the direction, for
+       intersection code that must not allocate copies.
+     */
+    public double getOriginX() {
+        return this.origin.getX();
+    }
+    public double getOriginY() {
+        return this.origin.getY();
+    }
+    public double getOriginZ() {
+        return this.origin.getZ();
+    }
+    public double getDirectionX() {
+        return this.direction.getX();
+    }
+    public double getDirectionY() {
+        return this.direction.getY();
+    }
+    public double getDirectionZ() {
+        return this.direction.getZ();
+    }
 }
@@ -0,0 +1,180 @@
+package rendering.tracing;
+
+/**
+ * Class for a packet of rays with a common origin, e.g. the
+ * primary rays of the camera through a block of neighbouring
+ * pixels, that are intersected with a scene together (see
+ * Scene.findClosestHits), with one hit record per ray.
+ *
+ * Besides the rays themselves, the packet keeps the reciprocals
+ * of the components of their directions, and the smallest and
+ * largest reciprocal along every axis. If the directions of all
+ * rays have the same (non-zero) sign along every axis, the packet
+ * is coherent, and the reciprocals of all of its directions lie in
+ * these intervals, so the whole packet can be tested against a
+ * bounding box at once with interval arithmetic (see
+ * BoundingVolumeHierarchy.intersectNodeBoundsInterval).
+ *
+ * A packet is mutable and reused for many blocks of rays,
+ * so every rendering thread needs its own.
+ */
+
+public class RayPacket {
+    /// width and height of the blocks of pixels whose primary rays are traced as one packet
+    public static final int side = 8;
+    /// maximum number of rays in a packet
+    public static final int capacity = RayPacket.side * RayPacket.side;
+
+    private final Ray[] rays = new Ray[RayPacket.capacity];
+    private final HitRecord[] hitRecords = new HitRecord[RayPacket.capacity];
+    private final double[] inverseDirectionsX = new double[RayPacket.capacity];
+    private final double[] inverseDirectionsY = new double[RayPacket.capacity];
+    private final double[] inverseDirectionsZ = new double[RayPacket.capacity];
+    private int numberOfRays;
+    private double originX, originY, originZ;
+    /// smallest and largest reciprocals of the direction components, along each axis
+    private double minInverseDirectionX, minInverseDirectionY, minInverseDirectionZ;
+    private double maxInverseDirectionX, maxInverseDirectionY, maxInverseDirectionZ;
+
+    /**
+     * Constructors
+     */
+    public RayPacket() {
+        for(int i = 0; i < RayPacket.capacity; i++) {
+            this.hitRecords[i] = new HitRecord();
+        }
+        this.clear();
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method that removes all rays from the packet.
+     */
+    public void clear() {
+        this.numberOfRays = 0;
+        this.minInverseDirectionX = this.minInverseDirectionY = this.minInverseDirectionZ = Double.POSITIVE_INFINITY;
+        this.maxInverseDirectionX = this.maxInverseDirectionY = this.maxInverseDirectionZ = Double.NEGATIVE_INFINITY;
+    }
+    /*
+       Method that adds a ray to the packet, with an empty hit record
+       (in which only hits with parameter s < maxParameter will be
+       recorded), and returns its index in the packet. All rays of a
+       packet must have the same origin.
+     */
+    public int add(Ray ray, double maxParameter) {
+        if(this.numberOfRays == RayPacket.capacity) {
+            throw new IllegalArgumentException("Ray packet is full.");
+        }
+        if(this.numberOfRays == 0) {
+            this.originX = ray.getOriginX();
+            this.originY = ray.getOriginY();
+            this.originZ = ray.getOriginZ();
+        }
+        else if(ray.getOriginX() != this.originX || ray.getOriginY() != this.originY || ray.getOriginZ() != this.originZ) {
+            throw new IllegalArgumentException("All rays of a packet must have the same origin.");
+        }
+
+        int index = this.numberOfRays++;
+        this.rays[index] = ray;
+        this.hitRecords[index].reset(maxParameter);
+
+        double inverseDirectionX = 1 / ray.getDirectionX(), inverseDirectionY = 1 / ray.getDirectionY(), inverseDirectionZ = 1 / ray.getDirectionZ();
+        this.inverseDirectionsX[index] = inverseDirectionX;
+        this.inverseDirectionsY[index] = inverseDirectionY;
+        this.inverseDirectionsZ[index] = inverseDirectionZ;
+        this.minInverseDirectionX = Math.min(this.minInverseDirectionX, inverseDirectionX);
+        this.minInverseDirectionY = Math.min(this.minInverseDirectionY, inverseDirectionY);
+        this.minInverseDirectionZ = Math.min(this.minInverseDirectionZ, inverseDirectionZ);
+        this.maxInverseDirectionX = Math.max(this.maxInverseDirectionX, inverseDirectionX);
+        this.maxInverseDirectionY = Math.max(this.maxInverseDirectionY, inverseDirectionY);
+        this.maxInverseDirectionZ = Math.max(this.maxInverseDirectionZ, inverseDirectionZ);
+        return index;
+    }
+    /*
+       Method that returns true iff the directions of all rays of the
+       packet have the same sign along every axis, and none of their
+       components is 0 (or NaN), i.e. the packet can be intersected
+       with bounding boxes as a whole.
+     */
+    public boolean isCoherent() {
+        return this.numberOfRays > 0 &&
+                RayPacket.hasSameSign(this.minInverseDirectionX, this.maxInverseDirectionX) &&
+                RayPacket.hasSameSign(this.minInverseDirectionY, this.maxInverseDirectionY) &&
+                RayPacket.hasSameSign(this.minInverseDirectionZ, this.maxInverseDirectionZ);
+    }
+    /*
+       Method that returns the largest parameter of the hit records of
+       the rays from index 'first' on, i.e. the largest parameter for
+       which a hit is still of interest to some of these rays.
+     */
+    public double getMaxParameter(int first) {
+        double maxParameter = Double.NEGATIVE_INFINITY;
+        for(int i = first; i < this.numberOfRays; i++) {
+            maxParameter = Math.max(maxParameter, this.hitRecords[i].getParameter());
+        }
+        return maxParameter;
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns true iff both finite (not NaN) reciprocals
+       are positive, or both are negative (the reciprocal of a zero
+       direction component is infinite).
+     */
+    private static boolean hasSameSign(double min, double max) {
+        return Double.isFinite(min) && Double.isFinite(max) && (min > 0 || max < 0);
+    }
+
+    /**
+     * Getters
+     */
+    public int getNumberOfRays() {
+        return this.numberOfRays;
+    }
+    public Ray getRay(int index) {
+        return this.rays[index];
+    }
+    public HitRecord getHitRecord(int index) {
+        return this.hitRecords[index];
+    }
+    public double getOriginX() {
+        return this.originX;
+    }
+    public double getOriginY() {
+        return this.originY;
+    }
+    public double getOriginZ() {
+        return this.originZ;
+    }
+    public double getInverseDirectionX(int index) {
+        return this.inverseDirectionsX[index];
+    }
+    public double getInverseDirectionY(int index) {
+        return this.inverseDirectionsY[index];
+    }
+    public double getInverseDirectionZ(int index) {
+        return this.inverseDirectionsZ[index];
+    }
+    public double getMinInverseDirectionX() {
+        return this.minInverseDirectionX;
+    }
+    public double getMinInverseDirectionY() {
+        return this.minInverseDirectionY;
+    }
+    public double getMinInverseDirectionZ() {
+        return this.minInverseDirectionZ;
+    }
+    public double getMaxInverseDirectionX() {
+        return this.maxInverseDirectionX;
+    }
+    public double getMaxInverseDirectionY() {
+        return this.maxInverseDirectionY;
+    }
+    public double getMaxInverseDirectionZ() {
+        return this.maxInverseDirectionZ;
+    }
+}
@@ -1,6 +1,8 @@
 package rendering.tracing;
 
 import org.xml.sax.SAXException;
+import rendering.acceleration.AxisAlignedBoundingBox;
+import rendering.acceleration.BoundingVolumeHierarchy;
 import rendering.shapes.RTShape;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.SceneDescriptionParser;
@@ -8,19 +10,51 @@ import rendering.utility.SceneDescriptionParser;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * A class to encapsulate a scene described by
  * an XML file. It contains a list of all shapes
  * and a list of all lights.
  *
- * The scene is immutable.
+ * When the scene is created, a bounding volume
+ * hierarchy is built over all bounded shapes, and
+ * all rays (primary, reflected and shadow rays) are
+ * intersected with the scene through it, so the cost
+ * of finding the first intersection grows
+ * logarithmically with the number of shapes. Unbounded
+ * shapes (planes) can not be put in the hierarchy, so
+ * they are intersected directly.
+ *
+ * A fully built scene can be written to a binary snapshot, and
+ * loaded from it much faster than from its XML (see SceneSnapshot
+ * and 'load').
+ *
+ * The numbers of shapes and lights of a scene are fixed, but
+ * shapes can be replaced between two renders (e.g. by moved mesh
+ * instances, for the next frame of an animation) with 'updateShapes',
+ * and lights with 'updateLights'. Updating shapes refits the hierarchy in place only above the replaced shapes,
+ * rather than building it again. With mesh instances (MeshInstance),
+ * whose triangles have their own hierarchies in object coordinates,
+ * the hierarchy of the scene is the top level of a two-level structure,
+ * and an update takes time proportional to the number of instances
+ * that moved, not to the size of the scene.
  */
 
 public class Scene {
     private final ArrayList<RTShape> shapes;
     private final ArrayList<Light> lights;
 
+    /// shapes that have a bounding box, indexed by the primitive indices of the bounding volume hierarchy
+    private final RTShape[] boundedShapes;
+    /// shapes without a bounding box (e.g. planes)
+    private final RTShape[] unboundedShapes;
+    private final BoundingVolumeHierarchy boundingVolumeHierarchy;
+    /// bounds of the bounded shapes, 6 values per shape (minX, minY, minZ, maxX, maxY, maxZ), in the order of 'boundedShapes'
+    private final double[] primitiveBounds;
+    /// index of each shape in 'boundedShapes', or -1 minus its index in 'unboundedShapes'
+    private final int[] shapePositions;
+
     /**
      * Constructors
      */
@@ -30,9 +64,440 @@ public class Scene {
        to parse the shapes and lights.
      */
     public Scene(String sceneDescriptionPath) throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
-        SceneDescriptionParser descriptionParser = new SceneDescriptionParser(sceneDescriptionPath);
-        this.shapes = descriptionParser.parseShapes();
-        this.lights = descriptionParser.parseLights();
+        this(new SceneDescriptionParser(sceneDescriptionPath));
+    }
+    /*
+       Constructor from an already created SceneDescriptionParser.
+     */
+    private Scene(SceneDescriptionParser descriptionParser) throws IncorrectSceneDescriptionXMLStructureException, IOException {
+        this(descriptionParser.parseShapes(), descriptionParser.parseLights());
+    }
+    /*
+       Constructor from the lists of shapes and lights
+       in the scene.
+     */
+    public Scene(ArrayList<RTShape> shapes, ArrayList<Light> lights) {
+        this(shapes, lights, null);
+    }
+    /*
+       Constructor from the lists of shapes and lights in the scene,
+       and an already built bounding volume hierarchy over its bounded
+       shapes (in the order in which they are in the list of shapes),
+       e.g. one read from a SceneSnapshot, or null to build it.
+     */
+    public Scene(ArrayList<RTShape> shapes, ArrayList<Light> lights, BoundingVolumeHierarchy boundingVolumeHierarchy) {
+        this.shapes = shapes;
+        this.lights = lights;
+
+        /// split shapes into those that can be put in the bounding volume hierarchy, and those that can not
+        ArrayList<RTShape> boundedShapes = new ArrayList<>();
+        ArrayList<RTShape> unboundedShapes = new ArrayList<>();
+        ArrayList<AxisAlignedBoundingBox> boundingBoxes = new ArrayList<>();
+        this.shapePositions = new int[shapes.size()];
+        for(int i = 0; i < shapes.size(); i++) {
+            RTShape shape = shapes.get(i);
+            AxisAlignedBoundingBox boundingBox = shape.getAxisAlignedBoundingBox();
+            if(boundingBox == null) {
+                this.shapePositions[i] = -1 - unboundedShapes.size();
+                unboundedShapes.add(shape);
+            }
+            else {
+                this.shapePositions[i] = boundedShapes.size();
+                boundedShapes.add(shape);
+                boundingBoxes.add(boundingBox);
+            }
+        }
+        this.boundedShapes = boundedShapes.toArray(new RTShape[0]);
+        this.unboundedShapes = unboundedShapes.toArray(new RTShape[0]);
+
+        this.primitiveBounds = new double[6 * boundingBoxes.size()];
+        for(int i = 0; i < boundingBoxes.size(); i++) {
+            Scene.putBounds(this.primitiveBounds, i, boundingBoxes.get(i));
+        }
+
+        if(boundingVolumeHierarchy != null) {
+            if(boundingVolumeHierarchy.getNumberOfPrimitives() != this.boundedShapes.length) {
+                throw new IllegalArgumentException("Bounding volume hierarchy does not match the bounded shapes of the scene.");
+            }
+            this.boundingVolumeHierarchy = boundingVolumeHierarchy;
+            return;
+        }
+
+        /// build the bounding volume hierarchy over the bounded shapes
+        this.boundingVolumeHierarchy = new BoundingVolumeHierarchy(this.primitiveBounds, boundingBoxes.size());
+    }
+
+    /**
+     * Methods
+     */
+    /*
+       Method to find the first intersection of the given ray with a
+       RTShape from this scene. Returns an Intersection object, or null
+       if the ray does not intersect any RTShape.
+     */
+    public Intersection findFirstIntersection(Ray ray) {
+        return this.findFirstIntersection(ray, Double.POSITIVE_INFINITY);
+    }
+    /*
+       Method to find the first intersection of the given ray with a
+       RTShape from this scene, considering only intersections at points
+       P = O + s * D with s < maxParameter. Returns an Intersection object,
+       or null if there is no such intersection.
+
+       The search is done with the hit record of the current thread, and
+       the Intersection is only created once the closest hit is known.
+     */
+    public Intersection findFirstIntersection(Ray ray, double maxParameter) {
+        HitRecord hitRecord = HitRecord.forCurrentThread();
+        hitRecord.reset(maxParameter);
+        this.findClosestHit(ray, hitRecord);
+        return hitRecord.toIntersection(ray);
+    }
+    /*
+       Method to find the closest intersection of the given ray with a
+       RTShape from this scene that is closer than the hit already in the
+       given hit record. If there is one, it is written into the record
+       and true is returned, otherwise false is returned. Hits are compared
+       by their parameter s in P = O + s * D only, and nothing is allocated
+       (the traversal uses the reusable stack of the thread, see TraversalStack).
+
+       Subtrees of the bounding volume hierarchy whose bounds the ray
+       enters only beyond the closest intersection found so far are
+       skipped, and of the two children of a node, the one that is closer
+       along the ray direction is visited first, so that closer
+       intersections are found early.
+     */
+    public boolean findClosestHit(Ray ray, HitRecord hitRecord) {
+        boolean hit = false;
+
+        /// unbounded shapes are not in the bounding volume hierarchy, so intersect them directly
+        for(RTShape shape : this.unboundedShapes) {
+            hit |= shape.intersect(ray, hitRecord);
+        }
+
+        BoundingVolumeHierarchy bvh = this.boundingVolumeHierarchy;
+        if(bvh.getNumberOfNodes() == 0) {
+            return hit;
+        }
+
+        double originX = ray.getOriginX(), originY = ray.getOriginY(), originZ = ray.getOriginZ();
+        double directionX = ray.getDirectionX(), directionY = ray.getDirectionY(), directionZ = ray.getDirectionZ();
+        double inverseDirectionX = 1 / directionX, inverseDirectionY = 1 / directionY, inverseDirectionZ = 1 / directionZ;
+
+        /// stack of nodes still to be visited, its size never exceeds the depth of the hierarchy plus one
+        TraversalStack traversalStack = TraversalStack.forCurrentThread();
+        int base = traversalStack.push(bvh.getDepth() + 2);
+        int[] nodeStack = traversalStack.getNodes();
+        int stackSize = base;
+        nodeStack[stackSize++] = 0;
+        try {
+            while(stackSize > base) {
+                int node = nodeStack[--stackSize];
+                /// skip the node if the ray misses it, or if it only enters it beyond the closest intersection so far
+                double closestParameter = hitRecord.getParameter();
+                if(bvh.intersectNodeBounds(node, originX, originY, originZ, inverseDirectionX, inverseDirectionY, inverseDirectionZ, closestParameter) >= closestParameter) {
+                    continue;
+                }
+
+                if(bvh.isLeaf(node)) {
+                    int firstPrimitive = bvh.getFirstPrimitive(node);
+                    int lastPrimitive = firstPrimitive + bvh.getPrimitiveCount(node);
+                    for(int i = firstPrimitive; i < lastPrimitive; i++) {
+                        hit |= this.boundedShapes[bvh.getPrimitiveIndex(i)].intersect(ray, hitRecord);
+                    }
+                }
+                else {
+                    /// push the farther child first, so that the nearer child is visited first
+                    int axis = bvh.getSplitAxis(node);
+                    boolean directionNegative = (axis == 0 ? directionX : (axis == 1 ? directionY : directionZ)) < 0;
+                    if(directionNegative) {
+                        nodeStack[stackSize++] = node + 1;
+                        nodeStack[stackSize++] = bvh.getRightChild(node);
+                    }
+                    else {
+                        nodeStack[stackSize++] = bvh.getRightChild(node);
+                        nodeStack[stackSize++] = node + 1;
+                    }
+                }
+            }
+        }
+        finally {
+            traversalStack.pop(base);
+        }
+
+        return hit;
+    }
+    /*
+       Method to find the closest intersection of every ray of the given
+       packet with a RTShape from this scene, in the same way as
+       'findClosestHit' (and with exactly the same results), writing each
+       into the hit record of its ray in the packet.
+
+       If the packet is coherent, the bounding volume hierarchy is traversed
+       once for the whole packet. At every node, the rays are tested from
+       the first ray that is still active (that hit all ancestors of the
+       node) on, until one of them hits the node (usually the very first
+       one); only if none does is the node skipped, and when the interval
+       test of the whole packet misses the node, it is skipped without
+       testing the rays one by one. The children are visited with the first
+       ray that hit the node, and in a leaf, every later ray is tested
+       against the leaf bounds again before intersecting its shapes, so
+       every ray intersects exactly the leaves (and in the same order) as
+       it would on its own. Rays that are not coherent (e.g. whose
+       directions straddle an axis) are traced one at a time instead.
+     */
+    public void findClosestHits(RayPacket packet) {
+        int numberOfRays = packet.getNumberOfRays();
+        if(!packet.isCoherent()) {
+            for(int i = 0; i < numberOfRays; i++) {
+                this.findClosestHit(packet.getRay(i), packet.getHitRecord(i));
+            }
+            return;
+        }
+
+        /// unbounded shapes are not in the bounding volume hierarchy, so intersect them directly
+        for(RTShape shape : this.unboundedShapes) {
+            for(int i = 0; i < numberOfRays; i++) {
+                shape.intersect(packet.getRay(i), packet.getHitRecord(i));
+            }
+        }
+
+        BoundingVolumeHierarchy bvh = this.boundingVolumeHierarchy;
+        if(bvh.getNumberOfNodes() == 0) {
+            return;
+        }
+
+        double originX = packet.getOriginX(), originY = packet.getOriginY(), originZ = packet.getOriginZ();
+        /// stack of nodes still to be visited, each pushed together with the first ray that is active in it
+        TraversalStack traversalStack = TraversalStack.forCurrentThread();
+        int base = traversalStack.push(2 * (bvh.getDepth() + 2));
+        int[] nodeStack = traversalStack.getNodes();
+        int stackSize = base;
+        nodeStack[stackSize++] = 0;
+        nodeStack[stackSize++] = 0;
+        try {
+            while(stackSize > base) {
+                int firstRay = nodeStack[--stackSize];
+                int node = nodeStack[--stackSize];
+
+                /// find the first active ray that hits the node
+                if(!Scene.hitsNodeBounds(bvh, node, packet, firstRay)) {
+                    double maxParameter = packet.getMaxParameter(firstRay);
+                    if(bvh.intersectNodeBoundsInterval(node, originX, originY, originZ,
+                            packet.getMinInverseDirectionX(), packet.getMaxInverseDirectionX(),
+                            packet.getMinInverseDirectionY(), packet.getMaxInverseDirectionY(),
+                            packet.getMinInverseDirectionZ(), packet.getMaxInverseDirectionZ(), maxParameter) >= maxParameter) {
+                        continue;
+                    }
+                    do {
+                        firstRay++;
+                    } while(firstRay < numberOfRays && !Scene.hitsNodeBounds(bvh, node, packet, firstRay));
+                    if(firstRay == numberOfRays) {
+                        continue;
+                    }
+                }
+
+                if(bvh.isLeaf(node)) {
+                    int firstPrimitive = bvh.getFirstPrimitive(node);
+                    int lastPrimitive = firstPrimitive + bvh.getPrimitiveCount(node);
+                    for(int ray = firstRay; ray < numberOfRays; ray++) {
+                        if(ray != firstRay && !Scene.hitsNodeBounds(bvh, node, packet, ray)) {
+                            continue;
+                        }
+                        for(int i = firstPrimitive; i < lastPrimitive; i++) {
+                            this.boundedShapes[bvh.getPrimitiveIndex(i)].intersect(packet.getRay(ray), packet.getHitRecord(ray));
+                        }
+                    }
+                }
+                else {
+                    /// push the farther child first, so that the nearer child is visited first (all rays agree on which one it is)
+                    int axis = bvh.getSplitAxis(node);
+                    boolean directionNegative = (axis == 0 ? packet.getMinInverseDirectionX() : (axis == 1 ? packet.getMinInverseDirectionY() : packet.getMinInverseDirectionZ())) < 0;
+                    int nearChild = directionNegative ? bvh.getRightChild(node) : node + 1;
+                    int farChild = directionNegative ? node + 1 : bvh.getRightChild(node);
+                    nodeStack[stackSize++] = farChild;
+                    nodeStack[stackSize++] = firstRay;
+                    nodeStack[stackSize++] = nearChild;
+                    nodeStack[stackSize++] = firstRay;
+                }
+            }
+        }
+        finally {
+            traversalStack.pop(base);
+        }
+    }
+
+    /*
+       Method that returns true iff the given ray intersects some RTShape
+       from this scene at a point P = O + s * D with s < maxParameter.
+
+       Used for shadow rays, for which any intersection before the light
+       occludes it, so the search stops at the first intersection found,
+       without looking for the closest one. Each shape is asked the same
+       question through RTShape.occluded, so that triangle meshes can stop
+       at their first intersected triangle as well.
+     */
+    public boolean occluded(Ray ray, double maxParameter) {
+        /// unbounded shapes are not in the bounding volume hierarchy, so intersect them directly
+        for(RTShape shape : this.unboundedShapes) {
+            if(shape.occluded(ray, maxParameter)) {
+                return true;
+            }
+        }
+
+        BoundingVolumeHierarchy bvh = this.boundingVolumeHierarchy;
+        if(bvh.getNumberOfNodes() == 0) {
+            return false;
+        }
+
+        double originX = ray.getOriginX(), originY = ray.getOriginY(), originZ = ray.getOriginZ();
+        double inverseDirectionX = 1 / ray.getDirectionX(), inverseDirectionY = 1 / ray.getDirectionY(), inverseDirectionZ = 1 / ray.getDirectionZ();
+
+        /// stack of nodes still to be visited, its size never exceeds the depth of the hierarchy plus one
+        TraversalStack traversalStack = TraversalStack.forCurrentThread();
+        int base = traversalStack.push(bvh.getDepth() + 2);
+        int[] nodeStack = traversalStack.getNodes();
+        int stackSize = base;
+        nodeStack[stackSize++] = 0;
+        try {
+            while(stackSize > base) {
+                int node = nodeStack[--stackSize];
+                /// skip the node if the ray misses it, or if it only enters it beyond the maximum parameter
+                if(bvh.intersectNodeBounds(node, originX, originY, originZ, inverseDirectionX, inverseDirectionY, inverseDirectionZ, maxParameter) >= maxParameter) {
+                    continue;
+                }
+
+                if(bvh.isLeaf(node)) {
+                    int firstPrimitive = bvh.getFirstPrimitive(node);
+                    int lastPrimitive = firstPrimitive + bvh.getPrimitiveCount(node);
+                    for(int i = firstPrimitive; i < lastPrimitive; i++) {
+                        if(this.boundedShapes[bvh.getPrimitiveIndex(i)].occluded(ray, maxParameter)) {
+                            return true;
+                        }
+                    }
+                }
+                else {
+                    nodeStack[stackSize++] = bvh.getRightChild(node);
+                    nodeStack[stackSize++] = node + 1;
+                }
+            }
+        }
+        finally {
+            traversalStack.pop(base);
+        }
+
+        return false;
+    }
+
+    /*
+       Method that replaces the shapes at the given indices (in the list
+       of shapes of the scene) by the given shapes, e.g. by moved or deformed
+       copies of them (see MeshInstance.withModelTransformation), for the
+       next frame of an animation. A bounded shape must be replaced by a
+       bounded shape, and an unbounded one (e.g. a plane) by an unbounded one.
+
+       The bounding volume hierarchy of the scene is refitted in place above
+       the replaced shapes (see BoundingVolumeHierarchy.refitPrimitives), so an
+       update takes time proportional to the number of replaced shapes (times
+       the depth of the hierarchy), and the rest of the scene is not touched.
+       The tree of the hierarchy stays the same, so after shapes have moved
+       far from where they were when the scene was created, it can be worth
+       creating a new scene instead.
+
+       The scene must not be rendered while it is updated. Throws
+       IllegalArgumentException (before replacing anything) if a shape
+       can not replace the shape at its index.
+     */
+    public void updateShapes(int[] shapeIndices, RTShape[] newShapes) {
+        if(shapeIndices.length != newShapes.length) {
+            throw new IllegalArgumentException("Every replaced shape needs a new shape.");
+        }
+        AxisAlignedBoundingBox[] boundingBoxes = new AxisAlignedBoundingBox[newShapes.length];
+        for(int i = 0; i < newShapes.length; i++) {
+            if(shapeIndices[i] < 0 || shapeIndices[i] >= this.shapes.size()) {
+                throw new IllegalArgumentException("There is no shape with index " + shapeIndices[i] + " in the scene.");
+            }
+            boundingBoxes[i] = newShapes[i].getAxisAlignedBoundingBox();
+            if((boundingBoxes[i] == null) != (this.shapePositions[shapeIndices[i]] < 0)) {
+                throw new IllegalArgumentException("A bounded shape can only be replaced by a bounded shape, and an unbounded shape by an unbounded one.");
+            }
+        }
+
+        int[] changedPrimitives = new int[newShapes.length];
+        int numberOfChangedPrimitives = 0;
+        for(int i = 0; i < newShapes.length; i++) {
+            this.shapes.set(shapeIndices[i], newShapes[i]);
+            int position = this.shapePositions[shapeIndices[i]];
+            if(position < 0) {
+                this.unboundedShapes[-1 - position] = newShapes[i];
+            }
+            else {
+                this.boundedShapes[position] = newShapes[i];
+                Scene.putBounds(this.primitiveBounds, position, boundingBoxes[i]);
+                changedPrimitives[numberOfChangedPrimitives++] = position;
+            }
+        }
+        this.boundingVolumeHierarchy.refitPrimitives(Arrays.copyOf(changedPrimitives, numberOfChangedPrimitives), this.primitiveBounds);
+    }
+    /*
+       Method that replaces the lights at the given indices (in the list
+       of lights of the scene) by the given lights, e.g. by moved or dimmed
+       copies of them, for the next frame of an animation.
+
+       The scene must not be rendered while it is updated. Throws
+       IllegalArgumentException (before replacing anything) if there
+       is no light at some index.
+     */
+    public void updateLights(int[] lightIndices, Light[] newLights) {
+        if(lightIndices.length != newLights.length) {
+            throw new IllegalArgumentException("Every replaced light needs a new light.");
+        }
+        for(int lightIndex : lightIndices) {
+            if(lightIndex < 0 || lightIndex >= this.lights.size()) {
+                throw new IllegalArgumentException("There is no light with index " + lightIndex + " in the scene.");
+            }
+        }
+        for(int i = 0; i < newLights.length; i++) {
+            this.lights.set(lightIndices[i], newLights[i]);
+        }
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that loads a scene from the given path, which is either
+       a scene snapshot (a path ending in SceneSnapshot.fileExtension),
+       which is read without any parsing, or else a scene description
+       XML, which is parsed by the SceneDescriptionParser.
+     */
+    public static Scene load(String scenePath) throws ParserConfigurationException, IOException, SAXException, IncorrectSceneDescriptionXMLStructureException {
+        if(SceneSnapshot.isSnapshotPath(scenePath)) {
+            return SceneSnapshot.read(scenePath);
+        }
+        return new Scene(scenePath);
+    }
+    /*
+       Method that stores the given bounding box as the bounds
+       of primitive 'i' in the given array, 6 values per primitive.
+     */
+    private static void putBounds(double[] primitiveBounds, int i, AxisAlignedBoundingBox boundingBox) {
+        primitiveBounds[6*i] = boundingBox.getMinX();
+        primitiveBounds[6*i+1] = boundingBox.getMinY();
+        primitiveBounds[6*i+2] = boundingBox.getMinZ();
+        primitiveBounds[6*i+3] = boundingBox.getMaxX();
+        primitiveBounds[6*i+4] = boundingBox.getMaxY();
+        primitiveBounds[6*i+5] = boundingBox.getMaxZ();
+    }
+    /*
+       Method that returns true iff the ray with the given index in the
+       packet has to visit the given node of the hierarchy, i.e. it enters
+       the bounds of the node before the closest intersection found so far.
+     */
+    private static boolean hitsNodeBounds(BoundingVolumeHierarchy bvh, int node, RayPacket packet, int ray) {
+        double closestParameter = packet.getHitRecord(ray).getParameter();
+        return bvh.intersectNodeBounds(node, packet.getOriginX(), packet.getOriginY(), packet.getOriginZ(),
+                packet.getInverseDirectionX(ray), packet.getInverseDirectionY(ray), packet.getInverseDirectionZ(ray), closestParameter) < closestParameter;
     }
 
     /**
@@ -44,4 +509,7 @@ public class Scene {
     public ArrayList<Light> getLights() {
         return lights;
     }
+    public BoundingVolumeHierarchy getBoundingVolumeHierarchy() {
+        return this.boundingVolumeHierarchy;
+    }
 }
@@ -0,0 +1,173 @@
+package rendering.tracing;
+
+import rendering.acceleration.BoundingVolumeHierarchy;
+import rendering.shapes.RTShape;
+import rendering.utility.ShapeMapper;
+import rendering.utility.SnapshotInput;
+import rendering.utility.SnapshotOutput;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Class for binary snapshots of fully built scenes.
+ *
+ * Loading a scene from its XML description parses the XML,
+ * parses the OBJ file of every triangle mesh, and builds the
+ * bounding volume hierarchy of every mesh and of the whole scene,
+ * which for large meshes takes seconds. A snapshot stores the
+ * result of all of this: the shapes with their colors and
+ * materials, the packed geometry of every mesh (including its
+ * precomputed intersection data and its hierarchy), the lights,
+ * and the hierarchy of the scene. Reading a snapshot memory-maps
+ * the file (see SnapshotInput) and copies every array out of it in
+ * bulk, without parsing anything or building any hierarchy, so a
+ * scene written once can be rendered again and again without paying
+ * for loading it each time.
+ *
+ * A snapshot file consists of a magic number and a format version,
+ * followed by the shapes (each as its shapeID and what its
+ * 'writeSnapshot' method wrote, read back by the ShapeMapper), the
+ * lights, and the bounding volume hierarchy of the scene. All values
+ * are little-endian.
+ *
+ * Snapshots are meant as a cache of a scene description, not as a
+ * replacement for it: files written by other versions of the format
+ * are rejected, and have to be written again from the XML.
+ */
+
+public class SceneSnapshot {
+    /// extension of snapshot files, which Scene.load reads as snapshots rather than as XML
+    public static final String fileExtension = ".rtsnap";
+    /// "RTSN" in ASCII, at the start of every snapshot file
+    private static final int magicNumber = 0x4E535452;
+    /// version of the format, to be increased whenever the format changes
+    private static final int formatVersion = 2;
+
+    /**
+     * Constructors
+     */
+    private SceneSnapshot() {}
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns true iff the given path is the
+       path of a snapshot file (by its extension).
+     */
+    public static boolean isSnapshotPath(String path) {
+        return path.endsWith(SceneSnapshot.fileExtension);
+    }
+    /*
+       Method that writes a snapshot of the given scene to the
+       file at the given path, replacing it if it exists.
+     */
+    public static void write(Scene scene, String path) throws IOException {
+        try(SnapshotOutput output = new SnapshotOutput(path)) {
+            output.writeInt(SceneSnapshot.magicNumber);
+            output.writeInt(SceneSnapshot.formatVersion);
+
+            output.writeInt(scene.getShapes().size());
+            for(RTShape shape : scene.getShapes()) {
+                output.writeString(shape.getShapeID());
+                shape.writeSnapshot(output);
+            }
+
+            output.writeInt(scene.getLights().size());
+            for(Light light : scene.getLights()) {
+                SceneSnapshot.writeLight(light, output);
+            }
+
+            scene.getBoundingVolumeHierarchy().writeSnapshot(output);
+        }
+    }
+    /*
+       Method that reads the scene from the snapshot file at the given path.
+
+       Throws IOException if the file is not a snapshot, was written by
+       another version of the format, or is truncated or corrupted.
+     */
+    public static Scene read(String path) throws IOException {
+        SnapshotInput input = new SnapshotInput(path);
+        if(input.readInt() != SceneSnapshot.magicNumber) {
+            throw new IOException("'" + path + "' is not a scene snapshot.");
+        }
+        int version = input.readInt();
+        if(version != SceneSnapshot.formatVersion) {
+            throw new IOException("Scene snapshot '" + path + "' has format version " + version + ", expected " + SceneSnapshot.formatVersion + ".");
+        }
+
+        int numberOfShapes = SceneSnapshot.readCount(input);
+        ArrayList<RTShape> shapes = new ArrayList<>(numberOfShapes);
+        for(int i = 0; i < numberOfShapes; i++) {
+            shapes.add(ShapeMapper.mapReadSnapshotMethod(input, input.readString()));
+        }
+
+        int numberOfLights = SceneSnapshot.readCount(input);
+        ArrayList<Light> lights = new ArrayList<>(numberOfLights);
+        for(int i = 0; i < numberOfLights; i++) {
+            lights.add(SceneSnapshot.readLight(input));
+        }
+
+        BoundingVolumeHierarchy boundingVolumeHierarchy = BoundingVolumeHierarchy.readSnapshot(input);
+        if(!input.isAtEnd()) {
+            throw new IOException("Unexpected data at the end of scene snapshot '" + path + "'.");
+        }
+        try {
+            return new Scene(shapes, lights, boundingVolumeHierarchy);
+        }
+        catch (IllegalArgumentException e) {
+            throw new IOException("Corrupted scene snapshot '" + path + "'.", e);
+        }
+    }
+    /*
+       Methods that write and read a light, as the name of its
+       XML description node followed by its attributes.
+     */
+    private static void writeLight(Light light, SnapshotOutput output) throws IOException {
+        if(light instanceof SphereLight sphereLight) {
+            output.writeString("sphere-light");
+            output.writeDouble(sphereLight.getRadius());
+            output.writeInt(sphereLight.getMaximumNumberOfShadowRays());
+        }
+        else if(light instanceof PointLight) {
+            output.writeString("point-light");
+        }
+        else {
+            throw new IOException("Light " + light.getClass().getSimpleName() + " can not be written to a scene snapshot.");
+        }
+        output.writeVector3D(light.getPosition());
+        output.writeColor(light.getColor());
+        output.writeDouble(light.getIntensity());
+    }
+    private static Light readLight(SnapshotInput input) throws IOException {
+        String lightName = input.readString();
+        switch (lightName) {
+            case "sphere-light" -> {
+                double radius = input.readDouble();
+                int maximumNumberOfShadowRays = input.readInt();
+                try {
+                    return new SphereLight(input.readVector3D(), input.readColor(), input.readDouble(), radius, maximumNumberOfShadowRays);
+                }
+                catch (IllegalArgumentException e) {
+                    throw new IOException("Corrupted sphere light in scene snapshot.", e);
+                }
+            }
+            case "point-light" -> {
+                return new PointLight(input.readVector3D(), input.readColor(), input.readDouble());
+            }
+            default -> throw new IOException("Undefined light '" + lightName + "' in scene snapshot.");
+        }
+    }
+    /*
+       Method that reads a number of elements, which must not be negative.
+     */
+    private static int readCount(SnapshotInput input) throws IOException {
+        int count = input.readInt();
+        if(count < 0) {
+            throw new IOException("Corrupted scene snapshot: negative number of elements.");
+        }
+        return count;
+    }
+}
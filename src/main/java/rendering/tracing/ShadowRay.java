@@ -1,10 +1,7 @@
 package rendering.tracing;
 
-import rendering.shapes.RTShape;
 import rendering.utility.Vector3D;
 
-import java.util.ArrayList;
-
 /**
  * A class for a shadow ray to be cast from a
  * given point on the surface of a RTShape, to a
@@ -18,6 +15,8 @@ import java.util.ArrayList;
 
 public class ShadowRay extends Ray {
     private final Vector3D target;
+    /// the parameter s of the target point, P = O + s * D, which is its distance from the origin (direction is normalised)
+    private final double targetParameter;
 
     /**
      * Constructors
@@ -42,6 +41,7 @@ public class ShadowRay extends Ray {
     public ShadowRay(Intersection intersection, Light light) {
         super(Ray.liftOrigin(intersection), light.getPosition().added(Ray.liftOrigin(intersection).negated()).normalised());
         this.target = light.getPosition();
+        this.targetParameter = super.parameterOf(this.target);
     }
     /*
        Constructor from a point on the surface of a
@@ -67,6 +67,7 @@ public class ShadowRay extends Ray {
     public ShadowRay(Intersection intersection, Vector3D target) {
         super(Ray.liftOrigin(intersection), target.added(Ray.liftOrigin(intersection).negated()).normalised());
         this.target = target;
+        this.targetParameter = super.parameterOf(this.target);
     }
 
     /**
@@ -89,31 +90,18 @@ public class ShadowRay extends Ray {
 
        This method is used by light sources (PointLight and SpherePointLight) to check
        if a light source is occluded by some RTShape at some intersection point.
+
+       Any intersection before the target occludes it, so the scene is
+       asked for any such intersection rather than the closest one, and
+       the search stops as soon as one is found.
      */
      boolean targetPointOccluded(Scene scene) {
-        ArrayList<RTShape> shapes = scene.getShapes();
-
-        /// check intersections of this ray with each shape
-        for (RTShape shape : shapes) {
-            /// find the first intersection of this ray and this shape
-            Intersection intersectionPoint = shape.intersect(this);
-
-            /// if the intersection point is closer to ray origin than
-            /// target, the light source is occluded
-            if(intersectionPoint != null) {
-                double distanceHit = super.distance(intersectionPoint.getIntersectionPoint());
-                double distanceTarget = super.distance(target);
-                /// also say the light source is occluded if the intersection
-                /// point is sufficiently (1e-12) close to the target, to avoid
-                /// "pointy" shadow artifacts due to precision errors (similar
-                /// to why we lift origins of shadow rays up from the surface)
-                if (distanceHit < distanceTarget || Math.abs(distanceHit - distanceTarget) < 1e-12) {
-                    return true;
-                }
-            }
-        }
-
-        return false;
+        /// also say the light source is occluded if the intersection
+        /// point is sufficiently (1e-12, or a few rounding errors of the
+        /// target parameter if that is more) close to the target, to avoid
+        /// "pointy" shadow artifacts due to precision errors (similar
+        /// to why we lift origins of shadow rays up from the surface)
+        return scene.occluded(this, this.targetParameter + Math.max(1e-12, 4 * Math.ulp(this.targetParameter)));
     }
 
     /**
@@ -1,10 +1,9 @@
 package rendering.tracing;
 
+import rendering.sampling.Sampler;
 import rendering.utility.RTColor;
 import rendering.utility.Vector3D;
 
-import java.util.Random;
-
 /**
  * Class for a light source distributed
  * over the surface of a sphere with a
@@ -12,7 +11,7 @@ import java.util.Random;
  * soft shadows.
  *
  * The sphere light extends the point light
- * and overrides the 'lightSourceOccluded'
+ * and overrides the 'getOcclusionCoefficient'
  * method so that it can simulate soft shadows.
  *
  * Sphere light sources have XML description
@@ -22,15 +21,37 @@ import java.util.Random;
 public class SphereLight extends PointLight implements Light {
     private final double radius;
 
-    /// number of shadow rays to cast when checking if light source is occluded
-    public static final int numberOfShadowRays = 5;
+    /*
+       Shadow rays are cast in batches of 'shadowRayBatchSize', each
+       batch stratified over a 2 X 2 grid of equal-area parts of the
+       surface of the sphere light. If all rays of the first batch agree
+       (the point is fully lit or fully in shadow), no more rays are cast,
+       otherwise the point is in a penumbra, and batches are cast until
+       'maximumNumberOfShadowRays' (rounded down to whole batches) rays
+       have been cast.
+     */
+    public static final int shadowRayBatchSize = 4;
+    /// default maximum number of shadow rays to cast in penumbra regions
+    public static final int defaultMaximumNumberOfShadowRays = 16;
+    private final int maximumNumberOfShadowRays;
 
     /**
      * Constructors
      */
     public SphereLight(Vector3D position, RTColor lightSpecularColor, double intensity, double radius) {
+        this(position, lightSpecularColor, intensity, radius, SphereLight.defaultMaximumNumberOfShadowRays);
+    }
+    /*
+       Constructor that also sets the maximum number of shadow rays to cast
+       in penumbra regions, which must be at least 'shadowRayBatchSize'.
+     */
+    public SphereLight(Vector3D position, RTColor lightSpecularColor, double intensity, double radius, int maximumNumberOfShadowRays) {
         super(position, lightSpecularColor, intensity);
+        if(maximumNumberOfShadowRays < SphereLight.shadowRayBatchSize) {
+            throw new IllegalArgumentException("Maximum number of shadow rays must be at least " + SphereLight.shadowRayBatchSize + ".");
+        }
         this.radius = radius;
+        this.maximumNumberOfShadowRays = maximumNumberOfShadowRays;
     }
 
     /**
@@ -42,45 +63,77 @@ public class SphereLight extends PointLight implements Light {
        the RTShape's in the given scene.
 
        Multiple shadow rays are cast from the intersection point to random points
-       on the surface of the sphere light. The returned occlusion coefficient is
-       the proportion of the cast shadow rays that do not hit an RTShape before
-       reaching the target point on surface of the sphere light.
+       on the surface of the sphere light, in stratified batches (see above). The
+       points within the strata are given by the sampler of the current thread
+       (two dimensions per shadow ray), see the Sampler class. The
+       returned occlusion coefficient is the proportion of the cast shadow rays
+       that do not hit an RTShape before reaching the target point on surface of
+       the sphere light.
+
+       Only points in penumbra regions get more than the first batch of rays.
      */
     @Override
     public double getOcclusionCoefficient(Intersection intersection, Scene scene) {
-        Random rnd = new Random();
+        Sampler sampler = Sampler.forCurrentThread();
+        int numberOfBatches = this.maximumNumberOfShadowRays / SphereLight.shadowRayBatchSize;
+
         int numberOfNonOccludedShadowRays = 0;
-        for(int i = 0; i < SphereLight.numberOfShadowRays; i++) {
-            /// Get a random point on the surface of a sphere of radius same as this light source's and centered at origin,
-            /// then translate it by center of the sphere light source as a Vector3D.
-            Vector3D randomPointOnLightSource = (SphereLight.getRandomPointOnUnitSphere(rnd)).scaled(this.radius).translate(super.getPosition());
-            /// cast a shadow ray from the intersection point to that random point
-            ShadowRay shadowRay = new ShadowRay(intersection, randomPointOnLightSource);
-
-            if(!shadowRay.targetPointOccluded(scene)) {
-                numberOfNonOccludedShadowRays++;
+        int numberOfShadowRays = 0;
+        for(int batch = 0; batch < numberOfBatches; batch++) {
+            for(int stratum = 0; stratum < SphereLight.shadowRayBatchSize; stratum++) {
+                /// Get a random point in this stratum of a sphere of radius same as this light source's and centered
+                /// at origin, then translate it by center of the sphere light source as a Vector3D.
+                double u = sampler.next();
+                double v = sampler.next();
+                Vector3D randomPointOnLightSource = SphereLight.getPointOnUnitSphere(u, v, stratum / 2, stratum % 2, 2).scaled(this.radius).translate(super.getPosition());
+                /// cast a shadow ray from the intersection point to that random point
+                ShadowRay shadowRay = new ShadowRay(intersection, randomPointOnLightSource);
+
+                if(!shadowRay.targetPointOccluded(scene)) {
+                    numberOfNonOccludedShadowRays++;
+                }
+                numberOfShadowRays++;
+            }
+
+            /// if all rays of the first batch agree, the point is not in a penumbra
+            if(batch == 0 && (numberOfNonOccludedShadowRays == 0 || numberOfNonOccludedShadowRays == numberOfShadowRays)) {
+                break;
             }
         }
 
-        return (double) numberOfNonOccludedShadowRays / (double) SphereLight.numberOfShadowRays;
+        return (double) numberOfNonOccludedShadowRays / (double) numberOfShadowRays;
     }
 
     /**
      * Static Utility Methods
      */
     /*
-       Method that generates a random point on a unit sphere at origin.
-       Each coordinate is generated by sampling the standard Gaussian
-       distribution N(0,1), after which coordinates are normalised.
-       https://math.stackexchange.com/questions/1585975/how-to-generate-random-points-on-a-sphere
+       Method that maps a point (u,v) of the unit square to a point on a unit
+       sphere at origin, within the part (stratum) of the sphere in row i and
+       column j of an n X n grid of equal-area parts, so that uniformly
+       distributed (u,v) give uniformly distributed points on that part.
+
+       By Archimedes' hat-box theorem, a uniformly distributed point on a sphere
+       has a uniformly distributed z coordinate in [-1, 1] and a uniformly
+       distributed angle around the z axis in [0, 2 * pi), so the parts are
+       given by splitting both ranges into n equal intervals.
+       https://mathworld.wolfram.com/SpherePointPicking.html
      */
-    private static Vector3D getRandomPointOnUnitSphere(Random rnd) {
-        double x = rnd.nextGaussian();
-        double y = rnd.nextGaussian();
-        double z = rnd.nextGaussian();
+    static Vector3D getPointOnUnitSphere(double u, double v, int i, int j, int n) {
+        double z = 1 - 2 * (i + u) / n;
+        double phi = 2 * Math.PI * (j + v) / n;
+        double r = Math.sqrt(Math.max(0, 1 - z * z));
 
-        /// TODO - what if x=y=z=0
+        return new Vector3D(r * Math.cos(phi), r * Math.sin(phi), z);
+    }
 
-        return (new Vector3D(x,y,z)).normalised();
+    /**
+     * Getters
+     */
+    public double getRadius() {
+        return this.radius;
+    }
+    public int getMaximumNumberOfShadowRays() {
+        return this.maximumNumberOfShadowRays;
     }
 }
@@ -0,0 +1,74 @@
+package rendering.tracing;
+
+/**
+ * Class for the reusable stack of nodes of the traversals of
+ * bounding volume hierarchies (see Scene.findClosestHit and
+ * TriangleMeshGeometry.intersectClosest), so that tracing a ray
+ * does not allocate a new stack for every traversal.
+ *
+ * Traversals nest (the traversal of a mesh runs inside a leaf of
+ * the traversal of the scene), so every traversal pushes a frame
+ * of the size it needs on top of the frames of the traversals it
+ * runs in, uses the nodes of the array from the base of its frame
+ * on, and pops its frame when it is done. The array grows when a
+ * frame does not fit in it, and since a nested traversal that
+ * grows it gets a new array, the traversals it runs in keep using
+ * their frames in the array they got when they pushed them. Once
+ * the array is as large as the deepest nesting of hierarchies
+ * needs, nothing is allocated anymore.
+ *
+ * TraversalStack is not thread-safe. Each thread should use its
+ * own stack, the one given by forCurrentThread().
+ */
+
+public class TraversalStack {
+    /// one reusable stack per thread
+    private static final ThreadLocal<TraversalStack> threadStack = ThreadLocal.withInitial(TraversalStack::new);
+
+    private int[] nodes = new int[64];
+    /// index of the first node after the topmost frame
+    private int top = 0;
+
+    /**
+     * Methods
+     */
+    /*
+       Method that pushes a frame of the given size, and returns the index
+       of its first node in the array given by 'getNodes' after the push.
+     */
+    public int push(int size) {
+        int base = this.top;
+        this.top += size;
+        if(this.top > this.nodes.length) {
+            this.nodes = new int[Math.max(this.top, 2 * this.nodes.length)];
+        }
+        return base;
+    }
+    /*
+       Method that pops the frame starting at the given index
+       (and the frames above it, if they were not popped).
+     */
+    public void pop(int base) {
+        this.top = base;
+    }
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that returns the reusable stack of the calling thread.
+     */
+    public static TraversalStack forCurrentThread() {
+        return TraversalStack.threadStack.get();
+    }
+
+    /**
+     * Getters
+     */
+    public int[] getNodes() {
+        return this.nodes;
+    }
+    public int getTop() {
+        return this.top;
+    }
+}
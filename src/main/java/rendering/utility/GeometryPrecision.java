@@ -0,0 +1,49 @@
+package rendering.utility;
+
+/**
+ * Enum for the precision in which the geometry of triangle meshes
+ * (vertices, normals, precomputed triangle data) and the bounds of
+ * their bounding volume hierarchies are stored.
+ *
+ * FLOAT halves the memory taken by this data (and so the memory
+ * bandwidth needed to traverse it). The intersection arithmetic is
+ * still done in double precision on the stored float values, so a
+ * float mesh is rendered exactly as a double mesh whose vertices are
+ * rounded to the nearest float: triangles that share a vertex still
+ * share it exactly (no cracks), and bounds are rounded outwards so
+ * that no triangle is ever missed by the traversal. DOUBLE is the
+ * reference precision, and the default.
+ */
+
+public enum GeometryPrecision {
+    DOUBLE,
+    FLOAT;
+
+    /**
+     * Static Utility Methods
+     */
+    /*
+       Method that parses a precision from its name in a scene
+       description, "double" or "float".
+     */
+    public static GeometryPrecision parse(String s) throws IncorrectSceneDescriptionXMLStructureException {
+        return switch (s.trim()) {
+            case "double" -> GeometryPrecision.DOUBLE;
+            case "float" -> GeometryPrecision.FLOAT;
+            default -> throw new IncorrectSceneDescriptionXMLStructureException("Unknown geometry precision '" + s.trim() + "', expected 'double' or 'float'.");
+        };
+    }
+    /*
+       Methods that round a double to the nearest float that is not
+       larger (roundDown) or not smaller (roundUp) than it, used for
+       the lower and upper bounds of bounding boxes respectively.
+     */
+    public static float roundDown(double value) {
+        float rounded = (float) value;
+        return rounded > value ? Math.nextDown(rounded) : rounded;
+    }
+    public static float roundUp(double value) {
+        float rounded = (float) value;
+        return rounded < value ? Math.nextUp(rounded) : rounded;
+    }
+}
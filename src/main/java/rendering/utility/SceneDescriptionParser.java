@@ -4,6 +4,9 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
+import rendering.animation.Animation;
+import rendering.animation.KeyframeTrack;
+import rendering.shapes.MeshInstance;
 import rendering.shapes.RTShape;
 import rendering.tracing.Light;
 import rendering.tracing.PointLight;
@@ -16,6 +19,7 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -26,6 +30,19 @@ import java.util.Map;
  * shapes are enclosed in a 'shapes' element within it, and all
  * lights are enclosed in a 'lights' element within it.
  *
+ * Instanced meshes and lights may have an 'animation' element, a list of
+ * 'keyframe' elements, each with a 'frame' number and the values of the
+ * animated parameters at that frame (see Animation), e.g.
+ *
+ *      <animation>
+ *          <keyframe><frame>0</frame><rotateY>0</rotateY><translate>(0,0,5)</translate></keyframe>
+ *          <keyframe><frame>48</frame><rotateY>360</rotateY><translate>(0,1,5)</translate></keyframe>
+ *      </animation>
+ *
+ * and the root element may have a 'camera' element with a 'position' and a
+ * 'look-at' point, or an 'animation' of both. A scene is parsed at frame 0 of
+ * its animation, and the animation itself is parsed by 'parseAnimation'.
+ *
  * Checked exceptions from used libraries are always passed up.
  * If incorrect structure of the XML scene description is detected,
  * IncorrectSceneDescriptionXMLStructureException is thrown.
@@ -138,12 +155,86 @@ public class SceneDescriptionParser {
         for (int i = 0; i < lightsNodeListLength; i++) {
             currentNode = lightsNodeList.item(i);
             if(currentNode.getNodeType() == Node.ELEMENT_NODE) {
-                lights.add(SceneDescriptionParser.parseLight(currentNode));
+                Light light = SceneDescriptionParser.parseLight(currentNode);
+                /// an animated light starts at frame 0 of its animation
+                Node animationNode = SceneDescriptionParser.getChildNode(currentNode, "animation");
+                if(animationNode != null) {
+                    KeyframeTrack track = SceneDescriptionParser.parseKeyframeTrack(animationNode, "light");
+                    light = Animation.lightAt((PointLight) light, track, 0);
+                }
+                lights.add(light);
             }
         }
 
         return lights;
     }
+    /*
+       Method to parse the animation of the scene, i.e. the 'animation'
+       elements of its shapes and lights, and its 'camera' element, if
+       any, whose pose without an animation is a single keyframe at
+       frame 0. The tracks are indexed by the positions of the shapes and
+       lights in their lists (as returned by 'parseShapes' and 'parseLights').
+     */
+    public Animation parseAnimation() throws IncorrectSceneDescriptionXMLStructureException {
+        Animation animation = new Animation();
+
+        NodeList shapesNodeList = this.getShapesNode().getChildNodes();
+        int shapeIndex = 0;
+        for(int i = 0; i < shapesNodeList.getLength(); i++) {
+            Node currentNode = shapesNodeList.item(i);
+            if(currentNode.getNodeType() == Node.ELEMENT_NODE) {
+                Node animationNode = SceneDescriptionParser.getChildNode(currentNode, "animation");
+                if(animationNode != null) {
+                    animation = animation.withShapeTrack(shapeIndex, SceneDescriptionParser.parseKeyframeTrack(animationNode, "shape"));
+                }
+                shapeIndex++;
+            }
+        }
+
+        NodeList lightsNodeList = this.getLightsNode().getChildNodes();
+        int lightIndex = 0;
+        for(int i = 0; i < lightsNodeList.getLength(); i++) {
+            Node currentNode = lightsNodeList.item(i);
+            if(currentNode.getNodeType() == Node.ELEMENT_NODE) {
+                Node animationNode = SceneDescriptionParser.getChildNode(currentNode, "animation");
+                if(animationNode != null) {
+                    animation = animation.withLightTrack(lightIndex, SceneDescriptionParser.parseKeyframeTrack(animationNode, "light"));
+                }
+                lightIndex++;
+            }
+        }
+
+        Node cameraNode = SceneDescriptionParser.getChildNode(this.document.getElementsByTagName("elements").item(0), "camera");
+        if(cameraNode != null) {
+            Node animationNode = SceneDescriptionParser.getChildNode(cameraNode, "animation");
+            Node positionNode = SceneDescriptionParser.getChildNode(cameraNode, "position");
+            Node lookAtNode = SceneDescriptionParser.getChildNode(cameraNode, "look-at");
+            KeyframeTrack track;
+            if(animationNode != null) {
+                if(positionNode != null || lookAtNode != null) {
+                    throw new IncorrectSceneDescriptionXMLStructureException("Animated camera has a fixed 'position' or 'look-at' attribute.");
+                }
+                track = SceneDescriptionParser.parseKeyframeTrack(animationNode, "camera");
+            }
+            else {
+                if(positionNode == null || lookAtNode == null) {
+                    throw new IncorrectSceneDescriptionXMLStructureException("Missing camera 'position' or 'look-at' attribute.");
+                }
+                Vector3D position = SceneDescriptionParser.parseVector3D(positionNode.getTextContent().strip());
+                Vector3D lookAt = SceneDescriptionParser.parseVector3D(lookAtNode.getTextContent().strip());
+                track = new KeyframeTrack(List.of("position", "look-at")).withKeyframe(0,
+                        new double[]{position.getX(), position.getY(), position.getZ()}, new double[]{lookAt.getX(), lookAt.getY(), lookAt.getZ()});
+            }
+            try {
+                animation = animation.withCameraTrack(track);
+            }
+            catch (IllegalArgumentException e) {
+                throw new IncorrectSceneDescriptionXMLStructureException(e.getMessage());
+            }
+        }
+
+        return animation;
+    }
 
     /**
      * Static Utility Methods
@@ -181,8 +272,18 @@ public class SceneDescriptionParser {
         for(int i = 0; i < n; i++) {
             currentNode = attributeNodes.item(i);
             if(currentNode.getNodeType() == Node.ELEMENT_NODE) {
+                /// an animated mesh instance starts at frame 0 of its animation
+                if(currentNode.getNodeName().equals("animation")) {
+                    if(!shapeID.equals(MeshInstance.shapeID)) {
+                        throw new IncorrectSceneDescriptionXMLStructureException("Only an '" + MeshInstance.shapeID + "' can have an 'animation' attribute.");
+                    }
+                    if(SceneDescriptionParser.getChildNode(shapeNode, "model-transform") != null) {
+                        throw new IncorrectSceneDescriptionXMLStructureException("Animated shape has a fixed 'model-transform' attribute.");
+                    }
+                    modelTransformation = Animation.transformationAt(SceneDescriptionParser.parseKeyframeTrack(currentNode, "shape"), 0);
+                }
                 /// if this attribute is not a leaf node (i.e. has XML child nodes), it must be the "model-transform"
-                if(!SceneDescriptionParser.isLeafNode(currentNode)) {
+                else if(!SceneDescriptionParser.isLeafNode(currentNode)) {
                     /// the non-leaf node must be the "model-transform"
                     if(!currentNode.getNodeName().equals("model-transform")) {
                         throw new IncorrectSceneDescriptionXMLStructureException("There is non-leaf node in an RTShape description, that is not a 'model-transform'.");
@@ -219,7 +320,7 @@ public class SceneDescriptionParser {
         NodeList lightChildren = lightNode.getChildNodes();
 
         /// attributed to be parsed
-        Node positionNode = null, colorNode = null, intensityNode = null, radiusNode = null;
+        Node positionNode = null, colorNode = null, intensityNode = null, radiusNode = null, maximumShadowRaysNode = null;
 
         int lightChildrenLength = lightChildren.getLength();
         Node currentNode;
@@ -238,6 +339,9 @@ public class SceneDescriptionParser {
                 if(currentNode.getNodeName().equals("radius")) {
                     radiusNode = currentNode;
                 }
+                if(currentNode.getNodeName().equals("max-shadow-rays")) {
+                    maximumShadowRaysNode = currentNode;
+                }
             }
         }
 
@@ -271,6 +375,10 @@ public class SceneDescriptionParser {
             if(radiusNode != null) {
                 throw new IncorrectSceneDescriptionXMLStructureException("Attribute 'radius' in point light source.");
             }
+            /// point light sources always cast a single shadow ray
+            if(maximumShadowRaysNode != null) {
+                throw new IncorrectSceneDescriptionXMLStructureException("Attribute 'max-shadow-rays' in point light source.");
+            }
             /// create a point light source, no radius attribute
             return new PointLight(position, color, intensity);
         }
@@ -284,8 +392,25 @@ public class SceneDescriptionParser {
             String radiusStr = radiusNode.getTextContent();
             double radius = Double.parseDouble(radiusStr);
 
-            /// create a sphere light source, yes radius attribute
-            return new SphereLight(position, color, intensity, radius);
+            /// the maximum number of shadow rays is optional
+            if(maximumShadowRaysNode == null) {
+                /// create a sphere light source, yes radius attribute
+                return new SphereLight(position, color, intensity, radius);
+            }
+
+            /// parse the maximum number of shadow rays
+            int maximumNumberOfShadowRays;
+            try {
+                maximumNumberOfShadowRays = Integer.parseInt(maximumShadowRaysNode.getTextContent().strip());
+            }
+            catch (NumberFormatException e) {
+                throw new IncorrectSceneDescriptionXMLStructureException("Attribute 'max-shadow-rays' of sphere light source is not an integer.");
+            }
+            if(maximumNumberOfShadowRays < SphereLight.shadowRayBatchSize) {
+                throw new IncorrectSceneDescriptionXMLStructureException("Attribute 'max-shadow-rays' of sphere light source must be at least " + SphereLight.shadowRayBatchSize + ".");
+            }
+
+            return new SphereLight(position, color, intensity, radius, maximumNumberOfShadowRays);
         }
         else {
             /// nonexistent type of light source
@@ -361,6 +486,93 @@ public class SceneDescriptionParser {
 
         return modelTransformation;
     }
+    /*
+       Method to parse the keyframes of an 'animation' XML node of the
+       given kind of element ("shape", "light" or "camera"), which contains
+       'keyframe' nodes with a 'frame' number and the values of the animated
+       parameters, either real values or Vector3D values "(x,y,z)". All
+       keyframes must list the same parameters, in the same order.
+     */
+    private static KeyframeTrack parseKeyframeTrack(Node animationNode, String element) throws IncorrectSceneDescriptionXMLStructureException {
+        KeyframeTrack track = null;
+        NodeList keyframeNodes = animationNode.getChildNodes();
+        try {
+            for(int i = 0; i < keyframeNodes.getLength(); i++) {
+                Node keyframeNode = keyframeNodes.item(i);
+                if(keyframeNode.getNodeType() != Node.ELEMENT_NODE) {
+                    continue;
+                }
+                if(!keyframeNode.getNodeName().equals("keyframe")) {
+                    throw new IncorrectSceneDescriptionXMLStructureException("Animation contains a node that is not a 'keyframe'.");
+                }
+
+                /// parse the frame number and the parameters, in order
+                Integer frame = null;
+                ArrayList<String> parameterNames = new ArrayList<>();
+                ArrayList<double[]> parameterValues = new ArrayList<>();
+                NodeList parameterNodes = keyframeNode.getChildNodes();
+                for(int j = 0; j < parameterNodes.getLength(); j++) {
+                    Node parameterNode = parameterNodes.item(j);
+                    if(parameterNode.getNodeType() != Node.ELEMENT_NODE) {
+                        continue;
+                    }
+                    String value = parameterNode.getTextContent().strip();
+                    if(parameterNode.getNodeName().equals("frame")) {
+                        frame = Integer.parseInt(value);
+                    }
+                    else if(value.startsWith("(")) {
+                        Vector3D vector = SceneDescriptionParser.parseVector3D(value);
+                        parameterNames.add(parameterNode.getNodeName());
+                        parameterValues.add(new double[]{vector.getX(), vector.getY(), vector.getZ()});
+                    }
+                    else {
+                        parameterNames.add(parameterNode.getNodeName());
+                        parameterValues.add(new double[]{Double.parseDouble(value)});
+                    }
+                }
+
+                if(frame == null) {
+                    throw new IncorrectSceneDescriptionXMLStructureException("Missing keyframe 'frame' attribute.");
+                }
+                if(track == null) {
+                    track = new KeyframeTrack(parameterNames);
+                }
+                else if(!track.getParameterNames().equals(parameterNames)) {
+                    throw new IncorrectSceneDescriptionXMLStructureException("Keyframes of an animation do not all list the same attributes in the same order.");
+                }
+                track = track.withKeyframe(frame, parameterValues.toArray(new double[0][]));
+            }
+            if(track == null) {
+                throw new IncorrectSceneDescriptionXMLStructureException("Animation has no keyframes.");
+            }
+
+            switch (element) {
+                case "shape" -> Animation.checkShapeTrack(track);
+                case "light" -> Animation.checkLightTrack(track);
+                default -> Animation.checkCameraTrack(track);
+            }
+            return track;
+        }
+        catch (NumberFormatException e) {
+            throw new IncorrectSceneDescriptionXMLStructureException("Keyframe attribute is not a number: " + e.getMessage());
+        }
+        catch (IllegalArgumentException e) {
+            throw new IncorrectSceneDescriptionXMLStructureException(e.getMessage());
+        }
+    }
+    /*
+       Method that returns the first XML child node of the
+       given node with the given name, or null if it has none.
+     */
+    private static Node getChildNode(Node node, String name) {
+        NodeList childNodes = node.getChildNodes();
+        for(int i = 0; i < childNodes.getLength(); i++) {
+            if(childNodes.item(i).getNodeType() == Node.ELEMENT_NODE && childNodes.item(i).getNodeName().equals(name)) {
+                return childNodes.item(i);
+            }
+        }
+        return null;
+    }
     /*
        Method to check if a given XML node is a leaf node, i.e.
        contains only a String value, and has no XML child nodes.
@@ -9,13 +9,14 @@ import java.util.Map;
 /**
  * A class to keep track of existing ray tracing
  * primitives (e.g. sphere), and map their shapeIDs
- * to their parseShape(Map<> attributes) methods.
+ * to their parseShape(Map<> attributes) methods, and
+ * to their readSnapshot(SnapshotInput) methods.
  *
  * Each shape's shapeID should just be the lowercase
  * version of its class name.
  */
 public class ShapeMapper {
-    private static final List<String> allExistingShapeIDs = List.of("sphere", "plane", "triangle", "triangle-mesh", "box-mesh");
+    private static final List<String> allExistingShapeIDs = List.of("sphere", "plane", "triangle", "triangle-mesh", "instanced-mesh", "box-mesh");
 
     /**
      * Methods
@@ -31,6 +32,7 @@ public class ShapeMapper {
         return switch (shapeID) {
             /// polygonal meshes are the only RTShape's that can have a "model-transform" attributes in their XML nodes
             case "triangle-mesh" -> TriangleMesh.parseShape(leafAttributes, modelTransformation);
+            case "instanced-mesh" -> MeshInstance.parseShape(leafAttributes, modelTransformation);
             case "box-mesh" -> Box.parseShape(leafAttributes, modelTransformation);
 
 
@@ -45,4 +47,24 @@ public class ShapeMapper {
                     throw new IncorrectSceneDescriptionXMLStructureException("Undefined RTShape referenced in scene description.");
         };
     }
+    /*
+       Method to invoke the correct readSnapshot(SnapshotInput input)
+       method given the shapeID of a shape written to a snapshot.
+
+       Throws IOException in case the shapeID argument is not a
+       shapeID of an existing primitive.
+     */
+    public static RTShape mapReadSnapshotMethod(SnapshotInput input, String shapeID) throws IOException {
+        return switch (shapeID) {
+            case "triangle-mesh" -> TriangleMesh.readSnapshot(input);
+            case "instanced-mesh" -> MeshInstance.readSnapshot(input);
+            case "box-mesh" -> Box.readSnapshot(input);
+            case "triangle" -> Triangle.readSnapshot(input);
+            case "sphere" -> Sphere.readSnapshot(input);
+            case "plane" -> Plane.readSnapshot(input);
+
+            /// nonexistent shapeID
+            default -> throw new IOException("Undefined RTShape '" + shapeID + "' in scene snapshot.");
+        };
+    }
 }
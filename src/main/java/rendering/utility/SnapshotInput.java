@@ -0,0 +1,164 @@
+package rendering.utility;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Class for reading a binary snapshot file or binary mesh file
+ * written by SnapshotOutput (see SceneSnapshot and MeshFile).
+ *
+ * The whole file is memory-mapped (FileChannel.map), so
+ * reading it involves no parsing and no intermediate copies:
+ * each array is filled from the mapped file with a single bulk
+ * copy, and the operating system pages the file in as it is read
+ * (or serves it straight from its page cache, if the file has been
+ * read recently).
+ *
+ * Reading past the end of the file (e.g. of a truncated file)
+ * throws an IOException.
+ */
+
+public class SnapshotInput {
+    private final MappedByteBuffer buffer;
+    /// shared objects read so far, in the order of their indices
+    private final ArrayList<Object> sharedObjects = new ArrayList<>();
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the path of the file to read, which
+       is mapped into memory immediately. Files larger than
+       2 GB can not be mapped as a single buffer.
+     */
+    public SnapshotInput(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot file '" + path + "' is larger than 2 GB.");
+            }
+            /// the mapping stays valid after the channel is closed
+            this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Methods
+     */
+    public int readInt() throws IOException {
+        this.require(4);
+        return this.buffer.getInt();
+    }
+    public double readDouble() throws IOException {
+        this.require(8);
+        return this.buffer.getDouble();
+    }
+    public String readString() throws IOException {
+        byte[] bytes = this.readBytes();
+        if(bytes == null) {
+            throw new IOException("Missing string in snapshot.");
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    public Vector3D readVector3D() throws IOException {
+        return new Vector3D(this.readDouble(), this.readDouble(), this.readDouble());
+    }
+    public RTColor readColor() throws IOException {
+        return new RTColor(this.readDouble(), this.readDouble(), this.readDouble());
+    }
+    /*
+       Methods that read an array written by the corresponding
+       method of SnapshotOutput (null if null was written).
+     */
+    public double[] readDoubles() throws IOException {
+        int length = this.readLength(8);
+        if(length < 0) {
+            return null;
+        }
+        double[] values = new double[length];
+        this.buffer.asDoubleBuffer().get(values);
+        this.buffer.position(this.buffer.position() + 8 * length);
+        return values;
+    }
+    public float[] readFloats() throws IOException {
+        int length = this.readLength(4);
+        if(length < 0) {
+            return null;
+        }
+        float[] values = new float[length];
+        this.buffer.asFloatBuffer().get(values);
+        this.buffer.position(this.buffer.position() + 4 * length);
+        return values;
+    }
+    public int[] readInts() throws IOException {
+        int length = this.readLength(4);
+        if(length < 0) {
+            return null;
+        }
+        int[] values = new int[length];
+        this.buffer.asIntBuffer().get(values);
+        this.buffer.position(this.buffer.position() + 4 * length);
+        return values;
+    }
+    public byte[] readBytes() throws IOException {
+        int length = this.readLength(1);
+        if(length < 0) {
+            return null;
+        }
+        byte[] values = new byte[length];
+        this.buffer.get(values);
+        return values;
+    }
+    /*
+       Method that reads a reference written by SnapshotOutput.writeReference,
+       and returns the shared object it refers to, which must be of the given
+       class, or returns null if the object itself follows the reference. In
+       that case, the caller must read the object and pass it to 'addShared'.
+     */
+    public <T> T readReference(Class<T> sharedClass) throws IOException {
+        int index = this.readInt();
+        if(index == -1) {
+            return null;
+        }
+        if(index < 0 || index >= this.sharedObjects.size() || !sharedClass.isInstance(this.sharedObjects.get(index))) {
+            throw new IOException("Corrupted snapshot: invalid reference to a shared object.");
+        }
+        return sharedClass.cast(this.sharedObjects.get(index));
+    }
+    public void addShared(Object sharedObject) {
+        this.sharedObjects.add(sharedObject);
+    }
+    /*
+       Method that returns true iff the whole file has been read.
+     */
+    public boolean isAtEnd() {
+        return !this.buffer.hasRemaining();
+    }
+    /*
+       Method that reads the length of an array with elements of the
+       given size, and checks that the whole array is in the file.
+     */
+    private int readLength(int elementSize) throws IOException {
+        int length = this.readInt();
+        if(length < -1) {
+            throw new IOException("Corrupted snapshot: negative array length.");
+        }
+        this.require((long) elementSize * Math.max(length, 0));
+        return length;
+    }
+    /*
+       Method that throws an IOException if fewer than the given
+       number of bytes are left in the file.
+     */
+    private void require(long bytes) throws IOException {
+        if(this.buffer.remaining() < bytes) {
+            throw new IOException("Unexpected end of snapshot file.");
+        }
+    }
+}
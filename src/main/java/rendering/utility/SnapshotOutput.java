@@ -0,0 +1,168 @@
+package rendering.utility;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.IdentityHashMap;
+
+/**
+ * Class for writing a binary snapshot file (see SceneSnapshot) or
+ * binary mesh file (see MeshFile), which is read back by SnapshotInput.
+ *
+ * Values are written in little-endian byte order, through a
+ * buffer, and arrays are written as their length followed by all
+ * of their elements (a length of -1 stands for a null array), so
+ * that they can be read back with a single bulk copy each.
+ *
+ * Objects shared by several shapes (e.g. the geometry shared by mesh
+ * instances) are written once, and referred to by their index after
+ * that (see 'writeReference').
+ *
+ * The file is only complete once the output is closed.
+ */
+
+public class SnapshotOutput implements AutoCloseable {
+    /// size of the buffer that values are collected in before they are written to the file
+    private static final int bufferSize = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(SnapshotOutput.bufferSize).order(ByteOrder.LITTLE_ENDIAN);
+    /// shared objects written so far, with their indices
+    private final IdentityHashMap<Object, Integer> sharedObjects = new IdentityHashMap<>();
+
+    /**
+     * Constructors
+     */
+    /*
+       Constructor from the path of the file to write,
+       which is replaced if it already exists.
+     */
+    public SnapshotOutput(String path) throws IOException {
+        this.channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Methods
+     */
+    public void writeInt(int value) throws IOException {
+        this.ensureSpace(4);
+        this.buffer.putInt(value);
+    }
+    public void writeDouble(double value) throws IOException {
+        this.ensureSpace(8);
+        this.buffer.putDouble(value);
+    }
+    /*
+       Method that writes a string as the length of its
+       UTF-8 encoding followed by the encoded bytes.
+     */
+    public void writeString(String value) throws IOException {
+        this.writeBytes(value.getBytes(StandardCharsets.UTF_8));
+    }
+    public void writeVector3D(Vector3D v) throws IOException {
+        this.writeDouble(v.getX());
+        this.writeDouble(v.getY());
+        this.writeDouble(v.getZ());
+    }
+    public void writeColor(RTColor color) throws IOException {
+        this.writeDouble(color.getRed());
+        this.writeDouble(color.getGreen());
+        this.writeDouble(color.getBlue());
+    }
+    /*
+       Methods that write an array (or null) as its length
+       followed by its elements.
+     */
+    public void writeDoubles(double[] values) throws IOException {
+        this.writeInt(values == null ? -1 : values.length);
+        for(int offset = 0; values != null && offset < values.length; ) {
+            this.ensureSpace(8);
+            int count = Math.min(values.length - offset, this.buffer.remaining() / 8);
+            this.buffer.asDoubleBuffer().put(values, offset, count);
+            this.buffer.position(this.buffer.position() + 8 * count);
+            offset += count;
+        }
+    }
+    public void writeFloats(float[] values) throws IOException {
+        this.writeInt(values == null ? -1 : values.length);
+        for(int offset = 0; values != null && offset < values.length; ) {
+            this.ensureSpace(4);
+            int count = Math.min(values.length - offset, this.buffer.remaining() / 4);
+            this.buffer.asFloatBuffer().put(values, offset, count);
+            this.buffer.position(this.buffer.position() + 4 * count);
+            offset += count;
+        }
+    }
+    public void writeInts(int[] values) throws IOException {
+        this.writeInt(values == null ? -1 : values.length);
+        for(int offset = 0; values != null && offset < values.length; ) {
+            this.ensureSpace(4);
+            int count = Math.min(values.length - offset, this.buffer.remaining() / 4);
+            this.buffer.asIntBuffer().put(values, offset, count);
+            this.buffer.position(this.buffer.position() + 4 * count);
+            offset += count;
+        }
+    }
+    public void writeBytes(byte[] values) throws IOException {
+        this.writeInt(values == null ? -1 : values.length);
+        for(int offset = 0; values != null && offset < values.length; ) {
+            this.ensureSpace(1);
+            int count = Math.min(values.length - offset, this.buffer.remaining());
+            this.buffer.put(values, offset, count);
+            offset += count;
+        }
+    }
+    /*
+       Method that writes a reference to the given shared object. If
+       the object has been written before, its index is written and true
+       is returned. Otherwise, -1 is written, the object is given the next
+       index, and false is returned, in which case the caller must write
+       the object itself right after the reference.
+
+       Read back by SnapshotInput.readReference.
+     */
+    public boolean writeReference(Object sharedObject) throws IOException {
+        Integer index = this.sharedObjects.get(sharedObject);
+        if(index != null) {
+            this.writeInt(index);
+            return true;
+        }
+        this.writeInt(-1);
+        this.sharedObjects.put(sharedObject, this.sharedObjects.size());
+        return false;
+    }
+    /*
+       Method that writes out everything still in the
+       buffer, and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        }
+        finally {
+            this.channel.close();
+        }
+    }
+    /*
+       Method that makes sure there are at least the given
+       number of bytes left in the buffer, by writing out
+       its contents if there are not.
+     */
+    private void ensureSpace(int bytes) throws IOException {
+        if(this.buffer.remaining() < bytes) {
+            this.flush();
+        }
+    }
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
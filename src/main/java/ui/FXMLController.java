@@ -3,6 +3,7 @@ package ui;
 import rendering.Camera;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -22,6 +23,8 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.control.ProgressBar;
 import javafx.concurrent.Task;
 
@@ -165,7 +168,13 @@ public class FXMLController {
         Camera camera = new Camera();
         /// Get the Task for rendering the scene, reporting progress, and saving rendered image at
         /// the default location '/resources/rendered images/result.png', from the created camera
-        Task<Void> renderingTask = camera.getRenderWithCPUCoreParallelizationTask(this.absolutePathToSceneDescription);
+        /// The image is rendered progressively, and every preview frame is shown as soon as it is available
+        Task<BufferedImage> renderingTask = camera.getProgressiveRenderTask(this.absolutePathToSceneDescription);
+        renderingTask.valueProperty().addListener((observable, oldPreview, preview) -> {
+            if(preview != null) {
+                this.showImageInImageView(preview);
+            }
+        });
         /// bind the rendering Task's progress to the ProgressBar's progress, we will unbind it later when needed
         this.renderingProgressBar.progressProperty().bind(renderingTask.progressProperty());
 
@@ -263,6 +272,18 @@ public class FXMLController {
         //this.renderedImageView.setImage(new Image(isImage));
         this.renderedImageProperty.set(new Image(isImage));
     }
+    /*
+       Method that shows a rendered (e.g. preview) image in the ImageView,
+       without saving it to a file first.
+     */
+    public void showImageInImageView(BufferedImage image) {
+        int width = image.getWidth(), height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        WritableImage writableImage = new WritableImage(width, height);
+        writableImage.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        this.renderedImageProperty.set(writableImage);
+    }
     /*
        Method that resets the rendering ProgressBar to 0.
      */
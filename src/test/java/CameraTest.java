@@ -1,6 +1,20 @@
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import rendering.Camera;
+import rendering.sampling.SamplerType;
+import rendering.shading.Material;
+import rendering.shapes.Plane;
+import rendering.shapes.RTShape;
+import rendering.shapes.Sphere;
+import rendering.tracing.Light;
+import rendering.tracing.Scene;
+import rendering.tracing.SphereLight;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -25,4 +39,150 @@ class CameraTest {
     void getPixelWidthTest() {
         assertEquals(c.getPixelHeight() * c.getScreenPlaneWidthToHeightRatio(), c.getPixelWidth(), 1e-9);
     }
-}
\ No newline at end of file
+
+    @Test
+    void renderProgressivelyTest() throws Exception {
+        Scene scene = new Scene("src/main/resources/scene descriptions/spheres_scene.xml");
+
+        /// with a single sample per pixel, there is one pass, which gives the same image
+        Camera singleSample = new Camera(4, 2, 1, 24, 3, 1, 8, 2);
+        ArrayList<BufferedImage> previews = new ArrayList<>();
+        BufferedImage progressive = singleSample.renderProgressively(scene, previews::add, null, null);
+        BufferedImage image = singleSample.renderWithCPUCoreParallelization(scene, null);
+        assertEquals(1, previews.size());
+        for(int y = 0; y < 24; y++) {
+            for(int x = 0; x < 24; x++) {
+                assertEquals(image.getRGB(x, y), progressive.getRGB(x, y));
+            }
+        }
+
+        /// one pass per sub-pixel, and the last preview is the result
+        Camera superSampling = new Camera(4, 2, 1, 24, 3, 2, 8, 2);
+        previews.clear();
+        /// progress is reported from the rendering threads
+        double[] maxProgress = new double[1];
+        progressive = superSampling.renderProgressively(scene, previews::add, (Double progress) -> {
+            synchronized(maxProgress) {
+                maxProgress[0] = Math.max(maxProgress[0], progress);
+            }
+        }, null);
+        assertEquals(4, previews.size());
+        assertSame(previews.get(3), progressive);
+        assertEquals(1, maxProgress[0], 1e-9);
+
+        /// stop after the first preview
+        previews.clear();
+        superSampling.renderProgressively(scene, previews::add, null, () -> !previews.isEmpty());
+        assertEquals(1, previews.size());
+    }
+
+    @Test
+    void withAdaptiveSamplingTest() throws Exception {
+        Camera camera = new Camera(4, 2, 1, 24, 3, 4, 8, 2);
+        Camera adaptive = camera.withAdaptiveSampling(Camera.defaultAdaptiveSamplingThreshold, 4);
+        assertFalse(camera.isAdaptiveSampling());
+        assertTrue(adaptive.isAdaptiveSampling());
+        assertEquals(4, adaptive.getMinimumSamplesPerPixel());
+        assertEquals(camera.getScreenPlaneWidthInPixels(), adaptive.getScreenPlaneWidthInPixels());
+        assertThrows(IllegalArgumentException.class, () -> camera.withAdaptiveSampling(-1, 4));
+        assertThrows(IllegalArgumentException.class, () -> camera.withAdaptiveSampling(0.01, 0));
+
+        /// pixels stop sampling early, but differ only by noise from the full render
+        Scene scene = new Scene("src/main/resources/scene descriptions/spheres_scene.xml");
+        BufferedImage image = camera.renderWithCPUCoreParallelization(scene, null);
+        BufferedImage adaptiveImage = adaptive.renderWithCPUCoreParallelization(scene, null);
+        double differenceSum = 0;
+        for(int y = 0; y < 24; y++) {
+            for(int x = 0; x < 24; x++) {
+                int rgb = image.getRGB(x, y), adaptiveRGB = adaptiveImage.getRGB(x, y);
+                for(int shift = 0; shift < 24; shift += 8) {
+                    differenceSum += Math.abs(((rgb >> shift) & 0xFF) - ((adaptiveRGB >> shift) & 0xFF));
+                }
+            }
+        }
+        assertTrue(differenceSum / (3 * 24 * 24) < 2);
+    }
+
+    @Test
+    void renderIsDeterministicTest() {
+        /// soft shadows of a sphere light, reflections, and sampled pixels
+        ArrayList<RTShape> shapes = new ArrayList<>(List.of(
+                new Plane(new Vector3D(0, 1, 0), new Vector3D(0, -1, 0), RTColor.gray, Material.defaultNonReflectiveMaterial),
+                new Sphere(new Vector3D(0, 0, 6), 1, RTColor.red, Material.defaultReflectiveMaterial)));
+        ArrayList<Light> lights = new ArrayList<>(List.of(new SphereLight(new Vector3D(2, 4, 4), RTColor.white, 1, 1)));
+        Scene scene = new Scene(shapes, lights);
+
+        for(SamplerType samplerType : SamplerType.values()) {
+            /// one thread with large tiles, and several threads with small tiles (rendered in a different order)
+            Camera camera = new Camera(4, 2, 1, 20, 2, 2, 20, 1).withSampler(samplerType);
+            Camera parallelCamera = new Camera(4, 2, 1, 20, 2, 2, 3, 3).withSampler(samplerType);
+            BufferedImage image = camera.renderWithCPUCoreParallelization(scene, null);
+            BufferedImage parallelImage = parallelCamera.renderWithCPUCoreParallelization(scene, null);
+            BufferedImage adaptiveImage = camera.withAdaptiveSampling(0.05, 2).renderWithCPUCoreParallelization(scene, null);
+            BufferedImage parallelAdaptiveImage = parallelCamera.withAdaptiveSampling(0.05, 2).renderWithCPUCoreParallelization(scene, null);
+            for(int y = 0; y < 20; y++) {
+                for(int x = 0; x < 20; x++) {
+                    assertEquals(image.getRGB(x, y), parallelImage.getRGB(x, y), samplerType + " at (" + x + "," + y + ")");
+                    assertEquals(adaptiveImage.getRGB(x, y), parallelAdaptiveImage.getRGB(x, y), samplerType + " at (" + x + "," + y + ")");
+                }
+            }
+        }
+    }
+
+    @Test
+    void packetTracingTest() throws Exception {
+        Scene scene = new Scene("src/main/resources/scene descriptions/spheres_and_triangles_scene.xml");
+        /// blocks that do not fit into the tiles, and a single sample per pixel through the pixel centers
+        for(Camera camera : List.of(new Camera(4, 2, 1, 21, 3, 2, 12, 2), new Camera(4, 2, 1.5, 17, 2, 1, 32, 1))) {
+            assertTrue(camera.isPacketTracing());
+            Camera singleRays = camera.withPacketTracing(false);
+            assertFalse(singleRays.isPacketTracing());
+
+            /// the same image as with every ray traced on its own, also with adaptive sampling and progressively
+            assertSameImage(singleRays.renderWithCPUCoreParallelization(scene, null), camera.renderWithCPUCoreParallelization(scene, null));
+            assertSameImage(singleRays.withAdaptiveSampling(0.05, 2).renderWithCPUCoreParallelization(scene, null),
+                    camera.withAdaptiveSampling(0.05, 2).renderWithCPUCoreParallelization(scene, null));
+            assertSameImage(singleRays.renderProgressively(scene, null, null, null), camera.renderProgressively(scene, null, null, null));
+        }
+    }
+
+    @Test
+    void gpuRenderTest() throws Exception {
+        /// the kernel runs on Java threads if there is no OpenCL device, with the same samples as the CPU renderer
+        String scenePath = "src/main/resources/scene descriptions/spheres_and_triangles_scene.xml";
+        Scene scene = new Scene(scenePath);
+        for(SamplerType samplerType : SamplerType.values()) {
+            Camera camera = new Camera(4, 2, 1, 16, 2, 2, 8, 2).withSampler(samplerType);
+            assertSameImage(camera.renderWithCPUCoreParallelization(scene, null), camera.renderWithGPUCoreParallelization(scenePath, null));
+        }
+    }
+
+    @Test
+    void withPoseTest() throws Exception {
+        Scene scene = new Scene("src/main/resources/scene descriptions/spheres_and_triangles_scene.xml");
+        Camera camera = new Camera(4, 2, 1, 19, 2, 2, 8, 2);
+        assertNull(camera.getPosition());
+
+        /// the default pose renders the same image as a camera without a pose
+        assertSameImage(camera.renderWithCPUCoreParallelization(scene, null),
+                camera.withPose(new Vector3D(0, 0, 0), new Vector3D(0, 0, 5)).renderWithCPUCoreParallelization(scene, null));
+
+        /// a moved camera traces the same packets of rays as single rays
+        Camera moved = camera.withPose(new Vector3D(-3, 2, 1), new Vector3D(0, 0, 9));
+        assertEquals(-3, moved.getPosition().getX());
+        assertSameImage(moved.withPacketTracing(false).renderWithCPUCoreParallelization(scene, null), moved.renderWithCPUCoreParallelization(scene, null));
+
+        assertThrows(IllegalArgumentException.class, () -> camera.withPose(new Vector3D(1, 2, 3), new Vector3D(1, 2, 3)));
+        assertThrows(IllegalArgumentException.class, () -> camera.withPose(new Vector3D(1, 2, 3), new Vector3D(1, 5, 3)));
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "at (" + x + "," + y + ")");
+            }
+        }
+    }
+}
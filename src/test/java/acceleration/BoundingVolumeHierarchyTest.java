@@ -0,0 +1,284 @@
+package acceleration;
+
+import org.junit.jupiter.api.Test;
+import rendering.acceleration.AxisAlignedBoundingBox;
+import rendering.acceleration.BoundingVolumeHierarchy;
+import rendering.shading.Material;
+import rendering.shapes.Plane;
+import rendering.shapes.RTShape;
+import rendering.shapes.Sphere;
+import rendering.shapes.Triangle;
+import rendering.tracing.Intersection;
+import rendering.tracing.Light;
+import rendering.tracing.HitRecord;
+import rendering.tracing.Ray;
+import rendering.tracing.RayPacket;
+import rendering.tracing.Scene;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundingVolumeHierarchyTest {
+
+    @Test
+    void testConstructor() {
+        /// 100 unit cubes along the x axis
+        double[] bounds = new double[6 * 100];
+        for(int i = 0; i < 100; i++) {
+            bounds[6*i] = i;
+            bounds[6*i+1] = 0;
+            bounds[6*i+2] = 0;
+            bounds[6*i+3] = i + 1;
+            bounds[6*i+4] = 1;
+            bounds[6*i+5] = 1;
+        }
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(bounds, 100);
+
+        assertEquals(0, bvh.getBounds().getMinX(), 1e-9);
+        assertEquals(100, bvh.getBounds().getMaxX(), 1e-9);
+        assertTrue(bvh.getNumberOfNodes() <= 2 * 100 - 1);
+        assertTrue(bvh.getDepth() < 20);
+
+        /// every primitive must be referenced by exactly one leaf
+        boolean[] referenced = new boolean[100];
+        for(int node = 0; node < bvh.getNumberOfNodes(); node++) {
+            if(bvh.isLeaf(node)) {
+                for(int i = bvh.getFirstPrimitive(node); i < bvh.getFirstPrimitive(node) + bvh.getPrimitiveCount(node); i++) {
+                    assertFalse(referenced[bvh.getPrimitiveIndex(i)]);
+                    referenced[bvh.getPrimitiveIndex(i)] = true;
+                }
+            }
+        }
+        for(boolean r : referenced) {
+            assertTrue(r);
+        }
+
+        assertEquals(0, new BoundingVolumeHierarchy(new double[0], 0).getNumberOfNodes());
+    }
+
+    @Test
+    void intersectNodeBounds() {
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(new double[]{-1, -1, -1, 1, 1, 1}, 1);
+        /// ray along z axis hits the box at z=-1
+        assertEquals(4, bvh.intersectNodeBounds(0, 0, 0, -5, 1 / 0.0, 1 / 0.0, 1, Double.POSITIVE_INFINITY), 1e-9);
+        /// but not if only intersections closer than 3 are wanted
+        assertEquals(Double.POSITIVE_INFINITY, bvh.intersectNodeBounds(0, 0, 0, -5, 1 / 0.0, 1 / 0.0, 1, 3));
+        /// ray parallel to the box that misses it
+        assertEquals(Double.POSITIVE_INFINITY, bvh.intersectNodeBounds(0, 2, 0, -5, 1 / 0.0, 1 / 0.0, 1, Double.POSITIVE_INFINITY));
+        /// origin inside the box
+        assertEquals(0, bvh.intersectNodeBounds(0, 0, 0, 0, 1, 1, 1, Double.POSITIVE_INFINITY), 1e-9);
+    }
+
+    @Test
+    void floatPrecisionBoundsContainDoubleBounds() {
+        double[] bounds = new double[]{0.1, -0.3, 1e-9, 0.7, 1.0 / 3, 2.2, 5.1, 5.1, 5.1, 5.3, 5.3, 5.3};
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(bounds, 2);
+        BoundingVolumeHierarchy floatBvh = new BoundingVolumeHierarchy(bounds, 2, GeometryPrecision.FLOAT);
+        assertEquals(GeometryPrecision.FLOAT, floatBvh.getPrecision());
+        assertEquals(bvh.getNumberOfNodes(), floatBvh.getNumberOfNodes());
+        assertTrue(floatBvh.getSizeInBytes() < bvh.getSizeInBytes());
+
+        /// rounded outwards
+        assertTrue(floatBvh.getBounds().getMinX() <= bvh.getBounds().getMinX());
+        assertTrue(floatBvh.getBounds().getMinY() <= bvh.getBounds().getMinY());
+        assertTrue(floatBvh.getBounds().getMinZ() <= bvh.getBounds().getMinZ());
+        assertTrue(floatBvh.getBounds().getMaxX() >= bvh.getBounds().getMaxX());
+        assertTrue(floatBvh.getBounds().getMaxY() >= bvh.getBounds().getMaxY());
+        assertTrue(floatBvh.getBounds().getMaxZ() >= bvh.getBounds().getMaxZ());
+        assertEquals(bvh.getBounds().getMaxY(), floatBvh.getBounds().getMaxY(), 1e-6);
+
+        /// a ray that just grazes the double bounds still enters the float bounds
+        for(int node = 0; node < bvh.getNumberOfNodes(); node++) {
+            double expected = bvh.intersectNodeBounds(node, 0.7, 0, -5, 1 / 0.0, 1 / 0.0, 1, Double.POSITIVE_INFINITY);
+            double actual = floatBvh.intersectNodeBounds(node, 0.7, 0, -5, 1 / 0.0, 1 / 0.0, 1, Double.POSITIVE_INFINITY);
+            assertTrue(expected == Double.POSITIVE_INFINITY || actual <= expected);
+        }
+    }
+
+    @Test
+    void refittedMatchesBuiltBounds() {
+        Random random = new Random(5);
+        double[] bounds = new double[6 * 200];
+        for(int i = 0; i < 200; i++) {
+            for(int axis = 0; axis < 3; axis++) {
+                bounds[6*i+axis] = 10 * random.nextDouble();
+                bounds[6*i+3+axis] = bounds[6*i+axis] + random.nextDouble();
+            }
+        }
+        BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(bounds, 200);
+
+        /// the same bounds give the same hierarchy
+        BoundingVolumeHierarchy refitted = bvh.refitted(bounds, GeometryPrecision.DOUBLE);
+        assertEquals(bvh.getNumberOfNodes(), refitted.getNumberOfNodes());
+        for(int node = 0; node < bvh.getNumberOfNodes(); node++) {
+            double expected = bvh.intersectNodeBounds(node, 5, 5, -5, 1 / 0.1, 1 / 0.1, 1, Double.POSITIVE_INFINITY);
+            assertEquals(expected, refitted.intersectNodeBounds(node, 5, 5, -5, 1 / 0.1, 1 / 0.1, 1, Double.POSITIVE_INFINITY));
+        }
+
+        /// translated bounds move every node, and float bounds still contain them
+        double[] translated = bounds.clone();
+        for(int i = 0; i < translated.length; i++) {
+            translated[i] += i % 3 == 0 ? 100 : 0;
+        }
+        for(GeometryPrecision precision : GeometryPrecision.values()) {
+            refitted = bvh.refitted(translated, precision);
+            assertEquals(precision, refitted.getPrecision());
+            assertTrue(refitted.getBounds().getMinX() <= bvh.getBounds().getMinX() + 100);
+            assertTrue(refitted.getBounds().getMaxX() >= bvh.getBounds().getMaxX() + 100);
+            assertEquals(bvh.getBounds().getMinX() + 100, refitted.getBounds().getMinX(), 1e-4);
+            assertEquals(bvh.getBounds().getMaxY(), refitted.getBounds().getMaxY(), 1e-5);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> bvh.refitted(new double[6], GeometryPrecision.DOUBLE));
+    }
+
+    @Test
+    void refitPrimitivesMatchesRefitted() {
+        Random random = new Random(6);
+        double[] bounds = new double[6 * 300];
+        for(int i = 0; i < 300; i++) {
+            for(int axis = 0; axis < 3; axis++) {
+                bounds[6*i+axis] = 10 * random.nextDouble();
+                bounds[6*i+3+axis] = bounds[6*i+axis] + random.nextDouble();
+            }
+        }
+        for(GeometryPrecision precision : GeometryPrecision.values()) {
+            BoundingVolumeHierarchy bvh = new BoundingVolumeHierarchy(bounds.clone(), 300, precision);
+
+            /// move a few primitives, some of them far away, one of them twice
+            double[] moved = bounds.clone();
+            int[] primitives = {3, 77, 150, 151, 299, 3};
+            for(int primitive : primitives) {
+                double offset = 20 * random.nextDouble() - 10;
+                for(int i = 0; i < 6; i++) {
+                    moved[6*primitive+i] += offset;
+                }
+            }
+            bvh.refitPrimitives(primitives, moved);
+
+            BoundingVolumeHierarchy refitted = bvh.refitted(moved, precision);
+            for(int node = 0; node < bvh.getNumberOfNodes(); node++) {
+                AxisAlignedBoundingBox expected = refitted.getNodeBounds(node), actual = bvh.getNodeBounds(node);
+                assertEquals(expected.getMinX(), actual.getMinX());
+                assertEquals(expected.getMinY(), actual.getMinY());
+                assertEquals(expected.getMinZ(), actual.getMinZ());
+                assertEquals(expected.getMaxX(), actual.getMaxX());
+                assertEquals(expected.getMaxY(), actual.getMaxY());
+                assertEquals(expected.getMaxZ(), actual.getMaxZ());
+            }
+            assertThrows(IllegalArgumentException.class, () -> bvh.refitPrimitives(new int[]{0}, new double[6]));
+        }
+    }
+
+    @Test
+    void findFirstIntersectionMatchesBruteForce() {
+        Random rnd = new Random(7);
+        ArrayList<RTShape> shapes = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            Vector3D center = new Vector3D(rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 + 5);
+            if(i % 2 == 0) {
+                shapes.add(new Sphere(center, rnd.nextDouble() * 2, RTColor.red, Material.defaultNonReflectiveMaterial));
+            }
+            else {
+                shapes.add(new Triangle(center, center.added(new Vector3D(rnd.nextDouble() * 3, rnd.nextDouble(), 0)),
+                        center.added(new Vector3D(0, rnd.nextDouble() * 3, rnd.nextDouble())), RTColor.red, Material.defaultNonReflectiveMaterial));
+            }
+        }
+        shapes.add(new Plane(new Vector3D(0, 1, 0), new Vector3D(0, -15, 0), RTColor.red, Material.defaultNonReflectiveMaterial));
+        Scene scene = new Scene(shapes, new ArrayList<Light>());
+
+        for(int k = 0; k < 2000; k++) {
+            Ray ray = new Ray(new Vector3D(0, 0, 0), new Vector3D(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, 1));
+
+            Intersection expected = null;
+            for(RTShape shape : shapes) {
+                Intersection intersection = shape.intersect(ray);
+                if(intersection != null && (expected == null || ray.distance(intersection.getIntersectionPoint()) < ray.distance(expected.getIntersectionPoint()))) {
+                    expected = intersection;
+                }
+            }
+
+            Intersection actual = scene.findFirstIntersection(ray);
+            if(expected == null) {
+                assertNull(actual);
+            }
+            else {
+                assertNotNull(actual);
+                assertSame(expected.getIntersectedShape(), actual.getIntersectedShape());
+                assertEquals(ray.distance(expected.getIntersectionPoint()), ray.distance(actual.getIntersectionPoint()), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void occludedMatchesFindFirstIntersection() {
+        Random rnd = new Random(11);
+        ArrayList<RTShape> shapes = new ArrayList<>();
+        for(int i = 0; i < 200; i++) {
+            Vector3D center = new Vector3D(rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 + 5);
+            shapes.add(new Sphere(center, rnd.nextDouble() * 2, RTColor.red, Material.defaultNonReflectiveMaterial));
+        }
+        shapes.add(new Plane(new Vector3D(0, 1, 0), new Vector3D(0, -15, 0), RTColor.red, Material.defaultNonReflectiveMaterial));
+        Scene scene = new Scene(shapes, new ArrayList<Light>());
+
+        for(int k = 0; k < 2000; k++) {
+            Ray ray = new Ray(new Vector3D(0, 0, 0), new Vector3D(rnd.nextDouble() * 2 - 1, rnd.nextDouble() * 2 - 1, 1).normalised());
+            double maxParameter = rnd.nextDouble() * 60;
+            assertEquals(scene.findFirstIntersection(ray, maxParameter) != null, scene.occluded(ray, maxParameter));
+        }
+    }
+
+    @Test
+    void findClosestHitsMatchesFindClosestHit() {
+        Random rnd = new Random(13);
+        ArrayList<RTShape> shapes = new ArrayList<>();
+        for(int i = 0; i < 300; i++) {
+            Vector3D center = new Vector3D(rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 - 20, rnd.nextDouble() * 40 + 5);
+            shapes.add(new Sphere(center, rnd.nextDouble() * 2, RTColor.red, Material.defaultNonReflectiveMaterial));
+        }
+        shapes.add(new Plane(new Vector3D(0, 1, 0), new Vector3D(0, -15, 0), RTColor.red, Material.defaultNonReflectiveMaterial));
+        Scene scene = new Scene(shapes, new ArrayList<Light>());
+        BoundingVolumeHierarchy bvh = scene.getBoundingVolumeHierarchy();
+
+        RayPacket packet = new RayPacket();
+        HitRecord hitRecord = new HitRecord();
+        for(int k = 0; k < 200; k++) {
+            /// 8x8 rays through a small window, some of which straddle the axes (so they are not coherent)
+            double windowX = rnd.nextDouble() * 2 - 1, windowY = rnd.nextDouble() * 2 - 1, windowSize = rnd.nextDouble() * 0.2;
+            packet.clear();
+            for(int i = 0; i < RayPacket.capacity; i++) {
+                packet.add(new Ray(new Vector3D(0, 0, 0), new Vector3D(windowX + windowSize * (i % RayPacket.side), windowY + windowSize * (i / RayPacket.side), 1)), Double.POSITIVE_INFINITY);
+            }
+
+            /// the interval test bounds the entry of every ray from below
+            if(packet.isCoherent()) {
+                for(int node = 0; node < bvh.getNumberOfNodes(); node++) {
+                    double packetEntry = bvh.intersectNodeBoundsInterval(node, 0, 0, 0,
+                            packet.getMinInverseDirectionX(), packet.getMaxInverseDirectionX(),
+                            packet.getMinInverseDirectionY(), packet.getMaxInverseDirectionY(),
+                            packet.getMinInverseDirectionZ(), packet.getMaxInverseDirectionZ(), Double.POSITIVE_INFINITY);
+                    for(int i = 0; i < RayPacket.capacity; i++) {
+                        assertTrue(packetEntry <= bvh.intersectNodeBounds(node, 0, 0, 0, packet.getInverseDirectionX(i),
+                                packet.getInverseDirectionY(i), packet.getInverseDirectionZ(i), Double.POSITIVE_INFINITY));
+                    }
+                }
+            }
+
+            /// exactly the same hits as for the rays on their own
+            scene.findClosestHits(packet);
+            for(int i = 0; i < RayPacket.capacity; i++) {
+                hitRecord.reset(Double.POSITIVE_INFINITY);
+                scene.findClosestHit(packet.getRay(i), hitRecord);
+                assertSame(hitRecord.getShape(), packet.getHitRecord(i).getShape());
+                assertEquals(hitRecord.getParameter(), packet.getHitRecord(i).getParameter());
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> packet.add(new Ray(new Vector3D(1, 0, 0), new Vector3D(0, 0, 1)), 1));
+    }
+}
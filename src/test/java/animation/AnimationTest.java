@@ -0,0 +1,152 @@
+package animation;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.Camera;
+import rendering.animation.Animation;
+import rendering.animation.FrameSink;
+import rendering.animation.ImageFileSink;
+import rendering.animation.KeyframeTrack;
+import rendering.animation.PPMStreamSink;
+import rendering.animation.SequenceRenderer;
+import rendering.shapes.MeshInstance;
+import rendering.shapes.RTShape;
+import rendering.tracing.Light;
+import rendering.tracing.PointLight;
+import rendering.tracing.Scene;
+import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
+import rendering.utility.SceneDescriptionParser;
+import rendering.utility.Vector3D;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnimationTest {
+    private static final String towerPath = "src/main/resources/meshes/tower.obj";
+
+    @Test
+    void keyframesAreInterpolatedAndHeld() {
+        KeyframeTrack track = new KeyframeTrack(List.of("rotateY", "translate"))
+                .withKeyframe(2, new double[]{0}, new double[]{0, 0, 4})
+                .withKeyframe(6, new double[]{90}, new double[]{2, 0, 4})
+                .withKeyframe(10, new double[]{90}, new double[]{2, 0, 4});
+        assertArrayEquals(new double[]{0, 0, 4}, track.valuesAt(0)[1]);
+        assertArrayEquals(new double[]{45}, track.valuesAt(4)[0]);
+        assertArrayEquals(new double[]{1.5, 0, 4}, track.valuesAt(5)[1]);
+        assertArrayEquals(new double[]{2, 0, 4}, track.valuesAt(50)[1]);
+        assertTrue(track.isUnchangedBetween(7, 12));
+        assertFalse(track.isUnchangedBetween(5, 6));
+        assertEquals(11, new Animation().withShapeTrack(0, track).getNumberOfFrames());
+
+        assertThrows(IllegalArgumentException.class, () -> track.withKeyframe(10, new double[]{0}, new double[]{0, 0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> track.withKeyframe(11, new double[]{0}));
+        assertThrows(IllegalArgumentException.class, () -> track.withKeyframe(11, new double[]{0}, new double[]{0, 0}));
+        assertThrows(IllegalArgumentException.class, () -> new Animation().withLightTrack(0, track));
+        assertThrows(IllegalArgumentException.class, () -> new Animation().withCameraTrack(
+                new KeyframeTrack(List.of("position")).withKeyframe(0, new double[]{0, 0, 0})));
+    }
+
+    @Test
+    void incrementallyUpdatedFramesMatchNewScenes(@TempDir Path directory) throws Exception {
+        /// a static tower, a tower that spins and then stops, a moving light, and a camera that moves sideways
+        String xml = "<elements>\n<shapes>\n"
+                + "<plane><normal>(0,1,0)</normal><point>(0,-1,0)</point><color>(60,162,78)</color></plane>\n"
+                + "<instanced-mesh><path-to-obj-file>" + AnimationTest.towerPath + "</path-to-obj-file>"
+                + "<model-transform><translate>(-2,-1,8)</translate></model-transform><color>(200,30,30)</color></instanced-mesh>\n"
+                + "<instanced-mesh><path-to-obj-file>" + AnimationTest.towerPath + "</path-to-obj-file><color>(30,30,200)</color><animation>"
+                + "<keyframe><frame>0</frame><rotateY>0</rotateY><translate>(1,-1,7)</translate></keyframe>"
+                + "<keyframe><frame>2</frame><rotateY>60</rotateY><translate>(2,0,7)</translate></keyframe>"
+                + "</animation></instanced-mesh>\n"
+                + "</shapes>\n<lights>\n"
+                + "<point-light><position>(0,0,0)</position><color>(255,255,255)</color><intensity>300</intensity><animation>"
+                + "<keyframe><frame>0</frame><position>(0,10,0)</position></keyframe>"
+                + "<keyframe><frame>3</frame><position>(6,10,2)</position></keyframe>"
+                + "</animation></point-light>\n"
+                + "</lights>\n"
+                + "<camera><animation>"
+                + "<keyframe><frame>0</frame><position>(0,1,0)</position><look-at>(0,0,8)</look-at></keyframe>"
+                + "<keyframe><frame>3</frame><position>(1,1,0)</position><look-at>(0,0,8)</look-at></keyframe>"
+                + "</animation></camera>\n"
+                + "</elements>\n";
+        Path scenePath = directory.resolve("animated.xml");
+        Files.writeString(scenePath, xml);
+
+        SceneDescriptionParser parser = new SceneDescriptionParser(scenePath.toString());
+        ArrayList<RTShape> shapes = parser.parseShapes();
+        ArrayList<Light> lights = parser.parseLights();
+        Animation animation = parser.parseAnimation();
+        assertEquals(4, animation.getNumberOfFrames());
+        assertEquals(List.of(2), List.copyOf(animation.getShapeTracks().keySet()));
+
+        /// the scene is parsed at frame 0
+        assertEquals(10, ((PointLight) lights.get(0)).getPosition().getY());
+        Scene scene = new Scene(new ArrayList<>(shapes), new ArrayList<>(lights));
+        RTShape staticTower = scene.getShapes().get(1);
+
+        Camera camera = new Camera(4, 2, 1, 24, 2, 1, 12, 1);
+        ArrayList<BufferedImage> frames = new ArrayList<>();
+        new SequenceRenderer(camera, animation).render(scene, 0, 3, (frame, image) -> frames.add(image));
+        assertEquals(4, frames.size());
+        assertSame(staticTower, scene.getShapes().get(1));
+
+        for(int frame = 0; frame < 4; frame++) {
+            /// the same frame of a scene built from scratch
+            ArrayList<RTShape> frameShapes = new ArrayList<>(shapes);
+            MeshInstance spinningTower = (MeshInstance) shapes.get(2);
+            frameShapes.set(2, spinningTower.withModelTransformation(Animation.transformationAt(animation.getShapeTracks().get(2), frame)));
+            ArrayList<Light> frameLights = new ArrayList<>();
+            frameLights.add(Animation.lightAt((PointLight) lights.get(0), animation.getLightTracks().get(0), frame));
+            double cameraX = frame / 3.0;
+            BufferedImage expected = camera.withPose(new Vector3D(cameraX, 1, 0), new Vector3D(0, 0, 8))
+                    .renderWithCPUCoreParallelization(new Scene(frameShapes, frameLights), null);
+
+            for(int y = 0; y < expected.getHeight(); y++) {
+                for(int x = 0; x < expected.getWidth(); x++) {
+                    assertEquals(expected.getRGB(x, y), frames.get(frame).getRGB(x, y));
+                }
+            }
+        }
+
+        /// the spinning tower stops after frame 2, so only the light and nothing else is replaced for frame 3
+        assertEquals(1, animation.applyFrame(scene, 3, 2));
+        assertEquals(2, animation.applyFrame(scene, 1, 3));
+
+        /// only instanced meshes can be animated, and not together with a fixed modelling transformation
+        Files.writeString(scenePath, xml.replace("<color>(30,30,200)</color><animation>", "<model-transform></model-transform><color>(30,30,200)</color><animation>"));
+        assertThrows(IncorrectSceneDescriptionXMLStructureException.class, () -> new SceneDescriptionParser(scenePath.toString()).parseShapes());
+        Files.writeString(scenePath, xml.replace("<rotateY>60</rotateY><translate>(2,0,7)</translate>", "<translate>(2,0,7)</translate>"));
+        assertThrows(IncorrectSceneDescriptionXMLStructureException.class, () -> new SceneDescriptionParser(scenePath.toString()).parseAnimation());
+    }
+
+    @Test
+    void framesAreWrittenToSinks(@TempDir Path directory) throws Exception {
+        BufferedImage image = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, 0x102030);
+        image.setRGB(2, 1, 0xffee01);
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        try(FrameSink sink = new PPMStreamSink(stream)) {
+            sink.accept(0, image);
+            sink.accept(1, image);
+        }
+        byte[] bytes = stream.toByteArray();
+        byte[] header = "P6\n3 2\n255\n".getBytes();
+        assertEquals(2 * (header.length + 18), bytes.length);
+        assertEquals("P6\n3 2\n255\n", new String(bytes, 0, header.length));
+        assertEquals(0x10, bytes[header.length]);
+        assertEquals(0x30, bytes[header.length + 2]);
+        assertEquals((byte) 0xff, bytes[header.length + 15]);
+        assertEquals(0x01, bytes[header.length + 17]);
+
+        ImageFileSink fileSink = new ImageFileSink(directory.resolve("frames/frame%03d.png").toString());
+        fileSink.accept(7, image);
+        assertTrue(Files.exists(directory.resolve("frames/frame007.png")));
+        assertThrows(IllegalArgumentException.class, () -> new ImageFileSink(directory.resolve("frame.png").toString()));
+    }
+}
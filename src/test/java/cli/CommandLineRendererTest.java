@@ -0,0 +1,146 @@
+package cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.Camera;
+import rendering.sampling.SamplerType;
+import rendering.shapes.IntersectionKernel;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineRendererTest {
+
+    @Test
+    void parseOptions() throws IOException {
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png",
+                "--scene", "b.xml", "--output", "b.jpg", "--width", "1920", "--height", "1080", "--samples", "2",
+                "--reflections", "4", "--threads", "3", "--tile-size", "16"});
+        assertEquals(2, options.getJobs().size());
+        assertEquals("b.xml", options.getJobs().get(1).getScenePath());
+        assertEquals("b.jpg", options.getJobs().get(1).getOutputPath());
+        assertEquals(1920, options.getWidth());
+        assertEquals(1080, options.getHeight());
+        assertEquals(2, options.getSamplesPerPixelSide());
+        assertEquals(4, options.getReflectionTracingLimit());
+        assertEquals(3, options.getNumberOfThreads());
+        assertEquals(16, options.getTileSize());
+
+        Camera camera = CommandLineRenderer.createCamera(options);
+        assertEquals(1920, camera.getScreenPlaneWidthInPixels());
+        assertFalse(camera.isAdaptiveSampling());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--samples", "5", "--adaptive", "0.02"});
+        camera = CommandLineRenderer.createCamera(options);
+        assertTrue(camera.isAdaptiveSampling());
+        assertEquals(0.02, camera.getAdaptiveSamplingThreshold());
+        assertEquals(5, camera.getMinimumSamplesPerPixel());
+        assertEquals(SamplerType.STRATIFIED, camera.getSamplerType());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--sampler", "Sobol"});
+        assertEquals(SamplerType.SOBOL, CommandLineRenderer.createCamera(options).getSamplerType());
+        assertNull(options.getIntersectionKernel());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--kernel", "scalar"});
+        assertEquals(IntersectionKernel.SCALAR, options.getIntersectionKernel());
+        assertTrue(CommandLineRenderer.createCamera(options).isPacketTracing());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--packets", "off"});
+        assertFalse(CommandLineRenderer.createCamera(options).isPacketTracing());
+        assertFalse(options.hasMeshCacheBudget());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--mesh-cache", "0"});
+        assertTrue(options.hasMeshCacheBudget());
+        assertEquals(0, options.getMeshCacheBudget());
+        assertFalse(options.hasFarmPort());
+
+        options = CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--farm", "7077"});
+        assertTrue(options.hasFarmPort());
+        assertEquals(7077, options.getFarmPort());
+        assertEquals(7077, FarmWorker.parseAddress("localhost:7077").getPort());
+        assertThrows(IllegalArgumentException.class, () -> FarmWorker.parseAddress("localhost"));
+        assertEquals(2, FarmWorker.run(new String[]{"--threads", "2"}));
+
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--output", "a.png"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--threads", "0"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--samples"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--colour", "red"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--adaptive", "-1"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--min-samples", "2"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--sampler", "random"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--kernel", "avx"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--packets", "yes"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--mesh-cache", "-1"}));
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--scene", "a.xml", "--output", "a.png", "--farm", "70000"}));
+    }
+
+    @Test
+    void parseBatchFile(@TempDir Path directory) throws IOException {
+        Path batchFile = directory.resolve("batch.txt");
+        Files.writeString(batchFile, "# scenes\nscene descriptions/a.xml | out/a.png\n\n  b.xml|b.png  \n");
+        CommandLineOptions options = CommandLineOptions.parse(new String[]{"--batch", batchFile.toString()});
+        assertEquals(2, options.getJobs().size());
+        assertEquals("scene descriptions/a.xml", options.getJobs().get(0).getScenePath());
+        assertEquals("out/a.png", options.getJobs().get(0).getOutputPath());
+        assertEquals("b.xml", options.getJobs().get(1).getScenePath());
+        assertEquals("b.png", options.getJobs().get(1).getOutputPath());
+
+        Files.writeString(batchFile, "a.xml b.png\n");
+        assertThrows(IllegalArgumentException.class, () -> CommandLineOptions.parse(new String[]{"--batch", batchFile.toString()}));
+    }
+
+    @Test
+    void run(@TempDir Path directory) throws IOException {
+        Path first = directory.resolve("spheres.png");
+        Path second = directory.resolve("images/triangles.png");
+        int exitCode = CommandLineRenderer.run(new String[]{
+                "--scene", "src/main/resources/scene descriptions/spheres_scene.xml", "--output", first.toString(),
+                "--scene", "src/main/resources/scene descriptions/spheres_and_triangles_scene.xml", "--output", second.toString(),
+                "--width", "24", "--height", "16", "--samples", "1", "--reflections", "2", "--threads", "2"});
+        assertEquals(0, exitCode);
+
+        BufferedImage image = ImageIO.read(first.toFile());
+        assertEquals(24, image.getWidth());
+        assertEquals(16, image.getHeight());
+        assertNotNull(ImageIO.read(second.toFile()));
+
+        /// a missing scene fails, but the other scenes are still rendered
+        Path third = directory.resolve("third.png");
+        exitCode = CommandLineRenderer.run(new String[]{
+                "--scene", "missing.xml", "--output", directory.resolve("missing.png").toString(),
+                "--scene", "src/main/resources/scene descriptions/spheres_scene.xml", "--output", third.toString(),
+                "--height", "8", "--samples", "1"});
+        assertEquals(1, exitCode);
+        assertTrue(Files.exists(third));
+
+        assertEquals(2, CommandLineRenderer.run(new String[]{"--scene"}));
+    }
+
+    @Test
+    void renderAnimation(@TempDir Path directory) throws IOException {
+        Path scenePath = directory.resolve("animated.xml");
+        Files.writeString(scenePath, "<elements><shapes><sphere><center>(0,0,6)</center><radius>1</radius><color>(255,0,0)</color></sphere></shapes>"
+                + "<lights><point-light><position>(0,5,0)</position><color>(255,255,255)</color><intensity>100</intensity><animation>"
+                + "<keyframe><frame>0</frame><intensity>100</intensity></keyframe><keyframe><frame>2</frame><intensity>300</intensity></keyframe>"
+                + "</animation></point-light></lights></elements>");
+        String output = directory.resolve("frames/frame%02d.png").toString();
+        assertEquals(0, AnimationRenderer.run(new String[]{"--scene", scenePath.toString(), "--output", output, "--height", "8", "--samples", "1"}));
+        for(int frame = 0; frame < 3; frame++) {
+            assertTrue(Files.exists(directory.resolve("frames/frame0" + frame + ".png")));
+        }
+        assertFalse(Files.exists(directory.resolve("frames/frame03.png")));
+
+        assertEquals(0, AnimationRenderer.run(new String[]{"--frames", "5-6", "--scene", scenePath.toString(), "--output", output, "--height", "8", "--samples", "1"}));
+        assertTrue(Files.exists(directory.resolve("frames/frame06.png")));
+        assertArrayEquals(new int[]{4, 4}, AnimationRenderer.parseFrames("4"));
+        assertEquals(2, AnimationRenderer.run(new String[]{"--frames", "3-1", "--scene", scenePath.toString(), "--output", output}));
+        assertEquals(2, AnimationRenderer.run(new String[]{"--scene", scenePath.toString(), "--output", directory.resolve("frame.png").toString()}));
+    }
+}
@@ -0,0 +1,165 @@
+package farm;
+
+import org.junit.jupiter.api.Test;
+import rendering.Camera;
+import rendering.farm.FarmProtocol;
+import rendering.farm.RenderFarmCoordinator;
+import rendering.farm.RenderFarmWorker;
+import rendering.sampling.SamplerType;
+import rendering.tracing.Scene;
+import rendering.utility.Vector3D;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderFarmTest {
+    private static final String scenePath = new File("src/main/resources/scene descriptions/spheres_and_triangles_scene.xml").getAbsolutePath();
+
+    @Test
+    void workerProcessesRenderTheSameImage() throws Exception {
+        Camera camera = new Camera(4, 2, 1.5, 24, 3, 2, 8, 1);
+        Camera posedCamera = camera.withSampler(SamplerType.HALTON).withAdaptiveSampling(0.05, 2)
+                .withPose(new Vector3D(1, 1, 0), new Vector3D(0, 0, 6));
+
+        ArrayList<Process> workers = new ArrayList<>();
+        try(RenderFarmCoordinator coordinator = new RenderFarmCoordinator(0, 60 * 1000)) {
+            /// two worker processes, which render all tiles
+            for(int i = 0; i < 2; i++) {
+                workers.add(new ProcessBuilder(
+                        new File(System.getProperty("java.home"), "bin/java").getPath(), "--add-modules", "jdk.incubator.vector",
+                        "-cp", System.getProperty("java.class.path"),
+                        "cli.FarmWorker", "--coordinator", "localhost:" + coordinator.getPort(), "--threads", "1")
+                        .inheritIO().start());
+            }
+
+            ArrayList<Double> progress = new ArrayList<>();
+            BufferedImage image = coordinator.render(RenderFarmTest.scenePath, camera, progress::add);
+            RenderFarmTest.assertSameImage(camera.renderWithCPUCoreParallelization(Scene.load(RenderFarmTest.scenePath), null), image);
+            assertEquals(1.0, progress.get(progress.size() - 1));
+
+            /// the workers stay connected for the next render, with another camera
+            image = coordinator.render(RenderFarmTest.scenePath, posedCamera, null);
+            RenderFarmTest.assertSameImage(posedCamera.renderWithCPUCoreParallelization(Scene.load(RenderFarmTest.scenePath), null), image);
+        }
+        finally {
+            for(Process process : workers) {
+                if(!process.waitFor(30, TimeUnit.SECONDS)) {
+                    process.destroyForcibly();
+                }
+            }
+        }
+        for(Process process : workers) {
+            assertEquals(0, process.exitValue());
+        }
+    }
+
+    @Test
+    void tilesOfLostWorkersAreRenderedAgain() throws Exception {
+        Camera camera = new Camera(4, 2, 1, 16, 2, 1, 4, 1);
+        AtomicReference<FutureTask<Void>> worker = new AtomicReference<>();
+        try(RenderFarmCoordinator coordinator = new RenderFarmCoordinator(0, 60 * 1000)) {
+            int port = coordinator.getPort();
+            /// a worker that takes tiles, and disconnects without rendering them
+            FutureTask<Void> lostWorker = new FutureTask<>(() -> {
+                try(SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+                    ByteBuffer hello = FarmProtocol.createMessage(FarmProtocol.hello, 8);
+                    FarmProtocol.writeMessage(channel, hello.putInt(FarmProtocol.magic).putInt(FarmProtocol.version).flip());
+                    ByteBuffer setup = FarmProtocol.readMessage(channel);
+                    assertEquals(FarmProtocol.setup, setup.get());
+                    long renderId = setup.getLong();
+                    for(int i = 0; i < 3; i++) {
+                        FarmProtocol.writeMessage(channel, FarmProtocol.createMessage(FarmProtocol.request, 8).putLong(renderId).flip());
+                    }
+                    for(int i = 0; i < 3; i++) {
+                        assertEquals(FarmProtocol.tile, FarmProtocol.readMessage(channel).get());
+                    }
+                }
+                finally {
+                    /// only then the real worker starts (even if the checks above failed, so that the render does not wait for it)
+                    worker.set(RenderFarmTest.startWorker(port));
+                }
+                return null;
+            });
+            new Thread(lostWorker).start();
+
+            BufferedImage image = coordinator.render(RenderFarmTest.scenePath, camera, null);
+            RenderFarmTest.await(lostWorker);
+            RenderFarmTest.assertSameImage(camera.renderWithCPUCoreParallelization(Scene.load(RenderFarmTest.scenePath), null), image);
+            assertEquals(1, coordinator.getNumberOfWorkers());
+        }
+        /// the worker stops once the coordinator is closed
+        RenderFarmTest.await(worker.get());
+
+        /// a render without workers times out
+        try(RenderFarmCoordinator coordinator = new RenderFarmCoordinator(0, 200)) {
+            assertThrows(IOException.class, () -> coordinator.render(RenderFarmTest.scenePath, camera, null));
+        }
+    }
+
+    @Test
+    void workersThatFailAreDropped() throws Exception {
+        Camera camera = new Camera(4, 2, 1, 16, 2, 1, 4, 1);
+        FutureTask<Void> worker;
+        try(RenderFarmCoordinator coordinator = new RenderFarmCoordinator(0, 2000)) {
+            worker = RenderFarmTest.startWorker(coordinator.getPort());
+            /// the worker can not load the scene, so the render times out without workers
+            IOException exception = assertThrows(IOException.class, () -> coordinator.render(new File("missing_scene.xml").getAbsolutePath(), camera, null));
+            assertTrue(exception.getMessage().contains("failed to load scene"), exception.getMessage());
+            assertEquals(0, coordinator.getNumberOfWorkers());
+        }
+        /// and the worker fails as well, rather than stopping as if the coordinator was closed
+        IOException exception = assertThrows(IOException.class, () -> RenderFarmTest.await(worker));
+        assertTrue(exception.getMessage().contains("failed to load scene"), exception.getMessage());
+    }
+
+    /*
+       Method that starts a worker in this process, which
+       runs until the coordinator closes the connection.
+     */
+    private static FutureTask<Void> startWorker(int port) {
+        FutureTask<Void> worker = new FutureTask<>(() -> {
+            new RenderFarmWorker(1).run(new InetSocketAddress("localhost", port));
+            return null;
+        });
+        Thread thread = new Thread(worker);
+        thread.setDaemon(true);
+        thread.start();
+        return worker;
+    }
+    /*
+       Method that waits for a task run on another thread, and
+       rethrows what it failed with (e.g. a failed assertion).
+     */
+    private static void await(FutureTask<Void> task) throws Exception {
+        try {
+            task.get(30, TimeUnit.SECONDS);
+        }
+        catch (ExecutionException e) {
+            if(e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "pixel (" + x + ", " + y + ")");
+            }
+        }
+    }
+}
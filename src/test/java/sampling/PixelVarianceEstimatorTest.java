@@ -0,0 +1,44 @@
+package sampling;
+
+import org.junit.jupiter.api.Test;
+import rendering.sampling.PixelVarianceEstimator;
+import rendering.utility.RTColor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PixelVarianceEstimatorTest {
+
+    @Test
+    void getStandardError() {
+        PixelVarianceEstimator estimator = new PixelVarianceEstimator();
+        estimator.addSample(new RTColor(0.2, 0.5, 0.0));
+        assertEquals(Double.POSITIVE_INFINITY, estimator.getStandardError());
+
+        estimator.addSample(new RTColor(0.4, 0.5, 0.0));
+        estimator.addSample(new RTColor(0.6, 0.5, 0.0));
+        /// red has the largest variance, 0.04, so the standard error is sqrt(0.04 / 3)
+        assertEquals(3, estimator.getNumberOfSamples());
+        assertEquals(Math.sqrt(0.04 / 3), estimator.getStandardError(), 1e-12);
+
+        /// values are clipped to 0.0 to 1.0 before computing the variance
+        estimator.reset();
+        estimator.addSample(new RTColor(5.0, 0, 0));
+        estimator.addSample(new RTColor(1.0, 0, 0));
+        assertEquals(0, estimator.getStandardError(), 1e-12);
+    }
+
+    @Test
+    void hasConverged() {
+        PixelVarianceEstimator estimator = new PixelVarianceEstimator();
+        for(int i = 0; i < 3; i++) {
+            estimator.addSample(RTColor.gray);
+        }
+        assertTrue(estimator.hasConverged(3, 0));
+        /// not before the minimum number of samples
+        assertFalse(estimator.hasConverged(4, 0));
+
+        estimator.addSample(RTColor.white);
+        assertFalse(estimator.hasConverged(2, 0.01));
+        assertTrue(estimator.hasConverged(2, 0.5));
+    }
+}
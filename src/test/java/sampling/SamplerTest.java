@@ -0,0 +1,137 @@
+package sampling;
+
+import org.junit.jupiter.api.Test;
+import rendering.sampling.HaltonSampler;
+import rendering.sampling.IndependentSampler;
+import rendering.sampling.Sampler;
+import rendering.sampling.SamplerType;
+import rendering.sampling.SamplingUtility;
+import rendering.sampling.SobolSampler;
+import rendering.sampling.StratifiedSampler;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SamplerTest {
+
+    /// values of the first 'numberOfDimensions' dimensions of the first 'numberOfSamples' samples of pixel (x,y)
+    private static double[][] samples(Sampler sampler, int x, int y, int numberOfSamples, int numberOfDimensions) {
+        double[][] values = new double[numberOfSamples][numberOfDimensions];
+        for(int s = 0; s < numberOfSamples; s++) {
+            sampler.startPixelSample(x, y, s);
+            for(int d = 0; d < numberOfDimensions; d++) {
+                values[s][d] = sampler.next();
+                assertTrue(values[s][d] >= 0 && values[s][d] < 1);
+            }
+        }
+        return values;
+    }
+
+    /// true iff every cell of the 'columns' X 'rows' grid has the same number of points in dimensions d and d+1
+    private static boolean isStratified(double[][] values, int d, int columns, int rows) {
+        int[] counts = new int[columns * rows];
+        for(double[] value : values) {
+            counts[(int) (value[d + 1] * rows) * columns + (int) (value[d] * columns)]++;
+        }
+        for(int count : counts) {
+            if(count != counts[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void stratifiedSampler() {
+        double[][] values = SamplerTest.samples(new StratifiedSampler(4), 3, 7, 16, 6);
+        /// one sample in every sub-pixel, and in every stratum of the other pairs
+        assertTrue(SamplerTest.isStratified(values, 0, 4, 4));
+        assertTrue(SamplerTest.isStratified(values, 2, 4, 4));
+        assertTrue(SamplerTest.isStratified(values, 4, 4, 4));
+        /// the first 4 samples are in different rows and columns of the sub-pixels
+        double[][] firstValues = SamplerTest.samples(new StratifiedSampler(4), 3, 7, 4, 2);
+        assertTrue(SamplerTest.isStratified(firstValues, 0, 4, 1));
+        assertTrue(SamplerTest.isStratified(firstValues, 0, 1, 4));
+    }
+
+    @Test
+    void sobolSampler() {
+        for(int[] pixel : new int[][]{{0, 0}, {5, 9}, {123, 45}}) {
+            double[][] values = SamplerTest.samples(new SobolSampler(16), pixel[0], pixel[1], 16, 6);
+            /// every pair is a (0,4,2)-net, i.e. stratified in all grids of 16 cells
+            for(int d = 0; d < 6; d += 2) {
+                for(int a = 0; a <= 4; a++) {
+                    assertTrue(SamplerTest.isStratified(values, d, 1 << a, 1 << (4 - a)));
+                }
+            }
+            /// and so are the first 4 samples in the pixel
+            double[][] firstValues = SamplerTest.samples(new SobolSampler(16), pixel[0], pixel[1], 4, 2);
+            assertTrue(SamplerTest.isStratified(firstValues, 0, 2, 2));
+        }
+
+        /// deterministic, and different for different pixels
+        double[][] values = SamplerTest.samples(new SobolSampler(16), 5, 9, 16, 6);
+        assertArrayEquals(values[7], SamplerTest.samples(new SobolSampler(16), 5, 9, 16, 6)[7]);
+        assertNotEquals(values[7][0], SamplerTest.samples(new SobolSampler(16), 6, 9, 16, 6)[7][0]);
+    }
+
+    @Test
+    void haltonSampler() {
+        double[][] values = SamplerTest.samples(new HaltonSampler(16), 5, 9, 16, 4);
+        /// the first dimension is stratified in 16 intervals, the second in 9
+        assertTrue(SamplerTest.isStratified(values, 0, 16, 1));
+        double[][] firstValues = SamplerTest.samples(new HaltonSampler(9), 5, 9, 9, 2);
+        assertTrue(SamplerTest.isStratified(firstValues, 0, 1, 9));
+
+        assertArrayEquals(values[3], SamplerTest.samples(new HaltonSampler(16), 5, 9, 16, 4)[3]);
+    }
+
+    @Test
+    void lowerErrorThanIndependentSampling() {
+        /// estimate the area of a quarter disk (pi / 4) with 64 samples in each of 100 pixels
+        double[] rootMeanSquareErrors = new double[SamplerType.values().length];
+        for(SamplerType samplerType : SamplerType.values()) {
+            Sampler sampler = samplerType.create(8);
+            double squaredErrorSum = 0;
+            for(int pixel = 0; pixel < 100; pixel++) {
+                int hits = 0;
+                for(double[] value : SamplerTest.samples(sampler, pixel, 0, 64, 2)) {
+                    if(value[0] * value[0] + value[1] * value[1] < 1) {
+                        hits++;
+                    }
+                }
+                squaredErrorSum += Math.pow(hits / 64.0 - Math.PI / 4, 2);
+            }
+            rootMeanSquareErrors[samplerType.ordinal()] = Math.sqrt(squaredErrorSum / 100);
+        }
+
+        /// independent sampling has an error of about sqrt(p * (1 - p) / 64) = 0.05, the others about 0.02
+        assertTrue(rootMeanSquareErrors[SamplerType.INDEPENDENT.ordinal()] > 0.035);
+        assertTrue(rootMeanSquareErrors[SamplerType.STRATIFIED.ordinal()] < 0.03);
+        assertTrue(rootMeanSquareErrors[SamplerType.HALTON.ordinal()] < 0.03);
+        assertTrue(rootMeanSquareErrors[SamplerType.SOBOL.ordinal()] < 0.03);
+    }
+
+    @Test
+    void forCurrentThread() {
+        assertInstanceOf(IndependentSampler.class, Sampler.forCurrentThread());
+        Sampler sampler = new SobolSampler(4);
+        Sampler.setForCurrentThread(sampler);
+        assertSame(sampler, Sampler.forCurrentThread());
+        Sampler.setForCurrentThread(null);
+        assertInstanceOf(IndependentSampler.class, Sampler.forCurrentThread());
+    }
+
+    @Test
+    void permutationElement() {
+        for(int l : new int[]{1, 5, 16, 25}) {
+            boolean[] seen = new boolean[l];
+            for(int i = 0; i < l; i++) {
+                int element = SamplingUtility.permutationElement(i, l, 0x12345678);
+                assertFalse(seen[element]);
+                seen[element] = true;
+            }
+        }
+        assertEquals(0.25, SamplingUtility.radicalInverse(2, 2), 1e-15);
+        assertEquals(1.0 / 9, SamplingUtility.radicalInverse(3, 3), 1e-15);
+    }
+}
@@ -0,0 +1,30 @@
+package scheduling;
+
+import org.junit.jupiter.api.Test;
+import rendering.scheduling.AccumulationBuffer;
+import rendering.utility.RTColor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccumulationBufferTest {
+
+    @Test
+    void addSample() {
+        AccumulationBuffer buffer = new AccumulationBuffer(3, 2);
+        assertEquals(0, buffer.getSampleCount(2, 1));
+        assertEquals(0, buffer.getAverage(2, 1).getRed(), 1e-12);
+
+        buffer.addSample(2, 1, new RTColor(1.0, 0.5, 0));
+        buffer.addSample(2, 1, new RTColor(2.0, 0, 0.25));
+        assertEquals(2, buffer.getSampleCount(2, 1));
+        RTColor average = buffer.getAverage(2, 1);
+        /// colors are averaged before they are clipped
+        assertEquals(1.5, average.getRed(), 1e-12);
+        assertEquals(0.25, average.getGreen(), 1e-12);
+        assertEquals(0.125, average.getBlue(), 1e-12);
+
+        /// other pixels are not affected
+        assertEquals(0, buffer.getSampleCount(1, 1));
+        assertEquals(0, buffer.getSampleCount(2, 0));
+    }
+}
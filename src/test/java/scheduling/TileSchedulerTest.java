@@ -0,0 +1,82 @@
+package scheduling;
+
+import org.junit.jupiter.api.Test;
+import rendering.scheduling.Framebuffer;
+import rendering.scheduling.Tile;
+import rendering.scheduling.TileScheduler;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TileSchedulerTest {
+
+    @Test
+    void createTiles() {
+        TileScheduler scheduler = new TileScheduler(32, 4);
+        ArrayList<Tile> tiles = scheduler.createTiles(100, 70);
+        /// 4 columns (32, 32, 32, 4) and 3 rows (32, 32, 6)
+        assertEquals(12, tiles.size());
+
+        int[][] covered = new int[70][100];
+        for(Tile tile : tiles) {
+            assertTrue(tile.getWidth() <= 32 && tile.getHeight() <= 32);
+            for(int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+                for(int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+                    covered[y][x]++;
+                }
+            }
+        }
+        for(int[] row : covered) {
+            for(int count : row) {
+                assertEquals(1, count);
+            }
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new TileScheduler(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new TileScheduler(16, 0));
+    }
+
+    @Test
+    void render() {
+        TileScheduler scheduler = new TileScheduler(16, 4);
+        Framebuffer framebuffer = new Framebuffer(101, 57);
+        BufferedImage image = new BufferedImage(101, 57, BufferedImage.TYPE_INT_RGB);
+        AtomicInteger finishedTiles = new AtomicInteger();
+        double[] lastProgress = new double[1];
+
+        scheduler.render(framebuffer, (int x, int y) -> (x << 8) | y,
+                (tile) -> {
+                    framebuffer.copyTileInto(image, tile);
+                    finishedTiles.incrementAndGet();
+                },
+                (Double done) -> {
+                    synchronized(lastProgress) {
+                        lastProgress[0] = Math.max(lastProgress[0], done);
+                    }
+                });
+
+        assertEquals(scheduler.createTiles(101, 57).size(), finishedTiles.get());
+        assertEquals(1, lastProgress[0], 1e-9);
+        for(int y = 0; y < 57; y++) {
+            for(int x = 0; x < 101; x++) {
+                assertEquals((x << 8) | y, framebuffer.getRGB(x, y));
+                assertEquals((x << 8) | y, image.getRGB(x, y) & 0xFFFFFF);
+            }
+        }
+    }
+
+    @Test
+    void renderRethrowsExceptions() {
+        TileScheduler scheduler = new TileScheduler(8, 2);
+        Framebuffer framebuffer = new Framebuffer(20, 20);
+        assertThrows(RuntimeException.class, () -> scheduler.render(framebuffer, (int x, int y) -> {
+            if(x == 13 && y == 7) {
+                throw new IllegalStateException();
+            }
+            return 0;
+        }, null, null));
+    }
+}
@@ -0,0 +1,100 @@
+package shapes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.shading.Material;
+import rendering.shapes.MeshCache;
+import rendering.shapes.MeshInstance;
+import rendering.shapes.TriangleMesh;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.Matrix4D;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshCacheTest {
+    private static final String towerPath = "src/main/resources/meshes/tower.obj";
+
+    @Test
+    void meshesAreCachedByFileAndTransformation(@TempDir Path directory) throws IOException {
+        MeshCache.clear();
+        Matrix4D transformation = Matrix4D.getTranslationMatrix(new Vector3D(1, 2, 3));
+        TriangleMesh first = MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformation);
+        TriangleMesh second = MeshCacheTest.loadMesh(MeshCacheTest.towerPath, Matrix4D.getTranslationMatrix(new Vector3D(1, 2, 3)));
+        assertSame(first.getGeometry(), second.getGeometry());
+        assertEquals(1, MeshCache.getStatistics().getMisses());
+        assertEquals(1, MeshCache.getStatistics().getHits());
+
+        /// a different transformation, precision or file, or the object coordinates of instances, are different geometries
+        assertNotSame(first.getGeometry(), MeshCacheTest.loadMesh(MeshCacheTest.towerPath, Matrix4D.identity).getGeometry());
+        assertNotSame(first.getGeometry(), new TriangleMesh(MeshCacheTest.towerPath, transformation, RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.FLOAT).getGeometry());
+        MeshInstance instance = new MeshInstance(MeshCacheTest.towerPath, transformation, RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.DOUBLE);
+        assertSame(instance.getGeometry(), new MeshInstance(MeshCacheTest.towerPath, Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.DOUBLE).getGeometry());
+        assertEquals(4, MeshCache.getStatistics().getMisses());
+        assertEquals(2, MeshCache.getStatistics().getHits());
+        assertEquals(4, MeshCache.getStatistics().getEntries());
+
+        /// a modified file is loaded anew
+        Path copy = directory.resolve("tower.obj");
+        Files.copy(Path.of(MeshCacheTest.towerPath), copy);
+        TriangleMesh copied = MeshCacheTest.loadMesh(copy.toString(), transformation);
+        assertSame(copied.getGeometry(), MeshCacheTest.loadMesh(copy.toString(), transformation).getGeometry());
+        assertTrue(copy.toFile().setLastModified(copy.toFile().lastModified() + 10000));
+        assertNotSame(copied.getGeometry(), MeshCacheTest.loadMesh(copy.toString(), transformation).getGeometry());
+
+        MeshCache.clear();
+        assertEquals(0, MeshCache.getStatistics().getEntries());
+        assertEquals(0, MeshCache.getStatistics().getSizeInBytes());
+    }
+
+    @Test
+    void leastRecentlyUsedMeshesAreEvicted() throws IOException {
+        MeshCache.clear();
+        long budget = MeshCache.getBudget();
+        try {
+            Matrix4D[] transformations = new Matrix4D[3];
+            for(int i = 0; i < 3; i++) {
+                transformations[i] = Matrix4D.getTranslationMatrix(new Vector3D(i, 0, 0));
+            }
+            TriangleMesh first = MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[0]);
+            long size = first.getGeometry().getSizeInBytes();
+            MeshCache.setBudget(2 * size);
+
+            TriangleMesh second = MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[1]);
+            /// use the first mesh again, so that the second one is the least recently used
+            MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[0]);
+            MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[2]);
+
+            MeshCache.Statistics statistics = MeshCache.getStatistics();
+            assertEquals(1, statistics.getEvictions());
+            assertEquals(2, statistics.getEntries());
+            assertEquals(2 * size, statistics.getSizeInBytes());
+            assertSame(first.getGeometry(), MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[0]).getGeometry());
+
+            /// an evicted geometry still in use is shared rather than loaded anew
+            assertSame(second.getGeometry(), MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[1]).getGeometry());
+            assertEquals(3, MeshCache.getStatistics().getMisses());
+
+            /// without a budget nothing stays cached, not even the geometries still in use
+            MeshCache.setBudget(0);
+            assertEquals(0, MeshCache.getStatistics().getEntries());
+            assertNotSame(second.getGeometry(), MeshCacheTest.loadMesh(MeshCacheTest.towerPath, transformations[1]).getGeometry());
+            assertEquals(0, MeshCache.getStatistics().getEntries());
+            assertEquals(4, MeshCache.getStatistics().getMisses());
+            assertThrows(IllegalArgumentException.class, () -> MeshCache.setBudget(-1));
+        }
+        finally {
+            MeshCache.setBudget(budget);
+            MeshCache.clear();
+        }
+    }
+
+    private static TriangleMesh loadMesh(String path, Matrix4D transformation) throws IOException {
+        return new TriangleMesh(path, transformation, RTColor.red, Material.defaultNonReflectiveMaterial);
+    }
+}
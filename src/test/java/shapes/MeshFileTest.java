@@ -0,0 +1,235 @@
+package shapes;
+
+import de.javagl.obj.Obj;
+import de.javagl.obj.ObjData;
+import de.javagl.obj.ObjReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.shading.Material;
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.MeshFile;
+import rendering.shapes.TriangleMesh;
+import rendering.tracing.Intersection;
+import rendering.tracing.Ray;
+import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
+import rendering.utility.Matrix3D;
+import rendering.utility.Matrix4D;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshFileTest {
+    private static final String meshesDirectory = "src/main/resources/meshes/";
+
+    @Test
+    void objParserMatchesReferenceParser() throws IOException {
+        for(String name : new String[]{"pawnFlatShaded", "pawnAutoSmoothShaded", "house", "tower"}) {
+            Obj obj;
+            try(InputStream inputStream = new FileInputStream(MeshFileTest.meshesDirectory + name + ".obj")) {
+                obj = ObjReader.read(inputStream);
+            }
+            MeshFile meshFile = MeshFile.readObj(MeshFileTest.meshesDirectory + name + ".obj", null);
+            assertArrayEquals(MeshFileTest.toDoubles(ObjData.getVerticesArray(obj)), meshFile.getVertexPositions());
+            assertArrayEquals(MeshFileTest.toDoubles(ObjData.getNormalsArray(obj)), meshFile.getVertexNormals());
+            assertArrayEquals(ObjData.getFaceVertexIndicesArray(obj), meshFile.getFaceVertexIndices());
+            assertArrayEquals(ObjData.getFaceNormalIndicesArray(obj), meshFile.getFaceNormalIndices());
+            assertNull(meshFile.getHierarchy());
+        }
+    }
+
+    @Test
+    void objParserParsesChunksInParallel(@TempDir Path directory) throws IOException {
+        /// a file of several chunks, with quads, negative indices, comments, other statements and Windows line ends
+        Random rnd = new Random(2);
+        StringBuilder obj = new StringBuilder("# generated\r\nmtllib none.mtl\r\no Grid\r\n");
+        int numberOfQuads = 40000;
+        float[] coordinates = new float[3 * 4 * numberOfQuads];
+        for(int quad = 0; quad < numberOfQuads; quad++) {
+            for(int i = 0; i < 12; i++) {
+                coordinates[12*quad+i] = (float) (rnd.nextDouble() * 200 - 100);
+                obj.append(i % 3 == 0 ? "v" : "").append(' ').append(coordinates[12*quad+i]).append(i % 3 == 2 ? "\r\n" : "");
+            }
+            obj.append("vt 0.5 0.5\r\nvn 0 0 1\r\ns off\r\n");
+            if(quad % 2 == 0) {
+                obj.append("f -4/1/-1 -3/1/-1 -2/1/-1 -1/1/-1  # relative\r\n");
+            }
+            else {
+                obj.append("\tf ").append(4*quad+1).append("//").append(quad+1).append(' ').append(4*quad+2).append("//").append(quad+1)
+                        .append(' ').append(4*quad+3).append("//").append(quad+1).append(' ').append(4*quad+4).append("//").append(quad+1).append("\r\n");
+            }
+        }
+        Path objPath = directory.resolve("grid.obj");
+        Files.writeString(objPath, obj, StandardCharsets.US_ASCII);
+        assertTrue(Files.size(objPath) > 4 << 20);
+
+        Matrix4D transformation = Matrix4D.getRotationMatrixAboutZ(0.3).multiplyFromRight(Matrix4D.getScalingMatrix(new Vector3D(1, 2, 4)));
+        Vector3D n = (new Matrix3D(transformation)).getInverse().transposed().multiplyFromRight(new Vector3D(0, 0, 1));
+        MeshFile meshFile = MeshFile.readObj(objPath.toString(), transformation);
+        assertEquals(3 * 4 * numberOfQuads, meshFile.getVertexPositions().length);
+        assertEquals(3 * numberOfQuads, meshFile.getVertexNormals().length);
+        assertEquals(3 * 2 * numberOfQuads, meshFile.getFaceVertexIndices().length);
+        for(int quad = 0; quad < numberOfQuads; quad++) {
+            for(int i = 0; i < 4; i++) {
+                Vector3D v = transformation.multiplyFromRight(new Vector3D(coordinates[12*quad+3*i], coordinates[12*quad+3*i+1], coordinates[12*quad+3*i+2]));
+                assertEquals(v.getX(), meshFile.getVertexPositions()[3*(4*quad+i)]);
+                assertEquals(v.getY(), meshFile.getVertexPositions()[3*(4*quad+i)+1]);
+                assertEquals(v.getZ(), meshFile.getVertexPositions()[3*(4*quad+i)+2]);
+            }
+            assertEquals(n.getX(), meshFile.getVertexNormals()[3*quad]);
+            assertEquals(n.getY(), meshFile.getVertexNormals()[3*quad+1]);
+            assertEquals(n.getZ(), meshFile.getVertexNormals()[3*quad+2]);
+            /// the quad is split into the triangles (1, 2, 3) and (1, 3, 4)
+            int[] expected = {0, 1, 2, 0, 2, 3};
+            for(int i = 0; i < 6; i++) {
+                assertEquals(4*quad + expected[i], meshFile.getFaceVertexIndices()[6*quad+i]);
+                assertEquals(quad, meshFile.getFaceNormalIndices()[6*quad+i]);
+            }
+        }
+
+        /// transformed meshes can not be written to binary mesh files
+        assertThrows(IllegalStateException.class, () -> meshFile.writeBinary(directory.resolve("grid" + MeshFile.fileExtension).toString(), IntersectionKernel.SCALAR));
+    }
+
+    @Test
+    void objParserParsesNumbersAsFloatParseFloat(@TempDir Path directory) throws IOException {
+        String[] numbers = {"0", "-0.000000", "1.000000", "-0.163700", "+2.5", ".5", "5.", "1e-3", "-1.5E+2", "0.1", "0.30000001192092896",
+                "3.4028235e38", "1.4e-45", "123456789012345678901234", "0.000000000000000000000000001", "16777217", "33554435", "NaN", "-Infinity"};
+        Random rnd = new Random(9);
+        StringBuilder obj = new StringBuilder();
+        for(String number : numbers) {
+            obj.append("v ").append(number).append(' ').append(number).append(' ').append(number).append('\n');
+        }
+        float[] randomValues = new float[3000];
+        for(int i = 0; i < randomValues.length; i++) {
+            randomValues[i] = (float) (rnd.nextGaussian() * Math.pow(10, rnd.nextInt(10) - 5));
+            obj.append(i % 3 == 0 ? "v" : "").append(' ').append(String.format("%.9f", randomValues[i])).append(i % 3 == 2 ? "\n" : "");
+        }
+        obj.append("f 1 2 3\n");
+        Path objPath = directory.resolve("numbers.obj");
+        Files.writeString(objPath, obj, StandardCharsets.US_ASCII);
+
+        double[] vertexPositions = MeshFile.readObj(objPath.toString(), null).getVertexPositions();
+        for(int i = 0; i < numbers.length; i++) {
+            assertEquals(Float.parseFloat(numbers[i]), (float) vertexPositions[3*i], numbers[i]);
+        }
+        for(int i = 0; i < randomValues.length; i++) {
+            assertEquals(Float.parseFloat(String.format("%.9f", randomValues[i])), (float) vertexPositions[3 * numbers.length + i]);
+        }
+    }
+
+    @Test
+    void objParserRejectsInvalidFiles(@TempDir Path directory) throws IOException {
+        Path objPath = directory.resolve("invalid.obj");
+        String vertices = "v 0 0 0\nv 1 0 0\nv 0 1 0\nvn 0 0 1\n";
+        for(String invalid : new String[]{"f 1 2 4\n", "f 1 2 0\n", "f -4 2 3\n", "f 1 2\n", "f 1//1 2//1 3\n", "f 1//1 2//1 3//1\nf 1 2 3\n",
+                "f 1 2 3//2\n", "f 1 2 x\n", "v 1 2\n", "v 1 2 z\n"}) {
+            Files.writeString(objPath, vertices + invalid, StandardCharsets.US_ASCII);
+            assertThrows(IOException.class, () -> MeshFile.readObj(objPath.toString(), null), invalid);
+        }
+        assertThrows(IOException.class, () -> MeshFile.readObj(directory.resolve("missing.obj").toString(), null));
+
+        /// flat shaded meshes have no normal indices
+        Files.writeString(objPath, vertices + "f 1 2 3\n", StandardCharsets.US_ASCII);
+        assertNull(MeshFile.readObj(objPath.toString(), null).getFaceNormalIndices());
+    }
+
+    @Test
+    void binaryMeshFileMatchesObjFile(@TempDir Path directory) throws IOException {
+        Matrix4D transformation = Matrix4D.getRotationMatrixAboutY(0.7).multiplyFromRight(Matrix4D.getScalingMatrix(new Vector3D(1.5, 0.5, 2)));
+        for(String name : new String[]{"pawnFlatShaded", "pawnAutoSmoothShaded", "house"}) {
+            String binaryPath = directory.resolve(name + MeshFile.fileExtension).toString();
+            MeshFile objFile = MeshFile.readObj(MeshFileTest.meshesDirectory + name + ".obj", null);
+            objFile.writeBinary(binaryPath, IntersectionKernel.getDefault());
+
+            MeshFile binaryFile = MeshFile.read(binaryPath, null);
+            assertArrayEquals(objFile.getVertexPositions(), binaryFile.getVertexPositions());
+            assertArrayEquals(objFile.getVertexNormals(), binaryFile.getVertexNormals());
+            assertArrayEquals(objFile.getFaceVertexIndices(), binaryFile.getFaceVertexIndices());
+            assertArrayEquals(objFile.getFaceNormalIndices(), binaryFile.getFaceNormalIndices());
+            assertNull(objFile.getHierarchy());
+            assertEquals(objFile.getFaceVertexIndices().length / 3, binaryFile.getHierarchy().getNumberOfPrimitives());
+
+            TriangleMesh objMesh = new TriangleMesh(MeshFileTest.meshesDirectory + name + ".obj", transformation, RTColor.red, Material.defaultNonReflectiveMaterial);
+            TriangleMesh binaryMesh = new TriangleMesh(binaryPath, transformation, RTColor.red, Material.defaultNonReflectiveMaterial);
+            assertEquals(objMesh.getGeometry().getNumberOfTriangles(), binaryMesh.getGeometry().getNumberOfTriangles());
+            Random rnd = new Random(11);
+            for(int k = 0; k < 500; k++) {
+                Ray r = new Ray(new Vector3D(rnd.nextDouble() * 6 - 3, rnd.nextDouble() * 6 - 1, -10), new Vector3D(rnd.nextDouble() * 0.2 - 0.1, rnd.nextDouble() * 0.2 - 0.1, 1));
+                Intersection expected = objMesh.intersect(r);
+                Intersection actual = binaryMesh.intersect(r);
+                if(expected == null) {
+                    assertNull(actual);
+                }
+                else {
+                    assertNotNull(actual);
+                    assertEquals(r.distance(expected.getIntersectionPoint()), r.distance(actual.getIntersectionPoint()), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    void parseShapeAcceptsBinaryMeshFiles(@TempDir Path directory) throws IOException, IncorrectSceneDescriptionXMLStructureException {
+        String objPath = MeshFileTest.meshesDirectory + "pawnAutoSmoothShaded.obj";
+        String binaryPath = directory.resolve("pawn" + MeshFile.fileExtension).toString();
+        MeshFile.readObj(objPath, null).writeBinary(binaryPath, IntersectionKernel.getDefault());
+
+        for(String attribute : new String[]{"path-to-obj-file", "path-to-mesh-file"}) {
+            TriangleMesh tm = TriangleMesh.parseShape(Map.of(attribute, binaryPath, "color", "(255,0,0)", "material", "brass"), Matrix4D.identity);
+            assertEquals(MeshFile.readObj(objPath, null).getFaceVertexIndices().length / 3, tm.getGeometry().getNumberOfTriangles());
+        }
+        assertThrows(IncorrectSceneDescriptionXMLStructureException.class, () -> TriangleMesh.parseShape(Map.of("path-to-obj-file", objPath,
+                "path-to-mesh-file", binaryPath, "color", "(255,0,0)", "material", "brass"), Matrix4D.identity));
+    }
+
+    @Test
+    void invalidBinaryMeshFilesAreRejected(@TempDir Path directory) throws IOException {
+        Path binaryPath = directory.resolve("pawn" + MeshFile.fileExtension);
+        MeshFile.readObj(MeshFileTest.meshesDirectory + "pawnFlatShaded.obj", null).writeBinary(binaryPath.toString(), IntersectionKernel.getDefault());
+        byte[] bytes = Files.readAllBytes(binaryPath);
+
+        /// an OBJ file is not a binary mesh file
+        Path objPath = directory.resolve("pawn.obj" + MeshFile.fileExtension);
+        Files.copy(Path.of(MeshFileTest.meshesDirectory + "pawnFlatShaded.obj"), objPath);
+        assertThrows(IOException.class, () -> MeshFile.read(objPath.toString(), null));
+
+        /// another version of the format
+        byte[] otherVersion = bytes.clone();
+        otherVersion[4]++;
+        Files.write(binaryPath, otherVersion);
+        assertThrows(IOException.class, () -> MeshFile.read(binaryPath.toString(), null));
+
+        /// truncated
+        Files.write(binaryPath, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> MeshFile.read(binaryPath.toString(), null));
+
+        /// the first face vertex index out of range (after the magic number, version, and both coordinate arrays)
+        byte[] outOfRange = bytes.clone();
+        int vertexCoordinates = (bytes[8] & 0xFF) | (bytes[9] & 0xFF) << 8 | (bytes[10] & 0xFF) << 16 | (bytes[11] & 0xFF) << 24;
+        int offset = 12 + 4 * vertexCoordinates;
+        int normalCoordinates = (bytes[offset] & 0xFF) | (bytes[offset+1] & 0xFF) << 8 | (bytes[offset+2] & 0xFF) << 16 | (bytes[offset+3] & 0xFF) << 24;
+        offset += 4 + 4 * normalCoordinates + 4;
+        outOfRange[offset + 3] = 0x7F;
+        Files.write(binaryPath, outOfRange);
+        assertThrows(IOException.class, () -> MeshFile.read(binaryPath.toString(), null));
+    }
+
+    private static double[] toDoubles(float[] values) {
+        double[] doubles = new double[values.length];
+        for(int i = 0; i < values.length; i++) {
+            doubles[i] = values[i];
+        }
+        return doubles;
+    }
+}
@@ -0,0 +1,184 @@
+package shapes;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.Camera;
+import rendering.shading.Material;
+import rendering.shapes.MeshInstance;
+import rendering.shapes.Plane;
+import rendering.shapes.RTShape;
+import rendering.shapes.TriangleMesh;
+import rendering.shapes.TriangleMeshGeometry;
+import rendering.tracing.Intersection;
+import rendering.tracing.Ray;
+import rendering.tracing.Scene;
+import rendering.tracing.SceneSnapshot;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.Matrix4D;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MeshInstanceTest {
+    private static final String meshesDirectory = "src/main/resources/meshes/";
+
+    @Test
+    void instanceMatchesTriangleMesh() throws Exception {
+        Matrix4D transformation = Matrix4D.getTranslationMatrix(new Vector3D(0.5, -1, 2))
+                .multiplyFromRight(Matrix4D.getRotationMatrixAboutY(0.7))
+                .multiplyFromRight(Matrix4D.getScalingMatrix(new Vector3D(1.5, 0.5, 2)));
+        for(String name : new String[]{"pawnFlatShaded", "pawnAutoSmoothShaded"}) {
+            String path = MeshInstanceTest.meshesDirectory + name + ".obj";
+            TriangleMesh mesh = new TriangleMesh(path, transformation, RTColor.red, Material.defaultNonReflectiveMaterial);
+            MeshInstance instance = new MeshInstance(path, transformation, RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.DOUBLE);
+
+            /// the bounding box of the instance contains the mesh
+            assertTrue(instance.getAxisAlignedBoundingBox().getMinX() <= mesh.getAxisAlignedBoundingBox().getMinX());
+            assertTrue(instance.getAxisAlignedBoundingBox().getMaxY() >= mesh.getAxisAlignedBoundingBox().getMaxY());
+            assertTrue(instance.getAxisAlignedBoundingBox().getMaxZ() >= mesh.getAxisAlignedBoundingBox().getMaxZ());
+
+            Random rnd = new Random(4);
+            int hits = 0;
+            for(int k = 0; k < 1000; k++) {
+                Ray r = new Ray(new Vector3D(rnd.nextDouble() * 6 - 3, rnd.nextDouble() * 4 - 2, -10), new Vector3D(rnd.nextDouble() * 0.4 - 0.2, rnd.nextDouble() * 0.4 - 0.2, 1));
+                Intersection expected = mesh.intersect(r);
+                Intersection actual = instance.intersect(r);
+                if(expected == null) {
+                    assertNull(actual);
+                    assertFalse(instance.occluded(r, Double.POSITIVE_INFINITY));
+                    continue;
+                }
+                hits++;
+                assertNotNull(actual);
+                assertSame(instance, actual.getIntersectedShape());
+                double distance = r.distance(expected.getIntersectionPoint());
+                assertEquals(distance, r.distance(actual.getIntersectionPoint()), 1e-9 * distance);
+                assertTrue(instance.occluded(r, r.parameterOf(expected.getIntersectionPoint()) * 1.001));
+                assertFalse(instance.occluded(r, r.parameterOf(expected.getIntersectionPoint()) * 0.999));
+
+                /// the same triangle is hit (but for rays through a shared edge), with the same normal
+                if(expected.getPrimitiveIndex() == actual.getPrimitiveIndex()) {
+                    Vector3D expectedNormal = mesh.getUnitNormalAt(expected);
+                    Vector3D actualNormal = instance.getUnitNormalAt(actual);
+                    assertEquals(expectedNormal.getX(), actualNormal.getX(), 1e-9);
+                    assertEquals(expectedNormal.getY(), actualNormal.getY(), 1e-9);
+                    assertEquals(expectedNormal.getZ(), actualNormal.getZ(), 1e-9);
+                }
+            }
+            assertTrue(hits > 100);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new MeshInstance(MeshInstanceTest.meshesDirectory + "house.obj",
+                Matrix4D.getScalingMatrix(new Vector3D(1, 0, 1)), RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.DOUBLE));
+    }
+
+    @Test
+    void updatedSceneMatchesNewScene() throws Exception {
+        ArrayList<RTShape> shapes = new ArrayList<>();
+        shapes.add(new Plane(new Vector3D(0, 1, 0), new Vector3D(0, -1, 0), RTColor.red, Material.defaultNonReflectiveMaterial));
+        for(int i = 0; i < 64; i++) {
+            Matrix4D transformation = Matrix4D.getTranslationMatrix(new Vector3D(2 * (i % 8) - 8, 0, 2 * (i / 8) + 5));
+            shapes.add(new MeshInstance(MeshInstanceTest.meshesDirectory + "tower.obj", transformation, RTColor.red, Material.defaultNonReflectiveMaterial, GeometryPrecision.DOUBLE));
+        }
+        Scene scene = new Scene(new ArrayList<>(shapes), new ArrayList<>());
+
+        /// move some of the towers, one of them far away, and deform another one
+        int[] shapeIndices = {1, 10, 33, 64, 20};
+        RTShape[] newShapes = new RTShape[shapeIndices.length];
+        for(int i = 0; i < 4; i++) {
+            MeshInstance instance = (MeshInstance) shapes.get(shapeIndices[i]);
+            newShapes[i] = instance.withModelTransformation(Matrix4D.getTranslationMatrix(new Vector3D(i - 1.5, 1 - i, i == 0 ? 40 : 3))
+                    .multiplyFromRight(instance.getModelTransformation()));
+        }
+        MeshInstance deformedInstance = (MeshInstance) shapes.get(20);
+        TriangleMeshGeometry geometry = deformedInstance.getGeometry();
+        double[] vertexPositions = new double[3 * geometry.getNumberOfVertices()];
+        for(int vertex = 0; vertex < geometry.getNumberOfVertices(); vertex++) {
+            Vector3D v = geometry.getVertex(vertex);
+            vertexPositions[3*vertex] = v.getX() * (1 + 0.5 * v.getY());
+            vertexPositions[3*vertex+1] = v.getY() * 1.5;
+            vertexPositions[3*vertex+2] = v.getZ() * (1 + 0.5 * v.getY());
+        }
+        TriangleMeshGeometry deformed = geometry.deformed(vertexPositions, null);
+        assertEquals(geometry.getBoundingVolumeHierarchy().getPrimitiveIndex(0), deformed.getBoundingVolumeHierarchy().getPrimitiveIndex(0));
+        newShapes[4] = deformedInstance.withGeometry(deformed);
+        scene.updateShapes(shapeIndices, newShapes);
+
+        for(int i = 0; i < shapeIndices.length; i++) {
+            shapes.set(shapeIndices[i], newShapes[i]);
+        }
+        Scene newScene = new Scene(shapes, new ArrayList<>());
+        assertEquals(shapes, scene.getShapes());
+
+        Random rnd = new Random(8);
+        int hits = 0;
+        for(int k = 0; k < 2000; k++) {
+            Ray r = new Ray(new Vector3D(0, 3, -5), new Vector3D(rnd.nextDouble() - 0.5, rnd.nextDouble() * 0.4 - 0.3, 1));
+            Intersection expected = newScene.findFirstIntersection(r);
+            Intersection actual = scene.findFirstIntersection(r);
+            if(expected == null) {
+                assertNull(actual);
+                continue;
+            }
+            hits++;
+            assertSame(expected.getIntersectedShape(), actual.getIntersectedShape());
+            assertEquals(expected.getPrimitiveIndex(), actual.getPrimitiveIndex());
+        }
+        assertTrue(hits > 1000);
+
+        assertThrows(IllegalArgumentException.class, () -> scene.updateShapes(new int[]{0}, new RTShape[]{newShapes[0]}));
+        assertThrows(IllegalArgumentException.class, () -> scene.updateShapes(new int[]{65}, new RTShape[]{newShapes[0]}));
+        assertThrows(IllegalArgumentException.class, () -> geometry.deformed(new double[3], null));
+    }
+
+    @Test
+    void forestOfInstancesSharesOneGeometry(@TempDir Path directory) throws Exception {
+        /// 10,000 towers on a 100 x 100 grid
+        StringBuilder xml = new StringBuilder("<elements>\n<shapes>\n");
+        xml.append("<plane><normal>(0,1,0)</normal><point>(0,0,0)</point><color>(60,162,78)</color></plane>\n");
+        for(int x = 0; x < 100; x++) {
+            for(int z = 0; z < 100; z++) {
+                xml.append("<instanced-mesh><path-to-obj-file>").append(MeshInstanceTest.meshesDirectory).append("tower.obj</path-to-obj-file>")
+                        .append("<model-transform><scale>(0.3,0.3,0.3)</scale><rotateY>").append(37 * (x + z)).append("</rotateY>")
+                        .append("<translate>(").append(2 * x - 100).append(",0,").append(2 * z + 10).append(")</translate></model-transform>")
+                        .append("<color>(256,34,2)</color><material>red-rubber</material></instanced-mesh>\n");
+            }
+        }
+        xml.append("</shapes>\n<lights>\n<point-light><position>(0,50,0)</position><color>(255,255,255)</color><intensity>40000</intensity></point-light>\n</lights>\n</elements>\n");
+        Path scenePath = directory.resolve("forest.xml");
+        Files.writeString(scenePath, xml);
+
+        Scene scene = new Scene(scenePath.toString());
+        assertEquals(10001, scene.getShapes().size());
+        MeshInstance first = (MeshInstance) scene.getShapes().get(1);
+        for(RTShape shape : scene.getShapes().subList(1, scene.getShapes().size())) {
+            assertSame(first.getGeometry(), ((MeshInstance) shape).getGeometry());
+        }
+
+        /// the snapshot of the scene stores the geometry once, and shares it again when read
+        String snapshotPath = directory.resolve("forest" + SceneSnapshot.fileExtension).toString();
+        SceneSnapshot.write(scene, snapshotPath);
+        assertTrue(Files.size(Path.of(snapshotPath)) < first.getGeometry().getSizeInBytes() + 10001 * 1000L);
+        Scene loadedScene = Scene.load(snapshotPath);
+        MeshInstance loadedFirst = (MeshInstance) loadedScene.getShapes().get(1);
+        for(RTShape shape : loadedScene.getShapes().subList(1, loadedScene.getShapes().size())) {
+            assertSame(loadedFirst.getGeometry(), ((MeshInstance) shape).getGeometry());
+        }
+
+        Camera camera = new Camera(4, 2, 1, 24, 2, 1, 12, 1);
+        BufferedImage expected = camera.renderWithCPUCoreParallelization(scene, null);
+        BufferedImage actual = camera.renderWithCPUCoreParallelization(loadedScene, null);
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+            }
+        }
+    }
+}
@@ -2,10 +2,12 @@ package shapes;
 
 import org.junit.jupiter.api.Test;
 import rendering.shading.Material;
+import rendering.shapes.IntersectionKernel;
 import rendering.shapes.Triangle;
 import rendering.shapes.TriangleMesh;
 import rendering.tracing.Intersection;
 import rendering.tracing.Ray;
+import rendering.utility.GeometryPrecision;
 import rendering.utility.IncorrectSceneDescriptionXMLStructureException;
 import rendering.utility.Matrix4D;
 import rendering.utility.RTColor;
@@ -13,7 +15,9 @@ import rendering.utility.Vector3D;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -185,4 +189,158 @@ class TriangleMeshTest {
         assertEquals(t.getNormalB().getZ(), ns.get(10-1).getZ(), 1e-4);
         assertEquals(t.getNormalC().getZ(), ns.get(10-1).getZ(), 1e-4);
     }
-}
\ No newline at end of file
+
+    @Test
+    void intersectMatchesAllTriangles() throws IOException {
+        TriangleMesh tm = new TriangleMesh("src/main/resources/meshes/pawnFlatShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial);
+        Random rnd = new Random(3);
+        for(int k = 0; k < 500; k++) {
+            Ray r = TriangleMeshTest.randomRayTowardsPawn(rnd);
+
+            /// closest intersection found by intersecting every triangle
+            Intersection expected = TriangleMeshTest.closestTriangleHit(tm.getTriangles(), r);
+            Intersection inter = tm.intersect(r);
+            if(expected == null) {
+                assertNull(inter);
+            }
+            else {
+                assertNotNull(inter);
+                assertEquals(r.distance(expected.getIntersectionPoint()), r.distance(inter.getIntersectionPoint()), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void getUnitNormalAtMatchesTriangles() throws IOException {
+        TriangleMesh tm = new TriangleMesh("src/main/resources/meshes/pawnAutoSmoothShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial);
+        ArrayList<Triangle> ts = tm.getTriangles();
+        Random rnd = new Random(5);
+        for(int k = 0; k < 500; k++) {
+            Ray r = TriangleMeshTest.randomRayTowardsPawn(rnd);
+            Intersection inter = tm.intersect(r);
+            if(inter == null) {
+                continue;
+            }
+
+            /// the mesh must interpolate the normals the same way as the intersected triangle
+            Triangle t = ts.get(inter.getPrimitiveIndex());
+            Vector3D expected = t.getUnitNormalAt(new Intersection(t, inter.getIntersectionPoint()));
+            Vector3D actual = tm.getUnitNormalAt(inter);
+            assertEquals(expected.getX(), actual.getX(), 1e-9);
+            assertEquals(expected.getY(), actual.getY(), 1e-9);
+            assertEquals(expected.getZ(), actual.getZ(), 1e-9);
+        }
+    }
+
+    @Test
+    void occludedMatchesIntersect() throws IOException {
+        TriangleMesh tm = new TriangleMesh("src/main/resources/meshes/pawnFlatShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial);
+        Random rnd = new Random(9);
+        for(int k = 0; k < 500; k++) {
+            Ray r = TriangleMeshTest.randomRayTowardsPawn(rnd);
+            double maxParameter = rnd.nextDouble() * 12;
+
+            Intersection inter = tm.intersect(r);
+            boolean expected = inter != null && r.parameterOf(inter.getIntersectionPoint()) < maxParameter;
+            assertEquals(expected, tm.occluded(r, maxParameter));
+        }
+    }
+
+    @Test
+    void floatPrecisionMatchesAllTriangles() throws IOException, IncorrectSceneDescriptionXMLStructureException {
+        TriangleMesh tm = TriangleMesh.parseShape(Map.of("path-to-obj-file", "src/main/resources/meshes/pawnAutoSmoothShaded.obj",
+                "color", "(255,0,0)", "precision", "float"), Matrix4D.identity);
+        TriangleMesh doubleTm = new TriangleMesh("src/main/resources/meshes/pawnAutoSmoothShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial);
+        assertEquals(GeometryPrecision.FLOAT, tm.getGeometry().getPrecision());
+        assertEquals(GeometryPrecision.DOUBLE, doubleTm.getGeometry().getPrecision());
+        assertTrue(tm.getGeometry().getSizeInBytes() < 0.6 * doubleTm.getGeometry().getSizeInBytes());
+        assertThrows(IncorrectSceneDescriptionXMLStructureException.class, () -> TriangleMesh.parseShape(Map.of("path-to-obj-file",
+                "src/main/resources/meshes/pawnAutoSmoothShaded.obj", "color", "(255,0,0)", "precision", "half"), Matrix4D.identity));
+
+        /// the mesh must be intersected exactly like its triangles, whose vertices are the vertices rounded to floats
+        ArrayList<Triangle> ts = tm.getTriangles();
+        Random rnd = new Random(13);
+        for(int k = 0; k < 500; k++) {
+            Ray r = TriangleMeshTest.randomRayTowardsPawn(rnd);
+
+            Intersection expected = TriangleMeshTest.closestTriangleHit(ts, r);
+            Intersection inter = tm.intersect(r);
+            Intersection doubleInter = doubleTm.intersect(r);
+            if(expected == null) {
+                assertNull(inter);
+            }
+            else {
+                assertNotNull(inter);
+                assertEquals(r.distance(expected.getIntersectionPoint()), r.distance(inter.getIntersectionPoint()), 1e-9);
+                assertEquals(expected.getIntersectedShape().getUnitNormalAt(expected).getY(), tm.getUnitNormalAt(inter).getY(), 1e-6);
+                /// and differ from the double precision mesh only by the rounding of the vertices
+                if(doubleInter != null) {
+                    assertEquals(r.distance(doubleInter.getIntersectionPoint()), r.distance(inter.getIntersectionPoint()), 1e-5);
+                }
+            }
+        }
+    }
+
+    @Test
+    void simdKernelMatchesScalarKernel() throws IOException {
+        assertTrue(IntersectionKernel.isSimdAvailable());
+        assertThrows(IllegalArgumentException.class, () -> IntersectionKernel.parse("avx"));
+        IntersectionKernel defaultKernel = IntersectionKernel.getDefault();
+        for(GeometryPrecision precision : GeometryPrecision.values()) {
+            TriangleMesh scalarTm, simdTm;
+            try {
+                IntersectionKernel.setDefault(IntersectionKernel.SCALAR);
+                scalarTm = new TriangleMesh("src/main/resources/meshes/pawnAutoSmoothShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial, precision);
+                IntersectionKernel.setDefault(IntersectionKernel.SIMD);
+                simdTm = new TriangleMesh("src/main/resources/meshes/pawnAutoSmoothShaded.obj", Matrix4D.identity, RTColor.red, Material.defaultNonReflectiveMaterial, precision);
+            }
+            finally {
+                IntersectionKernel.setDefault(defaultKernel);
+            }
+            assertEquals(IntersectionKernel.SCALAR, scalarTm.getGeometry().getKernel());
+            assertEquals(IntersectionKernel.SIMD, simdTm.getGeometry().getKernel());
+
+            /// both kernels must find exactly the same hits
+            Random rnd = new Random(17);
+            for(int k = 0; k < 1000; k++) {
+                Ray r = TriangleMeshTest.randomRayTowardsPawn(rnd);
+                Intersection expected = scalarTm.intersect(r);
+                Intersection actual = simdTm.intersect(r);
+                if(expected == null) {
+                    assertNull(actual);
+                }
+                else {
+                    assertNotNull(actual);
+                    assertEquals(expected.getPrimitiveIndex(), actual.getPrimitiveIndex());
+                    assertEquals(expected.getIntersectionPoint().getZ(), actual.getIntersectionPoint().getZ(), 0);
+                    assertEquals(expected.getBarycentricCoordinates().getY(), actual.getBarycentricCoordinates().getY(), 0);
+                    assertEquals(expected.getBarycentricCoordinates().getZ(), actual.getBarycentricCoordinates().getZ(), 0);
+                }
+                double maxParameter = rnd.nextDouble() * 12;
+                assertEquals(scalarTm.occluded(r, maxParameter), simdTm.occluded(r, maxParameter));
+            }
+        }
+    }
+
+    /*
+       Method that returns a random ray cast from in front of the
+       pawn meshes (from z = -10), roughly along the z axis.
+     */
+    private static Ray randomRayTowardsPawn(Random rnd) {
+        return new Ray(new Vector3D(rnd.nextDouble() * 4 - 2, rnd.nextDouble() * 6 - 1, -10), new Vector3D(rnd.nextDouble() * 0.2 - 0.1, rnd.nextDouble() * 0.2 - 0.1, 1));
+    }
+    /*
+       Method that returns the closest intersection of the given
+       ray with the given triangles, by intersecting every triangle.
+     */
+    private static Intersection closestTriangleHit(List<Triangle> triangles, Ray r) {
+        Intersection closest = null;
+        for(Triangle t : triangles) {
+            Intersection inter = t.intersect(r);
+            if(inter != null && (closest == null || r.distance(inter.getIntersectionPoint()) < r.distance(closest.getIntersectionPoint()))) {
+                closest = inter;
+            }
+        }
+        return closest;
+    }
+}
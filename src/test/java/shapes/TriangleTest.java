@@ -140,4 +140,26 @@ class TriangleTest {
         assertEquals(-1, b.getY(), 1e-9);
         assertEquals(-1, b.getZ(), 1e-9);
     }
-}
\ No newline at end of file
+
+    @Test
+    void intersectRecordsBarycentricCoordinates() {
+        Triangle t = new Triangle(new Vector3D(12,-1,0), new Vector3D(-4,6,1), new Vector3D(-2,7,4), new Vector3D(-1,-1,0), new Vector3D(-1,-1,0), new Vector3D(-1,-1,0), RTColor.red, Material.defaultNonReflectiveMaterial);
+        /// ray towards the point with barycentric coordinates (0.25, 0.5, 0.25)
+        Ray r = new Ray(new Vector3D(0, 0, -5), new Vector3D(0.5, 4.5, 6.5));
+        Intersection inter = t.intersect(r);
+        Vector3D b = inter.getBarycentricCoordinates();
+        assertEquals(0.25, b.getX(), 1e-9);
+        assertEquals(0.5, b.getY(), 1e-9);
+        assertEquals(0.25, b.getZ(), 1e-9);
+        assertEquals(0.5, inter.getIntersectionPoint().getX(), 1e-9);
+        assertEquals(4.5, inter.getIntersectionPoint().getY(), 1e-9);
+        assertEquals(1.5, inter.getIntersectionPoint().getZ(), 1e-9);
+
+        /// ray in the plane of the triangle
+        r = new Ray(new Vector3D(12,-1,0), new Vector3D(-16,7,1));
+        assertNull(t.intersect(r));
+        /// triangle behind the ray
+        r = new Ray(new Vector3D(0, 0, -5), new Vector3D(-0.5, -4.5, -6.5));
+        assertNull(t.intersect(r));
+    }
+}
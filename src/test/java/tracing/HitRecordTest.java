@@ -0,0 +1,68 @@
+package tracing;
+
+import org.junit.jupiter.api.Test;
+import rendering.shading.Material;
+import rendering.shapes.Plane;
+import rendering.shapes.Sphere;
+import rendering.shapes.Triangle;
+import rendering.tracing.HitRecord;
+import rendering.tracing.Intersection;
+import rendering.tracing.Ray;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HitRecordTest {
+
+    @Test
+    void keepsClosestHit() {
+        Sphere sphere = new Sphere(new Vector3D(0, 0, 10), 1, RTColor.red, Material.defaultNonReflectiveMaterial);
+        Plane plane = new Plane(new Vector3D(0, 0, -1), new Vector3D(0, 0, 20), RTColor.red, Material.defaultNonReflectiveMaterial);
+        Triangle triangle = new Triangle(new Vector3D(-1, -1, 5), new Vector3D(1, -1, 5), new Vector3D(0, 1, 5), RTColor.red, Material.defaultNonReflectiveMaterial);
+        Ray ray = new Ray(new Vector3D(0, 0, 0), new Vector3D(0, 0, 2));
+
+        HitRecord hitRecord = new HitRecord();
+        assertFalse(hitRecord.hasHit());
+        assertNull(hitRecord.toIntersection(ray));
+
+        assertTrue(plane.intersect(ray, hitRecord));
+        assertEquals(10, hitRecord.getParameter(), 1e-9);
+        assertSame(plane, hitRecord.getShape());
+        assertEquals(-1, hitRecord.getPrimitiveIndex());
+
+        assertTrue(sphere.intersect(ray, hitRecord));
+        assertEquals(4.5, hitRecord.getParameter(), 1e-9);
+
+        assertTrue(triangle.intersect(ray, hitRecord));
+        assertEquals(2.5, hitRecord.getParameter(), 1e-9);
+        assertEquals(0, hitRecord.getPrimitiveIndex());
+
+        /// farther shapes do not overwrite the closer hit
+        assertFalse(sphere.intersect(ray, hitRecord));
+        assertFalse(plane.intersect(ray, hitRecord));
+        assertSame(triangle, hitRecord.getShape());
+
+        Intersection intersection = hitRecord.toIntersection(ray);
+        assertSame(triangle, intersection.getIntersectedShape());
+        assertEquals(5, intersection.getIntersectionPoint().getZ(), 1e-9);
+        assertEquals(0.25, intersection.getBarycentricCoordinates().getX(), 1e-9);
+        assertEquals(0.25, intersection.getBarycentricCoordinates().getY(), 1e-9);
+        assertEquals(0.5, intersection.getBarycentricCoordinates().getZ(), 1e-9);
+    }
+
+    @Test
+    void resetLimitsParameter() {
+        Sphere sphere = new Sphere(new Vector3D(0, 0, 10), 1, RTColor.red, Material.defaultNonReflectiveMaterial);
+        Ray ray = new Ray(new Vector3D(0, 0, 0), new Vector3D(0, 0, 1));
+
+        HitRecord hitRecord = new HitRecord();
+        hitRecord.reset(5);
+        assertFalse(sphere.intersect(ray, hitRecord));
+        assertFalse(hitRecord.hasHit());
+
+        hitRecord.reset(Double.POSITIVE_INFINITY);
+        assertTrue(sphere.intersect(ray, hitRecord));
+        assertEquals(9, hitRecord.getParameter(), 1e-9);
+    }
+}
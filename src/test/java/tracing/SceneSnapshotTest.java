@@ -0,0 +1,160 @@
+package tracing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import rendering.Camera;
+import rendering.shading.Material;
+import rendering.shapes.IntersectionKernel;
+import rendering.shapes.RTShape;
+import rendering.shapes.Triangle;
+import rendering.shapes.TriangleMesh;
+import rendering.shapes.TriangleMeshGeometry;
+import rendering.tracing.Light;
+import rendering.tracing.Scene;
+import rendering.tracing.SceneSnapshot;
+import rendering.utility.GeometryPrecision;
+import rendering.utility.RTColor;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SceneSnapshotTest {
+    private static final String sceneDescriptionsDirectory = "src/main/resources/scene descriptions/";
+
+    @Test
+    void snapshotRendersTheSameImage(@TempDir Path directory) throws Exception {
+        Camera camera = new Camera(4, 2, 1, 24, 2, 2, 12, 1);
+        /// spheres, planes, triangles, a box, point and sphere lights, and smooth shaded meshes
+        for(String name : List.of("spheres_and_triangles_scene", "house_and_tower_scene")) {
+            Scene scene = new Scene(SceneSnapshotTest.sceneDescriptionsDirectory + name + ".xml");
+            String snapshotPath = directory.resolve(name + SceneSnapshot.fileExtension).toString();
+            SceneSnapshot.write(scene, snapshotPath);
+
+            Scene loadedScene = Scene.load(snapshotPath);
+            assertEquals(scene.getShapes().size(), loadedScene.getShapes().size());
+            assertEquals(scene.getLights().size(), loadedScene.getLights().size());
+            for(int i = 0; i < scene.getShapes().size(); i++) {
+                assertEquals(scene.getShapes().get(i).getShapeID(), loadedScene.getShapes().get(i).getShapeID());
+                if(scene.getShapes().get(i) instanceof Triangle triangle) {
+                    assertEquals(triangle.isFlatShaded(), ((Triangle) loadedScene.getShapes().get(i)).isFlatShaded());
+                }
+            }
+            assertEquals(scene.getBoundingVolumeHierarchy().getNumberOfNodes(), loadedScene.getBoundingVolumeHierarchy().getNumberOfNodes());
+
+            assertSameImage(camera.renderWithCPUCoreParallelization(scene, null), camera.renderWithCPUCoreParallelization(loadedScene, null));
+        }
+    }
+
+    @Test
+    void meshesAreRestoredOrRebuiltForTheCurrentKernel(@TempDir Path directory) throws Exception {
+        Camera camera = new Camera(4, 2, 1, 24, 2, 1, 12, 1);
+        Scene xmlScene = new Scene(SceneSnapshotTest.sceneDescriptionsDirectory + "house_and_tower_scene.xml");
+        IntersectionKernel defaultKernel = IntersectionKernel.getDefault();
+        try {
+            for(GeometryPrecision precision : GeometryPrecision.values()) {
+                for(IntersectionKernel kernel : IntersectionKernel.values()) {
+                    /// the same meshes in the given precision, for the given kernel
+                    IntersectionKernel.setDefault(kernel);
+                    Scene scene = SceneSnapshotTest.withPrecision(xmlScene, precision);
+                    String snapshotPath = directory.resolve(precision + "_" + kernel + SceneSnapshot.fileExtension).toString();
+                    SceneSnapshot.write(scene, snapshotPath);
+                    BufferedImage expected = camera.renderWithCPUCoreParallelization(scene, null);
+
+                    for(IntersectionKernel loadingKernel : IntersectionKernel.values()) {
+                        IntersectionKernel.setDefault(loadingKernel);
+                        Scene loadedScene = SceneSnapshot.read(snapshotPath);
+                        for(RTShape shape : loadedScene.getShapes()) {
+                            if(shape instanceof TriangleMesh mesh) {
+                                assertEquals(precision, mesh.getGeometry().getPrecision());
+                                assertEquals(IntersectionKernel.isSimdAvailable() ? loadingKernel : IntersectionKernel.SCALAR, mesh.getGeometry().getKernel());
+                            }
+                        }
+                        assertSameImage(expected, camera.renderWithCPUCoreParallelization(loadedScene, null));
+                    }
+                }
+            }
+        }
+        finally {
+            IntersectionKernel.setDefault(defaultKernel);
+        }
+    }
+
+    @Test
+    void invalidSnapshotsAreRejected(@TempDir Path directory) throws Exception {
+        Scene scene = new Scene(SceneSnapshotTest.sceneDescriptionsDirectory + "spheres_and_triangles_scene.xml");
+        Path snapshotPath = directory.resolve("scene" + SceneSnapshot.fileExtension);
+        SceneSnapshot.write(scene, snapshotPath.toString());
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+
+        /// not a snapshot
+        Path xmlPath = directory.resolve("scene.xml" + SceneSnapshot.fileExtension);
+        Files.copy(Path.of(SceneSnapshotTest.sceneDescriptionsDirectory + "spheres_and_triangles_scene.xml"), xmlPath);
+        assertThrows(IOException.class, () -> SceneSnapshot.read(xmlPath.toString()));
+
+        /// another version of the format
+        byte[] otherVersion = bytes.clone();
+        otherVersion[4]++;
+        Files.write(snapshotPath, otherVersion);
+        assertThrows(IOException.class, () -> SceneSnapshot.read(snapshotPath.toString()));
+
+        /// truncated
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> SceneSnapshot.read(snapshotPath.toString()));
+        Files.write(snapshotPath, Arrays.copyOf(bytes, bytes.length - 1));
+        assertThrows(IOException.class, () -> SceneSnapshot.read(snapshotPath.toString()));
+    }
+
+    /// the given scene, with every mesh built again in the given precision
+    private static Scene withPrecision(Scene scene, GeometryPrecision precision) {
+        ArrayList<RTShape> shapes = new ArrayList<>();
+        for(RTShape shape : scene.getShapes()) {
+            if(shape instanceof TriangleMesh mesh) {
+                TriangleMeshGeometry geometry = mesh.getGeometry();
+                double[] vertices = new double[3 * geometry.getNumberOfVertices()];
+                for(int i = 0; i < geometry.getNumberOfVertices(); i++) {
+                    vertices[3*i] = geometry.getVertex(i).getX();
+                    vertices[3*i+1] = geometry.getVertex(i).getY();
+                    vertices[3*i+2] = geometry.getVertex(i).getZ();
+                }
+                double[] normals = new double[3 * geometry.getNumberOfNormals()];
+                for(int i = 0; i < geometry.getNumberOfNormals(); i++) {
+                    normals[3*i] = geometry.getNormal(i).getX();
+                    normals[3*i+1] = geometry.getNormal(i).getY();
+                    normals[3*i+2] = geometry.getNormal(i).getZ();
+                }
+                int[] faceVertexIndices = new int[3 * geometry.getNumberOfTriangles()];
+                int[] faceNormalIndices = geometry.isFlatShaded() ? null : new int[3 * geometry.getNumberOfTriangles()];
+                for(int i = 0; i < faceVertexIndices.length; i++) {
+                    faceVertexIndices[i] = geometry.getVertexIndex(i / 3, i % 3);
+                    if(faceNormalIndices != null) {
+                        faceNormalIndices[i] = geometry.getNormalIndex(i / 3, i % 3);
+                    }
+                }
+                RTColor color = mesh.getColorAt(null);
+                Material material = mesh.getMaterialAt(null);
+                shapes.add(new TriangleMesh(new TriangleMeshGeometry(vertices, normals, faceVertexIndices, faceNormalIndices, precision), color, material));
+            }
+            else {
+                shapes.add(shape);
+            }
+        }
+        return new Scene(shapes, new ArrayList<Light>(scene.getLights()));
+    }
+
+    private static void assertSameImage(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for(int y = 0; y < expected.getHeight(); y++) {
+            for(int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(expected.getRGB(x, y), actual.getRGB(x, y), "at (" + x + "," + y + ")");
+            }
+        }
+    }
+}
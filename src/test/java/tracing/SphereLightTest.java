@@ -0,0 +1,82 @@
+package tracing;
+
+import org.junit.jupiter.api.Test;
+import rendering.shading.Material;
+import rendering.shapes.Plane;
+import rendering.shapes.RTShape;
+import rendering.shapes.Sphere;
+import rendering.shapes.Triangle;
+import rendering.tracing.Intersection;
+import rendering.tracing.Light;
+import rendering.tracing.Ray;
+import rendering.tracing.Scene;
+import rendering.tracing.SphereLight;
+import rendering.utility.RTColor;
+import rendering.utility.Vector3D;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SphereLightTest {
+
+    /// scene that counts the shadow rays cast into it
+    static class CountingScene extends Scene {
+        int numberOfShadowRays = 0;
+
+        CountingScene(ArrayList<RTShape> shapes, ArrayList<Light> lights) {
+            super(shapes, lights);
+        }
+
+        @Override
+        public boolean occluded(Ray ray, double maxParameter) {
+            this.numberOfShadowRays++;
+            return super.occluded(ray, maxParameter);
+        }
+    }
+
+    /// occlusion coefficient of a sphere light of radius 1 at (0,10,0), at the origin of
+    /// the floor plane y = 0, with the given occluders, and the number of shadow rays cast
+    private static double[] getOcclusionCoefficient(SphereLight light, RTShape... occluders) {
+        Plane floor = new Plane(new Vector3D(0, 1, 0), new Vector3D(0, 0, 0), RTColor.gray, Material.defaultNonReflectiveMaterial);
+        ArrayList<RTShape> shapes = new ArrayList<>(List.of(occluders));
+        shapes.add(floor);
+        CountingScene scene = new CountingScene(shapes, new ArrayList<>(List.of(light)));
+
+        double coefficient = light.getOcclusionCoefficient(new Intersection(floor, new Vector3D(0, 0, 0)), scene);
+        return new double[]{coefficient, scene.numberOfShadowRays};
+    }
+
+    @Test
+    void getOcclusionCoefficient() {
+        SphereLight light = new SphereLight(new Vector3D(0, 10, 0), RTColor.white, 1, 1);
+        assertEquals(SphereLight.defaultMaximumNumberOfShadowRays, light.getMaximumNumberOfShadowRays());
+
+        /// fully lit, only the first batch is cast
+        double[] result = SphereLightTest.getOcclusionCoefficient(light);
+        assertEquals(1, result[0]);
+        assertEquals(SphereLight.shadowRayBatchSize, result[1]);
+
+        /// fully in shadow, only the first batch is cast
+        Sphere blocker = new Sphere(new Vector3D(0, 5, 0), 3, RTColor.red, Material.defaultNonReflectiveMaterial);
+        result = SphereLightTest.getOcclusionCoefficient(light, blocker);
+        assertEquals(0, result[0]);
+        assertEquals(SphereLight.shadowRayBatchSize, result[1]);
+
+        /// the half z > 0 of the light is hidden, which the stratified batches sample
+        /// exactly half of the time, so the point is in a penumbra and gets all rays
+        Triangle halfBlocker = new Triangle(new Vector3D(-100, 5, 0), new Vector3D(100, 5, 0), new Vector3D(0, 5, 100), RTColor.red, Material.defaultNonReflectiveMaterial);
+        result = SphereLightTest.getOcclusionCoefficient(light, halfBlocker);
+        assertEquals(0.5, result[0]);
+        assertEquals(SphereLight.defaultMaximumNumberOfShadowRays, result[1]);
+
+        /// the maximum is rounded down to whole batches
+        SphereLight customLight = new SphereLight(new Vector3D(0, 10, 0), RTColor.white, 1, 1, 30);
+        result = SphereLightTest.getOcclusionCoefficient(customLight, halfBlocker);
+        assertEquals(0.5, result[0]);
+        assertEquals(28, result[1]);
+
+        assertThrows(IllegalArgumentException.class, () -> new SphereLight(new Vector3D(0, 10, 0), RTColor.white, 1, 1, 3));
+    }
+}
@@ -0,0 +1,34 @@
+package tracing;
+
+import org.junit.jupiter.api.Test;
+import rendering.tracing.TraversalStack;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraversalStackTest {
+
+    @Test
+    void nestedFramesKeepTheirNodes() {
+        TraversalStack stack = new TraversalStack();
+        int outerBase = stack.push(40);
+        int[] outerNodes = stack.getNodes();
+        outerNodes[outerBase + 39] = 7;
+
+        /// a nested frame that does not fit makes the array grow, but the outer frame keeps its array
+        int innerBase = stack.push(100);
+        assertEquals(40, innerBase);
+        assertTrue(stack.getNodes().length >= 140);
+        assertNotSame(outerNodes, stack.getNodes());
+        stack.getNodes()[innerBase + 99] = 1;
+        stack.pop(innerBase);
+        assertEquals(7, outerNodes[outerBase + 39]);
+        stack.pop(outerBase);
+        assertEquals(0, stack.getTop());
+
+        /// once it is large enough, the same array is reused
+        int[] nodes = stack.getNodes();
+        stack.pop(stack.push(140));
+        assertSame(nodes, stack.getNodes());
+        assertSame(TraversalStack.forCurrentThread(), TraversalStack.forCurrentThread());
+    }
+}